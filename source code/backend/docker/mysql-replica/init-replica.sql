@@ -0,0 +1,3 @@
+-- Runs once when the replica volume is created, replication starts from the first transaction of the primary
+CHANGE MASTER TO MASTER_HOST = 'mysql', MASTER_PORT = 3306, MASTER_USER = 'root', MASTER_PASSWORD = '123456', MASTER_AUTO_POSITION = 1;
+START SLAVE;
@@ -33,6 +33,7 @@ public class BackendApplication implements CommandLineRunner {
         if (storageService.existRootFolder() == false) {
             storageService.initRootFolder();
         }
+        storageService.indexLegacyFiles();
         if (storageService.existExcelFolder() == false) {
             storageService.initExcelFolder();
         }
@@ -0,0 +1,32 @@
+package com.thanhtam.backend.config;
+
+import org.hibernate.cache.jcache.JCacheRegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@Configuration
+public class CacheConfig {
+    @Value("${isc.cache.config:classpath:ehcache.xml}")
+    private Resource cacheConfig;
+
+    /**
+     * Hibernate passes the JCache uri to Ehcache as it is, which cannot open classpath: locations,
+     * so the configuration is handed over as the url it resolves to.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer cacheConfigCustomizer() {
+        return hibernateProperties -> {
+            try {
+                hibernateProperties.put(JCacheRegionFactory.CONFIG_URI, cacheConfig.getURI().toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
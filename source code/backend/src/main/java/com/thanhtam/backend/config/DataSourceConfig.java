@@ -0,0 +1,72 @@
+package com.thanhtam.backend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+public class DataSourceConfig {
+    @Value("${isc.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${isc.datasource.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${isc.datasource.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    /**
+     * The data source used by JPA and JDBC, routing between the primary pool and the optional replica pool.
+     * A connection is only taken from a pool on the first statement, by then the transaction has set its read-only flag
+     * and the routing can see it. The pools are not beans of their own, Spring Boot expects a single data source.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment) {
+        Binder binder = Binder.get(environment);
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        pools.add(primary);
+        targetDataSources.put(ReplicaRoutingDataSource.PRIMARY, primary);
+
+        if (!replicaUrl.isEmpty()) {
+            HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(replicaUrl).username(replicaUsername).password(replicaPassword).build();
+            replica.setPoolName("replica");
+            replica.setReadOnly(true);
+            binder.bind("isc.datasource.replica.hikari", Bindable.ofInstance(replica));
+            pools.add(replica);
+            targetDataSources.put(ReplicaRoutingDataSource.REPLICA, replica);
+        }
+
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @PreDestroy
+    public void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
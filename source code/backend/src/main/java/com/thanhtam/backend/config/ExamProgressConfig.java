@@ -0,0 +1,30 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExamProgressConfig {
+    @Value("${isc.exam-progress.sender-threads:2}")
+    private int senderThreads;
+
+    @Value("${isc.exam-progress.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * Writes buffered exam progress events to the lecturers' streams, one task per subscriber with pending events
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService examProgressExecutor() {
+        return new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("exam-progress-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,32 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableScheduling
+public class ImportJobConfig {
+    @Value("${isc.import-job.pool-size:2}")
+    private int poolSize;
+
+    @Value("${isc.import-job.queue-capacity:20}")
+    private int queueCapacity;
+
+    /**
+     * Worker pool for import jobs. Submissions beyond the queue capacity are rejected instead of piling up.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService importJobExecutor() {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("import-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
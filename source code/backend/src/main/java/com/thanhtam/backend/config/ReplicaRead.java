@@ -0,0 +1,13 @@
+package com.thanhtam.backend.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks report endpoints whose read-only transactions may read from the replica, see {@link ReplicaReadInterceptor}.
+ * Only endpoints that never need the caller's latest writes are marked, everything else reads from the primary.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+}
@@ -0,0 +1,45 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Lets the handlers marked with {@link ReplicaRead} read from the replica. A client that has to see its own changes
+ * right away sends X-Read-Your-Writes: true and the request reads from the primary. Reports handed to a
+ * {@link ReportExecutor} keep the routing of the request that submitted them.
+ */
+@Component
+public class ReplicaReadInterceptor implements AsyncHandlerInterceptor {
+    public static final String HEADER = "X-Read-Your-Writes";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && isReplicaRead((HandlerMethod) handler) && !Boolean.parseBoolean(request.getHeader(HEADER))) {
+            ReplicaRoutingDataSource.allowReplica();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoutingDataSource.clear();
+    }
+
+    /**
+     * The request thread goes back to the pool without {@link #afterCompletion}
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoutingDataSource.clear();
+    }
+
+    private static boolean isReplicaRead(HandlerMethod handlerMethod) {
+        return AnnotatedElementUtils.hasAnnotation(handlerMethod.getMethod(), ReplicaRead.class)
+                || AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), ReplicaRead.class);
+    }
+}
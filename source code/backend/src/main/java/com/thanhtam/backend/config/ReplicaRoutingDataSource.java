@@ -0,0 +1,37 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica when the current thread allows it, everything else to the primary.
+ * Only the report endpoints marked with {@link ReplicaRead} allow it, so other requests, including the reads before a
+ * write and the reads right after one, and background jobs never see stale rows.
+ * Without a replica target the lookup falls back to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    public static void allowReplica() {
+        REPLICA_ALLOWED.set(true);
+    }
+
+    public static boolean isReplicaAllowed() {
+        return Boolean.TRUE.equals(REPLICA_ALLOWED.get());
+    }
+
+    public static void clear() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (Boolean.TRUE.equals(REPLICA_ALLOWED.get()) && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,142 @@
+package com.thanhtam.backend.config;
+
+import com.thanhtam.backend.dto.ExecutorStats;
+import com.thanhtam.backend.dto.ServiceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs long report requests on a pool of their own so they do not hold Tomcat's request threads.
+ * The request thread returns a DeferredResult, a full queue answers 503 right away and a report running past the timeout
+ * is interrupted and answered 503. The task sees the caller's security context and, when the request may read from the
+ * replica, the same routing.
+ */
+public class ReportExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReportExecutor.class);
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+
+    /**
+     * @param transactionTemplate transaction every task runs in, null to run without one
+     */
+    public ReportExecutor(String name, ThreadPoolExecutor executor, long timeoutMillis, TransactionTemplate transactionTemplate) {
+        this.name = name;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Failures are answered with a ResponseEntity whatever the report returns. A report returning a StreamingResponseBody
+     * is declared as DeferredResult&lt;Object&gt;, so both its body and the error answers reach the right handler.
+     */
+    public <T> DeferredResult<T> submit(Callable<T> report) {
+        DeferredResult<T> deferredResult = new DeferredResult<>(timeoutMillis);
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        boolean replicaAllowed = ReplicaRoutingDataSource.isReplicaAllowed();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> run(report, securityContext, replicaAllowed, deferredResult));
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            setErrorResult(deferredResult, getErrorResponse("The server is busy with other reports, try again later"));
+            return deferredResult;
+        }
+        deferredResult.onTimeout(() -> {
+            timedOutCount.incrementAndGet();
+//            Answered before the interrupt, so the failure of the interrupted report is not taken as its result
+            setErrorResult(deferredResult, getErrorResponse("The report took longer than " + timeoutMillis / 1000 + " seconds"));
+            future.cancel(true);
+        });
+        return deferredResult;
+    }
+
+    private <T> void run(Callable<T> report, SecurityContext securityContext, boolean replicaAllowed, DeferredResult<T> deferredResult) {
+//        Timed out while queued
+        if (deferredResult.isSetOrExpired()) {
+            return;
+        }
+        SecurityContextHolder.setContext(securityContext);
+        if (replicaAllowed) {
+            ReplicaRoutingDataSource.allowReplica();
+        }
+        try {
+            T response = transactionTemplate == null ? report.call() : transactionTemplate.execute(status -> {
+                try {
+                    return report.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ReportException(e);
+                }
+            });
+            deferredResult.setResult(response);
+        } catch (Exception e) {
+            if (deferredResult.isSetOrExpired()) {
+                LOGGER.warn("Report on " + name + " stopped after its timeout");
+                return;
+            }
+            Throwable cause = e instanceof ReportException ? e.getCause() : e;
+//            The detail stays in the log, the client only learns that the report failed
+            LOGGER.error("Report on " + name + " failed: " + cause.toString(), cause);
+            setErrorResult(deferredResult, ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ServiceResult(HttpStatus.INTERNAL_SERVER_ERROR.value(), "The report could not be created", null)));
+        } finally {
+            ReplicaRoutingDataSource.clear();
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setErrorResult(DeferredResult<?> deferredResult, ResponseEntity<?> response) {
+        ((DeferredResult<Object>) deferredResult).setResult(response);
+    }
+
+    private ResponseEntity<?> getErrorResponse(String message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ServiceResult(HttpStatus.SERVICE_UNAVAILABLE.value(), message, null));
+    }
+
+    public ExecutorStats getStats() {
+        ExecutorStats stats = new ExecutorStats();
+        stats.setName(name);
+        stats.setPoolSize(executor.getPoolSize());
+        stats.setMaximumPoolSize(executor.getMaximumPoolSize());
+        stats.setActiveCount(executor.getActiveCount());
+        stats.setQueueSize(executor.getQueue().size());
+        stats.setQueueRemainingCapacity(executor.getQueue().remainingCapacity());
+        stats.setCompletedTaskCount(executor.getCompletedTaskCount());
+        stats.setRejectedCount(rejectedCount.get());
+        stats.setTimedOutCount(timedOutCount.get());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Carries a checked exception of the report out of the transaction callback
+     */
+    private static class ReportException extends RuntimeException {
+        ReportException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ReportExecutorConfig {
+    @Value("${isc.report.pool-size:4}")
+    private int reportPoolSize;
+
+    @Value("${isc.report.queue-capacity:20}")
+    private int reportQueueCapacity;
+
+    @Value("${isc.report.timeout-ms:120000}")
+    private long reportTimeoutMillis;
+
+    @Value("${isc.user-upload.pool-size:1}")
+    private int userUploadPoolSize;
+
+    @Value("${isc.user-upload.queue-capacity:5}")
+    private int userUploadQueueCapacity;
+
+    @Value("${isc.user-upload.timeout-ms:600000}")
+    private long userUploadTimeoutMillis;
+
+    /**
+     * Exam result listings and reports and the user export, each run in a read-only transaction
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ReportExecutor reportExecutor(PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return new ReportExecutor("report", newPool("report-", reportPoolSize, reportQueueCapacity), reportTimeoutMillis, transactionTemplate);
+    }
+
+    /**
+     * Synchronous user list uploads, the inserts commit user by user as before
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ReportExecutor userUploadExecutor() {
+        return new ReportExecutor("user-upload", newPool("user-upload-", userUploadPoolSize, userUploadQueueCapacity), userUploadTimeoutMillis, null);
+    }
+
+    private ThreadPoolExecutor newPool(String threadNamePrefix, int poolSize, int queueCapacity) {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -2,12 +2,18 @@ package com.thanhtam.backend.config;
 
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.*;
 
 @Configuration
 public class S3Config {
@@ -17,16 +23,80 @@ public class S3Config {
     @Value("${isc.aws.secret_access_key}")
     private String awsKey;
 
+    /**
+     * Optional endpoint of an S3 compatible server (e.g. MinIO) used instead of AWS, with path style access.
+     */
+    @Value("${isc.aws.s3-endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${isc.s3.upload.pool-size:4}")
+    private int uploadPoolSize;
+
+    @Value("${isc.s3.upload.queue-capacity:50}")
+    private int uploadQueueCapacity;
+
+    @Value("${isc.s3.upload.part-threads:8}")
+    private int uploadPartThreads;
+
+    @Value("${isc.s3.upload.multipart-threshold-mb:16}")
+    private long multipartThresholdMb;
+
+    @Value("${isc.s3.upload.part-size-mb:8}")
+    private long partSizeMb;
+
+    @Value("${isc.image.variant.pool-size:2}")
+    private int imageVariantPoolSize;
+
+    @Value("${isc.image.variant.queue-capacity:100}")
+    private int imageVariantQueueCapacity;
 
     @Bean
     public AmazonS3 s3client() {
 
         BasicAWSCredentials awsCreds = new BasicAWSCredentials(awsId, awsKey);
-        AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                .withRegion(Regions.AP_SOUTHEAST_1)
-                .withCredentials(new AWSStaticCredentialsProvider(awsCreds))
-                .build();
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(awsCreds));
+        if (s3Endpoint.isEmpty()) {
+            builder.withRegion(Regions.AP_SOUTHEAST_1);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(s3Endpoint, Regions.AP_SOUTHEAST_1.getName()))
+                    .withPathStyleAccessEnabled(true);
+        }
+        AmazonS3 s3Client = builder.build();
 
         return s3Client;
     }
+
+    /**
+     * Runs staged uploads off the request thread. Submissions beyond the queue capacity are rejected.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService s3UploadExecutor() {
+        return new ThreadPoolExecutor(uploadPoolSize, uploadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(uploadQueueCapacity), new CustomizableThreadFactory("s3-upload-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Files above the threshold are sent as a multipart upload, parts are uploaded in parallel on the part threads.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public TransferManager transferManager(AmazonS3 s3client) {
+        return TransferManagerBuilder.standard()
+                .withS3Client(s3client)
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(uploadPartThreads, new CustomizableThreadFactory("s3-upload-part-")))
+                .withMultipartUploadThreshold(multipartThresholdMb * 1024 * 1024)
+                .withMinimumUploadPartSize(partSizeMb * 1024 * 1024)
+                .build();
+    }
+
+    /**
+     * Resizes uploaded images in the background
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService imageVariantExecutor() {
+        return new ThreadPoolExecutor(imageVariantPoolSize, imageVariantPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(imageVariantQueueCapacity), new CustomizableThreadFactory("image-variant-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
 }
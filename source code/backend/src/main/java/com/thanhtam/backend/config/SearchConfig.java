@@ -0,0 +1,20 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class SearchConfig {
+    /**
+     * Single writer of the question search index: incremental updates and rebuilds run one after another, off the
+     * request threads.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService searchIndexExecutor() {
+        return Executors.newSingleThreadExecutor(new CustomizableThreadFactory("search-index-"));
+    }
+}
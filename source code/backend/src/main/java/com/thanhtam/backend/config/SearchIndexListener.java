@@ -0,0 +1,110 @@
+package com.thanhtam.backend.config;
+
+import com.thanhtam.backend.dto.UserSearchDocument;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.Profile;
+import com.thanhtam.backend.entity.Question;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.service.QuestionSearchService;
+import com.thanhtam.backend.service.UserSearchService;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+/**
+ * Updates the search indexes after user, profile, question and choice changes are committed, whichever service saved
+ * them.
+ * Rolled back changes never reach the indexes.
+ */
+@Component
+public class SearchIndexListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchIndexListener.class);
+
+    private EntityManagerFactory entityManagerFactory;
+    private UserSearchService userSearchService;
+    private QuestionSearchService questionSearchService;
+
+    @Autowired
+    public SearchIndexListener(EntityManagerFactory entityManagerFactory, UserSearchService userSearchService, QuestionSearchService questionSearchService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.userSearchService = userSearchService;
+        this.questionSearchService = questionSearchService;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        indexEntity(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        indexEntity(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof User) {
+            userSearchService.remove((Long) event.getId());
+        } else if (event.getEntity() instanceof Question) {
+            questionSearchService.reindexQuestions(Collections.singleton((Long) event.getId()));
+        } else if (event.getEntity() instanceof Choice) {
+            questionSearchService.reindexChoices(Collections.singleton((Long) event.getId()));
+        }
+    }
+
+    private void indexEntity(Object entity) {
+        if (entity instanceof User) {
+            userSearchService.index(UserSearchDocument.of((User) entity));
+        } else if (entity instanceof Profile) {
+            Profile profile = (Profile) entity;
+            userSearchService.indexProfile(profile.getId(), profile.getFirstName(), profile.getLastName());
+        } else if (entity instanceof Question) {
+            questionSearchService.reindexQuestions(Collections.singleton(((Question) entity).getId()));
+        } else if (entity instanceof Choice) {
+            questionSearchService.reindexChoices(Collections.singleton(((Choice) entity).getId()));
+        }
+    }
+
+    /**
+     * Only the indexed entities are queued for after the commit
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> entityClass = persister.getMappedClass();
+        return User.class.isAssignableFrom(entityClass) || Profile.class.isAssignableFrom(entityClass)
+                || Question.class.isAssignableFrom(entityClass) || Choice.class.isAssignableFrom(entityClass);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        LOGGER.debug("Insert of " + event.getPersister().getEntityName() + " " + event.getId() + " not committed, search index unchanged");
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        LOGGER.debug("Update of " + event.getPersister().getEntityName() + " " + event.getId() + " not committed, search index unchanged");
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        LOGGER.debug("Delete of " + event.getPersister().getEntityName() + " " + event.getId() + " not committed, search index unchanged");
+    }
+}
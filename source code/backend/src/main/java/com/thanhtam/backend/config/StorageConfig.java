@@ -0,0 +1,54 @@
+package com.thanhtam.backend.config;
+
+import com.thanhtam.backend.service.AsyncStorageService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class StorageConfig {
+    @Value("${isc.storage.pool-size:4}")
+    private int poolSize;
+
+    @Value("${isc.storage.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${isc.storage.backend:local}")
+    private String backend;
+
+    /**
+     * Runs storage I/O and its completion handlers, request threads only wait on the returned futures.
+     * Submissions beyond the queue capacity are rejected.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService storageExecutor() {
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("storage-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Backend of /api/storage. Both backends stay available by name for the endpoints tied to one of them.
+     */
+    @Bean
+    @Primary
+    public AsyncStorageService asyncStorageService(@Qualifier("localStorageService") AsyncStorageService localStorageService,
+                                                   @Qualifier("s3StorageService") AsyncStorageService s3StorageService) {
+        switch (backend) {
+            case "local":
+                return localStorageService;
+            case "s3":
+                return s3StorageService;
+            default:
+                throw new IllegalStateException("Unknown isc.storage.backend " + backend + ", expected local or s3");
+        }
+    }
+}
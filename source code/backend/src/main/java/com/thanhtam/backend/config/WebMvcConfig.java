@@ -0,0 +1,21 @@
+package com.thanhtam.backend.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+    private ReplicaReadInterceptor replicaReadInterceptor;
+
+    @Autowired
+    public WebMvcConfig(ReplicaReadInterceptor replicaReadInterceptor) {
+        this.replicaReadInterceptor = replicaReadInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicaReadInterceptor);
+    }
+}
@@ -1,5 +1,6 @@
 package com.thanhtam.backend.controller;
 
+import com.thanhtam.backend.config.ReplicaRead;
 import com.thanhtam.backend.dto.CourseChart;
 import com.thanhtam.backend.entity.Course;
 import com.thanhtam.backend.entity.ExamUser;
@@ -12,6 +13,7 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,6 +24,7 @@ import java.util.*;
 @RestController
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RequestMapping(value = "/api")
+@ReplicaRead
 public class ChartController {
     Logger logger = LoggerFactory.getLogger(ChartController.class);
 
@@ -37,6 +40,7 @@ public class ChartController {
     }
 
     @GetMapping(value = "/charts/courses")
+    @Transactional(readOnly = true)
     public List<CourseChart> getCourseChart() {
         List<CourseChart> courseCharts = new ArrayList<CourseChart>();
         String username = userService.getUserName();
@@ -1,6 +1,7 @@
 package com.thanhtam.backend.controller;
 
 import com.google.common.io.Files;
+import com.thanhtam.backend.dto.CourseSummary;
 import com.thanhtam.backend.dto.PageResult;
 import com.thanhtam.backend.dto.ServiceResult;
 import com.thanhtam.backend.entity.Course;
@@ -51,7 +52,7 @@ public class CourseController {
     @GetMapping(value = "/courses")
     @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
     public PageResult getCourseListByPage(@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable) {
-        Page<Course> courseListByPage = courseService.getCourseListByPage(pageable);
+        Page<CourseSummary> courseListByPage = courseService.getCourseSummariesByPage(pageable);
         return new PageResult(courseListByPage);
     }
 
@@ -4,24 +4,35 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.thanhtam.backend.config.ReplicaRead;
+import com.thanhtam.backend.config.ReportExecutor;
 import com.thanhtam.backend.dto.*;
+import com.thanhtam.backend.dto.pagination.CursorDetails;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.service.*;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
 import com.thanhtam.backend.ultilities.ERole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.xml.transform.Result;
 import java.io.IOException;
@@ -44,16 +55,26 @@ public class ExamController {
     private IntakeService intakeService;
     private PartService partService;
     private ExamUserService examUserService;
+    private ExamResultExportService examResultExportService;
+    private ExamArchiveService examArchiveService;
+    private ExamProgressService examProgressService;
+    private ExamGradingSweepService examGradingSweepService;
+    private ReportExecutor reportExecutor;
     private ObjectMapper mapper;
 
     @Autowired
-    public ExamController(ExamService examService, QuestionService questionService, UserService userService, IntakeService intakeService, PartService partService, ExamUserService examUserService, ObjectMapper mapper) {
+    public ExamController(ExamService examService, QuestionService questionService, UserService userService, IntakeService intakeService, PartService partService, ExamUserService examUserService, ExamResultExportService examResultExportService, ExamArchiveService examArchiveService, ExamProgressService examProgressService, ExamGradingSweepService examGradingSweepService, @Qualifier("reportExecutor") ReportExecutor reportExecutor, ObjectMapper mapper) {
         this.examService = examService;
         this.questionService = questionService;
         this.userService = userService;
         this.intakeService = intakeService;
         this.partService = partService;
         this.examUserService = examUserService;
+        this.examResultExportService = examResultExportService;
+        this.examArchiveService = examArchiveService;
+        this.examProgressService = examProgressService;
+        this.examGradingSweepService = examGradingSweepService;
+        this.reportExecutor = reportExecutor;
         this.mapper = mapper;
     }
 
@@ -71,17 +92,39 @@ public class ExamController {
     public PageResult getExamsByPage(@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable) {
         String username = userService.getUserName();
         User user = userService.getUserByUsername(username).get();
-        boolean isAdmin = user.getRoles().contains(ERole.ROLE_ADMIN);
-        Page<Exam> examPage;
+        boolean isAdmin = isAdmin(user);
+        Page<ExamSummary> examPage;
         if (isAdmin) {
-            examPage = examService.findAll(pageable);
+            examPage = examService.findExamSummaries(pageable);
             return new PageResult(examPage);
         }
-        examPage = examService.findAllByCreatedBy_Username(pageable, username);
+        examPage = examService.findExamSummariesByCreatedBy(pageable, username);
         return new PageResult(examPage);
 
     }
 
+    @GetMapping(value = "/exams", params = "cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<?> getExamsByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "10") int size) {
+        long lastId;
+        try {
+            lastId = CursorDetails.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        }
+        String username = userService.getUserName();
+        User user = userService.getUserByUsername(username).get();
+        boolean isAdmin = isAdmin(user);
+        int pageSize = Math.max(1, Math.min(size, CursorDetails.MAX_PAGE_SIZE));
+        List<ExamSummary> exams = examService.findExamSummariesAfter(isAdmin ? null : username, lastId, pageSize + 1);
+        return ResponseEntity.ok(new CursorPageResult(exams, pageSize, ExamSummary::getId));
+    }
+
+    //    Roles are entities, compared by name
+    private boolean isAdmin(User user) {
+        return user.getRoles().stream().anyMatch(role -> role.getName() == ERole.ROLE_ADMIN);
+    }
+
     @GetMapping(value = "/exams/list-all-by-user")
     public ResponseEntity<List<ExamUser>> getAllByUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -177,6 +220,7 @@ public class ExamController {
             examQuestionList.setQuestions(questions1);
             examUser.setTimeStart(new Date());
             examUserService.update(examUser);
+            examProgressService.publish(EExamProgressEvent.STARTED, examUser, answerSheets);
             logger.error("case 2");
 
         } else {
@@ -195,6 +239,7 @@ public class ExamController {
             examUser.setIsStarted(true);
             examUser.setTimeStart(new Date());
             examUserService.update(examUser);
+            examProgressService.publish(EExamProgressEvent.STARTED, examUser, answerSheets);
             List<Question> questions1 = new ArrayList<>();
             answerSheets.forEach(answerSheet1 -> {
                 Question question = questionService.getQuestionById(answerSheet1.getQuestionId()).get();
@@ -256,15 +301,17 @@ public class ExamController {
         return new ResponseEntity<>(exam.get(), HttpStatus.OK);
     }
 
+//    The row stays locked until the save commits, so the grading sweep finishes the attempt either before or after it
     @PutMapping(value = "/exams/{examId}/questions-by-user")
+    @Transactional
     public void saveUserExamAnswer(@RequestBody List<AnswerSheet> answerSheets, @PathVariable Long examId, @RequestParam boolean isFinish, @RequestParam int remainingTime) throws JsonProcessingException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String username = auth.getName();
-        Optional<ExamUser> examUser = Optional.ofNullable(examUserService.findByExamAndUser(examId, username));
+        Optional<ExamUser> examUser = Optional.ofNullable(examUserService.findByExamAndUserForUpdate(examId, username));
         if (!examUser.isPresent()) {
             throw new EntityNotFoundException("Not found this exam");
         } else {
-            if (examUser.get().getIsFinished()) {
+            if (examUser.get().getIsFinished() || examGradingSweepService.isPastDeadline(examUser.get(), new Date())) {
 
                 throw new ExceptionInInitializerError("This exam was end");
             }
@@ -277,113 +324,188 @@ public class ExamController {
             }
             examUser.get().setRemainingTime(remainingTime);
             examUserService.update(examUser.get());
+            examProgressService.publish(isFinish ? EExamProgressEvent.SUBMITTED : EExamProgressEvent.PROGRESS, examUser.get(), answerSheets);
         }
 
     }
 
 
-    @GetMapping(value = "/exams/{examId}/result/all")
-    public ResponseEntity getResultExamAll(@PathVariable Long examId) throws IOException {
-        List<ExamResult> examResults = new ArrayList<>();
-        Optional<Exam> exam = examService.getExamById(examId);
-        if (!exam.isPresent()) {
-            return new ResponseEntity("Không tìm thấy exam", HttpStatus.NOT_FOUND);
+    /*
+     * Server-sent events of the exam: a snapshot of every exam user on connect, then started, progress, submitted
+     * and graded events as they happen
+     */
+    @GetMapping(value = "/exams/{examId}/progress/stream")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<SseEmitter> streamExamProgress(@PathVariable Long examId) {
+        if (!examService.getExamById(examId).isPresent()) {
+            return ResponseEntity.notFound().build();
         }
-        List<ExamUser> examUserList = examUserService.findAllByExam_Id(exam.get().getId());
-        List<ExamQuestionPoint> examQuestionPoints = convertQuestionJsonToObject(exam);
-        Date now = new Date();
-        for (ExamUser examUser :
-                examUserList) {
-            ExamResult examResult = new ExamResult();
-            examResult.setExam(exam.get());
-            List<AnswerSheet> userChoices = convertAnswerJsonToObject(examUser);
-            if (userChoices.isEmpty()) {
-                examResult.setTotalPoint(null);
-                examResult.setUser(examUser.getUser());
-                examResult.setExamStatus(0);
+        SseEmitter emitter = examProgressService.subscribe(examId);
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
 
-            } else {
-                List<ChoiceList> choiceLists = examService.getChoiceList(userChoices, examQuestionPoints);
-                examResult.setChoiceList(choiceLists);
-                Double totalPoint = 0.0;
-                for (ChoiceList choice : choiceLists) {
-                    if (choice.getIsSelectedCorrected().equals(true)) {
-                        totalPoint += choice.getPoint();
-                    }
-                }
-                examResult.setTotalPoint(totalPoint);
-                if (examUser.getTotalPoint() == -1) {
-                    examUser.setTotalPoint(totalPoint);
-                    examUserService.update(examUser);
-                }
+    @GetMapping(value = "/exams/{examId}/result/all")
+    @ReplicaRead
+    public DeferredResult<ResponseEntity<?>> getResultExamAll(@PathVariable Long examId) {
+        return reportExecutor.submit(() -> {
+            List<ExamResult> examResults = new ArrayList<>();
+            Optional<Exam> exam = examService.getExamById(examId);
+            if (!exam.isPresent()) {
+                return new ResponseEntity("Không tìm thấy exam", HttpStatus.NOT_FOUND);
             }
-
-            examResult.setUser(examUser.getUser());
-            examResult.setUserTimeBegin(examUser.getTimeStart());
-            examResult.setUserTimeFinish(examUser.getTimeFinish());
-            if (exam.get().getFinishExam().compareTo(now) < 0 && examUser.getIsStarted().equals(false)) {
-                examResult.setExamStatus(-2);
-            } else if (examUser.getIsStarted().equals(false) && exam.get().getFinishExam().compareTo(now) == 1) {
-                examResult.setExamStatus(0);
-            } else if (examUser.getIsFinished().equals(true)) {
-                examResult.setExamStatus(-1);
-            } else {
-                examResult.setExamStatus(1);
+            List<ExamUser> examUserList = examUserService.findAllByExam_Id(exam.get().getId());
+            List<ExamQuestionPoint> examQuestionPoints = convertQuestionJsonToObject(exam);
+            Date now = new Date();
+            for (ExamUser examUser :
+                    examUserList) {
+                examResults.add(getExamResult(exam.get(), examUser, examQuestionPoints, now));
             }
-            examResults.add(examResult);
-        }
-        return new ResponseEntity(examResults, HttpStatus.OK);
+            return new ResponseEntity(examResults, HttpStatus.OK);
+        });
     }
 
-    @GetMapping(value = "/exams/{examId}/result/all/question-report")
-    public ResponseEntity getResultExamQuestionsReport(@PathVariable Long examId) throws IOException {
-
+    @GetMapping(value = "/exams/{examId}/result/all", params = "cursor")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getResultExamAllByCursor(@PathVariable Long examId, @RequestParam String cursor, @RequestParam(defaultValue = "10") int size) throws IOException {
+        long lastId;
+        try {
+            lastId = CursorDetails.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        }
         Optional<Exam> exam = examService.getExamById(examId);
         if (!exam.isPresent()) {
-            logger.error("NOT found");
             return new ResponseEntity("Không tìm thấy exam", HttpStatus.NOT_FOUND);
         }
-        List<ExamUser> finishedExamUser = examUserService.findExamUsersByIsFinishedIsTrueAndExam_Id(examId);
-        if (finishedExamUser.size() == 0) {
-            return new ResponseEntity("Chưa có người dùng thực hiện bài kiểm tra", HttpStatus.OK);
-        }
-        ExamUser firstExamUser = finishedExamUser.get(0);
-        List<QuestionExamReport> questionExamReports = new ArrayList<>();
+        int pageSize = Math.max(1, Math.min(size, CursorDetails.MAX_PAGE_SIZE));
+        List<ExamUser> examUserList = examUserService.findExamUsersAfter(examId, lastId, pageSize + 1);
+        CursorPageResult cursorPageResult = new CursorPageResult(examUserList, pageSize, ExamUser::getId);
         List<ExamQuestionPoint> examQuestionPoints = convertQuestionJsonToObject(exam);
-//        convert answer sheet of first user
-        List<AnswerSheet> userChoicesFirstExam = convertAnswerJsonToObject(firstExamUser);
-//        get exam result of first user
-        List<ChoiceList> firstChoiceList = examService.getChoiceList(userChoicesFirstExam, examQuestionPoints);
-        for (ChoiceList choice : firstChoiceList) {
-            QuestionExamReport questionExamReport = new QuestionExamReport();
-            questionExamReport.setQuestion(choice.getQuestion());
+        Date now = new Date();
+        List<Object> examResults = new ArrayList<>();
+        for (ExamUser examUser : examUserList.subList(0, cursorPageResult.getPaginationDetails().getPageCount())) {
+            examResults.add(getExamResult(exam.get(), examUser, examQuestionPoints, now));
+        }
+        cursorPageResult.setData(examResults);
+        return ResponseEntity.ok(cursorPageResult);
+    }
 
-            if (choice.getIsSelectedCorrected().equals(true)) {
-                questionExamReport.setCorrectTotal(1);
-            } else {
-                questionExamReport.setCorrectTotal(0);
+    private ExamResult getExamResult(Exam exam, ExamUser examUser, List<ExamQuestionPoint> examQuestionPoints, Date now) throws IOException {
+        ExamResult examResult = new ExamResult();
+        examResult.setExam(exam);
+        List<AnswerSheet> userChoices = convertAnswerJsonToObject(examUser);
+        if (userChoices.isEmpty()) {
+            examResult.setTotalPoint(null);
+            examResult.setUser(examUser.getUser());
+            examResult.setExamStatus(0);
+
+        } else {
+            List<ChoiceList> choiceLists = examService.getChoiceList(userChoices, examQuestionPoints);
+            examResult.setChoiceList(choiceLists);
+            Double totalPoint = 0.0;
+            for (ChoiceList choice : choiceLists) {
+                if (choice.getIsSelectedCorrected().equals(true)) {
+                    totalPoint += choice.getPoint();
+                }
             }
-            questionExamReports.add(questionExamReport);
+            examResult.setTotalPoint(totalPoint);
         }
 
-//        done for first user
-        if (questionExamReports.size() == 0) {
-            return new ResponseEntity(questionExamReports, HttpStatus.OK);
+        examResult.setUser(examUser.getUser());
+        examResult.setUserTimeBegin(examUser.getTimeStart());
+        examResult.setUserTimeFinish(examUser.getTimeFinish());
+        if (exam.getFinishExam().compareTo(now) < 0 && examUser.getIsStarted().equals(false)) {
+            examResult.setExamStatus(-2);
+        } else if (examUser.getIsStarted().equals(false) && exam.getFinishExam().compareTo(now) == 1) {
+            examResult.setExamStatus(0);
+        } else if (examUser.getIsFinished().equals(true)) {
+            examResult.setExamStatus(-1);
+        } else {
+            examResult.setExamStatus(1);
         }
-        for (int i = 1; i < finishedExamUser.size(); i++) {
-            List<AnswerSheet> userChoices = convertAnswerJsonToObject(firstExamUser);
-//        get exam result of first user
-            List<ChoiceList> choiceList = examService.getChoiceList(userChoices, examQuestionPoints);
+        return examResult;
+    }
+
+    @GetMapping(value = "/exams/{examId}/result/all/question-report")
+    @ReplicaRead
+    public DeferredResult<ResponseEntity<?>> getResultExamQuestionsReport(@PathVariable Long examId) {
+        return reportExecutor.submit(() -> {
+            Optional<Exam> exam = examService.getExamById(examId);
+            if (!exam.isPresent()) {
+                logger.error("NOT found");
+                return new ResponseEntity("Không tìm thấy exam", HttpStatus.NOT_FOUND);
+            }
+            List<ExamUser> finishedExamUser = examUserService.findExamUsersByIsFinishedIsTrueAndExam_Id(examId);
+            if (finishedExamUser.size() == 0) {
+                return new ResponseEntity("Chưa có người dùng thực hiện bài kiểm tra", HttpStatus.OK);
+            }
+            ExamUser firstExamUser = finishedExamUser.get(0);
+            List<QuestionExamReport> questionExamReports = new ArrayList<>();
+            List<ExamQuestionPoint> examQuestionPoints = convertQuestionJsonToObject(exam);
+//            convert answer sheet of first user
+            List<AnswerSheet> userChoicesFirstExam = convertAnswerJsonToObject(firstExamUser);
+//            get exam result of first user
+            List<ChoiceList> firstChoiceList = examService.getChoiceList(userChoicesFirstExam, examQuestionPoints);
             for (ChoiceList choice : firstChoiceList) {
+                QuestionExamReport questionExamReport = new QuestionExamReport();
+                questionExamReport.setQuestion(choice.getQuestion());
 
-                List<QuestionExamReport> questionExamReportsList = questionExamReports.stream().filter(item -> item.getQuestion().getId() == choice.getQuestion().getId()).collect(Collectors.toList());
-                QuestionExamReport questionExamReport = questionExamReportsList.get(0);
                 if (choice.getIsSelectedCorrected().equals(true)) {
-                    questionExamReport.setCorrectTotal(questionExamReport.getCorrectTotal() + 1);
+                    questionExamReport.setCorrectTotal(1);
+                } else {
+                    questionExamReport.setCorrectTotal(0);
+                }
+                questionExamReports.add(questionExamReport);
+            }
+
+//            done for first user
+            if (questionExamReports.size() == 0) {
+                return new ResponseEntity(questionExamReports, HttpStatus.OK);
+            }
+            for (int i = 1; i < finishedExamUser.size(); i++) {
+                List<AnswerSheet> userChoices = convertAnswerJsonToObject(firstExamUser);
+//            get exam result of first user
+                List<ChoiceList> choiceList = examService.getChoiceList(userChoices, examQuestionPoints);
+                for (ChoiceList choice : firstChoiceList) {
+
+                    List<QuestionExamReport> questionExamReportsList = questionExamReports.stream().filter(item -> item.getQuestion().getId() == choice.getQuestion().getId()).collect(Collectors.toList());
+                    QuestionExamReport questionExamReport = questionExamReportsList.get(0);
+                    if (choice.getIsSelectedCorrected().equals(true)) {
+                        questionExamReport.setCorrectTotal(questionExamReport.getCorrectTotal() + 1);
+                    }
                 }
             }
+            return new ResponseEntity(questionExamReports, HttpStatus.OK);
+        });
+    }
+
+    @GetMapping(value = "/exams/{examId}/result/export")
+    @ReplicaRead
+    @Transactional(readOnly = true)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public void exportResultExam(@PathVariable Long examId, @RequestParam(defaultValue = "csv") String format, HttpServletResponse response) throws IOException {
+        Optional<Exam> exam = examService.getExamById(examId);
+        if (!exam.isPresent()) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Không tìm thấy exam");
+            return;
+        }
+        switch (format) {
+            case "xlsx": {
+                response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"exam-" + examId + "-results.xlsx\"");
+                examResultExportService.exportXlsx(exam.get(), response.getOutputStream());
+                break;
+            }
+            case "csv": {
+                response.setContentType("text/csv");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"exam-" + examId + "-results.csv\"");
+                examResultExportService.exportCsv(exam.get(), response.getWriter());
+                break;
+            }
+            default:
+                response.sendError(HttpStatus.BAD_REQUEST.value(), "Định dạng không được hỗ trợ: " + format);
         }
-        return new ResponseEntity(questionExamReports, HttpStatus.OK);
     }
 
     @GetMapping(value = "/exams/{examId}/result")
@@ -411,10 +533,6 @@ public class ExamController {
             }
         }
         examResult.setTotalPoint(totalPoint);
-        if (examUser.getTotalPoint() == -1) {
-            examUser.setTotalPoint(totalPoint);
-            examUserService.update(examUser);
-        }
         return new ResponseEntity(examResult, HttpStatus.OK);
     }
 
@@ -443,10 +561,6 @@ public class ExamController {
             }
         }
         examResult.setTotalPoint(totalPoint);
-        if (examUser.getTotalPoint() == -1) {
-            examUser.setTotalPoint(totalPoint);
-            examUserService.update(examUser);
-        }
         examResult.setUserTimeFinish(examUser.getTimeFinish());
         examResult.setUserTimeBegin(examUser.getTimeStart());
         examResult.setRemainingTime(exam.get().getDurationExam() * 60 - examUser.getRemainingTime());
@@ -456,11 +570,11 @@ public class ExamController {
     public List<AnswerSheet> convertAnswerJsonToObject(ExamUser examUser) throws IOException {
 
 //        ObjectMapper mapper = new ObjectMapper();
-        if (Strings.isNullOrEmpty(examUser.getAnswerSheet())) {
+        String answerSheet = examArchiveService.getAnswerSheet(examUser);
+        if (Strings.isNullOrEmpty(answerSheet)) {
             return Collections.emptyList();
         }
 
-        String answerSheet = examUser.getAnswerSheet();
         List<AnswerSheet> choiceUsers = mapper.readValue(answerSheet, new TypeReference<List<AnswerSheet>>() {
         });
         return choiceUsers;
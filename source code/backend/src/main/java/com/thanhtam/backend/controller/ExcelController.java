@@ -1,15 +1,22 @@
 package com.thanhtam.backend.controller;
 
+import com.thanhtam.backend.config.ReportExecutor;
+import com.thanhtam.backend.dto.ImportJobReport;
+import com.thanhtam.backend.dto.ServiceResult;
 import com.thanhtam.backend.dto.UserExcel;
 import com.thanhtam.backend.entity.User;
 import com.thanhtam.backend.service.ExcelService;
 import com.thanhtam.backend.service.FilesStorageService;
+import com.thanhtam.backend.service.ImportJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletResponse;
@@ -17,6 +24,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -25,35 +33,93 @@ public class ExcelController {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExcelController.class);
     private FilesStorageService filesStorageService;
     private ExcelService excelService;
+    private ImportJobService importJobService;
+    private ReportExecutor userUploadExecutor;
 
     @Autowired
-    public ExcelController(FilesStorageService filesStorageService, ExcelService excelService) {
+    public ExcelController(FilesStorageService filesStorageService, ExcelService excelService, ImportJobService importJobService, @Qualifier("userUploadExecutor") ReportExecutor userUploadExecutor) {
         this.filesStorageService = filesStorageService;
         this.excelService = excelService;
+        this.importJobService = importJobService;
+        this.userUploadExecutor = userUploadExecutor;
     }
 
     @PostMapping("/file/import/users")
-    public ResponseEntity<UserExcel> uploadUserToDB(@RequestParam("file") MultipartFile file) throws IOException {
-        String message = "";
+    public DeferredResult<ResponseEntity<?>> uploadUserToDB(@RequestParam("file") MultipartFile file) {
+        String filePath = "excel-import-user";
         try {
-            String filePath = "excel-import-user";
             //Save file to local storage
             filesStorageService.save(file, filePath);
+        } catch (RuntimeException e) {
+            LOGGER.error(e.toString());
+            DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>();
+            deferredResult.setResult(getUploadFailure(file));
+            return deferredResult;
+        }
+        DeferredResult<ResponseEntity<?>> deferredResult = userUploadExecutor.submit(() -> {
+            try {
+                //Read file
+                List<User> userList = excelService.readUserFromExcelFile(filePath + "\\" + file.getOriginalFilename());
+                //Insert list of user into database
+                excelService.InsertUserToDB(userList);
+
+                String message = "Uploaded the user list successfully: " + file.getOriginalFilename();
+                return ResponseEntity.ok().body(new UserExcel(HttpStatus.OK.value(), message, userList, userList.size()));
+            } catch (Exception e) {
+                LOGGER.error(e.toString());
+                return getUploadFailure(file);
+            }
+        });
+//        The staged file is kept until the upload is answered, whether it ran, timed out or was rejected
+        deferredResult.onCompletion(() -> {
+            try {
+                filesStorageService.deleteAllUserExcel(file.getOriginalFilename());
+            } catch (IOException e) {
+                LOGGER.error(e.toString());
+            }
+        });
+        return deferredResult;
+    }
 
-            //Read file
-            List<User> userList = excelService.readUserFromExcelFile(filePath + "\\" + file.getOriginalFilename());
-            //Insert list of user into database
-            excelService.InsertUserToDB(userList);
+    private ResponseEntity<UserExcel> getUploadFailure(MultipartFile file) {
+        String message = "Could not upload the user list: " + file.getOriginalFilename() + "!";
+        return ResponseEntity.badRequest().body(new UserExcel(HttpStatus.EXPECTATION_FAILED.value(), message, null, 0));
+    }
 
-            message = "Uploaded the user list successfully: " + file.getOriginalFilename();
-            return ResponseEntity.ok().body(new UserExcel(HttpStatus.OK.value(), message, userList, userList.size()));
-        } catch (Exception e) {
-            message = "Could not upload the user list: " + file.getOriginalFilename() + "!";
+    @PostMapping("/file/import/users/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ServiceResult> submitUserImportJob(@RequestParam("file") MultipartFile file) {
+        try {
+            ImportJobReport report = importJobService.submitUserImport(file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new ServiceResult(HttpStatus.ACCEPTED.value(), "Import job is queued: " + report.getJobId(), report));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ServiceResult(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many import jobs are waiting, try again later", null));
+        } catch (IOException | RuntimeException e) {
             LOGGER.error(e.toString());
-            return ResponseEntity.badRequest().body(new UserExcel(HttpStatus.EXPECTATION_FAILED.value(), message, null, 0));
-        } finally {
-            filesStorageService.deleteAllUserExcel(file.getOriginalFilename());
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), "Could not upload the user list: " + file.getOriginalFilename() + "!", null));
         }
     }
 
+    @GetMapping("/file/import/users/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<ImportJobReport> getUserImportJobs() {
+        return importJobService.getJobs();
+    }
+
+    @GetMapping("/file/import/users/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ServiceResult> getUserImportJob(@PathVariable String jobId) {
+        return importJobService.getJob(jobId)
+                .map(report -> ResponseEntity.ok(new ServiceResult(HttpStatus.OK.value(), "Get import job successfully!", report)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ServiceResult(HttpStatus.NOT_FOUND.value(), "Not found import job: " + jobId, null)));
+    }
+
+    @DeleteMapping("/file/import/users/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ServiceResult> cancelUserImportJob(@PathVariable String jobId) {
+        return importJobService.cancelJob(jobId)
+                .map(report -> ResponseEntity.ok(new ServiceResult(HttpStatus.OK.value(), "Cancel import job: " + jobId, report)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ServiceResult(HttpStatus.NOT_FOUND.value(), "Not found import job: " + jobId, null)));
+    }
+
 }
@@ -1,38 +1,77 @@
 package com.thanhtam.backend.controller;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.io.Files;
+import com.thanhtam.backend.dto.ByteRange;
+import com.thanhtam.backend.dto.CachedS3Object;
+import com.thanhtam.backend.dto.S3CacheStats;
+import com.thanhtam.backend.dto.S3FileInfo;
+import com.thanhtam.backend.dto.S3FilePage;
+import com.thanhtam.backend.dto.ServiceResult;
+import com.thanhtam.backend.dto.StoragePage;
 import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.service.AsyncStorageService;
+import com.thanhtam.backend.service.ImageVariantService;
+import com.thanhtam.backend.service.S3CacheService;
 import com.thanhtam.backend.service.S3Services;
+import com.thanhtam.backend.service.S3UploadService;
 import com.thanhtam.backend.service.UserService;
+import com.thanhtam.backend.ultilities.EImageVariant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RequestMapping(value = "/api/aws")
 public class FileAWSController {
     S3Services s3Services;
+    S3UploadService s3UploadService;
+    S3CacheService s3CacheService;
+    AsyncStorageService asyncStorageService;
+    ImageVariantService imageVariantService;
     UserService userService;
+    ObjectMapper mapper;
 
     Logger logger = LoggerFactory.getLogger(FileAWSController.class);
+    private static final int DOWNLOAD_BUFFER_SIZE = 8192;
+    private static final String NDJSON_VALUE = "application/x-ndjson";
 
     @Autowired
-    public FileAWSController(S3Services s3Services, UserService userService) {
+    public FileAWSController(S3Services s3Services, S3UploadService s3UploadService, S3CacheService s3CacheService, @Qualifier("s3StorageService") AsyncStorageService asyncStorageService, ImageVariantService imageVariantService, UserService userService, ObjectMapper mapper) {
         this.s3Services = s3Services;
+        this.s3UploadService = s3UploadService;
+        this.s3CacheService = s3CacheService;
+        this.asyncStorageService = asyncStorageService;
+        this.imageVariantService = imageVariantService;
         this.userService = userService;
+        this.mapper = mapper;
     }
 
     @Value("${isc.s3.bucket}")
@@ -44,20 +83,22 @@ public class FileAWSController {
 
     /**
      * Upload file
+     * The file is staged on local disk and uploaded to S3 in the background, the url is returned once it is staged.
+     * A staged file is kept and sent again until S3 has it, so the url can be saved right away
      *
      * @param file
      * @return keyName
      */
 
     @PostMapping("/file/upload")
-    public String uploadMultipartFile(@RequestParam("file") MultipartFile file, @RequestParam String fileAs) {
+    public String uploadMultipartFile(@RequestParam("file") MultipartFile file, @RequestParam String fileAs) throws IOException {
         String keyName = "";
         switch (fileAs) {
             case "avatar": {
                 String extension = Files.getFileExtension(file.getOriginalFilename());
                 String username = userService.getUserName();
                 keyName = username.concat("-avatar.").concat(extension);
-                s3Services.uploadS3File(keyName, file);
+                uploadS3FileAsync(keyName, file);
                 User user = userService.getUserByUsername(username).get();
                 String avatarUrl = endpointUrl + "/" + bucketName + "/" + keyName;
                 user.getProfile().setImage(avatarUrl);
@@ -73,18 +114,16 @@ public class FileAWSController {
             }
         }
 
-        s3Services.uploadS3File(keyName, file);
+        uploadS3FileAsync(keyName, file);
 
         return endpointUrl + "/" + bucketName + "/" + keyName;
     }
 
     @PostMapping("/file/upload/course")
-    public String uploadCourseImg(@RequestParam("file") MultipartFile file) {
-        String keyName = new Date().toString().concat(file.getOriginalFilename());
+    public String uploadCourseImg(@RequestParam("file") MultipartFile file) throws IOException {
+        String keyName = EImageVariant.IMAGE_PREFIX + new Date().getTime() + "_" + file.getOriginalFilename();
 
-        s3Services.uploadS3File(keyName, file);
-
-        return endpointUrl + "/" + bucketName + "/" + keyName;
+        return uploadImageAsync(keyName, file);
     }
 
     @PostMapping("/file/upload/avatar")
@@ -95,35 +134,235 @@ public class FileAWSController {
          */
         final String imgUrlUser = userService.getUserByUsername(username).get().getProfile().getImage();
         String extension = Files.getFileExtension(file.getOriginalFilename());
-        String keyName = new Date().getTime() + "_" + username + "_avatar." + extension;
-        try {
-            s3Services.uploadS3File(keyName, file);
-//            if (!imgUrlUser.isEmpty()) {
-//                String fileName = imgUrlUser.replace(endpointUrl + "/" + bucketName + "/", "");
-//                s3Services.deleteFile(fileName);
-//            }
-            User user = userService.getUserByUsername(username).get();
-            String avatarUrl = endpointUrl + "/" + bucketName + "/" + keyName;
-            user.getProfile().setImage(avatarUrl);
-            userService.updateUser(user);
-            return avatarUrl;
-
-        } catch (Exception exception) {
-            throw new Exception(exception.getMessage());
-        }
+        String keyName = EImageVariant.IMAGE_PREFIX + new Date().getTime() + "_" + username + "_avatar." + extension;
+        String avatarUrl = uploadImageAsync(keyName, file);
+//        if (!imgUrlUser.isEmpty()) {
+//            String fileName = imgUrlUser.replace(endpointUrl + "/" + bucketName + "/", "");
+//            s3Services.deleteFile(fileName);
+//        }
+        User user = userService.getUserByUsername(username).get();
+        user.getProfile().setImage(avatarUrl);
+        userService.updateUser(user);
+        return avatarUrl;
+    }
+
+    /**
+     * The upload or storage pool and its queue are full, a staged upload was already removed
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ServiceResult> handleRejected(RejectedExecutionException e) {
+        logger.warn("S3 request rejected: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ServiceResult(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many file requests are waiting, try again later", null));
+    }
+
+    /**
+     * Stages the file for upload, the cached copy of an overwritten key is dropped once the upload is done
+     */
+    private void uploadS3FileAsync(String keyName, MultipartFile file) throws IOException {
+        s3UploadService.uploadS3FileAsync(keyName, file).thenRun(() -> s3CacheService.evict(keyName));
+    }
+
+    /**
+     * Uploads an image together with its resized variants, see {@link EImageVariant}
+     *
+     * @return the url of the image
+     */
+    private String uploadImageAsync(String keyName, MultipartFile file) throws IOException {
+        uploadS3FileAsync(keyName, file);
+        String imageUrl = endpointUrl + "/" + bucketName + "/" + keyName;
+        imageVariantService.generateVariants(keyName, imageUrl, file);
+        return imageUrl;
     }
 
     /*
      * Download Files
+     * The object is streamed to the client, a single byte range is answered with 206 Partial Content
      */
     @GetMapping("/file/{keyName}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String keyName) {
-        ByteArrayOutputStream downloadInputStream = s3Services.downloadS3File(keyName);
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable String keyName, @RequestHeader HttpHeaders requestHeaders) {
+        try {
+            Optional<ByteRange> byteRange = ByteRange.parse(requestHeaders.getFirst(HttpHeaders.RANGE));
+            Optional<ResponseEntity<StreamingResponseBody>> cachedResponse = downloadCachedFile(keyName, byteRange, requestHeaders);
+            if (cachedResponse.isPresent()) {
+                return cachedResponse.get();
+            }
+            if (byteRange.isPresent()) {
+                ByteRange range = byteRange.get();
+//                Only a suffix range (bytes=-n) needs the object length up front, S3 clamps the end of other ranges
+                long totalLength = range.isSuffix() ? s3Services.getS3ObjectMetadata(keyName).getContentLength() : Long.MAX_VALUE;
+                long rangeStart = range.getStart(totalLength);
+                long rangeEnd = range.getEnd(totalLength);
+                if (rangeStart > rangeEnd) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).build();
+                }
+                S3Object s3Object = s3Services.downloadS3Object(keyName, rangeStart, rangeEnd);
+                Long[] contentRange = s3Object.getObjectMetadata().getContentRange();
+                return downloadResponse(HttpStatus.PARTIAL_CONTENT, keyName, s3Object)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + contentRange[0] + "-" + contentRange[1] + "/" + s3Object.getObjectMetadata().getInstanceLength())
+                        .body(streamS3Object(s3Object));
+            }
+
+            List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+            String nonmatchingETag = ifNoneMatch.isEmpty() ? null : ifNoneMatch.get(0);
+            S3Object s3Object = s3Services.downloadS3Object(keyName, nonmatchingETag);
+            if (s3Object == null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(nonmatchingETag).build();
+            }
+            return downloadResponse(HttpStatus.OK, keyName, s3Object).body(streamS3Object(s3Object));
+        } catch (AmazonServiceException ase) {
+            if (ase.getStatusCode() == HttpStatus.NOT_FOUND.value() || ase.getStatusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                return ResponseEntity.status(ase.getStatusCode()).build();
+            }
+            throw ase;
+        }
+    }
+
+    /**
+     * Serves the file from the local cache, empty when it cannot be cached so that it is streamed from S3 instead
+     */
+    private Optional<ResponseEntity<StreamingResponseBody>> downloadCachedFile(String keyName, Optional<ByteRange> byteRange, HttpHeaders requestHeaders) {
+        CachedS3Object cached;
+        FileChannel channel;
+        try {
+            Optional<CachedS3Object> cachedObject = s3CacheService.getObject(keyName);
+            if (!cachedObject.isPresent()) {
+                return Optional.empty();
+            }
+            cached = cachedObject.get();
+            String eTag = cached.getETag() == null || cached.getETag().startsWith("\"") ? cached.getETag() : "\"" + cached.getETag() + "\"";
+            if (!byteRange.isPresent() && eTag != null && requestHeaders.getIfNoneMatch().contains(eTag)) {
+                return Optional.of(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<StreamingResponseBody>build());
+            }
+//            Open before answering, an evicted file stays readable until the channel is closed
+            channel = FileChannel.open(cached.getPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            logger.error("Could not read " + keyName + " from cache: " + e.getMessage());
+            return Optional.empty();
+        }
 
-        return ResponseEntity.ok()
+        long totalLength = cached.getContentLength();
+        long rangeStart = 0;
+        long rangeEnd = totalLength - 1;
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (byteRange.isPresent()) {
+            rangeStart = byteRange.get().getStart(totalLength);
+            rangeEnd = byteRange.get().getEnd(totalLength);
+            if (rangeStart >= totalLength || rangeStart > rangeEnd) {
+                closeQuietly(channel);
+                return Optional.of(ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + totalLength)
+                        .<StreamingResponseBody>build());
+            }
+            builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + totalLength);
+        }
+        long position = rangeStart;
+        long count = rangeEnd - rangeStart + 1;
+        builder.contentType(contentType(keyName))
+                .contentLength(count)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + keyName + "\"");
+        if (cached.getETag() != null) {
+            builder.eTag(cached.getETag());
+        }
+        return Optional.of(builder.body(outputStream -> {
+            try (FileChannel fileChannel = channel) {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long transferred = 0;
+                while (transferred < count) {
+                    transferred += fileChannel.transferTo(position + transferred, count - transferred, target);
+                }
+                s3CacheService.recordBytesServed(transferred);
+            }
+        }));
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
+    private ResponseEntity.BodyBuilder downloadResponse(HttpStatus status, String keyName, S3Object s3Object) {
+        ObjectMetadata metadata = s3Object.getObjectMetadata();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
                 .contentType(contentType(keyName))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + keyName + "\"")
-                .body(downloadInputStream.toByteArray());
+                .contentLength(metadata.getContentLength())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + keyName + "\"");
+        if (metadata.getETag() != null) {
+            builder.eTag(metadata.getETag());
+        }
+        return builder;
+    }
+
+    private StreamingResponseBody streamS3Object(S3Object s3Object) {
+        return outputStream -> {
+            try (S3Object object = s3Object; S3ObjectInputStream inputStream = object.getObjectContent()) {
+                byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                int len;
+                while ((len = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, len);
+                }
+            }
+        };
+    }
+
+    /*
+     * Hit ratio and size of the local S3 cache
+     */
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public S3CacheStats getCacheStats() {
+        return s3CacheService.getStats();
+    }
+
+    /*
+     * List one page of files, the continuation token of the page is passed to get the next one
+     * The listing runs on the storage pool
+     */
+    @GetMapping("/files")
+    public DeferredResult<StoragePage> listFiles(@RequestParam(defaultValue = "") String prefix,
+                                                 @RequestParam(defaultValue = "100") int size,
+                                                 @RequestParam(required = false) String continuationToken) {
+        DeferredResult<StoragePage> deferredResult = new DeferredResult<>();
+        asyncStorageService.list(prefix, getListPageSize(size), continuationToken).whenComplete((page, throwable) -> {
+            if (throwable == null) {
+                deferredResult.setResult(page);
+            } else {
+                deferredResult.setErrorResult(throwable.getCause() != null ? throwable.getCause() : throwable);
+            }
+        });
+        return deferredResult;
+    }
+
+    /*
+     * Stream files as newline delimited JSON, one file per line, written as soon as each page is listed
+     */
+    @GetMapping(value = "/files/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFiles(@RequestParam(defaultValue = "") String prefix,
+                                                             @RequestParam(defaultValue = "1000") int size) {
+        int pageSize = getListPageSize(size);
+        StreamingResponseBody body = outputStream -> {
+            String continuationToken = null;
+            do {
+                S3FilePage page = s3Services.listS3Files(prefix, pageSize, continuationToken);
+                for (S3FileInfo file : page.getFiles()) {
+                    outputStream.write(mapper.writeValueAsBytes(file));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+                continuationToken = page.isTruncated() ? page.getNextContinuationToken() : null;
+            } while (continuationToken != null);
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    private int getListPageSize(int size) {
+//        S3 returns at most 1000 keys per request
+        return Math.max(1, Math.min(size, 1000));
     }
 
     /*
@@ -151,13 +390,25 @@ public class FileAWSController {
 
 
     /**
+     * The delete runs on the storage pool, a missing key is answered with 404
+     *
      * @param keyName
      * @return
      */
     @DeleteMapping(value = "/delete")
-    public ResponseEntity<String> deleteFile(@RequestParam(value = "fileName") final String keyName) {
-        s3Services.deleteFile(keyName);
-        final String response = "[" + keyName + "] deleted successfully.";
-        return new ResponseEntity<>(response, HttpStatus.OK);
+    public DeferredResult<ResponseEntity<String>> deleteFile(@RequestParam(value = "fileName") final String keyName) {
+        DeferredResult<ResponseEntity<String>> deferredResult = new DeferredResult<>();
+        asyncStorageService.delete(keyName).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                s3CacheService.evict(keyName);
+                final String response = "[" + keyName + "] deleted successfully.";
+                deferredResult.setResult(new ResponseEntity<>(response, HttpStatus.OK));
+            } else if (throwable.getCause() instanceof NoSuchFileException) {
+                deferredResult.setResult(new ResponseEntity<>("[" + keyName + "] not found.", HttpStatus.NOT_FOUND));
+            } else {
+                deferredResult.setErrorResult(throwable.getCause() != null ? throwable.getCause() : throwable);
+            }
+        });
+        return deferredResult;
     }
 }
@@ -2,19 +2,37 @@ package com.thanhtam.backend.controller;
 
 import com.thanhtam.backend.dto.ServiceResult;
 import com.thanhtam.backend.entity.FileInfo;
+import com.thanhtam.backend.service.AsyncStorageService;
 import com.thanhtam.backend.service.FilesStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.*;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.MvcUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -22,35 +40,58 @@ import java.util.stream.Collectors;
 public class FileController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FileController.class);
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    private static final String IF_RANGE = "If-Range";
+    private static final int MAX_RANGES = 16;
     private FilesStorageService filesStorageService;
+    private AsyncStorageService asyncStorageService;
 
     @Autowired
-    public FileController(FilesStorageService filesStorageService) {
+    public FileController(FilesStorageService filesStorageService, @Qualifier("localStorageService") AsyncStorageService asyncStorageService) {
         this.filesStorageService = filesStorageService;
+        this.asyncStorageService = asyncStorageService;
     }
 
+    /*
+     * The upload is streamed into the content store on the storage pool, the request thread is released meanwhile
+     * The multipart file is read until the deferred result is set, so it stays in place until then
+     */
     @PostMapping("/upload")
-    public ResponseEntity<ServiceResult> uploadFile(@RequestParam("file") MultipartFile file) {
-        String message = "";
+    public DeferredResult<ResponseEntity<ServiceResult>> uploadFile(@RequestParam("file") MultipartFile file) {
+        DeferredResult<ResponseEntity<ServiceResult>> deferredResult = new DeferredResult<>();
+        String name = StringUtils.getFilename(StringUtils.cleanPath(file.getOriginalFilename()));
         try {
-            filesStorageService.save(file, "uploads");
-
-
-            message = "Uploaded the file successfully: " + file.getOriginalFilename();
-            return ResponseEntity.ok().body(new ServiceResult(HttpStatus.OK.value(), message, file.getContentType()));
-        } catch (Exception e) {
-            message = "Could not upload the file: " + file.getOriginalFilename() + "!";
-            LOGGER.error(e.getMessage());
-            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.EXPECTATION_FAILED.value(), message, null));
+            asyncStorageService.put(name, file.getInputStream(), file.getSize(), file.getContentType()).whenComplete((storedFile, throwable) -> {
+                if (throwable == null) {
+                    String message = "Uploaded the file successfully: " + file.getOriginalFilename();
+                    deferredResult.setResult(ResponseEntity.ok().body(new ServiceResult(HttpStatus.OK.value(), message, file.getContentType())));
+                } else {
+                    deferredResult.setResult(uploadFailed(file, throwable));
+                }
+            });
+        } catch (IOException e) {
+            deferredResult.setResult(uploadFailed(file, e));
+        } catch (RejectedExecutionException e) {
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ServiceResult(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many uploads are waiting, try again later", null)));
         }
+        return deferredResult;
+    }
+
+    private ResponseEntity<ServiceResult> uploadFailed(MultipartFile file, Throwable throwable) {
+        String message = "Could not upload the file: " + file.getOriginalFilename() + "!";
+        LOGGER.error(throwable.getMessage());
+        return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.EXPECTATION_FAILED.value(), message, null));
     }
 
     @GetMapping("/files")
     public ResponseEntity<List<FileInfo>> getListFiles() {
-        List<FileInfo> fileInfos = filesStorageService.loadAll().map(path -> {
-            String filename = path.getFileName().toString();
+        List<FileInfo> fileInfos = filesStorageService.loadAll().stream().map(storedFile -> {
+            String filename = storedFile.getName();
             String url = MvcUriComponentsBuilder
-                    .fromMethodName(FileController.class, "getFile", path.getFileName().toString()).build().toString();
+                    .fromMethodName(FileController.class, "getFile", filename, null, null).build().toString();
 
             return new FileInfo(filename, url);
         }).collect(Collectors.toList());
@@ -58,14 +99,170 @@ public class FileController {
         return ResponseEntity.status(HttpStatus.OK).body(fileInfos);
     }
 
+    /*
+     * Download a file from the upload folder.
+     * Conditional requests are answered with 304, byte ranges with 206. The file is sent with sendfile when the
+     * connector supports it, otherwise it is copied to the response with FileChannel.transferTo.
+     */
     @GetMapping("/files/{filename:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> getFile(@PathVariable String filename) {
-        Resource file = filesStorageService.load(filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFilename() + "\"").body(file);
+    public ResponseEntity<StreamingResponseBody> getFile(@PathVariable String filename, @RequestHeader HttpHeaders requestHeaders,
+                                                         HttpServletRequest request) throws IOException {
+        Optional<Path> path = filesStorageService.loadPath(filename);
+        if (!path.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = path.get();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long modifiedMillis = attributes.lastModifiedTime().toMillis();
+//        HTTP dates have a precision of one second
+        long lastModified = modifiedMillis / 1000 * 1000;
+        String eTag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(modifiedMillis) + "\"";
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).lastModified(lastModified).build();
+        }
+
+        List<HttpRange> ranges = isRangeCurrent(requestHeaders, eTag, lastModified) ? getRanges(requestHeaders) : Collections.emptyList();
+        List<long[]> satisfiableRanges = new ArrayList<>();
+        for (HttpRange range : ranges) {
+            long rangeStart = range.getRangeStart(length);
+            long rangeEnd = range.getRangeEnd(length);
+            if (rangeStart < length && rangeStart <= rangeEnd) {
+                satisfiableRanges.add(new long[]{rangeStart, rangeEnd});
+            }
+        }
+        if (!ranges.isEmpty() && satisfiableRanges.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length).build();
+        }
+
+        MediaType contentType = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        long rangeStart = 0;
+        long rangeEnd = length - 1;
+        if (satisfiableRanges.size() == 1) {
+            rangeStart = satisfiableRanges.get(0)[0];
+            rangeEnd = satisfiableRanges.get(0)[1];
+            builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + length);
+        } else if (satisfiableRanges.size() > 1) {
+            builder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT);
+        }
+        builder.eTag(eTag)
+                .lastModified(lastModified)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        if (satisfiableRanges.size() > 1) {
+            return multipartRangeResponse(builder, file, length, contentType, satisfiableRanges);
+        }
+
+        long position = rangeStart;
+        long count = rangeEnd - rangeStart + 1;
+        builder.contentType(contentType).contentLength(count);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+            return builder.build();
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+//            Tomcat sends the file from the kernel after the handler returns, the body stays empty
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            return builder.build();
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return builder.body(outputStream -> {
+            try (FileChannel fileChannel = channel) {
+                transfer(fileChannel, position, count, Channels.newChannel(outputStream));
+            }
+        });
     }
 
+    /**
+     * Several ranges are sent as multipart/byteranges, one part per range
+     */
+    private ResponseEntity<StreamingResponseBody> multipartRangeResponse(ResponseEntity.BodyBuilder builder, Path file, long length,
+                                                                         MediaType contentType, List<long[]> ranges) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return builder.contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .contentLength(contentLength)
+                .body(outputStream -> {
+                    try (FileChannel fileChannel = channel) {
+                        WritableByteChannel target = Channels.newChannel(outputStream);
+                        for (int i = 0; i < ranges.size(); i++) {
+                            outputStream.write(partHeaders.get(i));
+                            transfer(fileChannel, ranges.get(i)[0], ranges.get(i)[1] - ranges.get(i)[0] + 1, target);
+                        }
+                        outputStream.write(closeDelimiter);
+                    }
+                });
+    }
 
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long sent = channel.transferTo(position + transferred, count - transferred, target);
+            if (sent <= 0) {
+//                The file was truncated while it was sent
+                throw new EOFException("Could not send the whole file");
+            }
+            transferred += sent;
+        }
+    }
+
+    private boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || tag.replaceFirst("^W/", "").equals(eTag));
+        }
+        try {
+            long ifModifiedSince = requestHeaders.getIfModifiedSince();
+            return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A range is only sent when the If-Range validator, if any, still matches the file
+     */
+    private boolean isRangeCurrent(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            return requestHeaders.getFirstDate(IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private List<HttpRange> getRanges(HttpHeaders requestHeaders) {
+        try {
+            List<HttpRange> ranges = requestHeaders.getRange();
+//            Too many ranges are ignored and the whole file is sent
+            return ranges.size() > MAX_RANGES ? Collections.emptyList() : ranges;
+        } catch (IllegalArgumentException e) {
+//            A malformed Range header is ignored and the whole file is sent
+            return Collections.emptyList();
+        }
+    }
 
 }
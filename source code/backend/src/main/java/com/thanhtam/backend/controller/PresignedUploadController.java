@@ -0,0 +1,87 @@
+package com.thanhtam.backend.controller;
+
+import com.thanhtam.backend.dto.PresignedUploadCompletion;
+import com.thanhtam.backend.dto.PresignedUploadRequest;
+import com.thanhtam.backend.dto.ServiceResult;
+import com.thanhtam.backend.service.PresignedUploadService;
+import com.thanhtam.backend.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Direct uploads to S3: the client asks for a presigned PUT url, uploads the file itself and then completes the upload
+ * so that the url is recorded.
+ */
+@RestController
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RequestMapping(value = "/api/aws/presign")
+public class PresignedUploadController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresignedUploadController.class);
+    private PresignedUploadService presignedUploadService;
+    private UserService userService;
+
+    @Autowired
+    public PresignedUploadController(PresignedUploadService presignedUploadService, UserService userService) {
+        this.presignedUploadService = presignedUploadService;
+        this.userService = userService;
+    }
+
+    @PostMapping("/avatar")
+    public ResponseEntity<?> createAvatarUploadUrl(@RequestBody PresignedUploadRequest request) {
+        return createUploadUrl(PresignedUploadService.AVATAR, request);
+    }
+
+    @PostMapping("/avatar/complete")
+    public ResponseEntity<ServiceResult> completeAvatarUpload(@RequestBody PresignedUploadCompletion completion) {
+        return completeUpload(PresignedUploadService.AVATAR, completion);
+    }
+
+    @PostMapping("/course")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<?> createCourseUploadUrl(@RequestBody PresignedUploadRequest request) {
+        return createUploadUrl(PresignedUploadService.COURSE, request);
+    }
+
+    @PostMapping("/course/complete")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<ServiceResult> completeCourseUpload(@RequestBody PresignedUploadCompletion completion) {
+        return completeUpload(PresignedUploadService.COURSE, completion);
+    }
+
+    @GetMapping("/download")
+    public ResponseEntity<?> createDownloadUrl(@RequestParam String keyName) {
+        try {
+            return ResponseEntity.ok(presignedUploadService.createDownloadUrl(userService.getUserName(), keyName));
+        } catch (AccessDeniedException e) {
+            LOGGER.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ServiceResult(HttpStatus.FORBIDDEN.value(), "You can only download your own uploads", null));
+        }
+    }
+
+    private ResponseEntity<?> createUploadUrl(String purpose, PresignedUploadRequest request) {
+        try {
+            return ResponseEntity.ok(presignedUploadService.createUploadUrl(userService.getUserName(), purpose, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        }
+    }
+
+    private ResponseEntity<ServiceResult> completeUpload(String purpose, PresignedUploadCompletion completion) {
+        try {
+            String url = presignedUploadService.completeUpload(userService.getUserName(), purpose, completion);
+            return ResponseEntity.ok(new ServiceResult(HttpStatus.OK.value(), "Upload completed", url));
+        } catch (IllegalArgumentException e) {
+            LOGGER.error(e.getMessage());
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        } catch (AccessDeniedException e) {
+            LOGGER.error(e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ServiceResult(HttpStatus.FORBIDDEN.value(), "You can only change the image of a course you teach", null));
+        }
+    }
+}
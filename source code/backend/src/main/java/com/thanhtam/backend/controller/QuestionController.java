@@ -1,7 +1,12 @@
 package com.thanhtam.backend.controller;
 
+import com.thanhtam.backend.dto.CursorPageResult;
 import com.thanhtam.backend.dto.PageResult;
+import com.thanhtam.backend.dto.QuestionImportResult;
+import com.thanhtam.backend.dto.QuestionSearchRequest;
+import com.thanhtam.backend.dto.QuestionSummary;
 import com.thanhtam.backend.dto.ServiceResult;
+import com.thanhtam.backend.dto.pagination.CursorDetails;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.service.*;
 import com.thanhtam.backend.ultilities.EQTypeCode;
@@ -15,8 +20,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,14 +37,18 @@ public class QuestionController {
     private QuestionTypeService questionTypeService;
     private UserService userService;
     private RoleService roleService;
+    private QuestionImportService questionImportService;
+    private QuestionSearchService questionSearchService;
 
     @Autowired
-    public QuestionController(QuestionService questionService, PartService partService, QuestionTypeService questionTypeService, UserService userService, RoleService roleService) {
+    public QuestionController(QuestionService questionService, PartService partService, QuestionTypeService questionTypeService, UserService userService, RoleService roleService, QuestionImportService questionImportService, QuestionSearchService questionSearchService) {
         this.questionService = questionService;
         this.partService = partService;
         this.questionTypeService = questionTypeService;
         this.userService = userService;
         this.roleService = roleService;
+        this.questionImportService = questionImportService;
+        this.questionSearchService = questionSearchService;
     }
 
     @GetMapping(value = "/questions")
@@ -60,6 +71,26 @@ public class QuestionController {
         return ResponseEntity.ok().body(questionOptional.get());
     }
 
+    //    Full text search of the question bank, lecturers only search their own questions
+    @GetMapping(value = "/questions/search")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<?> searchQuestions(QuestionSearchRequest request, @PageableDefault(page = 0, size = 10) Pageable pageable) throws IOException {
+        String username = userService.getUserName();
+        User user = userService.getUserByUsername(username).get();
+        Role role = roleService.findByName(ERole.ROLE_ADMIN).get();
+        if (!user.getRoles().contains(role)) {
+            request.setCreatedBy(username);
+        }
+        return ResponseEntity.ok(questionSearchService.search(request, pageable));
+    }
+
+    @PostMapping(value = "/questions/search-index/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ServiceResult> rebuildQuestionSearchIndex() {
+        questionSearchService.rebuild();
+        return ResponseEntity.accepted().body(new ServiceResult(HttpStatus.ACCEPTED.value(), "Rebuilding the question search index", null));
+    }
+
     //    Get list of question by part
     @GetMapping(value = "/parts/{partId}/questions")
     @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
@@ -69,27 +100,45 @@ public class QuestionController {
         Role role = roleService.findByName(ERole.ROLE_ADMIN).get();
         boolean isAdmin = user.getRoles().contains(role);
 
-        Page<Question> questions;
+        Page<QuestionSummary> questions;
         if (partId == 0) {
             if(isAdmin){
-                questions = questionService.findAllQuestions(pageable);
+                questions = questionService.findQuestionSummaries(pageable);
                 return new PageResult(questions);
             }
-            questions = questionService.findQuestionsByCreatedBy_Username(pageable, username);
+            questions = questionService.findQuestionSummariesByCreatedBy(pageable, username);
             return new PageResult(questions);
 
         }
 
         if (isAdmin) {
-            Part part = partService.findPartById(partId).get();
-            questions = questionService.findQuestionsByPart(pageable, part);
+            questions = questionService.findQuestionSummariesByPart(pageable, partId);
             return new PageResult(questions);
         }
-        questions = questionService.findQuestionsByPart_IdAndCreatedBy_Username(pageable, partId, username);
+        questions = questionService.findQuestionSummariesByPartAndCreatedBy(pageable, partId, username);
         return new PageResult(questions);
 
     }
 
+    @GetMapping(value = "/parts/{partId}/questions", params = "cursor")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<?> getQuestionsByPartAndCursor(@PathVariable Long partId, @RequestParam String cursor, @RequestParam(defaultValue = "10") int size) {
+        long lastId;
+        try {
+            lastId = CursorDetails.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        }
+        String username = userService.getUserName();
+        User user = userService.getUserByUsername(username).get();
+        Role role = roleService.findByName(ERole.ROLE_ADMIN).get();
+        boolean isAdmin = user.getRoles().contains(role);
+
+        int pageSize = Math.max(1, Math.min(size, CursorDetails.MAX_PAGE_SIZE));
+        List<QuestionSummary> questions = questionService.findQuestionSummariesAfter(partId, isAdmin ? null : username, lastId, pageSize + 1);
+        return ResponseEntity.ok(new CursorPageResult(questions, pageSize, QuestionSummary::getId));
+    }
+
     @GetMapping(value = "/parts/{partId}/questions/false/deleted")
     @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
     public PageResult getQuestionsByPartNotDeleted(@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable, @PathVariable Long partId) {
@@ -133,9 +182,22 @@ public class QuestionController {
         question.setPart(part);
         question.setDeleted(false);
         questionService.save(question);
-        Question questionCreated = questionService.getQuestionById(question.getId()).get();
-        log.info(questionCreated.toString());
-        return questionCreated;
+//        Saved question already carries the generated ids of itself and its choices
+        log.info(question.toString());
+        return question;
+    }
+
+    @PostMapping(value = "/questions/import")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public ResponseEntity<ServiceResult> importQuestions(@RequestParam("file") MultipartFile file) {
+        try {
+            QuestionImportResult result = questionImportService.importQuestions(file);
+            String message = "Imported " + result.getImportedRows() + "/" + result.getTotalRows() + " questions from " + file.getOriginalFilename();
+            return ResponseEntity.ok().body(new ServiceResult(HttpStatus.OK.value(), message, result));
+        } catch (IllegalArgumentException | IOException e) {
+            log.error(e.getMessage());
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), "Could not import the question list: " + e.getMessage(), null));
+        }
     }
 
     @PutMapping(value = "/questions/{id}")
@@ -1,18 +1,25 @@
 package com.thanhtam.backend.controller;
 
+import com.thanhtam.backend.config.ReplicaRead;
+import com.thanhtam.backend.dto.EntityCacheStats;
+import com.thanhtam.backend.dto.ExecutorStats;
 import com.thanhtam.backend.dto.StatisticsDashboard;
 import com.thanhtam.backend.service.StatisticsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RequestMapping(value = "/api")
 @RestController
 @Slf4j
+@ReplicaRead
 public class StatisticsController {
     private StatisticsService statisticsService;
 
@@ -35,4 +42,22 @@ public class StatisticsController {
         statisticsDashboard.setExamUserLastedSevenDaysTotal(statisticsService.countExamUserLastedSevenDaysTotal());
         return statisticsDashboard;
     }
+
+    /*
+     * Hit ratio of the second-level cache regions and the query cache
+     */
+    @GetMapping(value = "/statistics/entity-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<EntityCacheStats> getEntityCacheStats() {
+        return statisticsService.getEntityCacheStats();
+    }
+
+    /*
+     * Active threads, queued and rejected tasks and timeouts of each report pool
+     */
+    @GetMapping(value = "/statistics/executors")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<ExecutorStats> getExecutorStats() {
+        return statisticsService.getExecutorStats();
+    }
 }
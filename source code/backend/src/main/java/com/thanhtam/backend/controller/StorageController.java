@@ -0,0 +1,141 @@
+package com.thanhtam.backend.controller;
+
+import com.thanhtam.backend.dto.ServiceResult;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.service.AsyncStorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Endpoints of the storage backend picked by isc.storage.backend, answered with DeferredResult so that the request
+ * thread is released while the backend works. Contents are streamed both ways.
+ */
+@RestController
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RequestMapping(value = "/api/storage")
+public class StorageController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageController.class);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private AsyncStorageService asyncStorageService;
+
+    @Autowired
+    public StorageController(AsyncStorageService asyncStorageService) {
+        this.asyncStorageService = asyncStorageService;
+    }
+
+    /*
+    The multipart file is read on the storage pool, it stays until the deferred result is set
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public DeferredResult<Object> putObject(@RequestParam String key, @RequestParam("file") MultipartFile file) throws IOException {
+        InputStream content = file.getInputStream();
+        return defer(() -> asyncStorageService.put(key, content, file.getSize(), file.getContentType()),
+                storageObject -> ResponseEntity.ok(new ServiceResult(HttpStatus.OK.value(), "Stored " + key, storageObject)));
+    }
+
+    @GetMapping
+    public DeferredResult<Object> getObject(@RequestParam String key) {
+        return defer(() -> asyncStorageService.get(key), this::toContentResponse);
+    }
+
+    @DeleteMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('LECTURER')")
+    public DeferredResult<Object> deleteObject(@RequestParam String key) {
+        return defer(() -> asyncStorageService.delete(key), result -> ResponseEntity.noContent().build());
+    }
+
+    @GetMapping("/list")
+    public DeferredResult<Object> listObjects(@RequestParam(defaultValue = "") String prefix,
+                                              @RequestParam(defaultValue = "100") int pageSize,
+                                              @RequestParam(required = false) String continuationToken) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        return defer(() -> asyncStorageService.list(prefix, size, continuationToken), ResponseEntity::ok);
+    }
+
+    private ResponseEntity<StreamingResponseBody> toContentResponse(StorageObject storageObject) {
+        MediaType contentType = StringUtils.hasText(storageObject.getContentType())
+                ? MediaType.parseMediaType(storageObject.getContentType())
+                : MediaTypeFactory.getMediaType(storageObject.getKey()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        InputStream content = storageObject.getContent();
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream inputStream = content) {
+                StreamUtils.copy(inputStream, outputStream);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(contentType).contentLength(storageObject.getSize());
+        if (storageObject.getETag() != null) {
+            response.eTag(storageObject.getETag());
+        }
+        return response.body(body);
+    }
+
+    private <T> DeferredResult<Object> defer(Supplier<CompletableFuture<T>> operation, Function<T, ResponseEntity<?>> onSuccess) {
+        DeferredResult<Object> deferredResult = new DeferredResult<>();
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+//            The storage pool rejected the operation before it started
+            deferredResult.setResult(toErrorResponse(e));
+            return deferredResult;
+        }
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                deferredResult.setResult(toErrorResponse(throwable));
+            } else if (!deferredResult.setResult(onSuccess.apply(result)) && result instanceof StorageObject) {
+//                The request timed out meanwhile, nobody will read the content
+                closeQuietly(((StorageObject) result).getContent());
+            }
+        });
+        return deferredResult;
+    }
+
+    private ResponseEntity<?> toErrorResponse(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof NoSuchFileException) {
+            return ResponseEntity.notFound().build();
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), cause.getMessage(), null));
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ServiceResult(HttpStatus.SERVICE_UNAVAILABLE.value(), "Storage is busy, try again later", null));
+        }
+        LOGGER.error("Storage request failed: " + cause.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ServiceResult(HttpStatus.INTERNAL_SERVER_ERROR.value(), cause.getMessage(), null));
+    }
+
+    private void closeQuietly(InputStream content) {
+        try {
+            if (content != null) {
+                content.close();
+            }
+        } catch (IOException e) {
+//            The content was never sent
+        }
+    }
+}
@@ -3,13 +3,18 @@ package com.thanhtam.backend.controller;
 import com.opencsv.CSVWriter;
 import com.opencsv.bean.StatefulBeanToCsv;
 import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import com.opencsv.exceptions.CsvException;
+import com.thanhtam.backend.config.ReplicaRead;
+import com.thanhtam.backend.config.ReportExecutor;
 import com.thanhtam.backend.dto.*;
+import com.thanhtam.backend.dto.pagination.CursorDetails;
 import com.thanhtam.backend.entity.Profile;
 import com.thanhtam.backend.entity.Role;
 import com.thanhtam.backend.entity.User;
 import com.thanhtam.backend.service.ExcelService;
 import com.thanhtam.backend.service.FilesStorageService;
 import com.thanhtam.backend.service.RoleService;
+import com.thanhtam.backend.service.UserSearchService;
 import com.thanhtam.backend.service.UserService;
 import com.thanhtam.backend.ultilities.ERole;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +22,7 @@ import org.apache.poi.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -26,11 +32,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -48,14 +59,18 @@ public class UserController {
     private RoleService roleService;
     private ExcelService excelService;
     FilesStorageService filesStorageService;
+    private UserSearchService userSearchService;
+    private ReportExecutor reportExecutor;
 
     @Autowired
-    public UserController(UserService userService, RoleService roleService, PasswordEncoder passwordEncoder, ExcelService excelService, FilesStorageService filesStorageService) {
+    public UserController(UserService userService, RoleService roleService, PasswordEncoder passwordEncoder, ExcelService excelService, FilesStorageService filesStorageService, UserSearchService userSearchService, @Qualifier("reportExecutor") ReportExecutor reportExecutor) {
         this.userService = userService;
         this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
         this.excelService = excelService;
         this.filesStorageService = filesStorageService;
+        this.userSearchService = userSearchService;
+        this.reportExecutor = reportExecutor;
     }
 
     @GetMapping(value = "/profile")
@@ -146,10 +161,24 @@ public class UserController {
     @GetMapping()
     @PreAuthorize("hasRole('ADMIN')")
     public PageResult getUsersByPage(@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable) {
-        Page<User> userPage = userService.findUsersByPage(pageable);
+        Page<UserSummary> userPage = userService.findUserSummaries(pageable);
         return new PageResult(userPage);
     }
 
+    @GetMapping(params = "cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getUsersByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "10") int size) {
+        long lastId;
+        try {
+            lastId = CursorDetails.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ServiceResult(HttpStatus.BAD_REQUEST.value(), e.getMessage(), null));
+        }
+        int pageSize = Math.max(1, Math.min(size, CursorDetails.MAX_PAGE_SIZE));
+        List<UserSummary> users = userService.findUserSummariesAfter(lastId, pageSize + 1);
+        return ResponseEntity.ok(new CursorPageResult(users, pageSize, UserSummary::getId));
+    }
+
 //    @GetMapping("/deleted/{status}")
 //    @PreAuthorize("hasRole('ADMIN')")
 //    public PageResult getUsersByPage(@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable) {
@@ -159,9 +188,7 @@ public class UserController {
 
     @GetMapping("/search")
     public PageResult searchUsersByUsernameOrEmail(@RequestParam(value = "search-keyword") String info, @PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable) {
-        LOGGER.error("check search");
-        Page<User> userPage = userService.findAllByUsernameContainsOrEmailContains(info, info, pageable);
-        LOGGER.error(userPage.toString());
+        Page<UserSummary> userPage = userSearchService.search(info, pageable);
         return new PageResult(userPage);
     }
 
@@ -232,20 +259,36 @@ public class UserController {
         return ResponseEntity.ok(new ServiceResult(HttpStatus.OK.value(), "User created successfully!", user));
     }
 
+    /*
+     * The users are read on the report pool, their rows are then written straight to the response
+     */
     @GetMapping("deleted/{status}/export/users.csv")
-    public void exportUsersToCSV(HttpServletResponse response) throws Exception {
-        String fileName = "users.csv";
-        response.setContentType("text/csv");
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
-        //create a csv writer
-        StatefulBeanToCsv<UserExport> writer = new StatefulBeanToCsvBuilder<UserExport>(response.getWriter())
-                .withQuotechar(CSVWriter.NO_QUOTE_CHARACTER)
-                .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
-                .withOrderedResults(false)
-                .build();
+    @ReplicaRead
+    public DeferredResult<Object> exportUsersToCSV(HttpServletResponse response) {
+        return reportExecutor.submit(() -> {
+            String fileName = "users.csv";
+            List<UserExport> userExports = userService.findAllByDeletedToExport(false);
+            StreamingResponseBody body = outputStream -> {
+                response.setContentType("text/csv;charset=UTF-8");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+                Writer csv = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                //create a csv writer
+                StatefulBeanToCsv<UserExport> writer = new StatefulBeanToCsvBuilder<UserExport>(csv)
+                        .withQuotechar(CSVWriter.NO_QUOTE_CHARACTER)
+                        .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
+                        .withOrderedResults(false)
+                        .build();
 
-        //write all users to csv file'
-        writer.write(userService.findAllByDeletedToExport(false));
+                //write all users to csv file'
+                try {
+                    writer.write(userExports);
+                } catch (CsvException e) {
+                    throw new IOException(e);
+                }
+                csv.flush();
+            };
+            return body;
+        });
     }
 
     public void addRoles(ERole roleName, Set<Role> roles) {
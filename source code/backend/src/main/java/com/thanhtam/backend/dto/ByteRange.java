@@ -0,0 +1,70 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One byte range of a Range header: {@code bytes=first-last}, the open ended {@code bytes=first-} or the suffix
+ * {@code bytes=-length} covering the last bytes of the file.
+ * <p>
+ * Ends are inclusive. Only a suffix range needs the file length to know where it starts.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ByteRange {
+    private static final Pattern SINGLE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$", Pattern.CASE_INSENSITIVE);
+
+    private final Long first;
+
+    private final Long last;
+
+    private final Long suffixLength;
+
+    /**
+     * @return the range, empty when the header is missing, malformed or asks for several ranges so that the whole
+     * file is sent
+     */
+    public static Optional<ByteRange> parse(String header) {
+        if (header == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = SINGLE_RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                long suffixLength = Long.parseLong(last);
+                return suffixLength > 0 ? Optional.of(new ByteRange(null, null, suffixLength)) : Optional.empty();
+            }
+            long firstByte = Long.parseLong(first);
+            if (last.isEmpty()) {
+                return Optional.of(new ByteRange(firstByte, null, null));
+            }
+            long lastByte = Long.parseLong(last);
+            return lastByte >= firstByte ? Optional.of(new ByteRange(firstByte, lastByte, null)) : Optional.empty();
+        } catch (NumberFormatException e) {
+//            Digits too long for a long
+            return Optional.empty();
+        }
+    }
+
+    public boolean isSuffix() {
+        return suffixLength != null;
+    }
+
+    public long getStart(long totalLength) {
+        return isSuffix() ? Math.max(0, totalLength - suffixLength) : first;
+    }
+
+    public long getEnd(long totalLength) {
+        return last == null ? totalLength - 1 : Math.min(last, totalLength - 1);
+    }
+}
@@ -0,0 +1,18 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.file.Path;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedS3Object {
+    private String keyName;
+    private Path path;
+    private String eTag;
+    private long contentLength;
+    private String contentType;
+}
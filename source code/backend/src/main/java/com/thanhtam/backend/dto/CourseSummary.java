@@ -0,0 +1,31 @@
+package com.thanhtam.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.thanhtam.backend.ultilities.EImageVariant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Row of the course list, selected in one statement without the intakes of the course.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseSummary {
+    private Long id;
+    private String courseCode;
+    private String name;
+    private String imgUrl;
+
+    @JsonIgnore
+    private String imageVariantNames;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getImageVariants() {
+        return EImageVariant.getUrls(imgUrl, imageVariantNames);
+    }
+}
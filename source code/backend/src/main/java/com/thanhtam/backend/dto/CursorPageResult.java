@@ -0,0 +1,27 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.dto.pagination.CursorDetails;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+public class CursorPageResult {
+    private List<Object> data;
+
+    private CursorDetails paginationDetails;
+
+    /**
+     * @param rows  rows read past the cursor in id order, one more than the page size when there is a next page
+     * @param size  page size
+     * @param getId id of a row, the sort key of the next cursor
+     */
+    public <T> CursorPageResult(List<T> rows, int size, Function<T, Long> getId) {
+        boolean hasNext = rows.size() > size;
+        List<T> page = hasNext ? rows.subList(0, size) : rows;
+        this.data = new ArrayList<>(page);
+        this.paginationDetails = new CursorDetails(page.size(), hasNext ? getId.apply(page.get(size - 1)) : null);
+    }
+}
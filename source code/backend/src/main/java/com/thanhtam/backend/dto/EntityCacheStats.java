@@ -0,0 +1,15 @@
+package com.thanhtam.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class EntityCacheStats {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long entries;
+    private double hitRatio;
+}
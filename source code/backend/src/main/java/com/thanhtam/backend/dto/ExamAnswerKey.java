@@ -0,0 +1,25 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Correct answers of one exam, loaded once so answer sheets can be graded without
+ * looking up every choice in the database.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExamAnswerKey {
+    private Long examId;
+    //    Question ids in the order of exam's question data
+    private List<Long> questionIds;
+    private Map<Long, EQTypeCode> questionTypes;
+    private Map<Long, Integer> choiceCorrects;
+    private Map<Long, String> choiceTexts;
+}
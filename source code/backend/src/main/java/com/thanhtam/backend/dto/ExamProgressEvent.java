@@ -0,0 +1,19 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+public class ExamProgressEvent {
+    private EExamProgressEvent type;
+    private Long examId;
+    private String username;
+    private Integer answeredCount;
+    private Integer questionCount;
+    private Double totalPoint;
+    private Date time;
+}
@@ -0,0 +1,26 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Columns of exam_user needed to export one result row, selected without loading the user graph.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExamResultRow {
+    private Long id;
+    private String username;
+    private String firstName;
+    private String lastName;
+    private Date timeStart;
+    private Date timeFinish;
+    private Boolean isStarted;
+    private Boolean isFinished;
+    private String answerSheet;
+    private Boolean isArchived;
+}
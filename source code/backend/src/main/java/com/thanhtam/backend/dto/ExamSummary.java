@@ -0,0 +1,41 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Row of the exam list, selected in one statement without the question data and part of the exam.
+ */
+@Data
+@NoArgsConstructor
+public class ExamSummary {
+    private Long id;
+    private String title;
+    private boolean canceled;
+    private int durationExam;
+    private Date beginExam;
+    private Date finishExam;
+    private IntakeSummary intake;
+
+    public ExamSummary(Long id, String title, boolean canceled, int durationExam, Date beginExam, Date finishExam,
+                       Long intakeId, String intakeName) {
+        this.id = id;
+        this.title = title;
+        this.canceled = canceled;
+        this.durationExam = durationExam;
+        this.beginExam = beginExam;
+        this.finishExam = finishExam;
+        this.intake = new IntakeSummary(intakeId, intakeName);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IntakeSummary {
+        private Long id;
+        private String name;
+    }
+}
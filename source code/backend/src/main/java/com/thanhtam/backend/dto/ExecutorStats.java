@@ -0,0 +1,18 @@
+package com.thanhtam.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ExecutorStats {
+    private String name;
+    private int poolSize;
+    private int maximumPoolSize;
+    private int activeCount;
+    private int queueSize;
+    private int queueRemainingCapacity;
+    private long completedTaskCount;
+    private long rejectedCount;
+    private long timedOutCount;
+}
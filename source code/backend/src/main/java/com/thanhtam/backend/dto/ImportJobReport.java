@@ -0,0 +1,26 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.EImportJobStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImportJobReport {
+    private String jobId;
+    private String fileName;
+    private EImportJobStatus status;
+    private int processedRows;
+    private int importedRows;
+    private int failedRows;
+    private double rowsPerSecond;
+    private Date createdAt;
+    private Date startedAt;
+    private Date finishedAt;
+    private String message;
+    private List<ImportRowError> errors = new ArrayList<>();
+}
@@ -0,0 +1,16 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent by the client once its direct upload is done, courseId is only used for course images
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUploadCompletion {
+    private String keyName;
+    private Long courseId;
+}
@@ -0,0 +1,16 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * File the client is about to upload directly to S3
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUploadRequest {
+    private String contentType;
+    private long size;
+}
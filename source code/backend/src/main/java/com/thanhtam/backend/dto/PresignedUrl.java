@@ -0,0 +1,22 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Short-lived url to call S3 directly, the request must be sent with the given method and headers
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUrl {
+    private String keyName;
+    private String url;
+    private String method;
+    private Map<String, String> headers;
+    private Date expiresAt;
+}
@@ -0,0 +1,14 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionChoiceText {
+    private Long questionId;
+    private Long choiceId;
+    private String choiceText;
+}
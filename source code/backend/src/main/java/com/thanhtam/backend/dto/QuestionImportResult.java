@@ -0,0 +1,18 @@
+package com.thanhtam.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class QuestionImportResult {
+    private int totalRows;
+    private int importedRows;
+    private int failedRows;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private List<ImportRowError> errors = new ArrayList<>();
+}
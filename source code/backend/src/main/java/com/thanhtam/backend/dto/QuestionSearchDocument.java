@@ -0,0 +1,39 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fields of a question kept in the question search index, the choice texts are loaded by a second statement.
+ */
+@Data
+@NoArgsConstructor
+public class QuestionSearchDocument {
+    private Long id;
+    private String questionText;
+    private Long partId;
+    private Long courseId;
+    private EQTypeCode typeCode;
+    private DifficultyLevel difficultyLevel;
+    private String createdBy;
+    private boolean deleted;
+    private List<Long> choiceIds = new ArrayList<>();
+    private List<String> choiceTexts = new ArrayList<>();
+
+    public QuestionSearchDocument(Long id, String questionText, Long partId, Long courseId, EQTypeCode typeCode,
+                                  DifficultyLevel difficultyLevel, String createdBy, boolean deleted) {
+        this.id = id;
+        this.questionText = questionText;
+        this.partId = partId;
+        this.courseId = courseId;
+        this.typeCode = typeCode;
+        this.difficultyLevel = difficultyLevel;
+        this.createdBy = createdBy;
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,23 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Keyword and filters of a question bank search, a null filter matches every question.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestionSearchRequest {
+    private String keyword;
+    private Long partId;
+    private Long courseId;
+    private EQTypeCode questionType;
+    private DifficultyLevel difficultyLevel;
+    private String createdBy;
+    private Boolean deleted;
+}
@@ -0,0 +1,26 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.dto.pagination.PaginationDetails;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page of matching questions with the number of matches per part, question type and difficulty level.
+ */
+@Data
+public class QuestionSearchResult {
+    private List<QuestionSummary> data;
+
+    private PaginationDetails paginationDetails;
+
+    private Map<String, Map<String, Integer>> facets;
+
+    public QuestionSearchResult(Page<QuestionSummary> page, Map<String, Map<String, Integer>> facets) {
+        this.data = page.getContent();
+        this.paginationDetails = new PaginationDetails(page);
+        this.facets = facets;
+    }
+}
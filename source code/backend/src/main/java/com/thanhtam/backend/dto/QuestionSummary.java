@@ -0,0 +1,40 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of the question bank, selected in one statement without the choices, part and creator of the question.
+ */
+@Data
+@NoArgsConstructor
+public class QuestionSummary {
+    private Long id;
+    private String questionText;
+    private DifficultyLevel difficultyLevel;
+    private int point;
+    private boolean deleted;
+    private QuestionTypeSummary questionType;
+
+    public QuestionSummary(Long id, String questionText, DifficultyLevel difficultyLevel, int point, boolean deleted,
+                           Long questionTypeId, EQTypeCode typeCode, String description) {
+        this.id = id;
+        this.questionText = questionText;
+        this.difficultyLevel = difficultyLevel;
+        this.point = point;
+        this.deleted = deleted;
+        this.questionType = new QuestionTypeSummary(questionTypeId, typeCode, description);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QuestionTypeSummary {
+        private Long id;
+        private EQTypeCode typeCode;
+        private String description;
+    }
+}
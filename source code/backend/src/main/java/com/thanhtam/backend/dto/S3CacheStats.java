@@ -0,0 +1,19 @@
+package com.thanhtam.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class S3CacheStats {
+    private long hits;
+    private long misses;
+    private long revalidations;
+    private long collapsedFetches;
+    private long evictions;
+    private long bytesServed;
+    private double hitRatio;
+    private int entries;
+    private long totalBytes;
+    private long maxBytes;
+}
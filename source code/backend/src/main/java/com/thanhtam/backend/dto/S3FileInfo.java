@@ -0,0 +1,17 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class S3FileInfo {
+    private String key;
+    private long size;
+    private String eTag;
+    private Date lastModified;
+}
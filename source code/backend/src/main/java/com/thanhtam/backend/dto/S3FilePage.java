@@ -0,0 +1,16 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class S3FilePage {
+    private List<S3FileInfo> files;
+    private String nextContinuationToken;
+    private boolean truncated;
+}
@@ -0,0 +1,26 @@
+package com.thanhtam.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.InputStream;
+import java.util.Date;
+
+/**
+ * An object of a storage backend. The content is only set by a get, it is open and the caller closes it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageObject {
+    private String key;
+    private long size;
+    private String contentType;
+    private String eTag;
+    private Date lastModified;
+
+    @JsonIgnore
+    private InputStream content;
+}
@@ -0,0 +1,31 @@
+package com.thanhtam.backend.dto;
+
+import com.thanhtam.backend.entity.Profile;
+import com.thanhtam.backend.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fields of a user kept in the in-memory search index.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchDocument {
+    private Long id;
+    private Long profileId;
+    private String username;
+    private String email;
+    private String firstName;
+    private String lastName;
+
+    public static UserSearchDocument of(User user) {
+        Profile profile = user.getProfile();
+        if (profile == null) {
+            return new UserSearchDocument(user.getId(), null, user.getUsername(), user.getEmail(), null, null);
+        }
+        return new UserSearchDocument(user.getId(), profile.getId(), user.getUsername(), user.getEmail(),
+                profile.getFirstName(), profile.getLastName());
+    }
+}
@@ -0,0 +1,40 @@
+package com.thanhtam.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Row of the user list, selected in one statement without the roles and intake of the user.
+ */
+@Data
+@NoArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String username;
+    private String email;
+    private boolean deleted;
+    private Date createdDate;
+    private ProfileSummary profile;
+
+    public UserSummary(Long id, String username, String email, boolean deleted, Date createdDate,
+                       String firstName, String lastName, String image) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.deleted = deleted;
+        this.createdDate = createdDate;
+        this.profile = new ProfileSummary(firstName, lastName, image);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProfileSummary {
+        private String firstName;
+        private String lastName;
+        private String image;
+    }
+}
@@ -0,0 +1,52 @@
+package com.thanhtam.backend.dto.pagination;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Pagination details of a listing read by seeking past the id of the last row, without a total count.
+ * <p>
+ * The cursor is opaque to clients: it encodes the sort key and the last id, an empty cursor starts from the first row.
+ */
+@Data
+public class CursorDetails {
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final String SORT_KEY = "id:";
+
+    private Integer pageCount;
+
+    private String nextCursor;
+
+    private Boolean isLastPage;
+
+    public CursorDetails(int pageCount, Long lastId) {
+        this.pageCount = pageCount;
+        this.isLastPage = lastId == null;
+        this.nextCursor = lastId == null ? null : encode(lastId);
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((SORT_KEY + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the id to seek past, 0 for an empty cursor
+     * @throws IllegalArgumentException if the cursor was not made by {@link #encode(long)}
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        if (!value.startsWith(SORT_KEY)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        try {
+            return Long.parseLong(value.substring(SORT_KEY.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -15,7 +15,9 @@ import java.io.Serializable;
 public class Choice implements Serializable {
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "choice_id")
+    @TableGenerator(name = "choice_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "choice", allocationSize = 50)
     private Long id;
 
     @Column(name = "choice_text")
@@ -1,15 +1,24 @@
 package com.thanhtam.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.thanhtam.backend.ultilities.EImageVariant;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Formula;
 
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Table(name = "course")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,8 +38,18 @@ public class Course implements Serializable {
     private String imgUrl;
 
     @ManyToMany(fetch = FetchType.EAGER, cascade = CascadeType.MERGE)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JoinTable(name = "course_intake", joinColumns = {@JoinColumn(name = "course_id", referencedColumnName = "id")},
             inverseJoinColumns = {
                     @JoinColumn(name = "intake_id", referencedColumnName = "id")})
     private List<Intake> intakes;
+
+    @Formula("(select v.variants from image_variant v where v.image_url = img_url)")
+    @JsonIgnore
+    private String imageVariantNames;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getImageVariants() {
+        return EImageVariant.getUrls(imgUrl, imageVariantNames);
+    }
 }
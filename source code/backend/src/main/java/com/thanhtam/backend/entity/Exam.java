@@ -2,6 +2,7 @@ package com.thanhtam.backend.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.thanhtam.backend.audit.Auditable;
+import com.thanhtam.backend.entity.converter.CompressedTextConverter;
 import lombok.*;
 import org.hibernate.annotations.Type;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -18,7 +19,9 @@ import java.util.*;
 public class Exam extends Auditable<Long> implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "exam_id")
+    @TableGenerator(name = "exam_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "exam", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -56,7 +59,8 @@ public class Exam extends Auditable<Long> implements Serializable {
     @Transient
     private boolean locked;
 
-    @Column(name="question_data", columnDefinition = "text")
+    @Column(name="question_data", columnDefinition = "mediumblob")
+    @Convert(converter = CompressedTextConverter.class)
     private String questionData;
 
 
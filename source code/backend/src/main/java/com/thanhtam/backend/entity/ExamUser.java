@@ -1,6 +1,7 @@
 package com.thanhtam.backend.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.thanhtam.backend.entity.converter.CompressedTextConverter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,7 +23,9 @@ import java.util.Objects;
 public class ExamUser{
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "exam_user_id")
+    @TableGenerator(name = "exam_user_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "exam_user", allocationSize = 50)
     private Long id;
 
     @ManyToOne(cascade = CascadeType.MERGE)
@@ -47,7 +50,8 @@ public class ExamUser{
     Date timeFinish;
 
     @JsonIgnore
-    @Column(name="answer_sheet", columnDefinition = "text")
+    @Column(name="answer_sheet", columnDefinition = "mediumblob")
+    @Convert(converter = CompressedTextConverter.class)
     private String answerSheet;
 
     @Column(name = "is_finished", columnDefinition = "TINYINT")
@@ -60,5 +64,10 @@ public class ExamUser{
     @Column(name = "total_point")
     private Double totalPoint;
 
+//    Set once the answer sheet has moved to exam_user_archive, answerSheet is then null
+    @Column(name = "is_archived", columnDefinition = "TINYINT")
+    @Type(type = "org.hibernate.type.NumericBooleanType")
+    private Boolean isArchived = false;
+
 }
 
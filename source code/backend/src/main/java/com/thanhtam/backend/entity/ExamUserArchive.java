@@ -0,0 +1,30 @@
+package com.thanhtam.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Gzipped answer sheet of an archived exam user, read only when a result is opened
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "exam_user_archive")
+public class ExamUserArchive {
+    @Id
+    @Column(name = "exam_user_id")
+    private Long examUserId;
+
+    @Lob
+    @Column(name = "answer_sheet", columnDefinition = "mediumblob")
+    private byte[] answerSheet;
+
+    @Column(name = "archived_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date archivedAt;
+}
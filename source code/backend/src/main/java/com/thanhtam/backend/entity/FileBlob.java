@@ -0,0 +1,28 @@
+package com.thanhtam.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Content of an uploaded file, stored once on disk under its SHA-256 hash and shared by every file with that content
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "file_blob")
+public class FileBlob implements Serializable {
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "size")
+    private long size;
+
+    @Column(name = "ref_count")
+    private long refCount;
+}
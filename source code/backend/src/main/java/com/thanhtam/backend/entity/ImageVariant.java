@@ -0,0 +1,27 @@
+package com.thanhtam.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Variants stored in S3 for an uploaded image, see {@link com.thanhtam.backend.ultilities.EImageVariant}
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "image_variant")
+public class ImageVariant {
+    @Id
+    @Column(name = "image_url")
+    private String imageUrl;
+
+    /**
+     * Names of the stored variants, comma separated
+     */
+    @Column(name = "variants", length = 64, nullable = false)
+    private String variants;
+}
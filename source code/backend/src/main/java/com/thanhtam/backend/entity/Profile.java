@@ -1,10 +1,15 @@
 package com.thanhtam.backend.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.thanhtam.backend.ultilities.EImageVariant;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Formula;
 
 import javax.persistence.*;
+import java.util.Map;
 
 @Entity
 @Table(name = "profile")
@@ -13,7 +18,9 @@ import javax.persistence.*;
 @AllArgsConstructor
 public class Profile {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "profile_id")
+    @TableGenerator(name = "profile_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "profile", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -26,4 +33,12 @@ public class Profile {
     @Column(name = "image")
     private String image;
 
+    @Formula("(select v.variants from image_variant v where v.image_url = image)")
+    @JsonIgnore
+    private String imageVariantNames;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Map<String, String> getImageVariants() {
+        return EImageVariant.getUrls(image, imageVariantNames);
+    }
 }
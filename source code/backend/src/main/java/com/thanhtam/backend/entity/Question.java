@@ -19,7 +19,9 @@ import java.util.Set;
 @Table(name = "question")
 public class Question extends Auditable<Long> implements Serializable {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "question_id")
+    @TableGenerator(name = "question_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "question", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
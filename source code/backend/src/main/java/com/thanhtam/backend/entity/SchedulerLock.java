@@ -0,0 +1,33 @@
+package com.thanhtam.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Lease of a scheduled job shared by every node, held by lockedBy until lockedUntil
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "scheduler_lock")
+public class SchedulerLock {
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "locked_until", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lockedUntil;
+
+    @Column(name = "locked_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lockedAt;
+
+    @Column(name = "locked_by")
+    private String lockedBy;
+}
@@ -0,0 +1,40 @@
+package com.thanhtam.backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Name of an uploaded file and the hash of its content, see {@link FileBlob}
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "stored_file")
+public class StoredFile implements Serializable {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "name", unique = true)
+    private String name;
+
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "size")
+    private long size;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "uploaded_date")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date uploadedDate;
+}
@@ -0,0 +1,112 @@
+package com.thanhtam.backend.entity.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores a large text column as bytes behind a header byte naming the format and its version.
+ * <ul>
+ * <li>{@link #PLAIN_V1}: the UTF-8 text, for values too short to be worth compressing</li>
+ * <li>{@link #DEFLATE_V1}: the length of the UTF-8 text as 4 bytes, then the text as a raw deflate stream at the fastest level</li>
+ * </ul>
+ * Rows written before the column was compressed hold the plain UTF-8 json, whose first byte is never below 0x09,
+ * so any other first byte is read as such a row.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+    public static final byte PLAIN_V1 = 0x01;
+    public static final byte DEFLATE_V1 = 0x02;
+    private static final int HEADER_LENGTH = 1;
+    private static final int DEFLATE_HEADER_LENGTH = HEADER_LENGTH + 4;
+    private static final int MIN_DEFLATE_LENGTH = 128;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        if (plain.length >= MIN_DEFLATE_LENGTH) {
+            byte[] deflated = deflate(plain);
+            if (deflated != null) {
+                return deflated;
+            }
+        }
+        byte[] column = new byte[HEADER_LENGTH + plain.length];
+        column[0] = PLAIN_V1;
+        System.arraycopy(plain, 0, column, HEADER_LENGTH, plain.length);
+        return column;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] column) {
+        if (column == null) {
+            return null;
+        }
+        if (column.length == 0) {
+            return "";
+        }
+        switch (column[0]) {
+            case PLAIN_V1:
+                return new String(column, HEADER_LENGTH, column.length - HEADER_LENGTH, StandardCharsets.UTF_8);
+            case DEFLATE_V1:
+                return new String(inflate(column), StandardCharsets.UTF_8);
+            default:
+                return new String(column, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The deflated column, or null when it would not be smaller than the plain one
+     */
+    private byte[] deflate(byte[] plain) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(plain);
+            deflater.finish();
+            byte[] column = new byte[HEADER_LENGTH + plain.length];
+            int length = DEFLATE_HEADER_LENGTH;
+            while (!deflater.finished() && length < column.length) {
+                length += deflater.deflate(column, length, column.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            column[0] = DEFLATE_V1;
+            ByteBuffer.wrap(column, HEADER_LENGTH, 4).putInt(plain.length);
+            return Arrays.copyOf(column, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] column) {
+        if (column.length < DEFLATE_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Compressed column is truncated");
+        }
+        byte[] plain = new byte[ByteBuffer.wrap(column, HEADER_LENGTH, 4).getInt()];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(column, DEFLATE_HEADER_LENGTH, column.length - DEFLATE_HEADER_LENGTH);
+            int length = 0;
+            while (length < plain.length) {
+                int inflated = inflater.inflate(plain, length, plain.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalArgumentException("Compressed column is truncated");
+                }
+                length += inflated;
+            }
+            return plain;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed column is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
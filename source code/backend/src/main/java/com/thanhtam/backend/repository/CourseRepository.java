@@ -1,12 +1,15 @@
 package com.thanhtam.backend.repository;
 
+import com.thanhtam.backend.dto.CourseSummary;
 import com.thanhtam.backend.entity.Course;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
@@ -16,13 +19,28 @@ public interface CourseRepository extends JpaRepository<Course, Long> {
 
     boolean existsById(Long id);
 
+    boolean existsByImgUrl(String imgUrl);
+
+//    A lecturer teaches a course once they wrote a question or an exam in one of its parts
+    @Query("select case when count(c) > 0 then true else false end from Course c where c.id = :courseId and ("
+            + "exists (select q.id from Question q where q.part.course = c and q.createdBy.username = :username) or "
+            + "exists (select e.id from Exam e where e.part.course = c and e.createdBy.username = :username))")
+    boolean isTaughtBy(Long courseId, String username);
+
     Page<Course> findAll(Pageable pageable);
 
-    @Query(value = "select * from course c join course_intake c_i on c.id = c_i.course_id where c_i.intake_id=:intakeId", nativeQuery = true)
+//    JPQL rather than native SQL, the query cache only knows which tables a JPQL query reads
+    @Query("select c from Course c join c.intakes i where i.id = :intakeId")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Course> findAllByIntakeId(Long intakeId);
 
-    @Query(value="select * from course c join part p on c.id = p.course_id where p.id=:partId", nativeQuery=true)
+    @Query("select p.course from Part p where p.id = :partId")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Course findCourseByPartId(Long partId);
 
+    @Query(value = "select new com.thanhtam.backend.dto.CourseSummary(c.id, c.courseCode, c.name, c.imgUrl, c.imageVariantNames) from Course c",
+            countQuery = "select count(c) from Course c")
+    Page<CourseSummary> findCourseSummaries(Pageable pageable);
+
 }
 
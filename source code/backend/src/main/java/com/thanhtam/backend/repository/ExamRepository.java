@@ -1,5 +1,6 @@
 package com.thanhtam.backend.repository;
 
+import com.thanhtam.backend.dto.ExamSummary;
 import com.thanhtam.backend.entity.Exam;
 import com.thanhtam.backend.entity.User;
 import org.springframework.data.domain.Page;
@@ -24,4 +25,18 @@ List<Exam> findByCanceledIsTrueOrderByCreatedDateDesc();
     @Query(value = "UPDATE exam set exam.canceled=true where exam.id=?" , nativeQuery = true)
     void cancelExam(Long id);
 
+    @Query(value = "select new com.thanhtam.backend.dto.ExamSummary(e.id, e.title, e.canceled, e.durationExam, e.beginExam, e.finishExam, i.id, i.name) from Exam e left join e.intake i",
+            countQuery = "select count(e) from Exam e")
+    Page<ExamSummary> findExamSummaries(Pageable pageable);
+
+    @Query(value = "select new com.thanhtam.backend.dto.ExamSummary(e.id, e.title, e.canceled, e.durationExam, e.beginExam, e.finishExam, i.id, i.name) from Exam e left join e.intake i where e.createdBy.username = :username",
+            countQuery = "select count(e) from Exam e where e.createdBy.username = :username")
+    Page<ExamSummary> findExamSummariesByCreatedBy(Pageable pageable, String username);
+
+    @Query(value = "select new com.thanhtam.backend.dto.ExamSummary(e.id, e.title, e.canceled, e.durationExam, e.beginExam, e.finishExam, i.id, i.name) from Exam e left join e.intake i where e.id > :lastId order by e.id")
+    List<ExamSummary> findExamSummariesAfter(Long lastId, Pageable pageable);
+
+    @Query(value = "select new com.thanhtam.backend.dto.ExamSummary(e.id, e.title, e.canceled, e.durationExam, e.beginExam, e.finishExam, i.id, i.name) from Exam e left join e.intake i where e.createdBy.username = :username and e.id > :lastId order by e.id")
+    List<ExamSummary> findExamSummariesByCreatedByAfter(String username, Long lastId, Pageable pageable);
+
 }
@@ -0,0 +1,9 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.ExamUserArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ExamUserArchiveRepository extends JpaRepository<ExamUserArchive, Long> {
+}
@@ -1,21 +1,64 @@
 package com.thanhtam.backend.repository;
 
+import com.thanhtam.backend.dto.ExamResultRow;
 import com.thanhtam.backend.entity.Exam;
 import com.thanhtam.backend.entity.ExamUser;
 import com.thanhtam.backend.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Date;
 import java.util.List;
 
 @Repository
 public interface ExamUserRepository extends JpaRepository<ExamUser, Long> {
     List<ExamUser> findAllByUser_Username(String username);
     List<ExamUser> findAllByUser_UsernameAndExam_Canceled(String username, boolean canceled);
+
+//    Hot lookups filter on the foreign key columns, derived queries outer join the parent and filter on its id instead
+    @Query("select eu from ExamUser eu where eu.exam.id = :examId and eu.user.username = :username")
     ExamUser findByExam_IdAndUser_Username(Long examId, String username);
+
+//    Row lock held until the autosave commits, the grading sweep cannot finish the attempt meanwhile
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select eu from ExamUser eu where eu.exam.id = :examId and eu.user.username = :username")
+    ExamUser findForUpdate(Long examId, String username);
+
     List<ExamUser> findAllByExam_Part_Course_IdAndUser_UsernameAndTotalPointIsGreaterThan(Long courseId, String username, Double point);
+
+    @Query("select eu from ExamUser eu where eu.exam.id = :examId")
     List<ExamUser> findAllByExam_Id(Long examId);
+
     List<ExamUser> findExamUsersByOrderByTimeFinish();
+
+    @Query("select eu from ExamUser eu where eu.isFinished = true and eu.exam.id = :examId")
     List<ExamUser> findExamUsersByIsFinishedIsTrueAndExam_Id(Long examId);
+
+    @Query("select eu from ExamUser eu where eu.exam.id = :examId and eu.id > :lastId order by eu.id")
+    List<ExamUser> findAllByExam_IdAndIdGreaterThanOrderByIdAsc(Long examId, Long lastId, Pageable pageable);
+
+    @Query(value = "select new com.thanhtam.backend.dto.ExamResultRow(eu.id, u.username, p.firstName, p.lastName, eu.timeStart, eu.timeFinish, eu.isStarted, eu.isFinished, eu.answerSheet, eu.isArchived) " +
+            "from ExamUser eu join eu.user u left join u.profile p where eu.exam.id = :examId and eu.id > :lastId order by eu.id")
+    List<ExamResultRow> findResultRowsByExamId(Long examId, Long lastId, Pageable pageable);
+
+//    Finished rows of exams that ended before the cutoff whose answer sheet is still in exam_user
+    @Query("select eu.id from ExamUser eu where eu.isArchived = false and eu.isFinished = true and eu.exam.finishExam < :finishedBefore and eu.id > :lastId order by eu.id")
+    List<Long> findArchivableIds(Date finishedBefore, Long lastId, Pageable pageable);
+
+//    Attempts still open, the sweeper checks their deadline against the exam
+    @Query("select eu from ExamUser eu join fetch eu.exam where eu.isFinished = false and eu.isStarted = true and eu.id > :lastId order by eu.id")
+    List<ExamUser> findUnfinishedAfter(Long lastId, Pageable pageable);
+
+    @Query("select eu.id from ExamUser eu where eu.isFinished = true and eu.totalPoint = -1 and eu.id > :lastId order by eu.id")
+    List<Long> findUngradedIds(Long lastId, Pageable pageable);
+
+//    Leaves the answer sheet alone and skips an attempt submitted since it was read
+    @Modifying
+    @Query("update ExamUser eu set eu.isFinished = true, eu.timeFinish = :timeFinish, eu.remainingTime = 0 where eu.id = :id and eu.isFinished = false")
+    int finishIfUnfinished(Long id, Date timeFinish);
 }
@@ -0,0 +1,18 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.FileBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+//    Row lock held until the upload commits, concurrent uploads of the same content count their references in turn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from FileBlob b where b.hash = :hash")
+    Optional<FileBlob> findForUpdate(String hash);
+}
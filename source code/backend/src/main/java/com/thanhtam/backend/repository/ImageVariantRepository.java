@@ -0,0 +1,9 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.ImageVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImageVariantRepository extends JpaRepository<ImageVariant, String> {
+}
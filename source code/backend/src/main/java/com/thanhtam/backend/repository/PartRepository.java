@@ -5,14 +5,18 @@ import com.thanhtam.backend.entity.Part;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 @Repository
 public interface PartRepository extends JpaRepository<Part, Long> {
     Page<Part> findAllByCourseId(Long courseId, Pageable pageable);
 
+
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Part> findAllByCourse(Course course);
 
 }
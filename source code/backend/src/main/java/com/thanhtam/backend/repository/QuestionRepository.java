@@ -1,5 +1,8 @@
 package com.thanhtam.backend.repository;
 
+import com.thanhtam.backend.dto.QuestionChoiceText;
+import com.thanhtam.backend.dto.QuestionSearchDocument;
+import com.thanhtam.backend.dto.QuestionSummary;
 import com.thanhtam.backend.entity.Part;
 import com.thanhtam.backend.entity.Question;
 import com.thanhtam.backend.entity.QuestionType;
@@ -9,6 +12,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,8 +28,12 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
 
     Page<Question> findQuestionsByPartAndDeletedFalse(Pageable pageable, Part part);
 
+    @Query(value = "select q from Question q where q.part.id = :partId and q.createdBy.username = :username",
+            countQuery = "select count(q) from Question q where q.part.id = :partId and q.createdBy.username = :username")
     Page<Question> findQuestionsByPart_IdAndCreatedBy_Username(Pageable pageable, Long partId, String username);
 
+    @Query(value = "select q from Question q where q.part.id = :partId and q.createdBy.username = :username and q.deleted = false",
+            countQuery = "select count(q) from Question q where q.part.id = :partId and q.createdBy.username = :username and q.deleted = false")
     Page<Question> findQuestionsByPart_IdAndCreatedBy_UsernameAndDeletedFalse(Pageable pageable, Long partId, String username);
 
     Page<Question> findAll(Pageable pageable);
@@ -34,4 +42,51 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
 
     @Query(value = "select q.id from question q where q.id =:questionId", nativeQuery = true)
     String findQuestionTextById(Long questionId);
+
+    String QUESTION_SUMMARY = "select new com.thanhtam.backend.dto.QuestionSummary(q.id, q.questionText, q.difficultyLevel, q.point, q.deleted, t.id, t.typeCode, t.description) from Question q left join q.questionType t";
+
+    @Query(value = QUESTION_SUMMARY, countQuery = "select count(q) from Question q")
+    Page<QuestionSummary> findQuestionSummaries(Pageable pageable);
+
+    @Query(value = QUESTION_SUMMARY + " where q.createdBy.username = :username",
+            countQuery = "select count(q) from Question q where q.createdBy.username = :username")
+    Page<QuestionSummary> findQuestionSummariesByCreatedBy(Pageable pageable, String username);
+
+    @Query(value = QUESTION_SUMMARY + " where q.part.id = :partId",
+            countQuery = "select count(q) from Question q where q.part.id = :partId")
+    Page<QuestionSummary> findQuestionSummariesByPart(Pageable pageable, Long partId);
+
+    @Query(value = QUESTION_SUMMARY + " where q.part.id = :partId and q.createdBy.username = :username",
+            countQuery = "select count(q) from Question q where q.part.id = :partId and q.createdBy.username = :username")
+    Page<QuestionSummary> findQuestionSummariesByPartAndCreatedBy(Pageable pageable, Long partId, String username);
+
+    @Query(value = QUESTION_SUMMARY + " where q.id > :lastId order by q.id")
+    List<QuestionSummary> findQuestionSummariesAfter(Long lastId, Pageable pageable);
+
+    @Query(value = QUESTION_SUMMARY + " where q.createdBy.username = :username and q.id > :lastId order by q.id")
+    List<QuestionSummary> findQuestionSummariesByCreatedByAfter(String username, Long lastId, Pageable pageable);
+
+    @Query(value = QUESTION_SUMMARY + " where q.part.id = :partId and q.id > :lastId order by q.id")
+    List<QuestionSummary> findQuestionSummariesByPartAfter(Long partId, Long lastId, Pageable pageable);
+
+    @Query(value = QUESTION_SUMMARY + " where q.part.id = :partId and q.createdBy.username = :username and q.id > :lastId order by q.id")
+    List<QuestionSummary> findQuestionSummariesByPartAndCreatedByAfter(Long partId, String username, Long lastId, Pageable pageable);
+
+    @Query(value = QUESTION_SUMMARY + " where q.id in :ids")
+    List<QuestionSummary> findQuestionSummariesByIdIn(Collection<Long> ids);
+
+    String QUESTION_SEARCH_DOCUMENT = "select new com.thanhtam.backend.dto.QuestionSearchDocument(q.id, q.questionText, p.id, c.id, t.typeCode, q.difficultyLevel, u.username, q.deleted) " +
+            "from Question q left join q.part p left join p.course c left join q.questionType t left join q.createdBy u";
+
+    @Query(value = QUESTION_SEARCH_DOCUMENT + " where q.id in :ids")
+    List<QuestionSearchDocument> findQuestionSearchDocumentsByIdIn(Collection<Long> ids);
+
+    @Query(value = QUESTION_SEARCH_DOCUMENT + " where q.id > :lastId order by q.id")
+    List<QuestionSearchDocument> findQuestionSearchDocumentsAfter(Long lastId, Pageable pageable);
+
+    @Query("select new com.thanhtam.backend.dto.QuestionChoiceText(q.id, c.id, c.choiceText) from Question q join q.choices c where q.id in :ids order by c.id")
+    List<QuestionChoiceText> findChoiceTextsByQuestionIdIn(Collection<Long> ids);
+
+    @Query("select distinct q.id from Question q join q.choices c where c.id in :choiceIds")
+    List<Long> findIdsByChoiceIdIn(Collection<Long> choiceIds);
 }
@@ -3,13 +3,21 @@ package com.thanhtam.backend.repository;
 import com.thanhtam.backend.entity.QuestionType;
 import com.thanhtam.backend.ultilities.EQTypeCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface QuestionTypeRepository extends JpaRepository<QuestionType, Long> {
     boolean existsById(Long id);
 
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<QuestionType> findAll();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<QuestionType> findAllByTypeCode(EQTypeCode typeCode);
 }
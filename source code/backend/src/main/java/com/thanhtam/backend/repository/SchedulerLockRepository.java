@@ -0,0 +1,30 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+//    Takes the lease only when it has expired, the row lock of the update lets a single node win
+    @Transactional
+    @Modifying
+    @Query("update SchedulerLock l set l.lockedUntil = :lockedUntil, l.lockedAt = :now, l.lockedBy = :lockedBy where l.name = :name and l.lockedUntil <= :now")
+    int acquire(String name, String lockedBy, Date now, Date lockedUntil);
+
+//    Extends the lease only while this node still holds it
+    @Transactional
+    @Modifying
+    @Query("update SchedulerLock l set l.lockedUntil = :lockedUntil where l.name = :name and l.lockedBy = :lockedBy and l.lockedUntil > :now")
+    int renew(String name, String lockedBy, Date now, Date lockedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("update SchedulerLock l set l.lockedUntil = :now where l.name = :name and l.lockedBy = :lockedBy")
+    int release(String name, String lockedBy, Date now);
+}
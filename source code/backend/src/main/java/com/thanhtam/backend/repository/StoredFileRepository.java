@@ -0,0 +1,26 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.StoredFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+    Optional<StoredFile> findByName(String name);
+
+//    Row lock held until the upload commits, two uploads under the same name replace it in turn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from StoredFile f where f.name = :name")
+    Optional<StoredFile> findForUpdate(String name);
+
+    List<StoredFile> findAllByOrderByNameAsc();
+
+    List<StoredFile> findByNameStartingWithAndNameGreaterThanOrderByNameAsc(String prefix, String name, Pageable pageable);
+}
@@ -2,6 +2,8 @@ package com.thanhtam.backend.repository;
 
 import com.sun.org.apache.xpath.internal.objects.XBoolean;
 import com.thanhtam.backend.dto.UserExport;
+import com.thanhtam.backend.dto.UserSearchDocument;
+import com.thanhtam.backend.dto.UserSummary;
 import com.thanhtam.backend.entity.Intake;
 import com.thanhtam.backend.entity.User;
 import org.springframework.data.domain.Page;
@@ -10,6 +12,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,8 +38,26 @@ public interface UserRepository extends JpaRepository<User, Long> {
     //    public Page<User> findUsersByDeletedAndUsernameIsContainingOrEmailIsContaining(boolean deleted, String username, String email, Pageable pageable);
     List<User> findAllByDeleted(boolean statusDeleted);
 
+    @Query("select u from User u where u.intake.id = :id")
     List<User> findAllByIntakeId(Long id);
     List<User> findByDeletedIsFalseOrderByCreatedDateDesc();
 
+    @Query(value = "select new com.thanhtam.backend.dto.UserSummary(u.id, u.username, u.email, u.deleted, u.createdDate, p.firstName, p.lastName, p.image) " +
+            "from User u left join u.profile p",
+            countQuery = "select count(u) from User u")
+    Page<UserSummary> findUserSummaries(Pageable pageable);
+
+    @Query(value = "select new com.thanhtam.backend.dto.UserSummary(u.id, u.username, u.email, u.deleted, u.createdDate, p.firstName, p.lastName, p.image) " +
+            "from User u left join u.profile p where u.id > :lastId order by u.id")
+    List<UserSummary> findUserSummariesAfter(Long lastId, Pageable pageable);
+
+    @Query("select new com.thanhtam.backend.dto.UserSummary(u.id, u.username, u.email, u.deleted, u.createdDate, p.firstName, p.lastName, p.image) " +
+            "from User u left join u.profile p where u.id in :ids")
+    List<UserSummary> findUserSummariesByIdIn(Collection<Long> ids);
+
+    @Query("select new com.thanhtam.backend.dto.UserSearchDocument(u.id, p.id, u.username, u.email, p.firstName, p.lastName) " +
+            "from User u left join u.profile p")
+    List<UserSearchDocument> findAllSearchDocuments();
+
 
 }
@@ -0,0 +1,33 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.dto.StoragePage;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage backends with a CompletableFuture API, the endpoints answer with DeferredResult and no request thread waits
+ * on storage I/O. A missing key fails with {@link java.nio.file.NoSuchFileException}, an invalid key with
+ * IllegalArgumentException. A full storage pool throws {@link java.util.concurrent.RejectedExecutionException} before
+ * the call starts.
+ */
+public interface AsyncStorageService {
+    /**
+     * Streams the content into the backend under the key, replacing an object with the same key. The content is read on
+     * the storage pool and closed once the future completes, so it must stay readable until then.
+     */
+    CompletableFuture<StorageObject> put(String key, InputStream content, long size, String contentType);
+
+    /**
+     * @return the object with its content open for reading, the caller closes it
+     */
+    CompletableFuture<StorageObject> get(String key);
+
+    CompletableFuture<Void> delete(String key);
+
+    /**
+     * @param continuationToken token of the previous page, null for the first one
+     */
+    CompletableFuture<StoragePage> list(String prefix, int pageSize, String continuationToken);
+}
@@ -1,5 +1,6 @@
 package com.thanhtam.backend.service;
 
+import com.thanhtam.backend.dto.CourseSummary;
 import com.thanhtam.backend.entity.Course;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +15,8 @@ public interface CourseService {
 
     Page<Course> getCourseListByPage(Pageable pageable);
 
+    Page<CourseSummary> getCourseSummariesByPage(Pageable pageable);
+
     void saveCourse(Course course);
 
     void delete(Long id);
@@ -22,6 +25,11 @@ public interface CourseService {
 
     boolean existsById(Long id);
 
+    /**
+     * True when the user wrote a question or an exam in one of the parts of the course
+     */
+    boolean isTaughtBy(Long courseId, String username);
+
     List<Course> findAllByIntakeId(Long intakeId);
     Course findCourseByPartId(Long partId);
 
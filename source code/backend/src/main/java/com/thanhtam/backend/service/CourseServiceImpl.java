@@ -1,5 +1,6 @@
 package com.thanhtam.backend.service;
 
+import com.thanhtam.backend.dto.CourseSummary;
 import com.thanhtam.backend.entity.Course;
 import com.thanhtam.backend.repository.CourseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +36,11 @@ public class CourseServiceImpl implements CourseService {
         return courseRepository.findAll(pageable);
     }
 
+    @Override
+    public Page<CourseSummary> getCourseSummariesByPage(Pageable pageable) {
+        return courseRepository.findCourseSummaries(pageable);
+    }
+
     @Override
     public void saveCourse(Course course) {
         courseRepository.save(course);
@@ -55,6 +61,11 @@ public class CourseServiceImpl implements CourseService {
         return courseRepository.existsById(id);
     }
 
+    @Override
+    public boolean isTaughtBy(Long courseId, String username) {
+        return courseRepository.isTaughtBy(courseId, username);
+    }
+
     @Override
     public List<Course> findAllByIntakeId(Long intakeId) {
         return courseRepository.findAllByIntakeId(intakeId);
@@ -0,0 +1,27 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.ExamUser;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+public interface ExamArchiveService {
+    void archiveFinishedExams();
+
+    /**
+     * Moves the answer sheets of finished exam users of exams that ended before the date to the archive
+     * and returns how many rows were archived
+     */
+    int archiveFinishedBefore(Date finishedBefore);
+
+    /**
+     * Answer sheet json of the exam user, read from the archive when it has been moved there
+     */
+    String getAnswerSheet(ExamUser examUser);
+
+    /**
+     * Archived answer sheet json by exam user id, ids without an archived sheet are left out
+     */
+    Map<Long, String> getArchivedAnswerSheets(Collection<Long> examUserIds);
+}
@@ -0,0 +1,164 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.base.Strings;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.entity.ExamUserArchive;
+import com.thanhtam.backend.repository.ExamUserArchiveRepository;
+import com.thanhtam.backend.repository.ExamUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps exam_user small. Once an exam has been over for the configured number of days, the answer sheets of its
+ * finished users are gzipped into exam_user_archive in batches and the exam_user row keeps the times and total point.
+ * Results read the sheet back from the archive when it is opened. The nightly run happens on one node under the
+ * exam-archive lease.
+ */
+@Service
+public class ExamArchiveServiceImpl implements ExamArchiveService {
+    static final String LOCK_NAME = "exam-archive";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExamArchiveServiceImpl.class);
+    private ExamUserRepository examUserRepository;
+    private ExamUserArchiveRepository examUserArchiveRepository;
+    private SchedulerLockService schedulerLockService;
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${isc.exam-archive.age-days:180}")
+    private long ageDays;
+
+    @Value("${isc.exam-archive.batch-size:200}")
+    private int batchSize;
+
+    @Value("${isc.exam-archive.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Autowired
+    public ExamArchiveServiceImpl(ExamUserRepository examUserRepository, ExamUserArchiveRepository examUserArchiveRepository, SchedulerLockService schedulerLockService, PlatformTransactionManager transactionManager) {
+        this.examUserRepository = examUserRepository;
+        this.examUserArchiveRepository = examUserArchiveRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    @Scheduled(cron = "${isc.exam-archive.cron:0 0 3 * * *}")
+    public void archiveFinishedExams() {
+        if (!schedulerLockService.tryLock(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return;
+        }
+        try {
+            Date finishedBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ageDays));
+            int archived = archiveFinishedBefore(finishedBefore);
+            if (archived > 0) {
+                LOGGER.info("Archived " + archived + " answer sheets of exams finished before " + finishedBefore);
+            }
+        } finally {
+            schedulerLockService.unlock(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int archiveFinishedBefore(Date finishedBefore) {
+        int archived = 0;
+        Long lastId = 0L;
+        List<Long> ids;
+        do {
+            ids = examUserRepository.findArchivableIds(finishedBefore, lastId, PageRequest.of(0, batchSize));
+            if (!ids.isEmpty()) {
+                List<Long> batch = ids;
+//                One transaction per batch, a failure keeps the batches archived before it
+                archived += transactionTemplate.execute(status -> archiveBatch(batch));
+                lastId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == batchSize && renewLease());
+        return archived;
+    }
+
+    /**
+     * Extends the lease between batches, the run stops once another node took it over
+     */
+    private boolean renewLease() {
+        if (schedulerLockService.renew(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return true;
+        }
+        LOGGER.warn("Lost the " + LOCK_NAME + " lease, archiving stops here");
+        return false;
+    }
+
+    private int archiveBatch(List<Long> ids) {
+        Date now = new Date();
+        List<ExamUser> examUsers = examUserRepository.findAllById(ids);
+        List<ExamUserArchive> archives = new ArrayList<>();
+        for (ExamUser examUser : examUsers) {
+            if (!Strings.isNullOrEmpty(examUser.getAnswerSheet())) {
+                archives.add(new ExamUserArchive(examUser.getId(), compress(examUser.getAnswerSheet()), now));
+            }
+            examUser.setAnswerSheet(null);
+            examUser.setIsArchived(true);
+        }
+        examUserArchiveRepository.saveAll(archives);
+        examUserRepository.saveAll(examUsers);
+        return examUsers.size();
+    }
+
+    @Override
+    public String getAnswerSheet(ExamUser examUser) {
+        if (!Boolean.TRUE.equals(examUser.getIsArchived())) {
+            return examUser.getAnswerSheet();
+        }
+        return examUserArchiveRepository.findById(examUser.getId())
+                .map(archive -> decompress(archive.getAnswerSheet()))
+                .orElse(null);
+    }
+
+    @Override
+    public Map<Long, String> getArchivedAnswerSheets(Collection<Long> examUserIds) {
+        Map<Long, String> answerSheets = new HashMap<>();
+        if (!examUserIds.isEmpty()) {
+            examUserArchiveRepository.findAllById(examUserIds)
+                    .forEach(archive -> answerSheets.put(archive.getExamUserId(), decompress(archive.getAnswerSheet())));
+        }
+        return answerSheets;
+    }
+
+    private byte[] compress(String answerSheet) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(bytes)) {
+            outputStream.write(answerSheet.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private String decompress(byte[] answerSheet) {
+        if (answerSheet == null) {
+            return null;
+        }
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(answerSheet))) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.entity.Exam;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface ExamGradingService {
+    ExamAnswerKey getAnswerKey(Exam exam) throws IOException;
+
+    void evictAnswerKey(Long examId);
+
+    List<AnswerSheet> convertAnswerSheet(String answerSheetJson) throws IOException;
+
+    boolean isSelectedCorrected(ExamAnswerKey answerKey, AnswerSheet answerSheet);
+
+    Double getTotalPoint(ExamAnswerKey answerKey, List<AnswerSheet> answerSheets);
+}
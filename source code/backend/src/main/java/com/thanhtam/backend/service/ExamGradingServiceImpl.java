@@ -0,0 +1,141 @@
+package com.thanhtam.backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.entity.Question;
+import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grades answer sheets against an answer key cached per exam. The rules are the same as
+ * {@link ExamServiceImpl#getChoiceList}, but choices are looked up in memory instead of one query per choice.
+ */
+@Service
+public class ExamGradingServiceImpl implements ExamGradingService {
+    private QuestionRepository questionRepository;
+    private ObjectReader answerSheetReader;
+    private ObjectReader questionPointReader;
+    private final Cache<Long, ExamAnswerKey> answerKeys = CacheBuilder.newBuilder()
+            .maximumSize(200)
+            .expireAfterWrite(30, TimeUnit.MINUTES)
+            .build();
+
+    @Autowired
+    public ExamGradingServiceImpl(QuestionRepository questionRepository, ObjectMapper mapper) {
+        this.questionRepository = questionRepository;
+        this.answerSheetReader = mapper.readerFor(new TypeReference<List<AnswerSheet>>() {
+        });
+        this.questionPointReader = mapper.readerFor(new TypeReference<List<ExamQuestionPoint>>() {
+        });
+    }
+
+    @Override
+    public ExamAnswerKey getAnswerKey(Exam exam) throws IOException {
+        try {
+            return answerKeys.get(exam.getId(), () -> loadAnswerKey(exam));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void evictAnswerKey(Long examId) {
+        answerKeys.invalidate(examId);
+    }
+
+    @Override
+    public List<AnswerSheet> convertAnswerSheet(String answerSheetJson) throws IOException {
+        if (Strings.isNullOrEmpty(answerSheetJson)) {
+            return Collections.emptyList();
+        }
+        return answerSheetReader.readValue(answerSheetJson);
+    }
+
+    @Override
+    public boolean isSelectedCorrected(ExamAnswerKey answerKey, AnswerSheet answerSheet) {
+        EQTypeCode typeCode = answerKey.getQuestionTypes().get(answerSheet.getQuestionId());
+        List<Choice> choices = answerSheet.getChoices() == null ? Collections.emptyList() : answerSheet.getChoices();
+        if (typeCode == null) {
+            return false;
+        }
+        switch (typeCode) {
+            case TF: {
+                boolean isSelectedCorrected = false;
+                for (Choice choice : choices) {
+                    String choiceText = answerKey.getChoiceTexts().get(choice.getId());
+                    isSelectedCorrected = choice.getChoiceText() != null && choice.getChoiceText().equals(choiceText);
+                }
+                return isSelectedCorrected;
+            }
+            case MC: {
+                for (Choice choice : choices) {
+                    Integer isRealCorrect = answerKey.getChoiceCorrects().get(choice.getId());
+                    if (isRealCorrect != null && isRealCorrect == 1 && choice.getIsCorrected() == 1) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case MS: {
+                for (Choice choice : choices) {
+                    Integer isRealCorrect = answerKey.getChoiceCorrects().get(choice.getId());
+                    if (choice.getIsCorrected() == 0 && isRealCorrect != null && isRealCorrect == 1) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public Double getTotalPoint(ExamAnswerKey answerKey, List<AnswerSheet> answerSheets) {
+        Double totalPoint = 0.0;
+        for (AnswerSheet answerSheet : answerSheets) {
+            if (answerSheet.getPoint() != null && isSelectedCorrected(answerKey, answerSheet)) {
+                totalPoint += answerSheet.getPoint();
+            }
+        }
+        return totalPoint;
+    }
+
+    private ExamAnswerKey loadAnswerKey(Exam exam) throws IOException {
+        List<ExamQuestionPoint> examQuestionPoints = Strings.isNullOrEmpty(exam.getQuestionData())
+                ? Collections.emptyList() : questionPointReader.readValue(exam.getQuestionData());
+        List<Long> questionIds = new ArrayList<>();
+        examQuestionPoints.forEach(examQuestionPoint -> questionIds.add(examQuestionPoint.getQuestionId()));
+
+        Map<Long, EQTypeCode> questionTypes = new HashMap<>();
+        Map<Long, Integer> choiceCorrects = new HashMap<>();
+        Map<Long, String> choiceTexts = new HashMap<>();
+        for (Question question : questionRepository.findAllById(questionIds)) {
+            questionTypes.put(question.getId(), question.getQuestionType().getTypeCode());
+            question.getChoices().forEach(choice -> {
+                choiceCorrects.put(choice.getId(), choice.getIsCorrected());
+                choiceTexts.put(choice.getId(), choice.getChoiceText());
+            });
+        }
+        return new ExamAnswerKey(exam.getId(), questionIds, questionTypes, choiceCorrects, choiceTexts);
+    }
+}
@@ -0,0 +1,24 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.ExamUser;
+
+import java.util.Date;
+
+public interface ExamGradingSweepService {
+    void sweepExpiredAttempts();
+
+    /**
+     * Finishes the started attempts whose deadline passed before the date and returns how many were finished
+     */
+    int submitExpired(Date now);
+
+    /**
+     * Persists the total point of finished attempts that are not graded yet and returns how many were graded
+     */
+    int gradeSubmitted();
+
+    /**
+     * The deadline and its grace period have passed, the sweep finishes the attempt and answers are no longer saved
+     */
+    boolean isPastDeadline(ExamUser examUser, Date now);
+}
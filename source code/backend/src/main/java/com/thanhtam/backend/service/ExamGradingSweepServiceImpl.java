@@ -0,0 +1,183 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.repository.ExamUserRepository;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Finishes the attempts left open past the end of the exam or their duration and grades every finished attempt, so the
+ * result endpoints only read. Runs on one node at a time under the exam-grading lease.
+ */
+@Service
+public class ExamGradingSweepServiceImpl implements ExamGradingSweepService {
+    static final String LOCK_NAME = "exam-grading";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExamGradingSweepServiceImpl.class);
+    private ExamUserRepository examUserRepository;
+    private ExamGradingService examGradingService;
+    private ExamArchiveService examArchiveService;
+    private ExamProgressService examProgressService;
+    private SchedulerLockService schedulerLockService;
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${isc.exam-grading.batch-size:200}")
+    private int batchSize;
+
+    @Value("${isc.exam-grading.grace-seconds:60}")
+    private long graceSeconds;
+
+    @Value("${isc.exam-grading.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Autowired
+    public ExamGradingSweepServiceImpl(ExamUserRepository examUserRepository, ExamGradingService examGradingService, ExamArchiveService examArchiveService, ExamProgressService examProgressService, SchedulerLockService schedulerLockService, PlatformTransactionManager transactionManager) {
+        this.examUserRepository = examUserRepository;
+        this.examGradingService = examGradingService;
+        this.examArchiveService = examArchiveService;
+        this.examProgressService = examProgressService;
+        this.schedulerLockService = schedulerLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${isc.exam-grading.interval-ms:60000}")
+    public void sweepExpiredAttempts() {
+        if (!schedulerLockService.tryLock(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return;
+        }
+        try {
+            int submitted = submitExpired(new Date());
+            int graded = gradeSubmitted();
+            if (submitted > 0 || graded > 0) {
+                LOGGER.info("Submitted " + submitted + " expired attempts and graded " + graded + " attempts");
+            }
+        } finally {
+            schedulerLockService.unlock(LOCK_NAME);
+        }
+    }
+
+    @Override
+    public int submitExpired(Date now) {
+        int submitted = 0;
+        Long lastId = 0L;
+        List<ExamUser> examUsers;
+        do {
+            examUsers = examUserRepository.findUnfinishedAfter(lastId, PageRequest.of(0, batchSize));
+            List<ExamUser> expired = examUsers.stream()
+                    .filter(examUser -> isPastDeadline(examUser, now))
+                    .collect(Collectors.toList());
+            if (!expired.isEmpty()) {
+                List<ExamUser> finished = transactionTemplate.execute(status -> submitBatch(expired));
+                finished.forEach(examUser -> examProgressService.publish(EExamProgressEvent.SUBMITTED, examUser, null));
+                submitted += finished.size();
+            }
+            if (!examUsers.isEmpty()) {
+                lastId = examUsers.get(examUsers.size() - 1).getId();
+            }
+        } while (examUsers.size() == batchSize && renewLease());
+        return submitted;
+    }
+
+    @Override
+    public int gradeSubmitted() {
+        int graded = 0;
+        Long lastId = 0L;
+        List<Long> ids;
+        do {
+            ids = examUserRepository.findUngradedIds(lastId, PageRequest.of(0, batchSize));
+            if (!ids.isEmpty()) {
+                List<Long> batch = ids;
+                List<ExamUser> gradedExamUsers = transactionTemplate.execute(status -> gradeBatch(batch));
+                gradedExamUsers.forEach(examUser -> examProgressService.publish(EExamProgressEvent.GRADED, examUser, null));
+                graded += gradedExamUsers.size();
+                lastId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == batchSize && renewLease());
+        return graded;
+    }
+
+    @Override
+    public boolean isPastDeadline(ExamUser examUser, Date now) {
+        return getDeadline(examUser).getTime() < now.getTime() - TimeUnit.SECONDS.toMillis(graceSeconds);
+    }
+
+    /**
+     * Extends the lease between batches so a long sweep keeps it, the sweep stops once another node took it over
+     */
+    private boolean renewLease() {
+        if (schedulerLockService.renew(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return true;
+        }
+        LOGGER.warn("Lost the " + LOCK_NAME + " lease, the sweep stops here");
+        return false;
+    }
+
+    /**
+     * End of the exam, or the end of the duration counted from the start when that comes first
+     */
+    static Date getDeadline(ExamUser examUser) {
+        Exam exam = examUser.getExam();
+        Date deadline = exam.getFinishExam();
+        if (examUser.getTimeStart() != null && exam.getDurationExam() > 0) {
+            Date durationEnd = new Date(examUser.getTimeStart().getTime() + TimeUnit.MINUTES.toMillis(exam.getDurationExam()));
+            if (deadline == null || durationEnd.before(deadline)) {
+                deadline = durationEnd;
+            }
+        }
+        return deadline == null ? new Date(Long.MAX_VALUE) : deadline;
+    }
+
+    /**
+     * Conditional updates that never write the answer sheet, an attempt submitted meanwhile keeps its own answers and
+     * finish time. The saved answer sheet is the last one autosaved before the deadline and its grace period.
+     */
+    private List<ExamUser> submitBatch(List<ExamUser> expired) {
+        List<ExamUser> finished = new ArrayList<>();
+        for (ExamUser examUser : expired) {
+            Date deadline = getDeadline(examUser);
+            if (examUserRepository.finishIfUnfinished(examUser.getId(), deadline) == 1) {
+                examUser.setIsFinished(true);
+                examUser.setTimeFinish(deadline);
+                examUser.setRemainingTime(0);
+                finished.add(examUser);
+            }
+        }
+        return finished;
+    }
+
+    private List<ExamUser> gradeBatch(List<Long> ids) {
+        List<ExamUser> graded = new ArrayList<>();
+        for (ExamUser examUser : examUserRepository.findAllById(ids)) {
+            if (examUser.getTotalPoint() != null && examUser.getTotalPoint() != -1) {
+                continue;
+            }
+            try {
+                ExamAnswerKey answerKey = examGradingService.getAnswerKey(examUser.getExam());
+                List<AnswerSheet> answerSheets = examGradingService.convertAnswerSheet(examArchiveService.getAnswerSheet(examUser));
+                examUser.setTotalPoint(examGradingService.getTotalPoint(answerKey, answerSheets));
+                graded.add(examUser);
+            } catch (IOException | RuntimeException e) {
+//                Left ungraded, the next sweep tries it again
+                LOGGER.error("Could not grade exam user " + examUser.getId() + ": " + e.getMessage());
+            }
+        }
+        examUserRepository.saveAll(graded);
+        return graded;
+    }
+}
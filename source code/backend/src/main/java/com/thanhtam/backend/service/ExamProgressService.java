@@ -0,0 +1,23 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface ExamProgressService {
+    /**
+     * Stream of the exam's progress events, starting with a snapshot of every exam user
+     */
+    SseEmitter subscribe(Long examId);
+
+    /**
+     * Fans the event out to the exam's subscribers without waiting for them, answerSheets may be null when unknown.
+     * Inside a transaction the event is sent after the commit and dropped on rollback
+     */
+    void publish(EExamProgressEvent type, ExamUser examUser, List<AnswerSheet> answerSheets);
+
+    int getSubscriberCount(Long examId);
+}
@@ -0,0 +1,276 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamProgressEvent;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process fan-out of exam progress to lecturers watching an exam, so monitoring costs one event per change instead of
+ * a results poll per student. Publishers only offer the event to each subscriber's bounded buffer, the sends happen on the
+ * exam progress pool. A subscriber whose buffer overflows is dropped and its stream completed, the client reconnects
+ * and catches up from the snapshot sent on connect.
+ * Events published inside a transaction are held until it commits, a rolled back change is never announced and a
+ * snapshot read on connect cannot miss a change whose event was already sent.
+ */
+@Service
+public class ExamProgressServiceImpl implements ExamProgressService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExamProgressServiceImpl.class);
+    private ExamUserService examUserService;
+    private ExamArchiveService examArchiveService;
+    private ExamGradingService examGradingService;
+    private ExecutorService examProgressExecutor;
+    private final ConcurrentMap<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    @Value("${isc.exam-progress.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${isc.exam-progress.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Autowired
+    public ExamProgressServiceImpl(ExamUserService examUserService, ExamArchiveService examArchiveService, ExamGradingService examGradingService, @Qualifier("examProgressExecutor") ExecutorService examProgressExecutor) {
+        this.examUserService = examUserService;
+        this.examArchiveService = examArchiveService;
+        this.examGradingService = examGradingService;
+        this.examProgressExecutor = examProgressExecutor;
+    }
+
+    @Override
+    public SseEmitter subscribe(Long examId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(examId, emitter, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+//        Registered before the snapshot is read so no change is missed, the events buffered meanwhile follow the snapshot
+        subscribers.compute(examId, (id, examSubscribers) -> {
+            List<Subscriber> list = examSubscribers == null ? new CopyOnWriteArrayList<>() : examSubscribers;
+            list.add(subscriber);
+            return list;
+        });
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(getSnapshot(examId)));
+        } catch (IOException | RuntimeException e) {
+            remove(subscriber);
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscriber.ready = true;
+        schedule(subscriber);
+        return emitter;
+    }
+
+    @Override
+    public void publish(EExamProgressEvent type, ExamUser examUser, List<AnswerSheet> answerSheets) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Subscriber> examSubscribers = subscribers.get(examUser.getExam().getId());
+            if (examSubscribers != null && !examSubscribers.isEmpty()) {
+                offer(examSubscribers, getEvent(type, examUser, answerSheets));
+            }
+            return;
+        }
+//        Built now while the exam user can still load lazily, offered to whoever subscribes until the commit
+        ExamProgressEvent event = getEvent(type, examUser, answerSheets);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                List<Subscriber> examSubscribers = subscribers.get(event.getExamId());
+                if (examSubscribers != null) {
+                    offer(examSubscribers, event);
+                }
+            }
+        });
+    }
+
+    private void offer(List<Subscriber> examSubscribers, ExamProgressEvent event) {
+        for (Subscriber subscriber : examSubscribers) {
+            if (subscriber.buffer.offer(event)) {
+                schedule(subscriber);
+            } else {
+                drop(subscriber, "its buffer of " + bufferSize + " events is full");
+            }
+        }
+    }
+
+    @Override
+    public int getSubscriberCount(Long examId) {
+        List<Subscriber> examSubscribers = subscribers.get(examId);
+        return examSubscribers == null ? 0 : examSubscribers.size();
+    }
+
+    /**
+     * Comment lines keep idle streams open through proxies and find the clients that went away
+     */
+    @Scheduled(fixedDelayString = "${isc.exam-progress.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(examSubscribers -> examSubscribers.forEach(subscriber -> {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        }));
+    }
+
+    private List<ExamProgressEvent> getSnapshot(Long examId) {
+        List<ExamProgressEvent> snapshot = new ArrayList<>();
+        for (ExamUser examUser : examUserService.findAllByExam_Id(examId)) {
+            EExamProgressEvent type;
+            if (!Boolean.TRUE.equals(examUser.getIsStarted())) {
+                type = EExamProgressEvent.NOT_STARTED;
+            } else if (!Boolean.TRUE.equals(examUser.getIsFinished())) {
+                type = EExamProgressEvent.PROGRESS;
+            } else if (examUser.getTotalPoint() == null || examUser.getTotalPoint() == -1) {
+                type = EExamProgressEvent.SUBMITTED;
+            } else {
+                type = EExamProgressEvent.GRADED;
+            }
+            List<AnswerSheet> answerSheets = null;
+            if (type != EExamProgressEvent.NOT_STARTED) {
+                try {
+                    answerSheets = examGradingService.convertAnswerSheet(examArchiveService.getAnswerSheet(examUser));
+                } catch (IOException e) {
+                    LOGGER.error("Could not read the answer sheet of exam user " + examUser.getId() + ": " + e.getMessage());
+                }
+            }
+            ExamProgressEvent event = getEvent(type, examUser, answerSheets);
+            event.setTime(examUser.getTimeFinish() != null ? examUser.getTimeFinish() : examUser.getTimeStart());
+            snapshot.add(event);
+        }
+        return snapshot;
+    }
+
+    private ExamProgressEvent getEvent(EExamProgressEvent type, ExamUser examUser, List<AnswerSheet> answerSheets) {
+        ExamProgressEvent event = new ExamProgressEvent();
+        event.setType(type);
+        event.setExamId(examUser.getExam().getId());
+        event.setUsername(examUser.getUser().getUsername());
+        if (answerSheets != null) {
+            event.setQuestionCount(answerSheets.size());
+            event.setAnsweredCount(getAnsweredCount(answerSheets));
+        }
+        if (type == EExamProgressEvent.GRADED) {
+            event.setTotalPoint(examUser.getTotalPoint());
+        }
+        event.setTime(new Date());
+        return event;
+    }
+
+    /**
+     * Questions with at least one choice selected
+     */
+    static int getAnsweredCount(List<AnswerSheet> answerSheets) {
+        int answeredCount = 0;
+        for (AnswerSheet answerSheet : answerSheets) {
+            if (answerSheet.getChoices() == null) {
+                continue;
+            }
+            for (Choice choice : answerSheet.getChoices()) {
+                if (choice.getIsCorrected() == 1) {
+                    answeredCount++;
+                    break;
+                }
+            }
+        }
+        return answeredCount;
+    }
+
+    /**
+     * Queues at most one send task per subscriber, the task drains the buffer in order
+     */
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.ready || !subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            examProgressExecutor.execute(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.sending.set(false);
+            if (subscriber.dropped) {
+                subscriber.emitter.complete();
+            } else {
+                drop(subscriber, "the exam progress pool is full");
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            if (subscriber.dropped) {
+                subscriber.closed = true;
+                subscriber.emitter.complete();
+                return;
+            }
+            ExamProgressEvent event;
+            while ((event = subscriber.buffer.poll()) != null) {
+                subscriber.emitter.send(SseEmitter.event().name(event.getType().name().toLowerCase()).data(event));
+            }
+            if (subscriber.heartbeatDue) {
+                subscriber.heartbeatDue = false;
+                subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+            }
+        } catch (IOException | IllegalStateException e) {
+//            The client went away, the container completes the stream
+            remove(subscriber);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not send exam progress of exam " + subscriber.examId + ": " + e.getMessage(), e);
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.sending.set(false);
+        }
+//        Events offered after the last poll but before the flag was cleared
+        if (subscriber.dropped ? !subscriber.closed : !subscriber.buffer.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber, String reason) {
+        if (remove(subscriber)) {
+            LOGGER.warn("Dropped a progress subscriber of exam " + subscriber.examId + ", " + reason);
+            subscriber.dropped = true;
+            subscriber.buffer.clear();
+            schedule(subscriber);
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        List<Subscriber> examSubscribers = subscribers.get(subscriber.examId);
+        if (examSubscribers == null || !examSubscribers.remove(subscriber)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.examId, (id, list) -> list.isEmpty() ? null : list);
+        return true;
+    }
+
+    private static class Subscriber {
+        private final Long examId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<ExamProgressEvent> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean ready;
+        private volatile boolean heartbeatDue;
+        private volatile boolean dropped;
+        private volatile boolean closed;
+
+        private Subscriber(Long examId, SseEmitter emitter, int bufferSize) {
+            this.examId = examId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
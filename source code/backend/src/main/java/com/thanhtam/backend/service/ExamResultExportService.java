@@ -0,0 +1,13 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.Exam;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+public interface ExamResultExportService {
+    void exportCsv(Exam exam, Writer writer) throws IOException;
+
+    void exportXlsx(Exam exam, OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,188 @@
+package com.thanhtam.backend.service;
+
+import com.opencsv.CSVWriter;
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.dto.ExamResultRow;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.repository.ExamUserRepository;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Writes one row per exam user straight to the response. Rows are read by id in fixed-size chunks
+ * and graded in memory against the cached answer key, so memory does not grow with the intake size.
+ */
+@Service
+public class ExamResultExportServiceImpl implements ExamResultExportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExamResultExportServiceImpl.class);
+    private static final int CHUNK_SIZE = 500;
+    private static final int XLSX_ROW_WINDOW = 100;
+    private static final int TOTAL_POINT_COLUMN = 5;
+
+    private ExamUserRepository examUserRepository;
+    private ExamGradingService examGradingService;
+    private ExamArchiveService examArchiveService;
+
+    @Autowired
+    public ExamResultExportServiceImpl(ExamUserRepository examUserRepository, ExamGradingService examGradingService, ExamArchiveService examArchiveService) {
+        this.examUserRepository = examUserRepository;
+        this.examGradingService = examGradingService;
+        this.examArchiveService = examArchiveService;
+    }
+
+    @Override
+    public void exportCsv(Exam exam, Writer writer) throws IOException {
+        CSVWriter csvWriter = new CSVWriter(writer);
+        ExamAnswerKey answerKey = examGradingService.getAnswerKey(exam);
+        csvWriter.writeNext(getHeader(answerKey), false);
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Date now = new Date();
+
+        Long lastId = 0L;
+        List<ExamResultRow> rows;
+        do {
+            rows = examUserRepository.findResultRowsByExamId(exam.getId(), lastId, PageRequest.of(0, CHUNK_SIZE));
+            restoreArchivedAnswerSheets(rows);
+            for (ExamResultRow row : rows) {
+                csvWriter.writeNext(toColumns(exam, answerKey, row, dateFormat, now), false);
+                lastId = row.getId();
+            }
+            csvWriter.flush();
+        } while (rows.size() == CHUNK_SIZE);
+    }
+
+    @Override
+    public void exportXlsx(Exam exam, OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        try {
+            Sheet sheet = workbook.createSheet("Results");
+            ExamAnswerKey answerKey = examGradingService.getAnswerKey(exam);
+            writeRow(sheet.createRow(0), getHeader(answerKey), Integer.MAX_VALUE);
+            DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            Date now = new Date();
+
+            int rowNum = 1;
+            Long lastId = 0L;
+            List<ExamResultRow> rows;
+            do {
+                rows = examUserRepository.findResultRowsByExamId(exam.getId(), lastId, PageRequest.of(0, CHUNK_SIZE));
+                restoreArchivedAnswerSheets(rows);
+                for (ExamResultRow row : rows) {
+                    writeRow(sheet.createRow(rowNum++), toColumns(exam, answerKey, row, dateFormat, now), TOTAL_POINT_COLUMN);
+                    lastId = row.getId();
+                }
+            } while (rows.size() == CHUNK_SIZE);
+            workbook.write(outputStream);
+        } finally {
+//            Remove temporary files backing the flushed rows
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Puts the answer sheets of archived rows back, read from the archive in one query per chunk
+     */
+    private void restoreArchivedAnswerSheets(List<ExamResultRow> rows) {
+        List<Long> archivedIds = new ArrayList<>();
+        rows.forEach(row -> {
+            if (Boolean.TRUE.equals(row.getIsArchived())) {
+                archivedIds.add(row.getId());
+            }
+        });
+        if (archivedIds.isEmpty()) {
+            return;
+        }
+        Map<Long, String> answerSheets = examArchiveService.getArchivedAnswerSheets(archivedIds);
+        rows.forEach(row -> {
+            if (Boolean.TRUE.equals(row.getIsArchived())) {
+                row.setAnswerSheet(answerSheets.get(row.getId()));
+            }
+        });
+    }
+
+    private String[] getHeader(ExamAnswerKey answerKey) {
+        List<String> header = new ArrayList<>(Arrays.asList("Username", "Name", "Time start", "Time finish", "Status", "Total point"));
+        for (int i = 0; i < answerKey.getQuestionIds().size(); i++) {
+            header.add("Q" + (i + 1));
+        }
+        return header.toArray(new String[0]);
+    }
+
+    private String[] toColumns(Exam exam, ExamAnswerKey answerKey, ExamResultRow row, DateFormat dateFormat, Date now) {
+        List<AnswerSheet> answerSheets;
+        try {
+            answerSheets = examGradingService.convertAnswerSheet(row.getAnswerSheet());
+        } catch (IOException e) {
+            LOGGER.error("Could not read answer sheet of exam user " + row.getId() + ": " + e.getMessage());
+            answerSheets = Collections.emptyList();
+        }
+        Map<Long, AnswerSheet> answerSheetMap = new HashMap<>();
+        answerSheets.forEach(answerSheet -> answerSheetMap.put(answerSheet.getQuestionId(), answerSheet));
+
+        List<String> columns = new ArrayList<>();
+        columns.add(row.getUsername());
+        columns.add(getFullName(row));
+        columns.add(row.getTimeStart() == null ? "" : dateFormat.format(row.getTimeStart()));
+        columns.add(row.getTimeFinish() == null ? "" : dateFormat.format(row.getTimeFinish()));
+        columns.add(getStatus(exam, row, now));
+        columns.add(answerSheets.isEmpty() ? "" : String.valueOf(examGradingService.getTotalPoint(answerKey, answerSheets)));
+        for (Long questionId : answerKey.getQuestionIds()) {
+            AnswerSheet answerSheet = answerSheetMap.get(questionId);
+            if (answerSheet == null) {
+                columns.add("");
+            } else if (answerSheet.getPoint() != null && examGradingService.isSelectedCorrected(answerKey, answerSheet)) {
+                columns.add(String.valueOf(answerSheet.getPoint()));
+            } else {
+                columns.add("0");
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    private String getFullName(ExamResultRow row) {
+        String lastName = row.getLastName() == null ? "" : row.getLastName();
+        String firstName = row.getFirstName() == null ? "" : row.getFirstName();
+        return (lastName + " " + firstName).trim();
+    }
+
+    //    Same status rules as the exam result list
+    private String getStatus(Exam exam, ExamResultRow row, Date now) {
+        boolean isStarted = Boolean.TRUE.equals(row.getIsStarted());
+        if (exam.getFinishExam().compareTo(now) < 0 && !isStarted) {
+            return "Missed";
+        } else if (!isStarted && exam.getFinishExam().compareTo(now) > 0) {
+            return "Not yet started";
+        } else if (Boolean.TRUE.equals(row.getIsFinished())) {
+            return "Completed";
+        }
+        return "Doing";
+    }
+
+    //    Columns from numericFrom onwards are points and are written as numbers
+    private void writeRow(Row row, String[] columns, int numericFrom) {
+        for (int i = 0; i < columns.length; i++) {
+            Cell cell = row.createCell(i);
+            if (i >= numericFrom && !columns[i].isEmpty()) {
+                cell.setCellValue(Double.parseDouble(columns[i]));
+            } else {
+                cell.setCellValue(columns[i]);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.thanhtam.backend.service;
 import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ChoiceList;
 import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.dto.ExamSummary;
 import com.thanhtam.backend.entity.Exam;
 import com.thanhtam.backend.entity.User;
 import org.springframework.data.domain.Page;
@@ -25,5 +26,14 @@ public interface ExamService {
 
     Page<Exam> findAllByCreatedBy_Username(Pageable pageable, String username);
 
+    Page<ExamSummary> findExamSummaries(Pageable pageable);
+
+    Page<ExamSummary> findExamSummariesByCreatedBy(Pageable pageable, String username);
+
+    /**
+     * Exams with an id greater than lastId in id order, at most limit rows, filtered by creator unless username is null
+     */
+    List<ExamSummary> findExamSummariesAfter(String username, Long lastId, int limit);
+
     List<ChoiceList> getChoiceList(List<AnswerSheet> userChoices, List<ExamQuestionPoint> examQuestionPoints);
 }
@@ -4,6 +4,7 @@ import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ChoiceCorrect;
 import com.thanhtam.backend.dto.ChoiceList;
 import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.dto.ExamSummary;
 import com.thanhtam.backend.entity.Exam;
 import com.thanhtam.backend.entity.Question;
 import com.thanhtam.backend.repository.ExamRepository;
@@ -11,6 +12,7 @@ import com.thanhtam.backend.repository.IntakeRepository;
 import com.thanhtam.backend.ultilities.EQTypeCode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -73,6 +75,23 @@ public class ExamServiceImpl implements ExamService {
         return examRepository.findAllByCreatedBy_Username(pageable, username);
     }
 
+    @Override
+    public Page<ExamSummary> findExamSummaries(Pageable pageable) {
+        return examRepository.findExamSummaries(pageable);
+    }
+
+    @Override
+    public Page<ExamSummary> findExamSummariesByCreatedBy(Pageable pageable, String username) {
+        return examRepository.findExamSummariesByCreatedBy(pageable, username);
+    }
+
+    @Override
+    public List<ExamSummary> findExamSummariesAfter(String username, Long lastId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        return username == null ? examRepository.findExamSummariesAfter(lastId, pageable)
+                : examRepository.findExamSummariesByCreatedByAfter(username, lastId, pageable);
+    }
+
 
     @Override
     public List<ChoiceList> getChoiceList(List<AnswerSheet> userChoices, List<ExamQuestionPoint> examQuestionPoints) {
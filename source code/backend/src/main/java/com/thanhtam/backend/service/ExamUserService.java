@@ -12,6 +12,11 @@ public interface ExamUserService {
     void create(Exam exam, List<User> userSet);
     List<ExamUser> getExamListByUsername(String username);
     ExamUser findByExamAndUser(Long examId, String username);
+
+    /**
+     * Locks the row until the caller's transaction ends
+     */
+    ExamUser findByExamAndUserForUpdate(Long examId, String username);
     void update(ExamUser examUser);
     Optional<ExamUser> findExamUserById(Long id);
 
@@ -19,5 +24,10 @@ public interface ExamUserService {
     List<ExamUser> findAllByExam_Id(Long examId);
     List<ExamUser> findExamUsersByIsFinishedIsTrueAndExam_Id(Long examId);
 
+    /**
+     * Users of the exam with an id greater than lastId in id order, at most limit rows
+     */
+    List<ExamUser> findExamUsersAfter(Long examId, Long lastId, int limit);
+
 
 }
@@ -6,6 +6,7 @@ import com.thanhtam.backend.entity.User;
 import com.thanhtam.backend.repository.ExamRepository;
 import com.thanhtam.backend.repository.ExamUserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -48,6 +49,11 @@ public class ExamUserServiceImpl implements ExamUserService {
         return examUserRepository.findByExam_IdAndUser_Username(examId, username);
     }
 
+    @Override
+    public ExamUser findByExamAndUserForUpdate(Long examId, String username) {
+        return examUserRepository.findForUpdate(examId, username);
+    }
+
     @Override
     public void update(ExamUser examUser) {
         examUserRepository.save(examUser);
@@ -70,6 +76,11 @@ public class ExamUserServiceImpl implements ExamUserService {
         return examUserRepository.findAllByExam_Id(examId);
     }
 
+    @Override
+    public List<ExamUser> findExamUsersAfter(Long examId, Long lastId, int limit) {
+        return examUserRepository.findAllByExam_IdAndIdGreaterThanOrderByIdAsc(examId, lastId, PageRequest.of(0, limit));
+    }
+
     @Override
     public List<ExamUser> findExamUsersByIsFinishedIsTrueAndExam_Id(Long examId) {
         return examUserRepository.findExamUsersByIsFinishedIsTrueAndExam_Id(examId);
@@ -7,10 +7,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ExcelService {
     List<User> readUserFromExcelFile(String excelFilePath) throws IOException;
 
+    void readUserFromExcelFile(String excelFilePath, Consumer<User> consumer) throws IOException;
+
     void writeUserToExcelFile(ArrayList<UserExport> userExports) throws IOException;
     void InsertUserToDB(List<User> userList);
 }
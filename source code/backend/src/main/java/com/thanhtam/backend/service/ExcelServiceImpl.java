@@ -20,6 +20,7 @@ import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class ExcelServiceImpl implements ExcelService {
@@ -43,10 +44,20 @@ public class ExcelServiceImpl implements ExcelService {
     @Override
     public List<User> readUserFromExcelFile(String excelFilePath) throws IOException {
         List<User> userList = new ArrayList<>();
-        FileInputStream inputStream = new FileInputStream(new File(excelFilePath));
+        readUserFromExcelFile(excelFilePath, userList::add);
+        LOGGER.error("List user: " + userList.toString());
+        return userList;
+    }
+
+    @Override
+    public void readUserFromExcelFile(String excelFilePath, Consumer<User> consumer) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(new File(excelFilePath));
+             Workbook workBook = getWorkbook(inputStream, excelFilePath)) {
+            readUserFromSheet(workBook.getSheetAt(0), consumer);
+        }
+    }
 
-        Workbook workBook = getWorkbook(inputStream, excelFilePath);
-        Sheet firstSheet = workBook.getSheetAt(0);
+    private void readUserFromSheet(Sheet firstSheet, Consumer<User> consumer) {
         LOGGER.info(firstSheet.getSheetName());
         Iterator<Row> rows = firstSheet.iterator();
 
@@ -124,13 +135,8 @@ public class ExcelServiceImpl implements ExcelService {
 
             }
 
-            userList.add(user);
+            consumer.accept(user);
         }
-
-        workBook.close();
-        inputStream.close();
-        LOGGER.error("List user: " + userList.toString());
-        return userList;
     }
 
     @Override
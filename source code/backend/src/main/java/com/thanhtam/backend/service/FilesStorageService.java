@@ -1,11 +1,13 @@
 package com.thanhtam.backend.service;
 
+import com.thanhtam.backend.entity.StoredFile;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.Optional;
 
 public interface FilesStorageService {
     public void initRootFolder();
@@ -18,10 +20,53 @@ public interface FilesStorageService {
 
     public void save(MultipartFile file, String filePath);
 
+    /**
+     * Stores an upload in the content store under its original file name, replacing a file with the same name
+     */
+    public StoredFile store(MultipartFile file);
+
+    /**
+     * @return a new empty file in the staging folder of the content store, for content written before
+     * {@link #storeStaged}
+     */
+    public Path createStagingFile() throws IOException;
+
+    /**
+     * Stores content already written to a staging file under a name, replacing a file with the same name. The staging
+     * file is moved into the store or left for the caller to delete when the store already has that content.
+     *
+     * @param hash SHA-256 of the content in hex
+     */
+    public StoredFile storeStaged(String name, String contentType, Path stagedFile, String hash, long size) throws IOException;
+
+    /**
+     * Deletes a stored file, its content goes with its last name
+     *
+     * @return false when there is no file with that name
+     */
+    public boolean delete(String name);
+
+    /**
+     * Moves files left directly in the upload folder by earlier versions into the content store
+     */
+    public void indexLegacyFiles();
+
     public Resource load(String filename);
 
+    /**
+     * @return the path of the content of a stored file, empty when there is none
+     */
+    public Optional<Path> loadPath(String filename);
+
     public void deleteAllUserExcel(String fileName) throws IOException;
 
 
-    public Stream<Path> loadAll();
+    public Optional<StoredFile> findStoredFile(String filename);
+
+    public List<StoredFile> loadAll();
+
+    /**
+     * @return up to pageSize files whose name starts with the prefix and sorts after afterName, ordered by name
+     */
+    public List<StoredFile> list(String prefix, String afterName, int pageSize);
 }
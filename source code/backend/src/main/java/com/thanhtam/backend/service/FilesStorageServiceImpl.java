@@ -1,25 +1,69 @@
 package com.thanhtam.backend.service;
 
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.MoreFiles;
+import com.google.common.util.concurrent.Striped;
+import com.thanhtam.backend.entity.FileBlob;
+import com.thanhtam.backend.entity.StoredFile;
+import com.thanhtam.backend.repository.FileBlobRepository;
+import com.thanhtam.backend.repository.StoredFileRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Uploads are stored by content: the SHA-256 of a file is computed while it is written, the content is kept once under
+ * uploads/blobs/ab/cd/&lt;hash&gt; and shared by every file name with the same content. The file_blob table counts the
+ * names referencing each blob, the stored_file table maps names to hashes and is used for listing. Both tables change in
+ * one transaction under row locks, a transaction losing an insert race or a deadlock is retried. The content of a blob
+ * is written and deleted under a lock on its hash, it is deleted once no committed row references it any more.
+ */
 @Service
 public class FilesStorageServiceImpl implements FilesStorageService {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilesStorageServiceImpl.class);
-    private final Path root = Paths.get("uploads");
+    private final Path root;
     private final Path excelPath = Paths.get("excel-import-user");
+    private static final int MAX_INDEX_ATTEMPTS = 3;
+    private final Striped<Lock> blobLocks = Striped.lock(64);
+    private StoredFileRepository storedFileRepository;
+    private FileBlobRepository fileBlobRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public FilesStorageServiceImpl(StoredFileRepository storedFileRepository, FileBlobRepository fileBlobRepository, PlatformTransactionManager transactionManager, @Value("${isc.upload.dir:uploads}") String uploadDir) {
+        this.storedFileRepository = storedFileRepository;
+        this.fileBlobRepository = fileBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.root = Paths.get(uploadDir);
+    }
 
     @Override
     public void initRootFolder() {
@@ -68,21 +112,219 @@ public class FilesStorageServiceImpl implements FilesStorageService {
     }
 
     @Override
-    public Resource load(String filename) {
+    public StoredFile store(MultipartFile file) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(file.getOriginalFilename()));
+        if (StringUtils.isEmpty(name) || name.equals("..")) {
+            throw new RuntimeException("Invalid file name: " + file.getOriginalFilename());
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(name, file.getContentType(), inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
+        }
+    }
+
+    private StoredFile store(String name, String contentType, InputStream inputStream) throws IOException {
+        Path tempFile = createStagingFile();
         try {
-            Path file = root.resolve(filename);
-            Resource resource = new UrlResource(file.toUri());
+            HashingInputStream hashingInputStream = new HashingInputStream(Hashing.sha256(), inputStream);
+            long size = Files.copy(hashingInputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            return storeStaged(name, contentType, tempFile, hashingInputStream.hash().toString(), size);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
 
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new RuntimeException("Could not read the file!");
+    @Override
+    public Path createStagingFile() throws IOException {
+        Path tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+        return Files.createTempFile(tempDir, "upload-", ".part");
+    }
+
+    @Override
+    public StoredFile storeStaged(String name, String contentType, Path stagedFile, String hash, long size) throws IOException {
+        List<String> releasedHashes = new ArrayList<>();
+        StoredFile storedFile;
+        Lock blobLock = blobLocks.get(hash);
+        blobLock.lock();
+        try {
+//            Content left by an interrupted upload has the same hash and is reused
+            Path blobPath = getBlobPath(hash);
+            if (Files.notExists(blobPath)) {
+                Files.createDirectories(blobPath.getParent());
+                Files.move(stagedFile, blobPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try {
+                storedFile = inTransactionWithRetry(name, () -> index(name, contentType, hash, size, releasedHashes), releasedHashes);
+            } catch (RuntimeException e) {
+                deleteUnreferencedBlob(hash);
+                throw e;
             }
+        } finally {
+            blobLock.unlock();
+        }
+        deleteReleasedBlobs(releasedHashes);
+        return storedFile;
+    }
+
+    @Override
+    public boolean delete(String name) {
+        List<String> releasedHashes = new ArrayList<>();
+        boolean deleted = inTransactionWithRetry(name, () -> {
+            Optional<StoredFile> storedFile = storedFileRepository.findForUpdate(name);
+            if (!storedFile.isPresent()) {
+                return false;
+            }
+            storedFileRepository.delete(storedFile.get());
+            if (release(storedFile.get().getHash())) {
+                releasedHashes.add(storedFile.get().getHash());
+            }
+            return true;
+        }, releasedHashes);
+        deleteReleasedBlobs(releasedHashes);
+        return deleted;
+    }
+
+    private void deleteReleasedBlobs(List<String> releasedHashes) {
+        for (String releasedHash : releasedHashes) {
+            Lock blobLock = blobLocks.get(releasedHash);
+            blobLock.lock();
+            try {
+                deleteUnreferencedBlob(releasedHash);
+            } finally {
+                blobLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs an index update in its own transaction, again when it lost a race to insert the same name or blob or was
+     * picked as a deadlock victim
+     *
+     * @param releasedHashes filled by the update, cleared before each attempt
+     */
+    private <T> T inTransactionWithRetry(String name, Supplier<T> update, List<String> releasedHashes) {
+        for (int attempt = 1; ; attempt++) {
+            releasedHashes.clear();
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                if (attempt >= MAX_INDEX_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.warn("Index update of " + name + " conflicted with another upload, retrying: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes the content of a blob that no committed row references, the caller holds the lock on its hash
+     */
+    private void deleteUnreferencedBlob(String hash) {
+        try {
+            if (!fileBlobRepository.existsById(hash)) {
+                Files.deleteIfExists(getBlobPath(hash));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not delete the content of blob " + hash + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Points the name at the blob and counts the reference, run in one transaction
+     *
+     * @param releasedHashes receives the blob whose last reference was dropped
+     */
+    private StoredFile index(String name, String contentType, String hash, long size, List<String> releasedHashes) {
+        StoredFile storedFile = storedFileRepository.findForUpdate(name).orElse(null);
+        String replacedHash = storedFile == null ? null : storedFile.getHash();
+        if (hash.equals(replacedHash)) {
+            return storedFile;
+        }
+        FileBlob blob = fileBlobRepository.findForUpdate(hash).orElse(new FileBlob(hash, size, 0));
+        blob.setRefCount(blob.getRefCount() + 1);
+        fileBlobRepository.save(blob);
+        if (storedFile == null) {
+            storedFile = new StoredFile();
+            storedFile.setName(name);
+        }
+        storedFile.setHash(hash);
+        storedFile.setSize(size);
+        storedFile.setContentType(contentType);
+        storedFile.setUploadedDate(new Date());
+        storedFile = storedFileRepository.save(storedFile);
+        if (replacedHash != null && release(replacedHash)) {
+            releasedHashes.add(replacedHash);
+        }
+        return storedFile;
+    }
+
+    /**
+     * Drops one reference to the blob
+     *
+     * @return true when it was the last one, the content can be deleted
+     */
+    private boolean release(String hash) {
+        Optional<FileBlob> blob = fileBlobRepository.findForUpdate(hash);
+        if (!blob.isPresent()) {
+            return false;
+        }
+        if (blob.get().getRefCount() > 1) {
+            blob.get().setRefCount(blob.get().getRefCount() - 1);
+            fileBlobRepository.save(blob.get());
+            return false;
+        }
+        fileBlobRepository.delete(blob.get());
+        return true;
+    }
+
+    /**
+     * Blobs are spread over two directory levels so that no directory holds too many files
+     */
+    private Path getBlobPath(String hash) {
+        return root.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    @Override
+    public void indexLegacyFiles() {
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                Optional<StoredFile> indexed = storedFileRepository.findByName(name);
+                if (!indexed.isPresent()) {
+                    try (InputStream inputStream = Files.newInputStream(file)) {
+                        store(name, Files.probeContentType(file), inputStream);
+                    }
+                } else if (!indexed.get().getHash().equals(MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString())) {
+                    LOGGER.warn("Kept " + name + " in the upload folder, the content store has a different file under that name");
+                    continue;
+                }
+                Files.delete(file);
+                LOGGER.info("Moved " + name + " to the content store");
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not index the upload folder: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Resource load(String filename) {
+        try {
+            Path file = loadPath(filename).orElseThrow(() -> new RuntimeException("Could not read the file!"));
+            return new UrlResource(file.toUri());
         } catch (MalformedURLException e) {
             throw new RuntimeException("Error: " + e.getMessage());
         }
     }
 
+    @Override
+    public Optional<Path> loadPath(String filename) {
+        return storedFileRepository.findByName(filename)
+                .map(storedFile -> getBlobPath(storedFile.getHash()))
+                .filter(Files::isReadable);
+    }
+
     @Override
     public void deleteAllUserExcel(String fileName) throws IOException {
 //        FileSystemUtils.deleteRecursively(excelPath.toFile());
@@ -90,11 +332,17 @@ public class FilesStorageServiceImpl implements FilesStorageService {
     }
 
     @Override
-    public Stream<Path> loadAll() {
-        try {
-            return Files.walk(this.root, 1).filter(path -> !path.equals(this.root)).map(this.root::relativize);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not load the files!");
-        }
+    public Optional<StoredFile> findStoredFile(String filename) {
+        return storedFileRepository.findByName(filename);
+    }
+
+    @Override
+    public List<StoredFile> loadAll() {
+        return storedFileRepository.findAllByOrderByNameAsc();
+    }
+
+    @Override
+    public List<StoredFile> list(String prefix, String afterName, int pageSize) {
+        return storedFileRepository.findByNameStartingWithAndNameGreaterThanOrderByNameAsc(prefix, afterName, PageRequest.of(0, pageSize));
     }
 }
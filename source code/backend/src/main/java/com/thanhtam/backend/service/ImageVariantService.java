@@ -0,0 +1,9 @@
+package com.thanhtam.backend.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+public interface ImageVariantService {
+    void generateVariants(String keyName, String imageUrl, MultipartFile file) throws IOException;
+}
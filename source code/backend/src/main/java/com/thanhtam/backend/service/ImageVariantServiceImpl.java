@@ -0,0 +1,147 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.Course;
+import com.thanhtam.backend.entity.ImageVariant;
+import com.thanhtam.backend.repository.ImageVariantRepository;
+import com.thanhtam.backend.ultilities.EImageVariant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManagerFactory;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Generates the resized variants of an uploaded image on the image variant pool and stores them next to the original.
+ * The variants that reached S3 are recorded by image url, only their urls are handed out.
+ */
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageVariantServiceImpl.class);
+    private S3Services s3Services;
+    private ImageVariantRepository imageVariantRepository;
+    private EntityManagerFactory entityManagerFactory;
+    private ExecutorService imageVariantExecutor;
+
+    @Autowired
+    public ImageVariantServiceImpl(S3Services s3Services, ImageVariantRepository imageVariantRepository, EntityManagerFactory entityManagerFactory, @Qualifier("imageVariantExecutor") ExecutorService imageVariantExecutor) {
+        this.s3Services = s3Services;
+        this.imageVariantRepository = imageVariantRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.imageVariantExecutor = imageVariantExecutor;
+    }
+
+    @Override
+    public void generateVariants(String keyName, String imageUrl, MultipartFile file) throws IOException {
+        if (!EImageVariant.isSupported(keyName)) {
+            return;
+        }
+//        The multipart file is removed when the request ends, so the source is copied first
+        Path source = Files.createTempFile("image-variant-", ".tmp");
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, source, StandardCopyOption.REPLACE_EXISTING);
+            imageVariantExecutor.execute(() -> {
+                try {
+                    createVariants(keyName, imageUrl, source);
+                } finally {
+                    deleteQuietly(source);
+                }
+            });
+        } catch (IOException | RejectedExecutionException e) {
+            deleteQuietly(source);
+            LOGGER.error("Could not generate image variants of " + keyName + ": " + e.getMessage());
+        }
+    }
+
+    private void createVariants(String keyName, String imageUrl, Path source) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(source.toFile());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not generate image variants of " + keyName + ": " + e.getMessage());
+            return;
+        }
+        if (image == null) {
+            LOGGER.error(keyName + " is not a readable image, no variant is generated");
+            return;
+        }
+        String format = EImageVariant.getFormat(keyName);
+        List<String> stored = new ArrayList<>();
+        for (EImageVariant variant : EImageVariant.values()) {
+            try {
+                BufferedImage resized = resize(image, variant.getMaxSize(), "png".equals(format));
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                ImageIO.write(resized, format, outputStream);
+                s3Services.uploadS3File(variant.getKey(keyName), outputStream.toByteArray(), "png".equals(format) ? "image/png" : "image/jpeg");
+                stored.add(variant.getName());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Could not generate the " + variant.getName() + " variant of " + keyName + ": " + e.getMessage());
+            }
+        }
+        if (stored.isEmpty()) {
+            return;
+        }
+        try {
+            imageVariantRepository.save(new ImageVariant(imageUrl, String.join(",", stored)));
+//            Courses cached before the variants were recorded would keep linking none of them
+            entityManagerFactory.getCache().evict(Course.class);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not record the image variants of " + keyName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fits the image in a square of maxSize pixels, keeping the aspect ratio and never enlarging it.
+     * Large reductions are done in halving steps, a single bilinear step would skip most source pixels.
+     */
+    static BufferedImage resize(BufferedImage source, int maxSize, boolean keepAlpha) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            if (!keepAlpha) {
+//                JPEG has no alpha channel, transparent pixels become white
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+}
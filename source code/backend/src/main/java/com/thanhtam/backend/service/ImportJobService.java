@@ -0,0 +1,20 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.ImportJobReport;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportJobService {
+    ImportJobReport submitUserImport(MultipartFile file) throws IOException;
+
+    Optional<ImportJobReport> getJob(String jobId);
+
+    List<ImportJobReport> getJobs();
+
+    Optional<ImportJobReport> cancelJob(String jobId);
+
+    void purgeExpiredJobs();
+}
@@ -0,0 +1,221 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.ImportJobReport;
+import com.thanhtam.backend.dto.ImportRowError;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.repository.UserRepository;
+import com.thanhtam.backend.ultilities.EImportJobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs user imports in the background. The upload is staged to disk, a job id is returned right away and the rows
+ * are read and inserted on the import worker pool. Reports of finished jobs are kept in memory until they expire.
+ */
+@Service
+public class ImportJobServiceImpl implements ImportJobService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportJobServiceImpl.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private final Path excelPath = Paths.get("excel-import-user");
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ExcelService excelService;
+    private UserRepository userRepository;
+    private ExecutorService importJobExecutor;
+
+    @Value("${isc.import-job.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Autowired
+    public ImportJobServiceImpl(ExcelService excelService, UserRepository userRepository, @Qualifier("importJobExecutor") ExecutorService importJobExecutor) {
+        this.excelService = excelService;
+        this.userRepository = userRepository;
+        this.importJobExecutor = importJobExecutor;
+    }
+
+    @Override
+    public ImportJobReport submitUserImport(MultipartFile file) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        String fileName = Paths.get(Objects.requireNonNull(file.getOriginalFilename(), "File name is empty")).getFileName().toString();
+        Files.createDirectories(excelPath);
+        Path stagedFile = excelPath.resolve(jobId + "-" + fileName);
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, stagedFile);
+        }
+
+        ImportJob job = new ImportJob(jobId, fileName, stagedFile);
+        jobs.put(jobId, job);
+        try {
+            job.future = importJobExecutor.submit(() -> runJob(job, job.stagedFile));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        }
+        LOGGER.info("Queued import job " + jobId + " for file " + fileName);
+        return job.toReport();
+    }
+
+    @Override
+    public Optional<ImportJobReport> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(ImportJob::toReport);
+    }
+
+    @Override
+    public List<ImportJobReport> getJobs() {
+        return jobs.values().stream()
+                .map(ImportJob::toReport)
+                .sorted(Comparator.comparing(ImportJobReport::getCreatedAt).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<ImportJobReport> cancelJob(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.cancelled = true;
+//        A queued job never starts, a running job stops before its next row
+        if (job.future != null && job.future.cancel(false)) {
+            job.finish(EImportJobStatus.CANCELLED, "Cancelled before start");
+//            The worker never picks the job up, so its staged file is removed here
+            deleteStagedFile(job.stagedFile);
+        }
+        return Optional.of(job.toReport());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${isc.import-job.purge-interval-ms:60000}")
+    public void purgeExpiredJobs() {
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.status.isFinished() && job.finishedAt != null && job.finishedAt.getTime() < expiredBefore);
+    }
+
+    private void runJob(ImportJob job, Path stagedFile) {
+        job.start();
+        try {
+            excelService.readUserFromExcelFile(stagedFile.toString(), user -> {
+                if (job.cancelled) {
+                    throw new CancellationException();
+                }
+                insertUser(job, user);
+            });
+            job.finish(EImportJobStatus.COMPLETED, "Imported " + job.importedRows.get() + " of " + job.processedRows.get() + " rows");
+        } catch (CancellationException e) {
+            job.finish(EImportJobStatus.CANCELLED, "Cancelled after " + job.processedRows.get() + " rows, imported rows are kept");
+        } catch (Exception e) {
+            LOGGER.error("Import job " + job.jobId + " failed: " + e.toString());
+            job.finish(EImportJobStatus.FAILED, "Could not read the user list: " + e.getMessage());
+        } finally {
+            deleteStagedFile(stagedFile);
+        }
+    }
+
+    private void deleteStagedFile(Path stagedFile) {
+        try {
+            Files.deleteIfExists(stagedFile);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete " + stagedFile + ": " + e.getMessage());
+        }
+    }
+
+    private void insertUser(ImportJob job, User user) {
+        int rowNumber = job.processedRows.incrementAndGet();
+        try {
+            if (userRepository.existsByEmailOrUsername(user.getEmail(), user.getUsername())) {
+                job.addError(rowNumber, "Username or email has already existed");
+                return;
+            }
+            userRepository.save(user);
+            job.importedRows.incrementAndGet();
+        } catch (RuntimeException e) {
+            job.addError(rowNumber, "Could not save user: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mutable state of one job. Counters are written by the worker thread and read by request threads.
+     */
+    private static class ImportJob {
+        private final String jobId;
+        private final String fileName;
+        private final Path stagedFile;
+        private final Date createdAt = new Date();
+        private final AtomicInteger processedRows = new AtomicInteger();
+        private final AtomicInteger importedRows = new AtomicInteger();
+        private final AtomicInteger failedRows = new AtomicInteger();
+        private final List<ImportRowError> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile EImportJobStatus status = EImportJobStatus.QUEUED;
+        private volatile boolean cancelled;
+        private volatile Date startedAt;
+        private volatile Date finishedAt;
+        private volatile String message;
+        private volatile Future<?> future;
+
+        ImportJob(String jobId, String fileName, Path stagedFile) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.stagedFile = stagedFile;
+        }
+
+        void start() {
+            startedAt = new Date();
+            status = EImportJobStatus.RUNNING;
+        }
+
+        synchronized void finish(EImportJobStatus finalStatus, String finalMessage) {
+            if (status.isFinished()) {
+                return;
+            }
+            finishedAt = new Date();
+            message = finalMessage;
+            status = finalStatus;
+        }
+
+        void addError(int rowNumber, String errorMessage) {
+            failedRows.incrementAndGet();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(rowNumber, errorMessage));
+            }
+        }
+
+        ImportJobReport toReport() {
+            ImportJobReport report = new ImportJobReport();
+            report.setJobId(jobId);
+            report.setFileName(fileName);
+            report.setStatus(status);
+            report.setProcessedRows(processedRows.get());
+            report.setImportedRows(importedRows.get());
+            report.setFailedRows(failedRows.get());
+            report.setCreatedAt(createdAt);
+            report.setStartedAt(startedAt);
+            report.setFinishedAt(finishedAt);
+            report.setMessage(message);
+            if (startedAt != null) {
+                long end = finishedAt != null ? finishedAt.getTime() : System.currentTimeMillis();
+                long elapsedMillis = Math.max(1, end - startedAt.getTime());
+                report.setRowsPerSecond(processedRows.get() * 1000.0 / elapsedMillis);
+            }
+            synchronized (errors) {
+                report.setErrors(new ArrayList<>(errors));
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.dto.StoragePage;
+import com.thanhtam.backend.entity.StoredFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Stores objects in the content store of {@link FilesStorageService}, the key is the file name.
+ * Contents are written and read with AsynchronousFileChannel bound to the storage pool: a put writes the staging file
+ * chunk by chunk from completion handlers and hashes it on the way, a get reads the next chunk while the caller sends
+ * the current one.
+ */
+@Service("localStorageService")
+public class LocalAsyncStorageServiceImpl implements AsyncStorageService {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private FilesStorageService filesStorageService;
+    private ExecutorService storageExecutor;
+
+    @Autowired
+    public LocalAsyncStorageServiceImpl(FilesStorageService filesStorageService, @Qualifier("storageExecutor") ExecutorService storageExecutor) {
+        this.filesStorageService = filesStorageService;
+        this.storageExecutor = storageExecutor;
+    }
+
+    @Override
+    public CompletableFuture<StorageObject> put(String key, InputStream content, long size, String contentType) {
+        CompletableFuture<StorageObject> result = CompletableFuture.supplyAsync(() -> {
+            checkKey(key);
+            try {
+                return filesStorageService.createStagingFile();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, storageExecutor).thenCompose(stagedFile -> write(stagedFile, content)
+                .thenApplyAsync(staged -> store(key, contentType, stagedFile, staged, size), storageExecutor)
+                .whenComplete((storedFile, throwable) -> deleteQuietly(stagedFile)))
+                .thenApply(this::toStorageObject);
+        result.whenComplete((storageObject, throwable) -> closeQuietly(content));
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<StorageObject> get(String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            checkKey(key);
+            StoredFile storedFile = filesStorageService.findStoredFile(key).orElse(null);
+            Path path = storedFile == null ? null : filesStorageService.loadPath(key).orElse(null);
+            try {
+                if (path == null) {
+                    throw new NoSuchFileException(key);
+                }
+                StorageObject storageObject = toStorageObject(storedFile);
+                storageObject.setContent(new ReadAheadInputStream(AsynchronousFileChannel.open(path, EnumSet.of(StandardOpenOption.READ), storageExecutor)));
+                return storageObject;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, storageExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String key) {
+        return CompletableFuture.runAsync(() -> {
+            checkKey(key);
+            if (!filesStorageService.delete(key)) {
+                throw new CompletionException(new NoSuchFileException(key));
+            }
+        }, storageExecutor);
+    }
+
+    @Override
+    public CompletableFuture<StoragePage> list(String prefix, int pageSize, String continuationToken) {
+        return CompletableFuture.supplyAsync(() -> {
+//            The token is the last name of the previous page, one more row tells whether another page follows
+            List<StoredFile> storedFiles = filesStorageService.list(prefix, continuationToken == null ? "" : continuationToken, pageSize + 1);
+            boolean truncated = storedFiles.size() > pageSize;
+            List<StorageObject> files = storedFiles.stream()
+                    .limit(pageSize)
+                    .map(this::toStorageObject)
+                    .collect(Collectors.toList());
+            return new StoragePage(files, truncated ? files.get(files.size() - 1).getKey() : null, truncated);
+        }, storageExecutor);
+    }
+
+    private CompletableFuture<StagedContent> write(Path stagedFile, InputStream content) {
+        CompletableFuture<StagedContent> written = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(stagedFile, EnumSet.of(StandardOpenOption.WRITE), storageExecutor);
+            writeNext(channel, content, new StagedContent(), written);
+        } catch (IOException | RuntimeException e) {
+            written.completeExceptionally(e);
+        }
+        return written;
+    }
+
+    /**
+     * Reads the next chunk of the content and writes it, runs on the storage pool from the completion handler of the
+     * previous write
+     */
+    private void writeNext(AsynchronousFileChannel channel, InputStream content, StagedContent staged, CompletableFuture<StagedContent> written) {
+        ByteBuffer buffer = staged.buffer;
+        int count;
+        try {
+            count = ByteStreams.read(content, buffer.array(), 0, buffer.capacity());
+        } catch (IOException e) {
+            finish(channel, written, null, e);
+            return;
+        }
+        if (count == 0) {
+            finish(channel, written, staged, null);
+            return;
+        }
+        staged.hasher.putBytes(buffer.array(), 0, count);
+        buffer.clear();
+        buffer.limit(count);
+        writeChunk(channel, content, staged, written);
+    }
+
+    private void writeChunk(AsynchronousFileChannel channel, InputStream content, StagedContent staged, CompletableFuture<StagedContent> written) {
+        try {
+            channel.write(staged.buffer, staged.size, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer count, Void attachment) {
+                    staged.size += count;
+                    if (staged.buffer.hasRemaining()) {
+                        writeChunk(channel, content, staged, written);
+                    } else {
+                        writeNext(channel, content, staged, written);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    finish(channel, written, null, exc);
+                }
+            });
+        } catch (RuntimeException e) {
+//            The storage pool rejected the completion handler
+            finish(channel, written, null, e);
+        }
+    }
+
+    /**
+     * Closes the channel before completing, the staging file is moved by the next stage
+     */
+    private void finish(AsynchronousFileChannel channel, CompletableFuture<StagedContent> written, StagedContent staged, Throwable error) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error == null) {
+            written.complete(staged);
+        } else {
+            written.completeExceptionally(error);
+        }
+    }
+
+    private StoredFile store(String key, String contentType, Path stagedFile, StagedContent staged, long expectedSize) {
+        try {
+            if (expectedSize >= 0 && staged.size != expectedSize) {
+                throw new IOException("Received " + staged.size + " of " + expectedSize + " bytes of " + key);
+            }
+            return filesStorageService.storeStaged(key, contentType, stagedFile, staged.hasher.hash().toString(), staged.size);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private StorageObject toStorageObject(StoredFile storedFile) {
+        return new StorageObject(storedFile.getName(), storedFile.getSize(), storedFile.getContentType(),
+                storedFile.getHash(), storedFile.getUploadedDate(), null);
+    }
+
+    /**
+     * Keys are file names of the content store, a key with a path is refused
+     */
+    private void checkKey(String key) {
+        if (StringUtils.isEmpty(key) || key.equals(".") || key.equals("..")
+                || !key.equals(StringUtils.getFilename(StringUtils.cleanPath(key)))) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+    }
+
+    private void deleteQuietly(Path stagedFile) {
+        try {
+            Files.deleteIfExists(stagedFile);
+        } catch (IOException e) {
+//            A staging file left behind only takes disk space, it is never read
+        }
+    }
+
+    private void closeQuietly(InputStream content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+//            Everything needed was read
+        }
+    }
+
+    /**
+     * Content written so far to a staging file
+     */
+    private static class StagedContent {
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        private final Hasher hasher = Hashing.sha256().newHasher();
+        private long size;
+    }
+
+    /**
+     * Reads a file in chunks, the next chunk is read on the storage pool while the caller consumes the current one
+     */
+    static class ReadAheadInputStream extends InputStream {
+        private final AsynchronousFileChannel channel;
+        private ByteBuffer current = ByteBuffer.allocate(CHUNK_SIZE);
+        private ByteBuffer next = ByteBuffer.allocate(CHUNK_SIZE);
+        private Future<Integer> pending;
+        private long position;
+        private boolean endOfFile;
+
+        ReadAheadInputStream(AsynchronousFileChannel channel) {
+            this.channel = channel;
+            current.flip();
+            readAhead();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? current.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, current.remaining());
+            current.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+//            A read still in flight fails with AsynchronousCloseException, nobody waits for it
+            channel.close();
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        private boolean fill() throws IOException {
+            while (!current.hasRemaining()) {
+                if (endOfFile) {
+                    return false;
+                }
+                if (pending == null) {
+                    try {
+                        pending = channel.read(next, position);
+                    } catch (RuntimeException e) {
+                        throw new IOException("Could not read the file: " + e.getMessage(), e);
+                    }
+                }
+                int count = await();
+                if (count < 0) {
+                    endOfFile = true;
+                    return false;
+                }
+                position += count;
+                ByteBuffer filled = next;
+                next = current;
+                current = filled;
+                current.flip();
+                readAhead();
+            }
+            return true;
+        }
+
+        /**
+         * Starts reading the next chunk, a full pool leaves it to the next {@link #fill}
+         */
+        private void readAhead() {
+            next.clear();
+            try {
+                pending = channel.read(next, position);
+            } catch (RuntimeException e) {
+                pending = null;
+            }
+        }
+
+        private int await() throws IOException {
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the file");
+            } catch (ExecutionException e) {
+                throw new IOException("Could not read the file: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                pending = null;
+            }
+        }
+    }
+}
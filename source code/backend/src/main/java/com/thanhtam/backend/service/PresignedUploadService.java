@@ -0,0 +1,30 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.PresignedUploadCompletion;
+import com.thanhtam.backend.dto.PresignedUploadRequest;
+import com.thanhtam.backend.dto.PresignedUrl;
+
+public interface PresignedUploadService {
+    String AVATAR = "avatar";
+    String COURSE = "course";
+
+    PresignedUrl createUploadUrl(String username, String purpose, PresignedUploadRequest request);
+
+    /**
+     * Checks the uploaded object and records its url on the profile of the user or on the course
+     *
+     * @return the url of the object
+     * @throws org.springframework.security.access.AccessDeniedException when the user may not edit the course
+     */
+    String completeUpload(String username, String purpose, PresignedUploadCompletion completion);
+
+    /**
+     * @throws org.springframework.security.access.AccessDeniedException when the object was not uploaded by the user
+     */
+    PresignedUrl createDownloadUrl(String username, String keyName);
+
+    /**
+     * Deletes direct uploads that were never completed and are not used by a profile or a course
+     */
+    void deleteAbandonedUploads();
+}
@@ -0,0 +1,218 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.thanhtam.backend.dto.PresignedUploadCompletion;
+import com.thanhtam.backend.dto.PresignedUploadRequest;
+import com.thanhtam.backend.dto.PresignedUrl;
+import com.thanhtam.backend.dto.S3FileInfo;
+import com.thanhtam.backend.dto.S3FilePage;
+import com.thanhtam.backend.entity.Course;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.repository.CourseRepository;
+import com.thanhtam.backend.repository.ProfileRepository;
+import com.thanhtam.backend.ultilities.ERole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets clients upload avatars and course images straight to S3 with presigned urls, the file never goes through the
+ * backend. The content type, the declared size and the public-read ACL the recorded urls rely on are part of the
+ * signature, the object is checked again when the upload is completed and deleted if it does not respect the limits.
+ * Uploads that are never completed are deleted by a sweep running on one node under the presigned-upload-sweep lease.
+ * Download urls are only signed for objects the user uploaded.
+ */
+@Service
+public class PresignedUploadServiceImpl implements PresignedUploadService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PresignedUploadServiceImpl.class);
+    /**
+     * Objects uploaded by clients, followed by the username of the uploader
+     */
+    private static final String DIRECT_PREFIX = "direct/";
+    static final String LOCK_NAME = "presigned-upload-sweep";
+    private S3Services s3Services;
+    private UserService userService;
+    private CourseService courseService;
+    private ProfileRepository profileRepository;
+    private CourseRepository courseRepository;
+    private SchedulerLockService schedulerLockService;
+
+    @Value("${isc.s3.bucket}")
+    private String bucketName;
+
+    @Value("${isc.aws.endpointUrl}")
+    private String endpointUrl;
+
+    @Value("${isc.s3.presign.expiry-seconds:300}")
+    private long expirySeconds;
+
+    @Value("${isc.s3.presign.max-size-mb:5}")
+    private long maxSizeMb;
+
+    @Value("${isc.s3.presign.content-types:image/png,image/jpeg}")
+    private String[] contentTypes;
+
+    @Value("${isc.s3.presign.abandoned-after-hours:24}")
+    private long abandonedAfterHours;
+
+    @Value("${isc.s3.presign.sweep-lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Autowired
+    public PresignedUploadServiceImpl(S3Services s3Services, UserService userService, CourseService courseService, ProfileRepository profileRepository, CourseRepository courseRepository, SchedulerLockService schedulerLockService) {
+        this.s3Services = s3Services;
+        this.userService = userService;
+        this.courseService = courseService;
+        this.profileRepository = profileRepository;
+        this.courseRepository = courseRepository;
+        this.schedulerLockService = schedulerLockService;
+    }
+
+    @Override
+    public PresignedUrl createUploadUrl(String username, String purpose, PresignedUploadRequest request) {
+        if (!isAllowedContentType(request.getContentType())) {
+            throw new IllegalArgumentException("Content type " + request.getContentType() + " is not allowed");
+        }
+        if (request.getSize() <= 0 || request.getSize() > maxSizeMb * 1024 * 1024) {
+            throw new IllegalArgumentException("File size must be between 1 byte and " + maxSizeMb + " MB");
+        }
+        String extension = request.getContentType().equals("image/png") ? "png" : "jpg";
+        String keyName = DIRECT_PREFIX + username + "/" + new Date().getTime() + "_" + purpose + "." + extension;
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expirySeconds));
+        String url = s3Services.generatePresignedUrl(keyName, HttpMethod.PUT, expiration, request.getContentType(), request.getSize(), CannedAccessControlList.PublicRead).toString();
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(HttpHeaders.CONTENT_TYPE, request.getContentType());
+        headers.put(HttpHeaders.CONTENT_LENGTH, String.valueOf(request.getSize()));
+        headers.put(Headers.S3_CANNED_ACL, CannedAccessControlList.PublicRead.toString());
+        return new PresignedUrl(keyName, url, HttpMethod.PUT.name(), headers, expiration);
+    }
+
+    @Override
+    public String completeUpload(String username, String purpose, PresignedUploadCompletion completion) {
+        String keyName = completion.getKeyName();
+        if (keyName == null || !keyName.startsWith(DIRECT_PREFIX + username + "/") || !keyName.contains("_" + purpose + ".")) {
+            throw new IllegalArgumentException("Upload " + keyName + " was not issued to " + username);
+        }
+        if (COURSE.equals(purpose) && completion.getCourseId() != null && !canEditCourse(username, completion.getCourseId())) {
+            throw new AccessDeniedException(username + " does not teach course " + completion.getCourseId());
+        }
+        ObjectMetadata metadata;
+        try {
+            metadata = s3Services.getS3ObjectMetadata(keyName);
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                throw new IllegalArgumentException("Upload " + keyName + " is not finished");
+            }
+            throw e;
+        }
+        if (metadata.getContentLength() > maxSizeMb * 1024 * 1024 || !isAllowedContentType(metadata.getContentType())) {
+            LOGGER.error("Deleting " + keyName + ": " + metadata.getContentLength() + " bytes of " + metadata.getContentType());
+            s3Services.deleteFile(keyName);
+            throw new IllegalArgumentException("Upload " + keyName + " does not respect the size or content type limits");
+        }
+        if (metadata.getLastModified() != null && metadata.getLastModified().before(getAbandonedBefore())) {
+            throw new IllegalArgumentException("Upload " + keyName + " has expired");
+        }
+
+        String url = endpointUrl + "/" + bucketName + "/" + keyName;
+        if (AVATAR.equals(purpose)) {
+            User user = userService.getUserByUsername(username).get();
+            user.getProfile().setImage(url);
+            userService.updateUser(user);
+        } else if (completion.getCourseId() != null) {
+            Course course = courseService.getCourseById(completion.getCourseId())
+                    .orElseThrow(() -> new EntityNotFoundException("Not found with course id: " + completion.getCourseId()));
+            course.setImgUrl(url);
+            courseService.saveCourse(course);
+        }
+        return url;
+    }
+
+    @Override
+    public PresignedUrl createDownloadUrl(String username, String keyName) {
+        if (keyName == null || !keyName.startsWith(DIRECT_PREFIX + username + "/")) {
+            throw new AccessDeniedException(keyName + " was not uploaded by " + username);
+        }
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expirySeconds));
+        String url = s3Services.generatePresignedUrl(keyName, HttpMethod.GET, expiration, null, null, null).toString();
+        return new PresignedUrl(keyName, url, HttpMethod.GET.name(), Collections.emptyMap(), expiration);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${isc.s3.presign.sweep-interval-ms:3600000}")
+    public void deleteAbandonedUploads() {
+        if (!schedulerLockService.tryLock(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return;
+        }
+        try {
+            Date abandonedBefore = getAbandonedBefore();
+            int deleted = 0;
+            String continuationToken = null;
+            do {
+                S3FilePage page = s3Services.listS3Files(DIRECT_PREFIX, 1000, continuationToken);
+                for (S3FileInfo file : page.getFiles()) {
+                    String url = endpointUrl + "/" + bucketName + "/" + file.getKey();
+                    if (file.getLastModified().before(abandonedBefore) && !profileRepository.existsByImage(url) && !courseRepository.existsByImgUrl(url)) {
+                        s3Services.deleteFile(file.getKey());
+                        deleted++;
+                    }
+                }
+                continuationToken = page.isTruncated() ? page.getNextContinuationToken() : null;
+            } while (continuationToken != null && renewLease());
+            if (deleted > 0) {
+                LOGGER.info("Deleted " + deleted + " direct uploads that were not completed before " + abandonedBefore);
+            }
+        } finally {
+            schedulerLockService.unlock(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Extends the lease between pages, the sweep stops once another node took it over
+     */
+    private boolean renewLease() {
+        if (schedulerLockService.renew(LOCK_NAME, TimeUnit.SECONDS.toMillis(leaseSeconds))) {
+            return true;
+        }
+        LOGGER.warn("Lost the " + LOCK_NAME + " lease, the sweep stops here");
+        return false;
+    }
+
+    /**
+     * Uploads older than this are no longer completed and are deleted by the sweep unless a profile or course uses them
+     */
+    private Date getAbandonedBefore() {
+        return new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(abandonedAfterHours));
+    }
+
+    /**
+     * Admins edit every course, lecturers the courses they teach
+     */
+    private boolean canEditCourse(String username, Long courseId) {
+        User user = userService.getUserByUsername(username).get();
+        boolean admin = user.getRoles().stream().anyMatch(role -> role.getName() == ERole.ROLE_ADMIN);
+        return admin || courseService.isTaughtBy(courseId, username);
+    }
+
+    private boolean isAllowedContentType(String contentType) {
+        return contentType != null && Arrays.asList(contentTypes).contains(contentType);
+    }
+}
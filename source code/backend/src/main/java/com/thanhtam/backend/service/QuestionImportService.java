@@ -0,0 +1,10 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.QuestionImportResult;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+public interface QuestionImportService {
+    QuestionImportResult importQuestions(MultipartFile file) throws IOException;
+}
@@ -0,0 +1,298 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.base.Strings;
+import com.opencsv.CSVReader;
+import com.thanhtam.backend.dto.ImportRowError;
+import com.thanhtam.backend.dto.QuestionImportResult;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.Part;
+import com.thanhtam.backend.entity.Question;
+import com.thanhtam.backend.entity.QuestionType;
+import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Imports questions and their choices from a CSV or XLSX sheet. One row is one question:
+ * question_text, question_type (TF/MC/MS), difficulty_level (EASY/MEDIUM/HARD), part_id,
+ * followed by pairs of choice_text, corrected (1/0). The first row is a header.
+ * <p>
+ * Rows are streamed from the file, validated and saved in chunks, so the whole sheet is never held in memory.
+ */
+@Service
+public class QuestionImportServiceImpl implements QuestionImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuestionImportServiceImpl.class);
+    private static final int CHUNK_SIZE = 200;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int FIRST_CHOICE_COLUMN = 4;
+
+    private QuestionRepository questionRepository;
+    private QuestionService questionService;
+    private QuestionTypeService questionTypeService;
+    private PartService partService;
+
+    @Autowired
+    public QuestionImportServiceImpl(QuestionRepository questionRepository, QuestionService questionService, QuestionTypeService questionTypeService, PartService partService) {
+        this.questionRepository = questionRepository;
+        this.questionService = questionService;
+        this.questionTypeService = questionTypeService;
+        this.partService = partService;
+    }
+
+    @Override
+    public QuestionImportResult importQuestions(MultipartFile file) throws IOException {
+        long start = System.currentTimeMillis();
+        ChunkImporter importer = new ChunkImporter();
+        String fileName = Strings.nullToEmpty(file.getOriginalFilename()).toLowerCase();
+        if (fileName.endsWith(".csv")) {
+            readCsv(file, importer);
+        } else if (fileName.endsWith(".xlsx")) {
+            readXlsx(file, importer);
+        } else {
+            throw new IllegalArgumentException("The specified file is not CSV or XLSX file");
+        }
+        importer.flush();
+
+        QuestionImportResult result = importer.result;
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        result.setRowsPerSecond(result.getElapsedMillis() == 0 ? result.getTotalRows() : result.getTotalRows() * 1000.0 / result.getElapsedMillis());
+        LOGGER.info("Imported " + result.getImportedRows() + "/" + result.getTotalRows() + " questions in " + result.getElapsedMillis() + " ms");
+        return result;
+    }
+
+    private void readCsv(MultipartFile file, ChunkImporter importer) throws IOException {
+        try (CSVReader csvReader = new CSVReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String[] cells;
+            int rowNumber = 0;
+            while ((cells = csvReader.readNext()) != null) {
+                rowNumber++;
+                if (rowNumber == 1) {
+                    continue;
+                }
+                importer.accept(rowNumber, Arrays.asList(cells));
+            }
+        }
+    }
+
+    private void readXlsx(MultipartFile file, ChunkImporter importer) throws IOException {
+        File tempFile = File.createTempFile("question-import-", ".xlsx");
+        try {
+            file.transferTo(tempFile);
+            try (OPCPackage opcPackage = OPCPackage.open(tempFile, PackageAccess.READ)) {
+                XSSFReader xssfReader = new XSSFReader(opcPackage);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(opcPackage);
+                XMLReader sheetParser = SAXHelper.newXMLReader();
+                sheetParser.setContentHandler(new XSSFSheetXMLHandler(xssfReader.getStylesTable(), strings, new SheetRowHandler(importer), new DataFormatter(), false));
+                Iterator<InputStream> sheets = xssfReader.getSheetsData();
+                if (sheets.hasNext()) {
+                    try (InputStream sheet = sheets.next()) {
+                        sheetParser.parse(new InputSource(sheet));
+                    }
+                }
+            } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+                throw new IOException("Could not read the excel file: " + e.getMessage(), e);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Collects rows of the first sheet, filling the gaps left by blank cells.
+     */
+    private static class SheetRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final ChunkImporter importer;
+        private List<String> cells;
+
+        SheetRowHandler(ChunkImporter importer) {
+            this.importer = importer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new ArrayList<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+//            Skip header row
+            if (rowNum > 0) {
+                importer.accept(rowNum + 1, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue);
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+
+    /**
+     * Validates rows and saves the valid ones every {@link #CHUNK_SIZE} rows.
+     */
+    private class ChunkImporter {
+        private final QuestionImportResult result = new QuestionImportResult();
+        private final Map<Long, Optional<Part>> parts = new HashMap<>();
+        private final Map<EQTypeCode, Optional<QuestionType>> questionTypes = new EnumMap<>(EQTypeCode.class);
+        private final List<Question> questions = new ArrayList<>();
+        private final List<Integer> rowNumbers = new ArrayList<>();
+
+        void accept(int rowNumber, List<String> cells) {
+            if (isBlank(cells)) {
+                return;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            try {
+                questions.add(toQuestion(cells));
+                rowNumbers.add(rowNumber);
+            } catch (IllegalArgumentException e) {
+                addError(rowNumber, e.getMessage());
+            }
+            if (questions.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (questions.isEmpty()) {
+                return;
+            }
+            try {
+                questionRepository.saveAll(questions);
+                result.setImportedRows(result.getImportedRows() + questions.size());
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not save question chunk: " + e.getMessage());
+                rowNumbers.forEach(rowNumber -> addError(rowNumber, "Could not save question: " + e.getMessage()));
+            }
+            questions.clear();
+            rowNumbers.clear();
+        }
+
+        private void addError(int rowNumber, String message) {
+            result.setFailedRows(result.getFailedRows() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new ImportRowError(rowNumber, message));
+            }
+        }
+
+        private Question toQuestion(List<String> cells) {
+            String questionText = getCell(cells, 0);
+            if (questionText.isEmpty()) {
+                throw new IllegalArgumentException("Question text is empty");
+            }
+            EQTypeCode typeCode = parseEnum(EQTypeCode.class, getCell(cells, 1), "question type");
+            DifficultyLevel difficultyLevel = parseEnum(DifficultyLevel.class, getCell(cells, 2), "difficulty level");
+            Long partId;
+            try {
+                partId = Long.valueOf(getCell(cells, 3));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Part id is not a number: " + getCell(cells, 3));
+            }
+            Part part = parts.computeIfAbsent(partId, id -> partService.findPartById(id))
+                    .orElseThrow(() -> new IllegalArgumentException("Not found part with id: " + partId));
+            QuestionType questionType = questionTypes.computeIfAbsent(typeCode, code -> questionTypeService.getQuestionTypeByCode(code))
+                    .orElseThrow(() -> new IllegalArgumentException("Not found question type: " + typeCode));
+
+            List<Choice> choices = new ArrayList<>();
+            int correctTotal = 0;
+            for (int column = FIRST_CHOICE_COLUMN; column < cells.size(); column += 2) {
+                String choiceText = getCell(cells, column);
+                if (choiceText.isEmpty()) {
+                    continue;
+                }
+                int corrected = parseCorrected(getCell(cells, column + 1));
+                correctTotal += corrected;
+                choices.add(new Choice(null, choiceText, corrected));
+            }
+            if (choices.isEmpty()) {
+                throw new IllegalArgumentException("Question has no choice");
+            }
+            if (typeCode != EQTypeCode.TF && choices.size() < 2) {
+                throw new IllegalArgumentException("Question type " + typeCode + " needs at least 2 choices");
+            }
+            if (typeCode == EQTypeCode.MC && correctTotal != 1) {
+                throw new IllegalArgumentException("Multiple choice question needs exactly 1 correct choice");
+            }
+            if (typeCode == EQTypeCode.MS && correctTotal < 1) {
+                throw new IllegalArgumentException("Multiple select question needs at least 1 correct choice");
+            }
+
+            Question question = new Question();
+            question.setQuestionText(questionText);
+            question.setQuestionType(questionType);
+            question.setDifficultyLevel(difficultyLevel);
+            question.setPoint(questionService.getPointByDifficultyLevel(difficultyLevel));
+            question.setPart(part);
+            question.setDeleted(false);
+            question.setChoices(choices);
+            return question;
+        }
+    }
+
+    private static boolean isBlank(List<String> cells) {
+        return cells.stream().allMatch(cell -> cell == null || cell.trim().isEmpty());
+    }
+
+    private static String getCell(List<String> cells, int index) {
+        if (index >= cells.size() || cells.get(index) == null) {
+            return "";
+        }
+//        Drop byte order mark written by spreadsheet programs
+        return cells.get(index).replace("\uFEFF", "").trim();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> enumClass, String value, String columnName) {
+        try {
+            return Enum.valueOf(enumClass, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + columnName + ": " + value);
+        }
+    }
+
+    private static int parseCorrected(String value) {
+        switch (value.toLowerCase()) {
+            case "1":
+            case "true":
+            case "x":
+                return 1;
+            case "":
+            case "0":
+            case "false":
+                return 0;
+            default:
+                throw new IllegalArgumentException("Invalid corrected value: " + value);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.QuestionSearchRequest;
+import com.thanhtam.backend.dto.QuestionSearchResult;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+public interface QuestionSearchService {
+    QuestionSearchResult search(QuestionSearchRequest request, Pageable pageable) throws IOException;
+
+    /**
+     * Queues the questions to be read again from the database, questions no longer found are removed from the index
+     */
+    void reindexQuestions(Collection<Long> questionIds);
+
+    /**
+     * Queues the questions owning the choices, for choices saved without a change to their question
+     */
+    void reindexChoices(Collection<Long> choiceIds);
+
+    /**
+     * @return the number of indexed questions once the index has been rebuilt from the database
+     */
+    CompletableFuture<Integer> rebuild();
+
+    /**
+     * Compares the index with the database and writes only the questions that differ
+     *
+     * @return the number of questions written or removed
+     */
+    CompletableFuture<Integer> reconcile();
+}
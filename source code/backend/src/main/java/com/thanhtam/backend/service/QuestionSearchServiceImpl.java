@@ -0,0 +1,504 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hashing;
+import com.thanhtam.backend.dto.*;
+import com.thanhtam.backend.repository.QuestionRepository;
+import org.apache.lucene.analysis.*;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.*;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lucene index over the text and choices of every question, with the part, course, question type, difficulty level,
+ * creator and deleted flag as filters and the part, question type, difficulty level and deleted flag as facets.
+ * <p>
+ * The index is kept on disk and built from the database on the first start. Saved questions and choices are queued by
+ * {@link com.thanhtam.backend.config.SearchIndexListener} once committed and written by the search index executor,
+ * which also runs the rebuilds, so the index has a single writer. Only the ids come from the index, the questions of
+ * the page are read from the database.
+ * <p>
+ * The queue lives in memory. A failed update goes back to the queue and is retried, and every later start compares a
+ * fingerprint of each indexed question with the database, so changes lost in a crash are written then.
+ */
+@Service
+public class QuestionSearchServiceImpl implements QuestionSearchService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuestionSearchServiceImpl.class);
+    private static final int BATCH_SIZE = 500;
+    private static final int FACET_SIZE = 50;
+
+    static final String ID = "id";
+    static final String ID_SORT = "idSort";
+    static final String TEXT = "text";
+    static final String CHOICE = "choice";
+    static final String CHOICE_ID = "choiceId";
+    static final String FINGERPRINT = "fingerprint";
+    static final String PART = "part";
+    static final String COURSE = "course";
+    static final String QUESTION_TYPE = "questionType";
+    static final String DIFFICULTY_LEVEL = "difficultyLevel";
+    static final String CREATED_BY = "createdBy";
+    static final String DELETED = "deleted";
+    static final List<String> FACETS = Arrays.asList(PART, QUESTION_TYPE, DIFFICULTY_LEVEL, DELETED);
+
+    private QuestionRepository questionRepository;
+    private ExecutorService searchIndexExecutor;
+
+    @Value("${isc.search.question.index-dir:search-index/questions}")
+    private String indexDir;
+
+    private final Analyzer analyzer = new FoldingAnalyzer();
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+
+    private final Set<Long> pendingQuestionIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingChoiceIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private IndexReader facetReader;
+    private SortedSetDocValuesReaderState facetState;
+
+    @Autowired
+    public QuestionSearchServiceImpl(QuestionRepository questionRepository, @Qualifier("searchIndexExecutor") ExecutorService searchIndexExecutor) {
+        this.questionRepository = questionRepository;
+        this.searchIndexExecutor = searchIndexExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = FSDirectory.open(Files.createDirectories(Paths.get(indexDir)));
+        boolean exists = DirectoryReader.indexExists(directory);
+        indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(indexWriter, null);
+        if (exists) {
+            reconcile();
+        } else {
+            rebuild();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    /**
+     * Keywords match the question text and, with a lower weight, the choice texts. Every word must match, the last one
+     * as a prefix. Without keywords the questions are listed by id.
+     */
+    @Override
+    public QuestionSearchResult search(QuestionSearchRequest request, Pageable pageable) throws IOException {
+        List<String> terms = analyze(request.getKeyword());
+        Query query = buildQuery(terms, request);
+        int offset = (int) pageable.getOffset();
+        int top = Math.max(1, offset + pageable.getPageSize());
+
+        List<Long> ids = new ArrayList<>();
+        long total;
+        Map<String, Map<String, Integer>> facets;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            FacetsCollector facetsCollector = new FacetsCollector();
+            TopDocs topDocs = terms.isEmpty()
+                    ? FacetsCollector.search(searcher, query, top, new Sort(new SortField(ID_SORT, SortField.Type.LONG)), facetsCollector)
+                    : FacetsCollector.search(searcher, query, top, facetsCollector);
+            for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                ids.add(Long.valueOf(searcher.doc(topDocs.scoreDocs[i].doc).get(ID)));
+            }
+            total = topDocs.totalHits;
+            facets = countFacets(searcher.getIndexReader(), facetsCollector);
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        List<QuestionSummary> content = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            Map<Long, QuestionSummary> questions = questionRepository.findQuestionSummariesByIdIn(ids).stream()
+                    .collect(Collectors.toMap(QuestionSummary::getId, Function.identity()));
+            ids.stream().map(questions::get).filter(Objects::nonNull).forEach(content::add);
+        }
+        return new QuestionSearchResult(new PageImpl<>(content, pageable, total), facets);
+    }
+
+    @Override
+    public void reindexQuestions(Collection<Long> questionIds) {
+        pendingQuestionIds.addAll(questionIds);
+        scheduleDrain();
+    }
+
+    @Override
+    public void reindexChoices(Collection<Long> choiceIds) {
+        pendingChoiceIds.addAll(choiceIds);
+        scheduleDrain();
+    }
+
+    @Override
+    public CompletableFuture<Integer> rebuild() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                indexWriter.deleteAll();
+                int count = 0;
+                long lastId = 0;
+                List<QuestionSearchDocument> documents;
+                while (!(documents = questionRepository.findQuestionSearchDocumentsAfter(lastId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+                    write(documents);
+                    count += documents.size();
+                    lastId = documents.get(documents.size() - 1).getId();
+                }
+                indexWriter.commit();
+                searcherManager.maybeRefresh();
+                LOGGER.info("Indexed " + count + " questions for search");
+                return count;
+            } catch (IOException e) {
+                LOGGER.error("Could not rebuild the question search index: " + e.getMessage());
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not rebuild the question search index: " + e.getMessage());
+                throw e;
+            }
+        }, searchIndexExecutor);
+    }
+
+    /**
+     * Changes committed while the index was not updated, by a crash before the queue was written or a failed update, are
+     * caught up here. Questions indexed by an earlier version have no fingerprint and are written again once.
+     */
+    @Override
+    public CompletableFuture<Integer> reconcile() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Map<Long, String> indexed = readFingerprints();
+                int count = 0;
+                long lastId = 0;
+                List<QuestionSearchDocument> documents;
+                while (!(documents = questionRepository.findQuestionSearchDocumentsAfter(lastId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+                    loadChoices(documents);
+                    for (QuestionSearchDocument document : documents) {
+                        if (!fingerprint(document).equals(indexed.remove(document.getId()))) {
+                            indexWriter.updateDocument(new Term(ID, String.valueOf(document.getId())), toDocument(document));
+                            count++;
+                        }
+                    }
+                    lastId = documents.get(documents.size() - 1).getId();
+                }
+//                Whatever is left was deleted from the database
+                for (Long id : indexed.keySet()) {
+                    indexWriter.deleteDocuments(new Term(ID, String.valueOf(id)));
+                    count++;
+                }
+                indexWriter.commit();
+                searcherManager.maybeRefresh();
+                if (count > 0) {
+                    LOGGER.info("Caught up " + count + " questions in the search index");
+                }
+                return count;
+            } catch (IOException e) {
+                LOGGER.error("Could not reconcile the question search index: " + e.getMessage());
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not reconcile the question search index: " + e.getMessage());
+                throw e;
+            }
+        }, searchIndexExecutor);
+    }
+
+    private Map<Long, String> readFingerprints() throws IOException {
+        Map<Long, String> fingerprints = new HashMap<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                for (int i = 0; i < leaf.reader().maxDoc(); i++) {
+                    if (liveDocs == null || liveDocs.get(i)) {
+                        Document document = leaf.reader().document(i);
+                        fingerprints.put(Long.valueOf(document.get(ID)), document.get(FINGERPRINT));
+                    }
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Updates left in the queue by a failed pass are tried again
+     */
+    @Scheduled(fixedDelayString = "${isc.search.question.retry-interval-ms:60000}")
+    public void retryPendingUpdates() {
+        if (!pendingQuestionIds.isEmpty() || !pendingChoiceIds.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Saves within a short time are written to the index in one pass
+     */
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            searchIndexExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        Set<Long> questionIds = take(pendingQuestionIds);
+        Set<Long> choiceIds = take(pendingChoiceIds);
+        try {
+            for (List<Long> batch : Iterables.partition(choiceIds, BATCH_SIZE)) {
+                questionIds.addAll(questionRepository.findIdsByChoiceIdIn(batch));
+//                A deleted choice is only found through the question it was indexed with
+                questionIds.addAll(findIndexedQuestionIds(batch));
+            }
+            for (List<Long> batch : Iterables.partition(questionIds, BATCH_SIZE)) {
+                List<QuestionSearchDocument> documents = questionRepository.findQuestionSearchDocumentsByIdIn(batch);
+                Set<Long> removed = new HashSet<>(batch);
+                documents.forEach(document -> removed.remove(document.getId()));
+                for (Long id : removed) {
+                    indexWriter.deleteDocuments(new Term(ID, String.valueOf(id)));
+                }
+                write(documents);
+            }
+            indexWriter.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not update the question search index, retrying later: " + e.getMessage());
+            pendingQuestionIds.addAll(questionIds);
+            pendingChoiceIds.addAll(choiceIds);
+        }
+    }
+
+    private Set<Long> findIndexedQuestionIds(Collection<Long> choiceIds) throws IOException {
+        Set<Long> questionIds = new HashSet<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            if (searcher.getIndexReader().maxDoc() == 0) {
+                return questionIds;
+            }
+            BooleanQuery.Builder query = new BooleanQuery.Builder();
+            for (Long choiceId : choiceIds) {
+                query.add(new TermQuery(new Term(CHOICE_ID, String.valueOf(choiceId))), BooleanClause.Occur.SHOULD);
+            }
+            for (ScoreDoc scoreDoc : searcher.search(query.build(), searcher.getIndexReader().maxDoc()).scoreDocs) {
+                questionIds.add(Long.valueOf(searcher.doc(scoreDoc.doc).get(ID)));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return questionIds;
+    }
+
+    private static Set<Long> take(Set<Long> pending) {
+        Set<Long> taken = new HashSet<>();
+        for (Iterator<Long> iterator = pending.iterator(); iterator.hasNext(); ) {
+            taken.add(iterator.next());
+            iterator.remove();
+        }
+        return taken;
+    }
+
+    private void write(List<QuestionSearchDocument> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
+        loadChoices(documents);
+        for (QuestionSearchDocument document : documents) {
+            indexWriter.updateDocument(new Term(ID, String.valueOf(document.getId())), toDocument(document));
+        }
+    }
+
+    private void loadChoices(List<QuestionSearchDocument> documents) {
+        Map<Long, QuestionSearchDocument> byId = documents.stream()
+                .collect(Collectors.toMap(QuestionSearchDocument::getId, Function.identity()));
+        for (QuestionChoiceText choice : questionRepository.findChoiceTextsByQuestionIdIn(byId.keySet())) {
+            QuestionSearchDocument document = byId.get(choice.getQuestionId());
+            document.getChoiceIds().add(choice.getChoiceId());
+            document.getChoiceTexts().add(choice.getChoiceText());
+        }
+    }
+
+    /**
+     * Hash of every indexed value of a question, compared with the database when the index is reconciled
+     */
+    static String fingerprint(QuestionSearchDocument question) {
+        return Hashing.murmur3_128().hashString(Arrays.asList(question.getQuestionText(), question.getPartId(), question.getCourseId(),
+                question.getTypeCode(), question.getDifficultyLevel(), question.getCreatedBy(), question.isDeleted(),
+                question.getChoiceIds(), question.getChoiceTexts()).toString(), StandardCharsets.UTF_8).toString();
+    }
+
+    private Document toDocument(QuestionSearchDocument question) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(question.getId()), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID_SORT, question.getId()));
+        document.add(new StoredField(FINGERPRINT, fingerprint(question)));
+        if (question.getQuestionText() != null) {
+            document.add(new TextField(TEXT, question.getQuestionText(), Field.Store.NO));
+        }
+        for (Long choiceId : question.getChoiceIds()) {
+            document.add(new StringField(CHOICE_ID, String.valueOf(choiceId), Field.Store.NO));
+        }
+        for (String choiceText : question.getChoiceTexts()) {
+            if (choiceText != null) {
+                document.add(new TextField(CHOICE, choiceText, Field.Store.NO));
+            }
+        }
+        addFilter(document, PART, question.getPartId());
+        addFilter(document, COURSE, question.getCourseId());
+        addFilter(document, QUESTION_TYPE, question.getTypeCode());
+        addFilter(document, DIFFICULTY_LEVEL, question.getDifficultyLevel());
+        addFilter(document, CREATED_BY, question.getCreatedBy());
+        addFilter(document, DELETED, question.isDeleted());
+        return facetsConfig.build(document);
+    }
+
+    private static void addFilter(Document document, String field, Object value) {
+        if (value == null) {
+            return;
+        }
+        document.add(new StringField(field, value.toString(), Field.Store.NO));
+        if (FACETS.contains(field)) {
+            document.add(new SortedSetDocValuesFacetField(field, value.toString()));
+        }
+    }
+
+    private List<String> analyze(String keyword) throws IOException {
+        List<String> terms = new ArrayList<>();
+        if (keyword == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TEXT, keyword)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    private static Query buildQuery(List<String> terms, QuestionSearchRequest request) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        if (terms.isEmpty()) {
+            query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        }
+        for (int i = 0; i < terms.size(); i++) {
+            boolean last = i == terms.size() - 1;
+            BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+            anyField.add(new BoostQuery(termQuery(TEXT, terms.get(i), last), 2f), BooleanClause.Occur.SHOULD);
+            anyField.add(termQuery(CHOICE, terms.get(i), last), BooleanClause.Occur.SHOULD);
+            query.add(anyField.build(), BooleanClause.Occur.MUST);
+        }
+        addFilter(query, PART, request.getPartId());
+        addFilter(query, COURSE, request.getCourseId());
+        addFilter(query, QUESTION_TYPE, request.getQuestionType());
+        addFilter(query, DIFFICULTY_LEVEL, request.getDifficultyLevel());
+        addFilter(query, CREATED_BY, request.getCreatedBy());
+        addFilter(query, DELETED, request.getDeleted());
+        return query.build();
+    }
+
+    private static Query termQuery(String field, String term, boolean prefix) {
+        return prefix ? new PrefixQuery(new Term(field, term)) : new TermQuery(new Term(field, term));
+    }
+
+    private static void addFilter(BooleanQuery.Builder query, String field, Object value) {
+        if (value != null) {
+            query.add(new TermQuery(new Term(field, value.toString())), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    private Map<String, Map<String, Integer>> countFacets(IndexReader reader, FacetsCollector facetsCollector) throws IOException {
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        SortedSetDocValuesReaderState state = facetState(reader);
+        Facets counts = state == null ? null : new SortedSetDocValuesFacetCounts(state, facetsCollector);
+        for (String dimension : FACETS) {
+            Map<String, Integer> values = new LinkedHashMap<>();
+            if (counts != null && state.getPrefixToOrdRange().containsKey(dimension)) {
+                FacetResult result = counts.getTopChildren(FACET_SIZE, dimension);
+                if (result != null) {
+                    for (LabelAndValue labelAndValue : result.labelValues) {
+                        values.put(labelAndValue.label, labelAndValue.value.intValue());
+                    }
+                }
+            }
+            facets.put(dimension, values);
+        }
+        return facets;
+    }
+
+    /**
+     * The ordinals of the facet values are read once per refreshed reader, not on every search
+     */
+    private synchronized SortedSetDocValuesReaderState facetState(IndexReader reader) throws IOException {
+        if (reader.maxDoc() == 0) {
+            return null;
+        }
+        if (reader != facetReader) {
+            facetState = new DefaultSortedSetDocValuesReaderState(reader);
+            facetReader = reader;
+        }
+        return facetState;
+    }
+
+    /**
+     * Lower case words without diacritics, so that "cau hoi" finds "Câu hỏi"
+     */
+    private static class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.thanhtam.backend.service;
 
 import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.dto.QuestionSummary;
 import com.thanhtam.backend.entity.Course;
 import com.thanhtam.backend.entity.Part;
 import com.thanhtam.backend.entity.Question;
 import com.thanhtam.backend.entity.QuestionType;
+import com.thanhtam.backend.ultilities.DifficultyLevel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -38,8 +40,24 @@ public interface QuestionService {
 
     Page<Question> findQuestionsByCreatedBy_Username(Pageable pageable, String username);
 
+    Page<QuestionSummary> findQuestionSummaries(Pageable pageable);
+
+    Page<QuestionSummary> findQuestionSummariesByCreatedBy(Pageable pageable, String username);
+
+    Page<QuestionSummary> findQuestionSummariesByPart(Pageable pageable, Long partId);
+
+    Page<QuestionSummary> findQuestionSummariesByPartAndCreatedBy(Pageable pageable, Long partId, String username);
+
+    /**
+     * Questions with an id greater than lastId in id order, at most limit rows, filtered by part unless partId is 0 and
+     * by creator unless username is null
+     */
+    List<QuestionSummary> findQuestionSummariesAfter(Long partId, String username, Long lastId, int limit);
+
     void save(Question question);
 
+    int getPointByDifficultyLevel(DifficultyLevel difficultyLevel);
+
     void update(Question question);
 
     void delete(Long id);
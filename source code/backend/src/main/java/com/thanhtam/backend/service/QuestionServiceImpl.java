@@ -3,12 +3,15 @@ package com.thanhtam.backend.service;
 import com.thanhtam.backend.controller.ExamController;
 import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.dto.QuestionSummary;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.DifficultyLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
@@ -108,27 +111,55 @@ public class QuestionServiceImpl implements QuestionService {
     }
 
 
+    @Override
+    public Page<QuestionSummary> findQuestionSummaries(Pageable pageable) {
+        return questionRepository.findQuestionSummaries(pageable);
+    }
+
+    @Override
+    public Page<QuestionSummary> findQuestionSummariesByCreatedBy(Pageable pageable, String username) {
+        return questionRepository.findQuestionSummariesByCreatedBy(pageable, username);
+    }
+
+    @Override
+    public Page<QuestionSummary> findQuestionSummariesByPart(Pageable pageable, Long partId) {
+        return questionRepository.findQuestionSummariesByPart(pageable, partId);
+    }
+
+    @Override
+    public Page<QuestionSummary> findQuestionSummariesByPartAndCreatedBy(Pageable pageable, Long partId, String username) {
+        return questionRepository.findQuestionSummariesByPartAndCreatedBy(pageable, partId, username);
+    }
+
+    @Override
+    public List<QuestionSummary> findQuestionSummariesAfter(Long partId, String username, Long lastId, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        if (partId == 0) {
+            return username == null ? questionRepository.findQuestionSummariesAfter(lastId, pageable)
+                    : questionRepository.findQuestionSummariesByCreatedByAfter(username, lastId, pageable);
+        }
+        return username == null ? questionRepository.findQuestionSummariesByPartAfter(partId, lastId, pageable)
+                : questionRepository.findQuestionSummariesByPartAndCreatedByAfter(partId, username, lastId, pageable);
+    }
+
     @Override
     public void save(Question question) {
-        int point;
-        switch (question.getDifficultyLevel()) {
-            case EASY: {
-                point = 5;
-                break;
-            }
-            case MEDIUM: {
-                point = 10;
-                break;
-            }
-            case HARD: {
-                point = 15;
-                break;
-            }
+        question.setPoint(getPointByDifficultyLevel(question.getDifficultyLevel()));
+        questionRepository.save(question);
+    }
+
+    @Override
+    public int getPointByDifficultyLevel(DifficultyLevel difficultyLevel) {
+        switch (difficultyLevel) {
+            case EASY:
+                return 5;
+            case MEDIUM:
+                return 10;
+            case HARD:
+                return 15;
             default:
-                point = 0;
+                return 0;
         }
-        question.setPoint(point);
-        questionRepository.save(question);
     }
 
     @Override
@@ -0,0 +1,149 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.thanhtam.backend.dto.S3FilePage;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.dto.StoragePage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Stores objects in the S3 bucket. Puts stream through the transfer manager and complete from its progress events, so
+ * no thread waits for the upload. The v1 SDK has no non-blocking client for the other calls, they run on the storage
+ * pool; a get only opens the object there and hands its content stream to the caller.
+ */
+@Service("s3StorageService")
+public class S3AsyncStorageServiceImpl implements AsyncStorageService {
+    private TransferManager transferManager;
+    private S3Services s3Services;
+    private ExecutorService storageExecutor;
+
+    @Value("${isc.s3.bucket}")
+    private String bucketName;
+
+    @Autowired
+    public S3AsyncStorageServiceImpl(TransferManager transferManager, S3Services s3Services, @Qualifier("storageExecutor") ExecutorService storageExecutor) {
+        this.transferManager = transferManager;
+        this.s3Services = s3Services;
+        this.storageExecutor = storageExecutor;
+    }
+
+    @Override
+    public CompletableFuture<StorageObject> put(String key, InputStream content, long size, String contentType) {
+        CompletableFuture<StorageObject> result = new CompletableFuture<>();
+        try {
+//            Without the length the SDK buffers the whole stream in memory to compute it
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(size);
+            metadata.setContentType(contentType);
+            Upload upload = transferManager.upload(new PutObjectRequest(bucketName, key, content, metadata)
+                    .withCannedAcl(CannedAccessControlList.PublicRead));
+            upload.addProgressListener((ProgressListener) event -> {
+                if (event.getEventType() == ProgressEventType.TRANSFER_COMPLETED_EVENT
+                        || event.getEventType() == ProgressEventType.TRANSFER_FAILED_EVENT
+                        || event.getEventType() == ProgressEventType.TRANSFER_CANCELED_EVENT) {
+                    complete(upload, key, size, contentType, result);
+                }
+            });
+//            The upload may have finished before the listener was added
+            if (upload.isDone()) {
+                complete(upload, key, size, contentType, result);
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((storageObject, throwable) -> closeQuietly(content));
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<StorageObject> get(String key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                S3Object s3Object = s3Services.downloadS3Object(key, null);
+                ObjectMetadata metadata = s3Object.getObjectMetadata();
+                return new StorageObject(key, metadata.getContentLength(), metadata.getContentType(), metadata.getETag(),
+                        metadata.getLastModified(), s3Object.getObjectContent());
+            } catch (AmazonServiceException e) {
+                throw new CompletionException(toNoSuchFile(key, e));
+            }
+        }, storageExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String key) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+//                S3 deletes succeed for missing keys, the HEAD keeps the contract of the local backend
+                s3Services.getS3ObjectMetadata(key);
+                s3Services.deleteFile(key);
+            } catch (AmazonServiceException e) {
+                throw new CompletionException(toNoSuchFile(key, e));
+            }
+        }, storageExecutor);
+    }
+
+    @Override
+    public CompletableFuture<StoragePage> list(String prefix, int pageSize, String continuationToken) {
+        return CompletableFuture.supplyAsync(() -> {
+            S3FilePage page = s3Services.listS3Files(prefix, pageSize, continuationToken);
+            List<StorageObject> files = page.getFiles().stream()
+                    .map(file -> new StorageObject(file.getKey(), file.getSize(), null, file.getETag(), file.getLastModified(), null))
+                    .collect(Collectors.toList());
+            return new StoragePage(files, page.getNextContinuationToken(), page.isTruncated());
+        }, storageExecutor);
+    }
+
+    private void complete(Upload upload, String key, long size, String contentType, CompletableFuture<StorageObject> result) {
+        try {
+            Exception exception = upload.waitForException();
+            if (upload.getState() == TransferState.Canceled) {
+                result.completeExceptionally(new CancellationException("Upload of " + key + " was canceled"));
+            } else if (exception != null) {
+                result.completeExceptionally(exception);
+            } else {
+                UploadResult uploadResult = upload.waitForUploadResult();
+                result.complete(new StorageObject(key, size, contentType, uploadResult.getETag(), new Date(), null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private Exception toNoSuchFile(String key, AmazonServiceException e) {
+        return e.getStatusCode() == HttpStatus.NOT_FOUND.value() ? new NoSuchFileException(key) : e;
+    }
+
+    private void closeQuietly(InputStream content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+//            The upload already has everything it needed
+        }
+    }
+}
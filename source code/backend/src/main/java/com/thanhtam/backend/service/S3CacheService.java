@@ -0,0 +1,17 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.CachedS3Object;
+import com.thanhtam.backend.dto.S3CacheStats;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface S3CacheService {
+    Optional<CachedS3Object> getObject(String keyName) throws IOException;
+
+    void evict(String keyName);
+
+    void recordBytesServed(long bytes);
+
+    S3CacheStats getStats();
+}
@@ -0,0 +1,321 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.services.s3.model.S3Object;
+import com.google.common.hash.Hashing;
+import com.thanhtam.backend.dto.CachedS3Object;
+import com.thanhtam.backend.dto.S3CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Read-through disk cache of S3 objects, keyed by object key.
+ * <p>
+ * A cached object is served without calling S3 until it is older than the revalidation interval, after that it is
+ * revalidated with its ETag and only downloaded again when it changed. Objects are downloaded to a temp file and
+ * renamed into place, entries are evicted least recently used first when the total size is above the limit.
+ * Concurrent misses of the same key wait for a single download. Keys found too large to be cached are remembered so
+ * that later reads go straight to S3, once the revalidation interval has passed a HEAD tells whether they still are.
+ * A download running while its key is evicted is not added to the cache.
+ */
+@Service
+public class S3CacheServiceImpl implements S3CacheService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3CacheServiceImpl.class);
+    private static final int MAX_OVERSIZED_KEYS = 1024;
+    private S3Services s3Services;
+
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> oversized = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_OVERSIZED_KEYS;
+        }
+    };
+    private final Map<String, Fetch> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong collapsedFetches = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private long totalBytes;
+    private Path cachePath;
+
+    @Value("${isc.s3.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${isc.s3.cache.dir:s3-cache}")
+    private String cacheDir;
+
+    @Value("${isc.s3.cache.max-size-mb:512}")
+    private long maxSizeMb;
+
+    @Value("${isc.s3.cache.max-entry-size-mb:16}")
+    private long maxEntrySizeMb;
+
+    @Value("${isc.s3.cache.revalidate-seconds:60}")
+    private long revalidateSeconds;
+
+    @Autowired
+    public S3CacheServiceImpl(S3Services s3Services) {
+        this.s3Services = s3Services;
+    }
+
+    /**
+     * The index only lives in memory, files left by a previous run are removed.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        cachePath = Paths.get(cacheDir);
+        Files.createDirectories(cachePath);
+        try (Stream<Path> files = Files.list(cachePath)) {
+            files.forEach(this::deleteFile);
+        }
+    }
+
+    /**
+     * @return the cached object, or empty when the cache is disabled or the object is too large to be cached
+     */
+    @Override
+    public Optional<CachedS3Object> getObject(String keyName) throws IOException {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CacheEntry entry;
+        Long oversizedAt;
+        synchronized (entries) {
+            entry = entries.get(keyName);
+            oversizedAt = oversized.get(keyName);
+        }
+        long revalidateMillis = TimeUnit.SECONDS.toMillis(revalidateSeconds);
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < revalidateMillis) {
+            hits.incrementAndGet();
+            return Optional.of(entry.toCachedObject());
+        }
+        if (oversizedAt != null && System.currentTimeMillis() - oversizedAt < revalidateMillis) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        Fetch fetch = new Fetch();
+        Fetch runningFetch = inFlight.putIfAbsent(keyName, fetch);
+        if (runningFetch != null) {
+            collapsedFetches.incrementAndGet();
+            return Optional.ofNullable(join(runningFetch)).map(CacheEntry::toCachedObject);
+        }
+        try {
+            CacheEntry fetched = fetch(keyName, entry, oversizedAt != null, fetch);
+            fetch.complete(fetched);
+            return Optional.ofNullable(fetched).map(CacheEntry::toCachedObject);
+        } catch (IOException | RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(keyName, fetch);
+        }
+    }
+
+    @Override
+    public void evict(String keyName) {
+//        Marked before the entry is removed, a running download checks the mark when it adds its entry
+        Fetch runningFetch = inFlight.get(keyName);
+        if (runningFetch != null) {
+            runningFetch.stale = true;
+        }
+        CacheEntry entry;
+        synchronized (entries) {
+            oversized.remove(keyName);
+            entry = entries.remove(keyName);
+            if (entry != null) {
+                totalBytes -= entry.contentLength;
+            }
+        }
+        if (entry != null) {
+            deleteFile(entry.path);
+        }
+    }
+
+    @Override
+    public void recordBytesServed(long bytes) {
+        bytesServed.addAndGet(bytes);
+    }
+
+    @Override
+    public S3CacheStats getStats() {
+        S3CacheStats stats = new S3CacheStats();
+        stats.setHits(hits.get());
+        stats.setMisses(misses.get());
+        stats.setRevalidations(revalidations.get());
+        stats.setCollapsedFetches(collapsedFetches.get());
+        stats.setEvictions(evictions.get());
+        stats.setBytesServed(bytesServed.get());
+        long requests = stats.getHits() + stats.getMisses();
+        stats.setHitRatio(requests == 0 ? 0 : (double) stats.getHits() / requests);
+        synchronized (entries) {
+            stats.setEntries(entries.size());
+            stats.setTotalBytes(totalBytes);
+        }
+        stats.setMaxBytes(maxSizeMb * 1024 * 1024);
+        return stats;
+    }
+
+    private CacheEntry join(CompletableFuture<CacheEntry> runningFetch) throws IOException {
+        try {
+            return runningFetch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private CacheEntry fetch(String keyName, CacheEntry staleEntry, boolean wasOversized, Fetch fetch) throws IOException {
+        long maxEntryBytes = maxEntrySizeMb * 1024 * 1024;
+        if (wasOversized && s3Services.getS3ObjectMetadata(keyName).getContentLength() > maxEntryBytes) {
+            misses.incrementAndGet();
+            markOversized(keyName, fetch);
+            return null;
+        }
+        S3Object s3Object = s3Services.downloadS3Object(keyName, staleEntry == null ? null : quote(staleEntry.eTag));
+        if (s3Object == null) {
+            revalidations.incrementAndGet();
+            if (fetch.stale) {
+                return null;
+            }
+            hits.incrementAndGet();
+            staleEntry.validatedAt = System.currentTimeMillis();
+            return staleEntry;
+        }
+        misses.incrementAndGet();
+        try (S3Object object = s3Object) {
+            long contentLength = object.getObjectMetadata().getContentLength();
+            if (contentLength > maxEntryBytes) {
+                object.getObjectContent().abort();
+                markOversized(keyName, fetch);
+                return null;
+            }
+            Path target = cachePath.resolve(Hashing.sha256().hashString(keyName, StandardCharsets.UTF_8) + "-" + version.incrementAndGet());
+            Path tempFile = Files.createTempFile(cachePath, "fetch-", ".tmp");
+            try {
+                Files.copy(object.getObjectContent(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                deleteFile(tempFile);
+                throw e;
+            }
+            CacheEntry entry = new CacheEntry(keyName, target, object.getObjectMetadata().getETag(), contentLength, object.getObjectMetadata().getContentType());
+            if (!put(entry, fetch)) {
+                deleteFile(target);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Drops the cached copy of an object that grew too large and remembers the key
+     */
+    private void markOversized(String keyName, Fetch fetch) {
+        CacheEntry removed;
+        synchronized (entries) {
+            if (fetch.stale) {
+                return;
+            }
+            oversized.put(keyName, System.currentTimeMillis());
+            removed = entries.remove(keyName);
+            if (removed != null) {
+                totalBytes -= removed.contentLength;
+            }
+        }
+        if (removed != null) {
+            deleteFile(removed.path);
+        }
+    }
+
+    /**
+     * @return false when the key was evicted while the entry was downloaded
+     */
+    private boolean put(CacheEntry entry, Fetch fetch) {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        CacheEntry replaced;
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (entries) {
+            if (fetch.stale) {
+                return false;
+            }
+            replaced = entries.put(entry.keyName, entry);
+            totalBytes += entry.contentLength - (replaced == null ? 0 : replaced.contentLength);
+            Iterator<CacheEntry> eldest = entries.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                CacheEntry candidate = eldest.next();
+                if (candidate == entry) {
+                    continue;
+                }
+                eldest.remove();
+                totalBytes -= candidate.contentLength;
+                evicted.add(candidate);
+            }
+        }
+        if (replaced != null) {
+            deleteFile(replaced.path);
+        }
+        evictions.addAndGet(evicted.size());
+        evicted.forEach(candidate -> deleteFile(candidate.path));
+        return true;
+    }
+
+    private void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+//            The file may still be open for a running download
+            LOGGER.error("Could not delete cached file " + path + ": " + e.getMessage());
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private static String quote(String eTag) {
+        return eTag == null || eTag.startsWith("\"") ? eTag : "\"" + eTag + "\"";
+    }
+
+    private static class Fetch extends CompletableFuture<CacheEntry> {
+        private volatile boolean stale;
+    }
+
+    private static class CacheEntry {
+        private final String keyName;
+        private final Path path;
+        private final String eTag;
+        private final long contentLength;
+        private final String contentType;
+        private volatile long validatedAt = System.currentTimeMillis();
+
+        CacheEntry(String keyName, Path path, String eTag, long contentLength, String contentType) {
+            this.keyName = keyName;
+            this.path = path;
+            this.eTag = eTag;
+            this.contentLength = contentLength;
+            this.contentType = contentType;
+        }
+
+        CachedS3Object toCachedObject() {
+            return new CachedS3Object(keyName, path, eTag, contentLength, contentType);
+        }
+    }
+}
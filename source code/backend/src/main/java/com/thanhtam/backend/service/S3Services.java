@@ -1,13 +1,30 @@
 package com.thanhtam.backend.service;
 
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.thanhtam.backend.dto.S3FilePage;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.Date;
 import java.util.List;
 
 public interface S3Services {
-    ByteArrayOutputStream downloadS3File(String keyName);
+    S3Object downloadS3Object(String keyName, String nonmatchingETag);
+
+    S3Object downloadS3Object(String keyName, long rangeStart, long rangeEnd);
+
+    ObjectMetadata getS3ObjectMetadata(String keyName);
+
+    URL generatePresignedUrl(String keyName, HttpMethod method, Date expiration, String contentType, Long contentLength, CannedAccessControlList cannedAcl);
+
     void uploadS3File(String keyName, MultipartFile file);
+
+    void uploadS3File(String keyName, byte[] content, String contentType);
     List<String> listS3Files();
+
+    S3FilePage listS3Files(String prefix, int pageSize, String continuationToken);
     void deleteFile(String keyName);
 }
@@ -2,8 +2,12 @@ package com.thanhtam.backend.service;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.*;
+import com.thanhtam.backend.dto.S3FileInfo;
+import com.thanhtam.backend.dto.S3FilePage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,11 +15,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class S3ServicesImpl implements S3Services {
@@ -31,22 +38,63 @@ public class S3ServicesImpl implements S3Services {
     @Value("${isc.s3.bucket}")
     private String bucketName;
 
+    /**
+     * Opens the object stream, the caller must close the returned object.
+     *
+     * @param nonmatchingETag ETag known by the client, may be null
+     * @return the object, or null when its ETag still matches {@code nonmatchingETag}
+     */
     @Override
-    public ByteArrayOutputStream downloadS3File(String keyName) {
-        try {
-            S3Object s3object = s3client.getObject(new GetObjectRequest(bucketName, keyName));
-
-            InputStream is = s3object.getObjectContent();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            int len;
-            byte[] buffer = new byte[4096];
-            while ((len = is.read(buffer, 0, buffer.length)) != -1) {
-                baos.write(buffer, 0, len);
-            }
+    public S3Object downloadS3Object(String keyName, String nonmatchingETag) {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, keyName);
+        if (nonmatchingETag != null) {
+            getObjectRequest.setNonmatchingETagConstraints(Collections.singletonList(nonmatchingETag));
+        }
+        return getObject(getObjectRequest);
+    }
 
-            return baos;
-        } catch (IOException ioe) {
-            logger.error("IOException: " + ioe.getMessage());
+    /**
+     * Opens a byte range of the object, both ends inclusive. The caller must close the returned object.
+     */
+    @Override
+    public S3Object downloadS3Object(String keyName, long rangeStart, long rangeEnd) {
+        GetObjectRequest getObjectRequest = new GetObjectRequest(bucketName, keyName);
+        getObjectRequest.setRange(rangeStart, rangeEnd);
+        return getObject(getObjectRequest);
+    }
+
+    @Override
+    public ObjectMetadata getS3ObjectMetadata(String keyName) {
+        return s3client.getObjectMetadata(bucketName, keyName);
+    }
+
+    /**
+     * Signs a url that lets its holder call S3 directly until the expiration.
+     *
+     * @param contentType   signed with a PUT url, the upload must send the same Content-Type, may be null
+     * @param contentLength signed with a PUT url, the upload must send exactly that many bytes, may be null
+     * @param cannedAcl     signed with a PUT url, the upload must send it as x-amz-acl, may be null
+     */
+    @Override
+    public URL generatePresignedUrl(String keyName, HttpMethod method, Date expiration, String contentType, Long contentLength, CannedAccessControlList cannedAcl) {
+        GeneratePresignedUrlRequest presignedUrlRequest = new GeneratePresignedUrlRequest(bucketName, keyName)
+                .withMethod(method)
+                .withExpiration(expiration);
+        if (contentType != null) {
+            presignedUrlRequest.setContentType(contentType);
+        }
+        if (contentLength != null) {
+            presignedUrlRequest.putCustomRequestHeader(Headers.CONTENT_LENGTH, contentLength.toString());
+        }
+        if (cannedAcl != null) {
+            presignedUrlRequest.putCustomRequestHeader(Headers.S3_CANNED_ACL, cannedAcl.toString());
+        }
+        return s3client.generatePresignedUrl(presignedUrlRequest);
+    }
+
+    private S3Object getObject(GetObjectRequest getObjectRequest) {
+        try {
+            return s3client.getObject(getObjectRequest);
         } catch (AmazonServiceException ase) {
             logger.info("sCaught an AmazonServiceException from GET requests, rejected reasons:");
             logger.info("Error Message:    " + ase.getMessage());
@@ -60,8 +108,6 @@ public class S3ServicesImpl implements S3Services {
             logger.info("Error Message: " + ace.getMessage());
             throw ace;
         }
-
-        return null;
     }
 
     @Override
@@ -87,6 +133,14 @@ public class S3ServicesImpl implements S3Services {
         }
     }
 
+    @Override
+    public void uploadS3File(String keyName, byte[] content, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setContentType(contentType);
+        s3client.putObject(new PutObjectRequest(bucketName, keyName, new ByteArrayInputStream(content), metadata).withCannedAcl(CannedAccessControlList.PublicRead));
+    }
+
     public void deleteFile(String keyName) {
         logger.info("Deleting file with name= " + keyName);
         final DeleteObjectRequest deleteObjectRequest = new DeleteObjectRequest(bucketName, keyName);
@@ -121,4 +175,22 @@ public class S3ServicesImpl implements S3Services {
 
         return keys;
     }
+
+    /**
+     * Lists one page of keys, the page maps to a single ListObjectsV2 request.
+     */
+    @Override
+    public S3FilePage listS3Files(String prefix, int pageSize, String continuationToken) {
+        ListObjectsV2Request listObjectsRequest = new ListObjectsV2Request()
+                .withBucketName(bucketName)
+                .withPrefix(prefix)
+                .withMaxKeys(pageSize)
+                .withContinuationToken(continuationToken);
+        ListObjectsV2Result result = s3client.listObjectsV2(listObjectsRequest);
+        List<S3FileInfo> files = result.getObjectSummaries().stream()
+                .filter(item -> !item.getKey().endsWith("/"))
+                .map(item -> new S3FileInfo(item.getKey(), item.getSize(), item.getETag(), item.getLastModified()))
+                .collect(Collectors.toList());
+        return new S3FilePage(files, result.getNextContinuationToken(), result.isTruncated());
+    }
 }
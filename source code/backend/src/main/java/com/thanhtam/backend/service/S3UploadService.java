@@ -0,0 +1,11 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface S3UploadService {
+    CompletableFuture<UploadResult> uploadS3FileAsync(String keyName, MultipartFile file) throws IOException;
+}
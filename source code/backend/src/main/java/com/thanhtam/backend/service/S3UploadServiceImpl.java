@@ -0,0 +1,217 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Uploads files to S3 in the background. The upload is first written to a local staging file and synced to disk,
+ * after that the caller can answer the request while the transfer manager sends the file, in parallel parts when it is
+ * above the multipart threshold.
+ * <p>
+ * The key and content type are kept next to the staged file until S3 has the object. A failed transfer is retried,
+ * and uploads still staged when the application stops are sent again at the next start.
+ */
+@Service
+public class S3UploadServiceImpl implements S3UploadService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3UploadServiceImpl.class);
+    private static final String STAGED_SUFFIX = ".part";
+    private static final String UPLOAD_INFO_SUFFIX = ".properties";
+    private static final String KEY_NAME = "keyName";
+    private static final String CONTENT_TYPE = "contentType";
+    private TransferManager transferManager;
+    private ExecutorService s3UploadExecutor;
+
+    @Value("${isc.s3.bucket}")
+    private String bucketName;
+
+    @Value("${isc.s3.upload.staging-dir:s3-staging}")
+    private String stagingDir;
+
+    @Value("${isc.s3.upload.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${isc.s3.upload.retry-delay-ms:2000}")
+    private long retryDelayMs;
+
+    @Autowired
+    public S3UploadServiceImpl(TransferManager transferManager, @Qualifier("s3UploadExecutor") ExecutorService s3UploadExecutor) {
+        this.transferManager = transferManager;
+        this.s3UploadExecutor = s3UploadExecutor;
+    }
+
+    /**
+     * Sends the uploads left in the staging directory by a previous run, staged files without upload info belong to
+     * requests that failed before they were answered and are removed.
+     */
+    @PostConstruct
+    public void resumeStagedUploads() throws IOException {
+        Path stagingPath = Paths.get(stagingDir);
+        Files.createDirectories(stagingPath);
+        List<Path> stagedFiles;
+        try (Stream<Path> files = Files.list(stagingPath)) {
+            stagedFiles = files.collect(Collectors.toList());
+        }
+        for (Path file : stagedFiles) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(file);
+            }
+        }
+        stagedFiles.removeIf(file -> !file.getFileName().toString().endsWith(STAGED_SUFFIX));
+        for (Path stagedFile : stagedFiles) {
+            Path uploadInfo = uploadInfoPath(stagedFile);
+            if (!Files.exists(uploadInfo)) {
+                deleteStagedFile(stagedFile);
+                continue;
+            }
+            Properties info = new Properties();
+            try (InputStream inputStream = Files.newInputStream(uploadInfo)) {
+                info.load(inputStream);
+            }
+            String keyName = info.getProperty(KEY_NAME);
+            try {
+                submit(keyName, stagedFile, info.getProperty(CONTENT_TYPE));
+                LOGGER.info("Resumed staged upload of " + keyName);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Upload queue is full, the remaining staged uploads are sent at the next start");
+                return;
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<UploadResult> uploadS3FileAsync(String keyName, MultipartFile file) throws IOException {
+        Path stagedFile = stage(keyName, file);
+        try {
+            return submit(keyName, stagedFile, file.getContentType());
+        } catch (RejectedExecutionException e) {
+            deleteStagedFile(stagedFile);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<UploadResult> submit(String keyName, Path stagedFile, String contentType) {
+        CompletableFuture<UploadResult> upload = CompletableFuture.supplyAsync(() -> upload(keyName, stagedFile, contentType), s3UploadExecutor);
+        upload.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                LOGGER.error("Could not upload " + keyName + " to S3, it stays staged until the next start: " + throwable.getMessage());
+            }
+        });
+        return upload;
+    }
+
+    private Path stage(String keyName, MultipartFile file) throws IOException {
+        Path stagingPath = Paths.get(stagingDir);
+        Files.createDirectories(stagingPath);
+        Path stagedFile = Files.createTempFile(stagingPath, "upload-", STAGED_SUFFIX);
+        try {
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            force(stagedFile);
+            Properties info = new Properties();
+            info.setProperty(KEY_NAME, keyName);
+            if (file.getContentType() != null) {
+                info.setProperty(CONTENT_TYPE, file.getContentType());
+            }
+//            The info file is complete before it gets its name, a staged file with info is always sent again
+            Path uploadInfoTmp = stagingPath.resolve(uploadInfoPath(stagedFile).getFileName() + ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(uploadInfoTmp)) {
+                info.store(outputStream, null);
+            }
+            force(uploadInfoTmp);
+            Files.move(uploadInfoTmp, uploadInfoPath(stagedFile), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteStagedFile(stagedFile);
+            throw e;
+        }
+        return stagedFile;
+    }
+
+    private void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Sends the staged file, the staged file is only removed once S3 has the object
+     */
+    private UploadResult upload(String keyName, Path stagedFile, String contentType) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, keyName, stagedFile.toFile())
+                        .withCannedAcl(CannedAccessControlList.PublicRead);
+                if (contentType != null) {
+                    ObjectMetadata metadata = new ObjectMetadata();
+                    metadata.setContentType(contentType);
+                    putObjectRequest.setMetadata(metadata);
+                }
+                UploadResult result = transferManager.upload(putObjectRequest).waitForUploadResult();
+                deleteStagedFile(stagedFile);
+                return result;
+            } catch (AmazonClientException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                LOGGER.warn("Upload of " + keyName + " failed on attempt " + attempt + ", retrying: " + e.getMessage());
+                sleep(retryDelayMs * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private Path uploadInfoPath(Path stagedFile) {
+        String fileName = stagedFile.getFileName().toString();
+        return stagedFile.resolveSibling(fileName.substring(0, fileName.length() - STAGED_SUFFIX.length()) + UPLOAD_INFO_SUFFIX);
+    }
+
+    private void deleteStagedFile(Path stagedFile) {
+        try {
+            Files.deleteIfExists(uploadInfoPath(stagedFile));
+            Files.deleteIfExists(stagedFile);
+        } catch (IOException e) {
+            LOGGER.error("Could not delete staged file " + stagedFile + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.thanhtam.backend.service;
+
+public interface SchedulerLockService {
+    /**
+     * Takes the lease of the job for this node when no node holds an unexpired one
+     */
+    boolean tryLock(String name, long leaseMillis);
+
+    /**
+     * Extends the lease held by this node, false when it expired or another node took it over
+     */
+    boolean renew(String name, long leaseMillis);
+
+    /**
+     * Gives the lease back early so the next run on any node does not wait for it to expire
+     */
+    void unlock(String name);
+}
@@ -0,0 +1,51 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.repository.SchedulerLockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Leases in the scheduler_lock table, so a scheduled job runs on one node of the cluster at a time.
+ * Leases are compared with each node's clock, they should be much longer than the clock drift between nodes.
+ */
+@Service
+public class SchedulerLockServiceImpl implements SchedulerLockService {
+    private SchedulerLockRepository schedulerLockRepository;
+    private final String nodeId;
+
+    @Autowired
+    public SchedulerLockServiceImpl(SchedulerLockRepository schedulerLockRepository) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.nodeId = getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public boolean tryLock(String name, long leaseMillis) {
+        Date now = new Date();
+        return schedulerLockRepository.acquire(name, nodeId, now, new Date(now.getTime() + leaseMillis)) == 1;
+    }
+
+    @Override
+    public boolean renew(String name, long leaseMillis) {
+        Date now = new Date();
+        return schedulerLockRepository.renew(name, nodeId, now, new Date(now.getTime() + leaseMillis)) == 1;
+    }
+
+    @Override
+    public void unlock(String name) {
+        schedulerLockRepository.release(name, nodeId, new Date());
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
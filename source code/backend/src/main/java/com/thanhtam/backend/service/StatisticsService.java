@@ -1,5 +1,8 @@
 package com.thanhtam.backend.service;
 
+import com.thanhtam.backend.dto.EntityCacheStats;
+import com.thanhtam.backend.dto.ExecutorStats;
+
 import java.util.List;
 
 public interface StatisticsService {
@@ -12,4 +15,6 @@ public interface StatisticsService {
     Double getChangeAccount();
     Double getChangeExamUser();
     List<Long> countExamUserLastedSevenDaysTotal();
+    List<EntityCacheStats> getEntityCacheStats();
+    List<ExecutorStats> getExecutorStats();
 }
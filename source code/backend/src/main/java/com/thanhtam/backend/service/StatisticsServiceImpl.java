@@ -1,34 +1,48 @@
 package com.thanhtam.backend.service;
 
+import com.thanhtam.backend.config.ReportExecutor;
+import com.thanhtam.backend.dto.EntityCacheStats;
+import com.thanhtam.backend.dto.ExecutorStats;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.repository.*;
 import org.decimal4j.util.DoubleRounder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
+@Transactional(readOnly = true)
 public class StatisticsServiceImpl implements StatisticsService {
     private ExamRepository examRepository;
     private ExamUserRepository examUserRepository;
     private QuestionRepository questionRepository;
     private UserRepository userRepository;
+    private EntityManagerFactory entityManagerFactory;
+    private List<ReportExecutor> reportExecutors;
 
     private Logger logger = LoggerFactory.getLogger(StatisticsServiceImpl.class);
 
     @Autowired
-    public StatisticsServiceImpl(ExamRepository examRepository, ExamUserRepository examUserRepository, QuestionRepository questionRepository, UserRepository userRepository) {
+    public StatisticsServiceImpl(ExamRepository examRepository, ExamUserRepository examUserRepository, QuestionRepository questionRepository, UserRepository userRepository, EntityManagerFactory entityManagerFactory, List<ReportExecutor> reportExecutors) {
         this.examRepository = examRepository;
         this.examUserRepository = examUserRepository;
         this.questionRepository = questionRepository;
         this.userRepository = userRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.reportExecutors = reportExecutors;
     }
 
     @Override
@@ -259,4 +273,42 @@ public class StatisticsServiceImpl implements StatisticsService {
         // Return false if none of the conditions are satisfied
         return false;
     }
+
+    /**
+     * Hit and miss counts of every second-level cache region and of the query cache, since startup
+     */
+    @Override
+    public List<EntityCacheStats> getEntityCacheStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<EntityCacheStats> stats = new ArrayList<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            if (regionStatistics != null) {
+                stats.add(getEntityCacheStats(region, regionStatistics.getHitCount(), regionStatistics.getMissCount(),
+                        regionStatistics.getPutCount(), regionStatistics.getElementCountInMemory()));
+            }
+        }
+        stats.add(getEntityCacheStats("query", statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), -1));
+        return stats;
+    }
+
+    /**
+     * Threads, queue and task counts of the pools long reports run on
+     */
+    @Override
+    public List<ExecutorStats> getExecutorStats() {
+        return reportExecutors.stream().map(ReportExecutor::getStats).collect(Collectors.toList());
+    }
+
+    private EntityCacheStats getEntityCacheStats(String region, long hits, long misses, long puts, long entries) {
+        EntityCacheStats stats = new EntityCacheStats();
+        stats.setRegion(region);
+        stats.setHits(hits);
+        stats.setMisses(misses);
+        stats.setPuts(puts);
+        stats.setEntries(entries);
+        stats.setHitRatio(hits + misses == 0 ? 0 : DoubleRounder.round((double) hits / (hits + misses), 4));
+        return stats;
+    }
 }
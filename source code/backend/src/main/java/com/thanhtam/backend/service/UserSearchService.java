@@ -0,0 +1,18 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.UserSearchDocument;
+import com.thanhtam.backend.dto.UserSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface UserSearchService {
+    Page<UserSummary> search(String keyword, Pageable pageable);
+
+    void index(UserSearchDocument document);
+
+    void indexProfile(Long profileId, String firstName, String lastName);
+
+    void remove(Long userId);
+
+    void rebuild();
+}
@@ -0,0 +1,284 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.UserSearchDocument;
+import com.thanhtam.backend.dto.UserSummary;
+import com.thanhtam.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Trigram index over the username, email and profile name of every user, so that a search does not scan the users
+ * table with leading wildcard LIKEs.
+ * <p>
+ * The index is loaded at startup and kept up to date by {@link com.thanhtam.backend.config.SearchIndexListener} once
+ * user and profile changes are committed. A search intersects the postings of the trigrams of the keyword, checks the
+ * candidates with a substring match, ranks them and fetches only the users of the requested page.
+ */
+@Service
+public class UserSearchServiceImpl implements UserSearchService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserSearchServiceImpl.class);
+    static final int GRAM_SIZE = 3;
+
+    private UserRepository userRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Long> userIdsByProfileId = new HashMap<>();
+
+    @Autowired
+    public UserSearchServiceImpl(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    @Override
+    public void rebuild() {
+        List<UserSearchDocument> documents = userRepository.findAllSearchDocuments();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entries.clear();
+            userIdsByProfileId.clear();
+            documents.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("Indexed " + documents.size() + " users for search");
+    }
+
+    /**
+     * @return users matching the keyword, best matches first: username before name before email, and in each field an
+     * exact match before a prefix before a match anywhere. A blank keyword returns every user by id.
+     */
+    @Override
+    public Page<UserSummary> search(String keyword, Pageable pageable) {
+        String query = normalize(keyword);
+        List<Long> ranked;
+        lock.readLock().lock();
+        try {
+            ranked = query.isEmpty() ? new ArrayList<>(new TreeSet<>(entries.keySet())) : rank(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<Long> pageIds = ranked.subList(from, to);
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, ranked.size());
+        }
+        Map<Long, UserSummary> users = userRepository.findUserSummariesByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(UserSummary::getId, Function.identity()));
+//        A user deleted between the lookup and the fetch is skipped
+        List<UserSummary> content = pageIds.stream().map(users::get).filter(Objects::nonNull).collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, ranked.size());
+    }
+
+    @Override
+    public void index(UserSearchDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(document.getId());
+            put(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Profiles are saved on their own as well as through their user, the name is re-indexed for the user owning it.
+     */
+    @Override
+    public void indexProfile(Long profileId, String firstName, String lastName) {
+        lock.writeLock().lock();
+        try {
+            Long userId = userIdsByProfileId.get(profileId);
+            Entry entry = userId == null ? null : entries.get(userId);
+            if (entry == null) {
+                return;
+            }
+            removeEntry(userId);
+            put(new UserSearchDocument(userId, profileId, entry.document.getUsername(), entry.document.getEmail(), firstName, lastName));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long userId) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Long> rank(String query) {
+        Set<Long> candidates = query.length() < GRAM_SIZE ? shortQueryCandidates(query) : candidates(query);
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Long userId : candidates) {
+            int score = entries.get(userId).score(query);
+            if (score > 0) {
+                scores.put(userId, score);
+            }
+        }
+        Comparator<Long> byRank = Comparator.<Long>comparingInt(scores::get).reversed()
+                .thenComparingInt(userId -> entries.get(userId).username.length())
+                .thenComparing(Comparator.naturalOrder());
+        return scores.keySet().stream().sorted(byRank).collect(Collectors.toList());
+    }
+
+    /**
+     * Intersection of the postings of every trigram of the query, smallest first
+     */
+    private Set<Long> candidates(String query) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> candidates = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates.retainAll(lists.get(i));
+        }
+        return candidates;
+    }
+
+    /**
+     * Keywords shorter than a trigram match the users of every trigram containing them, and the fields shorter than a
+     * trigram which are indexed whole
+     */
+    private Set<Long> shortQueryCandidates(String query) {
+        Set<Long> candidates = new HashSet<>();
+        postings.forEach((gram, userIds) -> {
+            if (gram.contains(query)) {
+                candidates.addAll(userIds);
+            }
+        });
+        return candidates;
+    }
+
+    private void put(UserSearchDocument document) {
+        Entry entry = new Entry(document);
+        entries.put(document.getId(), entry);
+        if (document.getProfileId() != null) {
+            userIdsByProfileId.put(document.getProfileId(), document.getId());
+        }
+        for (String gram : entry.grams()) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(document.getId());
+        }
+    }
+
+    private void removeEntry(Long userId) {
+        Entry entry = entries.remove(userId);
+        if (entry == null) {
+            return;
+        }
+        if (entry.document.getProfileId() != null) {
+            userIdsByProfileId.remove(entry.document.getProfileId());
+        }
+        for (String gram : entry.grams()) {
+            Set<Long> posting = postings.get(gram);
+            if (posting != null && posting.remove(userId) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Lower case without Vietnamese diacritics, so that "nguyen" finds "Nguyễn"
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").replace('đ', 'd');
+    }
+
+    static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        if (value.length() < GRAM_SIZE) {
+            if (!value.isEmpty()) {
+                grams.add(value);
+            }
+            return grams;
+        }
+        for (int i = 0; i + GRAM_SIZE <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static class Entry {
+        private final UserSearchDocument document;
+        private final String username;
+        private final String email;
+        private final String name;
+
+        Entry(UserSearchDocument document) {
+            this.document = document;
+            this.username = normalize(document.getUsername());
+            this.email = normalize(document.getEmail());
+//            Names are displayed last name first, e.g. "Nguyễn Văn" "An"
+            this.name = normalize(Objects.toString(document.getLastName(), "") + " " + Objects.toString(document.getFirstName(), ""));
+        }
+
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>(UserSearchServiceImpl.grams(username));
+            grams.addAll(UserSearchServiceImpl.grams(email));
+            for (String word : name.split(" ")) {
+                grams.addAll(UserSearchServiceImpl.grams(word));
+            }
+            grams.addAll(UserSearchServiceImpl.grams(name));
+            return grams;
+        }
+
+        int score(String query) {
+            if (username.equals(query)) {
+                return 9;
+            }
+            if (username.startsWith(query)) {
+                return 8;
+            }
+            if (username.contains(query)) {
+                return 7;
+            }
+            if (name.equals(query)) {
+                return 6;
+            }
+            if (name.startsWith(query) || name.contains(" " + query)) {
+                return 5;
+            }
+            if (name.contains(query)) {
+                return 4;
+            }
+            if (email.equals(query) || email.startsWith(query)) {
+                return 3;
+            }
+            if (email.contains(query)) {
+                return 2;
+            }
+            return 0;
+        }
+    }
+}
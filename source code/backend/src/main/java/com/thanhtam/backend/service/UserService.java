@@ -1,6 +1,7 @@
 package com.thanhtam.backend.service;
 
 import com.thanhtam.backend.dto.UserExport;
+import com.thanhtam.backend.dto.UserSummary;
 import com.thanhtam.backend.entity.Intake;
 import com.thanhtam.backend.entity.User;
 import org.springframework.data.domain.Page;
@@ -24,6 +25,13 @@ public interface UserService {
 
     Page<User> findUsersByPage(Pageable pageable);
 
+    Page<UserSummary> findUserSummaries(Pageable pageable);
+
+    /**
+     * Users with an id greater than lastId in id order, at most limit rows
+     */
+    List<UserSummary> findUserSummariesAfter(Long lastId, int limit);
+
     Page<User> findUsersDeletedByPage(Pageable pageable, boolean deleted);
 
     Page<User> findAllByDeletedAndUsernameContains(boolean deleted, String username, Pageable pageable);
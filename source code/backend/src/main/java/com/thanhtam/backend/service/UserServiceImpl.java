@@ -2,6 +2,7 @@ package com.thanhtam.backend.service;
 
 import com.thanhtam.backend.config.JwtUtils;
 import com.thanhtam.backend.dto.UserExport;
+import com.thanhtam.backend.dto.UserSummary;
 import com.thanhtam.backend.entity.PasswordResetToken;
 import com.thanhtam.backend.entity.Role;
 import com.thanhtam.backend.entity.User;
@@ -12,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -68,6 +70,16 @@ private Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
         return userRepository.findAll(pageable);
     }
 
+    @Override
+    public Page<UserSummary> findUserSummaries(Pageable pageable) {
+        return userRepository.findUserSummaries(pageable);
+    }
+
+    @Override
+    public List<UserSummary> findUserSummariesAfter(Long lastId, int limit) {
+        return userRepository.findUserSummariesAfter(lastId, PageRequest.of(0, limit));
+    }
+
     @Override
     public Page<User> findUsersDeletedByPage(Pageable pageable, boolean deleted) {
         return userRepository.findAllByDeleted(deleted, pageable);
@@ -0,0 +1,5 @@
+package com.thanhtam.backend.ultilities;
+
+public enum EExamProgressEvent {
+    NOT_STARTED, STARTED, PROGRESS, SUBMITTED, GRADED
+}
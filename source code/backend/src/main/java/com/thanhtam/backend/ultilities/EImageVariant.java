@@ -0,0 +1,81 @@
+package com.thanhtam.backend.ultilities;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resized copies generated for uploaded images. A variant is stored next to the original, its key is the original key
+ * with the variant name before the extension, e.g. images/1_admin_avatar-thumb.png
+ */
+public enum EImageVariant {
+    THUMB("thumb", 64), SMALL("small", 160), MEDIUM("medium", 480);
+
+    /**
+     * Only images uploaded under this prefix have variants
+     */
+    public static final String IMAGE_PREFIX = "images/";
+
+    private final String name;
+    private final int maxSize;
+
+    EImageVariant(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String getKey(String originalKey) {
+        int extensionIndex = originalKey.lastIndexOf('.');
+        return originalKey.substring(0, extensionIndex) + "-" + name + originalKey.substring(extensionIndex);
+    }
+
+    public static String getFormat(String keyOrUrl) {
+        String extension = keyOrUrl.substring(keyOrUrl.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "jpg":
+            case "jpeg":
+                return "jpg";
+            case "png":
+                return "png";
+            default:
+                return null;
+        }
+    }
+
+    public static boolean isSupported(String key) {
+        return key != null && key.startsWith(IMAGE_PREFIX) && key.lastIndexOf('.') > 0 && getFormat(key) != null;
+    }
+
+    /**
+     * Urls of the stored variants by name, a variant that failed to generate or is still being generated is left out.
+     * Images stored before variants existed get the original url for every variant.
+     *
+     * @param variantNames names of the stored variants, comma separated, null when none is stored
+     */
+    public static Map<String, String> getUrls(String originalUrl, String variantNames) {
+        if (originalUrl == null || originalUrl.isEmpty()) {
+            return null;
+        }
+        boolean supported = originalUrl.contains("/" + IMAGE_PREFIX) && getFormat(originalUrl) != null;
+        List<String> stored = variantNames == null ? Collections.emptyList() : Arrays.asList(variantNames.split(","));
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (EImageVariant variant : values()) {
+            if (!supported) {
+                urls.put(variant.name, originalUrl);
+            } else if (stored.contains(variant.name)) {
+                urls.put(variant.name, variant.getKey(originalUrl));
+            }
+        }
+        return urls;
+    }
+}
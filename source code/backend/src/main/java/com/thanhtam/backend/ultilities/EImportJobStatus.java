@@ -0,0 +1,9 @@
+package com.thanhtam.backend.ultilities;
+
+public enum EImportJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,2 @@
+-- Lease of the sweep deleting direct uploads that were never completed, see V6
+insert into scheduler_lock (name, locked_until) values ('presigned-upload-sweep', '1970-01-01 00:00:00');
@@ -0,0 +1,271 @@
+-- Baseline of the schema previously created by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version and only run the later migrations.
+
+create table choice (
+    id bigint not null,
+    choice_text varchar(255),
+    corrected integer,
+    question_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table course (
+    id bigint not null auto_increment,
+    course_code varchar(255),
+    img_url varchar(255),
+    name varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table course_intake (
+    course_id bigint not null,
+    intake_id bigint not null
+) engine=InnoDB;
+
+create table exam (
+    id bigint not null,
+    created_date datetime(6),
+    last_modified_date datetime(6),
+    begin_exam datetime(6),
+    canceled bit,
+    duration_exam integer,
+    finish_exam datetime(6),
+    shuffle TINYINT,
+    question_data text,
+    title varchar(255),
+    created_by_id bigint,
+    last_modified_by_id bigint,
+    intake_id bigint,
+    part_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table exam_user (
+    id bigint not null,
+    answer_sheet text,
+    is_finished TINYINT,
+    is_started TINYINT,
+    remaining_time integer,
+    time_finish datetime(6),
+    time_start datetime(6),
+    total_point double precision,
+    exam_id bigint,
+    user_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table file_blob (
+    hash varchar(64) not null,
+    ref_count bigint,
+    size bigint,
+    primary key (hash)
+) engine=InnoDB;
+
+create table file_info (
+    id bigint not null auto_increment,
+    name varchar(255),
+    url varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table hibernate_sequence (
+    next_val bigint
+) engine=InnoDB;
+
+insert into hibernate_sequence values (1);
+
+create table id_generator (
+    sequence_name varchar(255) not null,
+    next_val bigint,
+    primary key (sequence_name)
+) engine=InnoDB;
+
+create table intake (
+    id bigint not null auto_increment,
+    intake_code varchar(255),
+    name varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table part (
+    id bigint not null auto_increment,
+    name varchar(255),
+    course_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table password_reset_tokens (
+    id bigint not null auto_increment,
+    token varchar(255),
+    user_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table profile (
+    id bigint not null,
+    first_name varchar(255),
+    image varchar(255),
+    last_name varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table question (
+    id bigint not null,
+    created_date datetime(6),
+    last_modified_date datetime(6),
+    deleted bit,
+    difficulty_level integer,
+    point integer,
+    question_text text,
+    created_by_id bigint,
+    last_modified_by_id bigint,
+    part_id bigint,
+    question_type_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+create table question_type (
+    id bigint not null auto_increment,
+    description varchar(255),
+    type_code varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table role (
+    id bigint not null auto_increment,
+    name varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table role_user (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id)
+) engine=InnoDB;
+
+create table stored_file (
+    id bigint not null auto_increment,
+    content_type varchar(255),
+    hash varchar(64),
+    name varchar(255),
+    size bigint,
+    uploaded_date datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create table users (
+    id bigint not null,
+    created_date datetime(6) not null,
+    deleted bit not null,
+    email varchar(255) not null,
+    lastest_login_date datetime(6),
+    password varchar(255),
+    username varchar(255) not null,
+    intake_id bigint,
+    profile_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+alter table stored_file
+    add constraint UK_7b9gfn1bveg3oay4xr06ipmqj unique (name);
+
+alter table users
+    add constraint UK_6dotkott2kjsp8vw4d0m25fb7 unique (email);
+
+alter table users
+    add constraint UK_r43af9ap4edm43mmtq01oddj6 unique (username);
+
+alter table choice
+    add constraint FKcaq6r76cswke5b9fk6fyx3y5w
+    foreign key (question_id)
+    references question (id);
+
+alter table course_intake
+    add constraint FKan8tncye00ffyt8dowyfw7ojs
+    foreign key (intake_id)
+    references intake (id);
+
+alter table course_intake
+    add constraint FKji22iedtllc5etdcuqwnvucyr
+    foreign key (course_id)
+    references course (id);
+
+alter table exam
+    add constraint FKn532brmq33lmdtkitoilmi80h
+    foreign key (created_by_id)
+    references users (id);
+
+alter table exam
+    add constraint FK63a66i6bhnrb0r4jxa433oy4d
+    foreign key (last_modified_by_id)
+    references users (id);
+
+alter table exam
+    add constraint FKp5vlkv6hupefokqlkqes6adaq
+    foreign key (intake_id)
+    references intake (id);
+
+alter table exam
+    add constraint FK6gn733myw9089bt1byf73ywvk
+    foreign key (part_id)
+    references part (id);
+
+alter table exam_user
+    add constraint FKpvet665enmcbtnoecju2epqmp
+    foreign key (exam_id)
+    references exam (id);
+
+alter table exam_user
+    add constraint FKf4k82qyfrltw832j76mfq4pgg
+    foreign key (user_id)
+    references users (id);
+
+alter table part
+    add constraint FKtnwvrwb4t7082shtwnu2llxb8
+    foreign key (course_id)
+    references course (id);
+
+alter table password_reset_tokens
+    add constraint FKk3ndxg5xp6v7wd4gjyusp15gq
+    foreign key (user_id)
+    references users (id);
+
+alter table question
+    add constraint FKg2l13mx3l3600hci5cxlgm4r8
+    foreign key (created_by_id)
+    references users (id);
+
+alter table question
+    add constraint FKkoa1htu17jtq679exs0s7ekvu
+    foreign key (last_modified_by_id)
+    references users (id);
+
+alter table question
+    add constraint FKhhgpexaoh3njc4r07qhnal3wm
+    foreign key (part_id)
+    references part (id);
+
+alter table question
+    add constraint FK7svspov4rexjawqdvi2jni81u
+    foreign key (question_type_id)
+    references question_type (id);
+
+alter table role_user
+    add constraint FKiqpmjd2qb4rdkej916ymonic6
+    foreign key (role_id)
+    references role (id);
+
+alter table role_user
+    add constraint FKhvai2k29vlwpt9wod4sw4ghmn
+    foreign key (user_id)
+    references users (id);
+
+alter table users
+    add constraint FKoyj5ikudsy54xbe8yl82mhquy
+    foreign key (intake_id)
+    references intake (id);
+
+alter table users
+    add constraint FK5q3e9303ap1wvtia6sft7ht1s
+    foreign key (profile_id)
+    references profile (id);
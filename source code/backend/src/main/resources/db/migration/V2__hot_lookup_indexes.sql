@@ -0,0 +1,14 @@
+-- Indexes for the lookups run on every request of their feature.
+-- Foreign key columns, e.g. users(intake_id) and exam_user(user_id), are already indexed by their constraint.
+
+-- ExamUserRepository.findByExam_IdAndUser_Username, on every answer sheet autosave
+create index idx_exam_user_exam_user on exam_user (exam_id, user_id);
+
+-- ExamUserRepository.findExamUsersByOrderByTimeFinish, for the statistics
+create index idx_exam_user_time_finish on exam_user (time_finish);
+
+-- Question bank listings of a part by creator, with or without deleted questions
+create index idx_question_part_creator_deleted on question (part_id, created_by_id, deleted);
+
+-- PasswordResetTokenRepository.findByToken
+create index idx_password_reset_tokens_token on password_reset_tokens (token);
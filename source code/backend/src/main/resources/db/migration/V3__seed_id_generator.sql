@@ -0,0 +1,44 @@
+-- Rows of the pooled table generators start after the max id of their table, so that tables filled while ids were
+-- generated by the database keep counting from their last row. The table may be missing on databases last started
+-- before the table generators were introduced.
+create table if not exists id_generator (
+    sequence_name varchar(255) not null,
+    next_val bigint,
+    primary key (sequence_name)
+) engine=InnoDB;
+
+insert into id_generator (sequence_name, next_val)
+select 'users', next_id from (select coalesce(max(id), 0) + 1 as next_id from users) seed
+where not exists (select 1 from id_generator where sequence_name = 'users');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from users)
+where sequence_name = 'users' and next_val < (select coalesce(max(id), 0) + 1 from users);
+
+insert into id_generator (sequence_name, next_val)
+select 'profile', next_id from (select coalesce(max(id), 0) + 1 as next_id from profile) seed
+where not exists (select 1 from id_generator where sequence_name = 'profile');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from profile)
+where sequence_name = 'profile' and next_val < (select coalesce(max(id), 0) + 1 from profile);
+
+insert into id_generator (sequence_name, next_val)
+select 'question', next_id from (select coalesce(max(id), 0) + 1 as next_id from question) seed
+where not exists (select 1 from id_generator where sequence_name = 'question');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from question)
+where sequence_name = 'question' and next_val < (select coalesce(max(id), 0) + 1 from question);
+
+insert into id_generator (sequence_name, next_val)
+select 'choice', next_id from (select coalesce(max(id), 0) + 1 as next_id from choice) seed
+where not exists (select 1 from id_generator where sequence_name = 'choice');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from choice)
+where sequence_name = 'choice' and next_val < (select coalesce(max(id), 0) + 1 from choice);
+
+insert into id_generator (sequence_name, next_val)
+select 'exam', next_id from (select coalesce(max(id), 0) + 1 as next_id from exam) seed
+where not exists (select 1 from id_generator where sequence_name = 'exam');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from exam)
+where sequence_name = 'exam' and next_val < (select coalesce(max(id), 0) + 1 from exam);
+
+insert into id_generator (sequence_name, next_val)
+select 'exam_user', next_id from (select coalesce(max(id), 0) + 1 as next_id from exam_user) seed
+where not exists (select 1 from id_generator where sequence_name = 'exam_user');
+update id_generator set next_val = (select coalesce(max(id), 0) + 1 from exam_user)
+where sequence_name = 'exam_user' and next_val < (select coalesce(max(id), 0) + 1 from exam_user);
@@ -0,0 +1,18 @@
+-- Answer sheets of finished exams move to exam_user_archive, exam_user keeps the slim result row.
+
+alter table exam_user add column is_archived TINYINT not null default 0;
+
+create table exam_user_archive (
+    exam_user_id bigint not null,
+    answer_sheet mediumblob,
+    archived_at datetime(6),
+    primary key (exam_user_id)
+) engine=InnoDB;
+
+alter table exam_user_archive
+    add constraint fk_exam_user_archive_exam_user
+    foreign key (exam_user_id)
+    references exam_user (id);
+
+-- ExamArchiveServiceImpl looks up finished sheets still in exam_user
+create index idx_exam_user_archivable on exam_user (is_archived, is_finished, exam_id);
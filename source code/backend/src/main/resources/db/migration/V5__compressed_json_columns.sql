@@ -0,0 +1,6 @@
+-- Exam.questionData and ExamUser.answerSheet are written by CompressedTextConverter as a header byte and the text,
+-- deflated when it is long enough. The bytes of rows written before stay the plain utf-8 json and are still read as it.
+
+alter table exam modify question_data mediumblob;
+
+alter table exam_user modify answer_sheet mediumblob;
@@ -0,0 +1,15 @@
+-- Lease of a scheduled job, a node runs the job only while it holds a lease that has not expired.
+-- A node that dies keeps the lease until locked_until, then another node takes it over.
+
+create table scheduler_lock (
+    name varchar(64) not null,
+    locked_until datetime(6) not null,
+    locked_at datetime(6),
+    locked_by varchar(255),
+    primary key (name)
+) engine=InnoDB;
+
+insert into scheduler_lock (name, locked_until) values ('exam-grading', '1970-01-01 00:00:00');
+
+-- ExamGradingSweepServiceImpl looks up unfinished attempts and finished ones still to grade
+create index idx_exam_user_sweep on exam_user (is_finished, total_point);
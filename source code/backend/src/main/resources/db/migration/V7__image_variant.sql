@@ -0,0 +1,8 @@
+-- Resized variants stored for an uploaded image, written once they are in S3 so that only existing variants are linked.
+-- Keyed by the url saved in profile.image and course.img_url.
+
+create table image_variant (
+    image_url varchar(255) not null,
+    variants varchar(64) not null,
+    primary key (image_url)
+) engine=InnoDB;
@@ -0,0 +1,19 @@
+-- The content-hash upload index came with the same release as the migrations, databases baselined at V1 never ran its
+-- create statements.
+create table if not exists file_blob (
+    hash varchar(64) not null,
+    ref_count bigint,
+    size bigint,
+    primary key (hash)
+) engine=InnoDB;
+
+create table if not exists stored_file (
+    id bigint not null auto_increment,
+    content_type varchar(255),
+    hash varchar(64),
+    name varchar(255),
+    size bigint,
+    uploaded_date datetime(6),
+    primary key (id),
+    constraint UK_7b9gfn1bveg3oay4xr06ipmqj unique (name)
+) engine=InnoDB;
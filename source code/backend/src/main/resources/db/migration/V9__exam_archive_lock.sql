@@ -0,0 +1,2 @@
+-- Lease of the nightly answer sheet archiving, see V6
+insert into scheduler_lock (name, locked_until) values ('exam-archive', '1970-01-01 00:00:00');
@@ -0,0 +1,188 @@
+package com.thanhtam.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.converter.CompressedTextConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Cost of storing the answer sheet json through CompressedTextConverter against the plain text column.
+ * <ul>
+ * <li>row size: average bytes of the exam_user.answer_sheet and exam.question_data values</li>
+ * <li>cpu: time to encode and decode one answer sheet</li>
+ * <li>database: time to insert and read back every sheet of an exam and the size of the database file, on a file based H2
+ * database in MySQL mode with the column types of the migrations</li>
+ * </ul>
+ * Sheets hold every question of the exam with its 4 choices in a shuffled order, like the ones ExamController saves.
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; com.thanhtam.backend.benchmark.CompressedTextBenchmark [rows] [questions]
+ */
+public class CompressedTextBenchmark {
+    private static final String[] WORDS = {"Hà Nội", "thủ đô", "của", "nước", "Việt Nam", "là", "thành phố", "nào", "trong",
+            "các", "đáp án", "sau", "đây", "dữ liệu", "cấu trúc", "thuật toán", "độ phức tạp", "mảng", "danh sách", "liên kết",
+            "ngăn xếp", "hàng đợi", "cây", "đồ thị", "sắp xếp", "tìm kiếm", "nhị phân", "bộ nhớ", "tiến trình", "luồng"};
+    private static final CompressedTextConverter CONVERTER = new CompressedTextConverter();
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int questions = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        ObjectMapper mapper = new ObjectMapper();
+        Random random = new Random(42);
+        List<List<Choice>> questionChoices = getQuestionChoices(random, questions);
+        String questionData = getQuestionData(mapper, questions);
+        List<String> sheets = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            sheets.add(getAnswerSheet(mapper, random, questionChoices));
+        }
+        List<byte[]> columns = new ArrayList<>();
+        sheets.forEach(sheet -> columns.add(CONVERTER.convertToDatabaseColumn(sheet)));
+
+        System.out.println("Rows: " + rows + ", questions per exam: " + questions);
+        long plainBytes = sheets.stream().mapToLong(sheet -> sheet.getBytes(StandardCharsets.UTF_8).length).sum();
+        long compressedBytes = columns.stream().mapToLong(column -> column.length).sum();
+        System.out.printf("answer_sheet      plain %8d B   compressed %8d B   ratio %.1fx%n",
+                plainBytes / rows, compressedBytes / rows, (double) plainBytes / compressedBytes);
+        int questionDataBytes = questionData.getBytes(StandardCharsets.UTF_8).length;
+        int compressedQuestionDataBytes = CONVERTER.convertToDatabaseColumn(questionData).length;
+        System.out.printf("question_data     plain %8d B   compressed %8d B   ratio %.1fx%n",
+                questionDataBytes, compressedQuestionDataBytes, (double) questionDataBytes / compressedQuestionDataBytes);
+
+        for (int round = 0; round < 2; round++) {
+//            The first round warms up the JIT
+            boolean warmUp = round == 0;
+            long start = System.nanoTime();
+            sheets.forEach(CONVERTER::convertToDatabaseColumn);
+            long encodeNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            columns.forEach(CONVERTER::convertToEntityAttribute);
+            long decodeNanos = System.nanoTime() - start;
+            if (!warmUp) {
+                System.out.printf("cpu               encode %6.1f us/row   decode %6.1f us/row%n",
+                        encodeNanos / 1000.0 / rows, decodeNanos / 1000.0 / rows);
+            }
+            runDatabase("plain text", warmUp, "text", sheets, (statement, sheet) -> statement.setString(2, sheet),
+                    resultSet -> resultSet.getString(1));
+            runDatabase("compressed", warmUp, "mediumblob", sheets, (statement, sheet) -> statement.setBytes(2, CONVERTER.convertToDatabaseColumn(sheet)),
+                    resultSet -> CONVERTER.convertToEntityAttribute(resultSet.getBytes(1)));
+        }
+    }
+
+    private static void runDatabase(String name, boolean warmUp, String columnType, List<String> sheets, Binder binder, Reader reader) throws Exception {
+        Path directory = Files.createTempDirectory("benchmark-");
+        try {
+            String url = "jdbc:h2:file:" + directory.resolve("exam").toAbsolutePath() + ";MODE=MySQL";
+            long insertNanos;
+            long selectNanos;
+            long readChars = 0;
+            try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("create table exam_user (id bigint not null, answer_sheet " + columnType + ", primary key (id))");
+                }
+                connection.setAutoCommit(false);
+                long start = System.nanoTime();
+                try (PreparedStatement statement = connection.prepareStatement("insert into exam_user (id, answer_sheet) values (?, ?)")) {
+                    for (int i = 0; i < sheets.size(); i++) {
+                        statement.setLong(1, i);
+                        binder.bind(statement, sheets.get(i));
+                        statement.addBatch();
+                        if (i % 50 == 49) {
+                            statement.executeBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+                connection.commit();
+                insertNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("select answer_sheet from exam_user")) {
+                    while (resultSet.next()) {
+                        readChars += reader.read(resultSet).length();
+                    }
+                }
+                selectNanos = System.nanoTime() - start;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("shutdown compact");
+                }
+            }
+            if (!warmUp) {
+                System.out.printf("database %-10s insert %7.1f ms   select %7.1f ms   file %6d KB   read %d chars%n",
+                        name, insertNanos / 1e6, selectNanos / 1e6, getSize(directory) / 1024, readChars);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static long getSize(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static List<List<Choice>> getQuestionChoices(Random random, int questions) {
+        List<List<Choice>> questionChoices = new ArrayList<>();
+        long choiceId = 1;
+        for (int i = 0; i < questions; i++) {
+            List<Choice> choices = new ArrayList<>();
+            for (int j = 0; j < 4; j++) {
+                choices.add(new Choice(choiceId++, getText(random, 4 + random.nextInt(8)), j == 0 ? 1 : 0));
+            }
+            questionChoices.add(choices);
+        }
+        return questionChoices;
+    }
+
+    private static String getAnswerSheet(ObjectMapper mapper, Random random, List<List<Choice>> questionChoices) throws Exception {
+        List<AnswerSheet> answerSheets = new ArrayList<>();
+        for (int i = 0; i < questionChoices.size(); i++) {
+            List<Choice> choices = new ArrayList<>();
+            int selected = random.nextInt(4);
+            for (int j = 0; j < 4; j++) {
+                Choice choice = questionChoices.get(i).get(j);
+                choices.add(new Choice(choice.getId(), choice.getChoiceText(), j == selected ? 1 : 0));
+            }
+            Collections.shuffle(choices, random);
+            answerSheets.add(new AnswerSheet((long) i + 1, choices, 5));
+        }
+        Collections.shuffle(answerSheets, random);
+        return mapper.writeValueAsString(answerSheets);
+    }
+
+    private static String getQuestionData(ObjectMapper mapper, int questions) throws Exception {
+        List<ExamQuestionPoint> examQuestionPoints = new ArrayList<>();
+        for (int i = 0; i < questions; i++) {
+            ExamQuestionPoint examQuestionPoint = new ExamQuestionPoint();
+            examQuestionPoint.setQuestionId((long) i + 1);
+            examQuestionPoint.setPoint(5);
+            examQuestionPoints.add(examQuestionPoint);
+        }
+        return mapper.writeValueAsString(examQuestionPoints);
+    }
+
+    private static String getText(Random random, int words) {
+        StringJoiner text = new StringJoiner(" ");
+        for (int i = 0; i < words; i++) {
+            text.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement statement, String sheet) throws SQLException;
+    }
+
+    private interface Reader {
+        String read(ResultSet resultSet) throws SQLException;
+    }
+}
@@ -0,0 +1,314 @@
+package com.thanhtam.backend.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Insert throughput of the question and user mappings with database generated ids against pooled-lo table ids and
+ * JDBC batching, on an in-memory H2 database.
+ * <ul>
+ * <li>questions: a question with 4 choices cascaded through the unidirectional join column, like Question and Choice</li>
+ * <li>users: a user with its profile cascaded through the one to one, like an excel import</li>
+ * </ul>
+ * Every statement execution and batch execution is counted as a round trip and delayed by the given latency to stand in
+ * for the network between the application and MySQL.
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; com.thanhtam.backend.benchmark.IdBatchingBenchmark [rows] [latencyMicros]
+ */
+public class IdBatchingBenchmark {
+    private static final int FLUSH_SIZE = 50;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        System.out.println("Rows: " + rows + ", latency per round trip: " + latencyMicros + " us");
+        for (int round = 0; round < 2; round++) {
+//            The first round warms up the JIT
+            boolean warmUp = round == 0;
+            run("questions identity", warmUp, false, rows, latencyMicros, IdBatchingBenchmark::saveIdentityQuestions,
+                    IdentityQuestion.class, IdentityChoice.class);
+            run("questions pooled-lo", warmUp, true, rows, latencyMicros, IdBatchingBenchmark::savePooledQuestions,
+                    PooledQuestion.class, PooledChoice.class);
+            run("users identity", warmUp, false, rows, latencyMicros, IdBatchingBenchmark::saveIdentityUsers,
+                    IdentityUser.class, IdentityProfile.class);
+            run("users pooled-lo", warmUp, true, rows, latencyMicros, IdBatchingBenchmark::savePooledUsers,
+                    PooledUser.class, PooledProfile.class);
+        }
+    }
+
+    private static void run(String name, boolean warmUp, boolean batching, int rows, long latencyMicros, Workload workload,
+                            Class<?>... entities) throws Exception {
+        CountingConnectionProvider connectionProvider = new CountingConnectionProvider("jdbc:h2:mem:" + name.replace(' ', '_')
+                + ";MODE=MySQL;DB_CLOSE_DELAY=-1", TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        StandardServiceRegistryBuilder registryBuilder = new StandardServiceRegistryBuilder()
+                .addService(ConnectionProvider.class, connectionProvider)
+                .applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create");
+        if (batching) {
+            registryBuilder.applySetting(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled-lo")
+                    .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(FLUSH_SIZE))
+                    .applySetting(AvailableSettings.ORDER_INSERTS, "true")
+                    .applySetting(AvailableSettings.ORDER_UPDATES, "true")
+                    .applySetting(AvailableSettings.BATCH_VERSIONED_DATA, "true");
+        }
+        StandardServiceRegistry registry = registryBuilder.build();
+        MetadataSources metadataSources = new MetadataSources(registry);
+        for (Class<?> entity : entities) {
+            metadataSources.addAnnotatedClass(entity);
+        }
+        try (SessionFactory sessionFactory = metadataSources.buildMetadata().buildSessionFactory()) {
+            connectionProvider.roundTrips.set(0);
+            long start = System.nanoTime();
+            try (Session session = sessionFactory.openSession()) {
+                session.beginTransaction();
+                for (int i = 0; i < rows; i++) {
+                    workload.save(session, i);
+                    if ((i + 1) % FLUSH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                session.getTransaction().commit();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (!warmUp) {
+                System.out.printf("%-22s %9.0f rows/s %8d round trips%n", name, rows / seconds, connectionProvider.roundTrips.get());
+            }
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    private static void saveIdentityQuestions(Session session, int i) {
+        IdentityQuestion question = new IdentityQuestion();
+        question.text = "Question " + i;
+        question.choices = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            IdentityChoice choice = new IdentityChoice();
+            choice.text = "Choice " + c;
+            choice.corrected = c == 0 ? 1 : 0;
+            question.choices.add(choice);
+        }
+        session.persist(question);
+    }
+
+    private static void savePooledQuestions(Session session, int i) {
+        PooledQuestion question = new PooledQuestion();
+        question.text = "Question " + i;
+        question.choices = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            PooledChoice choice = new PooledChoice();
+            choice.text = "Choice " + c;
+            choice.corrected = c == 0 ? 1 : 0;
+            question.choices.add(choice);
+        }
+        session.persist(question);
+    }
+
+    private static void saveIdentityUsers(Session session, int i) {
+        IdentityUser user = new IdentityUser();
+        user.username = "user" + i;
+        user.email = "user" + i + "@example.com";
+        user.profile = new IdentityProfile();
+        user.profile.firstName = "First " + i;
+        user.profile.lastName = "Last " + i;
+        session.persist(user);
+    }
+
+    private static void savePooledUsers(Session session, int i) {
+        PooledUser user = new PooledUser();
+        user.username = "user" + i;
+        user.email = "user" + i + "@example.com";
+        user.profile = new PooledProfile();
+        user.profile.firstName = "First " + i;
+        user.profile.lastName = "Last " + i;
+        session.persist(user);
+    }
+
+    private interface Workload {
+        void save(Session session, int i);
+    }
+
+    /**
+     * Hands out connections whose statements count and delay every execution
+     */
+    private static class CountingConnectionProvider implements ConnectionProvider {
+        private final String url;
+        private final long latencyNanos;
+        private final AtomicLong roundTrips = new AtomicLong();
+
+        CountingConnectionProvider(String url, long latencyNanos) {
+            this.url = url;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = DriverManager.getConnection(url, "sa", "");
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (result instanceof Statement) {
+                    return countingStatement((Statement) result, method.getReturnType());
+                }
+                return result;
+            });
+        }
+
+        private Object countingStatement(Statement statement, Class<?> statementType) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{statementType}, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    roundTrips.incrementAndGet();
+                    LockSupport.parkNanos(latencyNanos);
+                }
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void closeConnection(Connection connection) throws SQLException {
+            connection.close();
+        }
+
+        @Override
+        public boolean supportsAggressiveRelease() {
+            return false;
+        }
+
+        @Override
+        public boolean isUnwrappableAs(Class unwrapType) {
+            return false;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> unwrapType) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Entity(name = "IdentityQuestion")
+    @Table(name = "identity_question")
+    static class IdentityQuestion {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+        String text;
+        @OneToMany(cascade = CascadeType.ALL)
+        @JoinColumn(name = "question_id")
+        List<IdentityChoice> choices;
+    }
+
+    @Entity(name = "IdentityChoice")
+    @Table(name = "identity_choice")
+    static class IdentityChoice {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+        String text;
+        int corrected;
+    }
+
+    @Entity(name = "PooledQuestion")
+    @Table(name = "pooled_question")
+    static class PooledQuestion {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "question_id")
+        @TableGenerator(name = "question_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+                pkColumnValue = "question", allocationSize = 50)
+        Long id;
+        String text;
+        @OneToMany(cascade = CascadeType.ALL)
+        @JoinColumn(name = "question_id")
+        List<PooledChoice> choices;
+    }
+
+    @Entity(name = "PooledChoice")
+    @Table(name = "pooled_choice")
+    static class PooledChoice {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "choice_id")
+        @TableGenerator(name = "choice_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+                pkColumnValue = "choice", allocationSize = 50)
+        Long id;
+        String text;
+        int corrected;
+    }
+
+    @Entity(name = "IdentityUser")
+    @Table(name = "identity_users")
+    static class IdentityUser {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+        String username;
+        String email;
+        @OneToOne(cascade = CascadeType.ALL)
+        @JoinColumn(name = "profile_id")
+        IdentityProfile profile;
+    }
+
+    @Entity(name = "IdentityProfile")
+    @Table(name = "identity_profile")
+    static class IdentityProfile {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+        String firstName;
+        String lastName;
+    }
+
+    @Entity(name = "PooledUser")
+    @Table(name = "pooled_users")
+    static class PooledUser {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+        @TableGenerator(name = "user_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+                pkColumnValue = "users", allocationSize = 50)
+        Long id;
+        String username;
+        String email;
+        @OneToOne(cascade = CascadeType.ALL)
+        @JoinColumn(name = "profile_id")
+        PooledProfile profile;
+    }
+
+    @Entity(name = "PooledProfile")
+    @Table(name = "pooled_profile")
+    static class PooledProfile {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "profile_id")
+        @TableGenerator(name = "profile_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+                pkColumnValue = "profile", allocationSize = 50)
+        Long id;
+        String firstName;
+        String lastName;
+    }
+}
@@ -0,0 +1,122 @@
+package com.thanhtam.backend.benchmark;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput of the local file download paths, sending a file to a loopback socket that discards what it reads.
+ * <ul>
+ * <li>resource: the previous path, a UrlResource copied by the message converter through a 4 KB buffer</li>
+ * <li>transferTo stream: FileChannel.transferTo into the servlet output stream, used when sendfile is not available</li>
+ * <li>sendfile: FileChannel.transferTo into the socket channel, what Tomcat does for the sendfile attributes</li>
+ * </ul>
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; com.thanhtam.backend.benchmark.LocalFileServingBenchmark [sizeMb] [iterations]
+ */
+public class LocalFileServingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path file = Files.createTempFile("benchmark-", ".bin");
+        ExecutorService drainExecutor = Executors.newSingleThreadExecutor();
+        try {
+            writeRandomFile(file, sizeMb);
+            System.out.println("File size: " + sizeMb + " MB, iterations: " + iterations);
+            for (int round = 0; round < 2; round++) {
+//                The first round warms up the JIT and the page cache
+                boolean warmUp = round == 0;
+                run("resource", warmUp, iterations, sizeMb, drainExecutor, socket -> {
+                    Resource resource = new UrlResource(file.toUri());
+                    try (InputStream inputStream = resource.getInputStream()) {
+                        OutputStream outputStream = socket.socket().getOutputStream();
+                        StreamUtils.copy(inputStream, outputStream);
+                        outputStream.flush();
+                    }
+                });
+                run("transferTo stream", warmUp, iterations, sizeMb, drainExecutor, socket -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        transfer(channel, Channels.newChannel(socket.socket().getOutputStream()));
+                    }
+                });
+                run("sendfile", warmUp, iterations, sizeMb, drainExecutor, socket -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        transfer(channel, socket);
+                    }
+                });
+            }
+        } finally {
+            drainExecutor.shutdownNow();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void run(String name, boolean warmUp, int iterations, int sizeMb, ExecutorService drainExecutor,
+                            FileSender sender) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0))) {
+                Future<Long> drained = drainExecutor.submit(() -> drain(server));
+                try (SocketChannel socket = SocketChannel.open(server.getLocalAddress())) {
+                    sender.send(socket);
+                }
+                if (drained.get() != sizeMb * 1024L * 1024L) {
+                    throw new IllegalStateException(name + " did not send the whole file");
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (!warmUp) {
+            System.out.printf("%-20s %8.1f MB/s%n", name, sizeMb * iterations / seconds);
+        }
+    }
+
+    private static long drain(ServerSocketChannel server) throws IOException {
+        try (SocketChannel client = server.accept()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            long total = 0;
+            int read;
+            while ((read = client.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+
+    private static void transfer(FileChannel channel, WritableByteChannel target) throws IOException {
+        long size = channel.size();
+        long transferred = 0;
+        while (transferred < size) {
+            transferred += channel.transferTo(transferred, size - transferred, target);
+        }
+    }
+
+    private static void writeRandomFile(Path file, int sizeMb) throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (int i = 0; i < sizeMb; i++) {
+                outputStream.write(block);
+            }
+        }
+    }
+
+    private interface FileSender {
+        void send(SocketChannel socket) throws IOException;
+    }
+}
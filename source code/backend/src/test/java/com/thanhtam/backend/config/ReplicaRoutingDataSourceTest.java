@@ -0,0 +1,156 @@
+package com.thanhtam.backend.config;
+
+import com.thanhtam.backend.entity.SchedulerLock;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.repository.SchedulerLockRepository;
+import com.thanhtam.backend.repository.UserRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Two H2 instances migrated alike stand in for the primary and the replica, the lock row of each names its node.
+ * Reads go through Spring Data and the JpaTransactionManager, the way the services read.
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=" + ReplicaRoutingDataSourceTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "isc.datasource.replica.url=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+        "isc.datasource.replica.username=sa",
+        "isc.datasource.replica.password=",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.max_fetch_depth=2"
+})
+class ReplicaRoutingDataSourceTest {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String LOCK_NAME = "exam-grading";
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    @Import(DataSourceConfig.class)
+    static class Config {
+    }
+
+    /**
+     * Stands for a controller with one report endpoint
+     */
+    static class Handler {
+        @ReplicaRead
+        public void report() {
+        }
+
+        public void update() {
+        }
+    }
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ReplicaReadInterceptor replicaReadInterceptor = new ReplicaReadInterceptor();
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    /**
+     * Flyway of the application only migrates the primary
+     */
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(REPLICA_URL, "sa", "");
+        flyway.migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        primary.update("update scheduler_lock set locked_by = 'primary' where name = ?", LOCK_NAME);
+        replica.update("update scheduler_lock set locked_by = 'replica' where name = ?", LOCK_NAME);
+    }
+
+    private String node() {
+        return schedulerLockRepository.findById(LOCK_NAME).get().getLockedBy();
+    }
+
+    /**
+     * Runs the work between the interceptor callbacks of a request to the given handler method
+     */
+    private <T> T inRequest(MockHttpServletRequest request, String handlerMethod, Supplier<T> work) throws Exception {
+        HandlerMethod handler = new HandlerMethod(new Handler(), handlerMethod);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        replicaReadInterceptor.preHandle(request, response, handler);
+        try {
+            return work.get();
+        } finally {
+            replicaReadInterceptor.afterCompletion(request, response, handler, null);
+        }
+    }
+
+    @Test
+    @DisplayName("Read-only repository calls of a @ReplicaRead endpoint read from the replica, writes go to the primary")
+    void replicaRead_ShouldReadFromReplica() throws Exception {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        TransactionTemplate readWriteTransaction = new TransactionTemplate(transactionManager);
+
+        assertEquals("replica", inRequest(new MockHttpServletRequest("GET", "/api/statistics"), "report", this::node));
+        assertEquals("replica", inRequest(new MockHttpServletRequest("GET", "/api/statistics"), "report",
+                () -> readOnlyTransaction.execute(status -> node())));
+        assertEquals("primary", inRequest(new MockHttpServletRequest("GET", "/api/statistics"), "report",
+                () -> readWriteTransaction.execute(status -> node())));
+
+        inRequest(new MockHttpServletRequest("GET", "/api/statistics"), "report",
+                () -> schedulerLockRepository.save(new SchedulerLock(LOCK_NAME, new Date(0), null, "written")));
+        assertEquals("written", primary.queryForObject("select locked_by from scheduler_lock where name = ?", String.class, LOCK_NAME));
+        assertEquals("replica", replica.queryForObject("select locked_by from scheduler_lock where name = ?", String.class, LOCK_NAME));
+    }
+
+    @Test
+    @DisplayName("Other endpoints, read-your-writes requests and work outside requests read from the primary")
+    void otherReads_ShouldReadFromPrimary() throws Exception {
+        MockHttpServletRequest readYourWrites = new MockHttpServletRequest("GET", "/api/statistics");
+        readYourWrites.addHeader(ReplicaReadInterceptor.HEADER, "true");
+
+        assertEquals("primary", inRequest(new MockHttpServletRequest("GET", "/api/exams"), "update", this::node));
+        assertEquals("primary", inRequest(readYourWrites, "report", this::node));
+        assertEquals("primary", node());
+        assertFalse(ReplicaRoutingDataSource.isReplicaAllowed());
+    }
+}
@@ -0,0 +1,141 @@
+package com.thanhtam.backend.config;
+
+import com.thanhtam.backend.dto.ExecutorStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ReportExecutorTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private ReportExecutor reportExecutor;
+    private MockMvc mockMvc;
+
+    @RestController
+    class ReportController {
+        @GetMapping("/report")
+        public DeferredResult<ResponseEntity<?>> report() {
+            return reportExecutor.submit(() -> ResponseEntity.ok(Thread.currentThread().getName() + " "
+                    + SecurityContextHolder.getContext().getAuthentication().getName() + " " + ReplicaRoutingDataSource.isReplicaAllowed()));
+        }
+
+        @GetMapping("/slow")
+        public DeferredResult<ResponseEntity<?>> slow() {
+            return reportExecutor.submit(() -> {
+                started.countDown();
+                release.await();
+                return ResponseEntity.ok("done");
+            });
+        }
+
+        @GetMapping("/failing")
+        public DeferredResult<ResponseEntity<?>> failing() {
+            return reportExecutor.submit(() -> {
+                throw new IllegalStateException("Exam is broken");
+            });
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        reportExecutor = new ReportExecutor("test", executor, 60000, null);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReportController()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        reportExecutor.shutdown();
+        SecurityContextHolder.clearContext();
+        ReplicaRoutingDataSource.clear();
+    }
+
+    @Test
+    @DisplayName("Reports run on the pool with the caller's user and replica routing")
+    void submit_ShouldRunOnPoolWithCallerContext() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("lecturer", null));
+        ReplicaRoutingDataSource.allowReplica();
+
+        MvcResult mvcResult = mockMvc.perform(get("/report")).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(allOf(startsWith("pool-"), endsWith(" lecturer true"))));
+    }
+
+    @Test
+    @DisplayName("A full queue answers 503 at once and counts the rejection")
+    void submit_ShouldRejectWhenQueueIsFull() throws Exception {
+        mockMvc.perform(get("/slow")).andExpect(request().asyncStarted());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        mockMvc.perform(get("/slow")).andExpect(request().asyncStarted());
+
+        MvcResult rejected = mockMvc.perform(get("/slow")).andReturn();
+
+        mockMvc.perform(asyncDispatch(rejected)).andExpect(status().isServiceUnavailable());
+        ExecutorStats stats = reportExecutor.getStats();
+        assertEquals("test", stats.getName());
+        assertEquals(1, stats.getActiveCount());
+        assertEquals(1, stats.getQueueSize());
+        assertEquals(0, stats.getQueueRemainingCapacity());
+        assertEquals(1, stats.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("A report past its timeout answers 503 and is interrupted")
+    void submit_ShouldAnswerServiceUnavailableOnTimeout() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/slow")).andExpect(request().asyncStarted()).andReturn();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        MockAsyncContext asyncContext = (MockAsyncContext) mvcResult.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isServiceUnavailable());
+        assertEquals(1, reportExecutor.getStats().getTimedOutCount());
+//        The interrupted report frees its thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reportExecutor.getStats().getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, reportExecutor.getStats().getActiveCount());
+    }
+
+    @Test
+    @DisplayName("A failing report answers 500 without the detail of the failure")
+    void submit_ShouldAnswerInternalServerErrorOnFailure() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/failing")).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.message").value("The report could not be created"));
+    }
+}
@@ -0,0 +1,448 @@
+package com.thanhtam.backend.controller;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.thanhtam.backend.config.S3Config;
+import com.thanhtam.backend.dto.CachedS3Object;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.dto.StoragePage;
+import com.thanhtam.backend.service.ImageVariantService;
+import com.thanhtam.backend.service.S3AsyncStorageServiceImpl;
+import com.thanhtam.backend.service.S3CacheService;
+import com.thanhtam.backend.service.S3ServicesImpl;
+import com.thanhtam.backend.service.S3UploadService;
+import com.thanhtam.backend.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Downloads go through the real S3 client against a small local S3 stand-in serving GET and HEAD on path style URLs.
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileAWSControllerTest {
+    private static final String BUCKET = "isc-quiz";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private S3UploadService s3UploadService;
+
+    @Mock
+    private S3CacheService s3CacheService;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    private ExecutorService storageExecutor;
+    private S3AsyncStorageServiceImpl s3StorageService;
+    private HttpServer s3StandIn;
+    private final Map<String, byte[]> objects = new TreeMap<>();
+    private final AtomicInteger headRequests = new AtomicInteger();
+    private FileAWSController fileAWSController;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        objects.put("notes.txt", CONTENT);
+        s3StandIn = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        s3StandIn.createContext("/", this::handleS3Request);
+        s3StandIn.start();
+
+        S3Config s3Config = new S3Config();
+        ReflectionTestUtils.setField(s3Config, "awsId", "access");
+        ReflectionTestUtils.setField(s3Config, "awsKey", "secret");
+        ReflectionTestUtils.setField(s3Config, "s3Endpoint", "http://127.0.0.1:" + s3StandIn.getAddress().getPort());
+        AmazonS3 s3client = s3Config.s3client();
+
+        S3ServicesImpl s3Services = new S3ServicesImpl(s3client);
+        ReflectionTestUtils.setField(s3Services, "bucketName", BUCKET);
+        storageExecutor = Executors.newSingleThreadExecutor();
+//        The stand-in serves no uploads, the transfer manager is not used
+        s3StorageService = new S3AsyncStorageServiceImpl(null, s3Services, storageExecutor);
+        ReflectionTestUtils.setField(s3StorageService, "bucketName", BUCKET);
+        fileAWSController = new FileAWSController(s3Services, s3UploadService, s3CacheService, s3StorageService, imageVariantService, userService, new ObjectMapper());
+        ReflectionTestUtils.setField(fileAWSController, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(fileAWSController, "endpointUrl", "http://localhost:9000");
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageExecutor.shutdownNow();
+        s3StandIn.stop(0);
+    }
+
+    private static String eTag(byte[] content) {
+        return "\"" + Hashing.md5().hashBytes(content).toString() + "\"";
+    }
+
+    private void handleS3Request(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestURI().getPath().replaceAll("/$", "").equals("/" + BUCKET)) {
+            handleListRequest(exchange);
+            return;
+        }
+        String key = exchange.getRequestURI().getPath().substring(("/" + BUCKET + "/").length());
+        byte[] content = objects.get(key);
+        if (content == null) {
+            sendError(exchange, 404, "NoSuchKey");
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", eTag(content));
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            headRequests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        if (eTag(content).equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int status = 200;
+        int start = 0;
+        int end = content.length - 1;
+        if (range != null) {
+            String[] positions = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(positions[0]);
+            end = (int) Math.min(Long.parseLong(positions[1]), content.length - 1);
+            if (start >= content.length) {
+                sendError(exchange, 416, "InvalidRange");
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+        byte[] body = Arrays.copyOfRange(content, start, end + 1);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    /**
+     * ListObjectsV2, the continuation token is the index of the first key of the page
+     */
+    private void handleListRequest(HttpExchange exchange) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+            String[] pair = parameter.split("=", 2);
+            query.put(pair[0], pair.length > 1 ? URLDecoder.decode(pair[1], "UTF-8") : "");
+        }
+        String prefix = query.getOrDefault("prefix", "");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        int start = Integer.parseInt(query.getOrDefault("continuation-token", "0"));
+        List<String> keys = objects.keySet().stream().filter(key -> key.startsWith(prefix)).collect(Collectors.toList());
+        int end = Math.min(keys.size(), start + maxKeys);
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(BUCKET).append("</Name>")
+                .append("<Prefix>").append(prefix).append("</Prefix>")
+                .append("<KeyCount>").append(end - start).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(end < keys.size()).append("</IsTruncated>");
+        for (String key : keys.subList(start, end)) {
+            xml.append("<Contents><Key>").append(key).append("</Key>")
+                    .append("<LastModified>2020-06-01T00:00:00.000Z</LastModified>")
+                    .append("<ETag>").append(eTag(objects.get(key)).replace("\"", "&quot;")).append("</ETag>")
+                    .append("<Size>").append(objects.get(key).length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        if (end < keys.size()) {
+            xml.append("<NextContinuationToken>").append(end).append("</NextContinuationToken>");
+        }
+        byte[] body = xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private String readBody(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testDownloadFile_WholeObject() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", new HttpHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(CONTENT.length, response.getHeaders().getContentLength());
+        assertEquals(eTag(CONTENT), response.getHeaders().getETag());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("0123456789abcdefghij", readBody(response));
+    }
+
+    @Test
+    void testDownloadFile_ByteRange() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=2-5");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 2-5/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getHeaders().getContentLength());
+        assertEquals("2345", readBody(response));
+        assertEquals(0, headRequests.get());
+    }
+
+    @Test
+    void testDownloadFile_OpenEndedRange() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=15-");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 15-19/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("fghij", readBody(response));
+    }
+
+    @Test
+    void testDownloadFile_SuffixRange() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=-3");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 17-19/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("hij", readBody(response));
+        assertEquals(1, headRequests.get());
+    }
+
+    @Test
+    void testDownloadFile_UnsatisfiableRange() {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=50-60");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+    }
+
+    @Test
+    void testDownloadFile_SuffixLongerThanObject() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=-50");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 0-19/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("0123456789abcdefghij", readBody(response));
+    }
+
+    @Test
+    void testDownloadFile_MalformedRangeSendsWholeObject() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=5-2");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("0123456789abcdefghij", readBody(response));
+        assertEquals(0, headRequests.get());
+    }
+
+    @Test
+    void testDownloadFile_NotModified() {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag(CONTENT));
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("notes.txt", requestHeaders);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(eTag(CONTENT), response.getHeaders().getETag());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void testDownloadFile_NotFound() {
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("missing.txt", new HttpHeaders());
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testUploadCourseImg_ReturnsUrlOnceStaged() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "course.png", "image/png", new byte[]{1, 2, 3});
+        when(s3UploadService.uploadS3FileAsync(anyString(), eq(file))).thenReturn(new CompletableFuture<>());
+
+        String url = fileAWSController.uploadCourseImg(file);
+
+        assertTrue(url.startsWith("http://localhost:9000/" + BUCKET + "/images/"));
+        assertTrue(url.endsWith("course.png"));
+        verify(s3UploadService, times(1)).uploadS3FileAsync(anyString(), eq(file));
+        verify(imageVariantService, times(1)).generateVariants(anyString(), eq(url), eq(file));
+    }
+
+    @Test
+    void testUploadCourseImg_ServiceUnavailableWhenUploadPoolIsFull() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "course.png", "image/png", new byte[]{1, 2, 3});
+        when(s3UploadService.uploadS3FileAsync(anyString(), any())).thenThrow(new RejectedExecutionException("queue full"));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(fileAWSController).build();
+
+        mockMvc.perform(multipart("/api/aws/file/upload/course").file(file))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.statusCode").value(503));
+        verifyNoInteractions(imageVariantService);
+    }
+
+    @Test
+    void testDownloadFile_ServedFromCache(@TempDir Path cacheDir) throws IOException {
+        Path cachedFile = Files.write(cacheDir.resolve("cached"), CONTENT);
+        when(s3CacheService.getObject("cached.txt")).thenReturn(Optional.of(new CachedS3Object("cached.txt", cachedFile, "etag", CONTENT.length, "text/plain")));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("cached.txt", requestHeaders);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 10-19/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("\"etag\"", response.getHeaders().getETag());
+        assertEquals("abcdefghij", readBody(response));
+        verify(s3CacheService, times(1)).recordBytesServed(10);
+    }
+
+    @Test
+    void testDownloadFile_CachedNotModified(@TempDir Path cacheDir) throws IOException {
+        Path cachedFile = Files.write(cacheDir.resolve("cached"), CONTENT);
+        when(s3CacheService.getObject("cached.txt")).thenReturn(Optional.of(new CachedS3Object("cached.txt", cachedFile, "etag", CONTENT.length, "text/plain")));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch("\"etag\"");
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.downloadFile("cached.txt", requestHeaders);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(s3CacheService, never()).recordBytesServed(anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T awaitResult(DeferredResult<T> deferredResult) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!deferredResult.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(deferredResult.hasResult());
+        return (T) deferredResult.getResult();
+    }
+
+    @Test
+    void testListFiles_PagesWithContinuationToken() throws InterruptedException {
+        objects.put("avatars/a.png", new byte[]{1});
+        objects.put("avatars/b.png", new byte[]{1, 2});
+        objects.put("avatars/c.png", new byte[]{1, 2, 3});
+
+        StoragePage firstPage = awaitResult(fileAWSController.listFiles("avatars/", 2, null));
+        StoragePage secondPage = awaitResult(fileAWSController.listFiles("avatars/", 2, firstPage.getNextContinuationToken()));
+
+        assertEquals(2, firstPage.getFiles().size());
+        assertEquals("avatars/a.png", firstPage.getFiles().get(0).getKey());
+        assertTrue(firstPage.isTruncated());
+        assertEquals(1, secondPage.getFiles().size());
+        assertEquals("avatars/c.png", secondPage.getFiles().get(0).getKey());
+        assertEquals(3, secondPage.getFiles().get(0).getSize());
+        assertFalse(secondPage.isTruncated());
+    }
+
+    @Test
+    void testDeleteFile_MissingKey_ShouldReturn404() throws InterruptedException {
+        ResponseEntity<String> response = awaitResult(fileAWSController.deleteFile("avatars/missing.png"));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verifyNoInteractions(s3CacheService);
+    }
+
+    @Test
+    void testStorageGet_ShouldHandOverTheOpenContent() throws Exception {
+        StorageObject storageObject = s3StorageService.get("notes.txt").get(5, TimeUnit.SECONDS);
+
+        try (InputStream content = storageObject.getContent()) {
+            assertArrayEquals(CONTENT, StreamUtils.copyToByteArray(content));
+        }
+        assertEquals(CONTENT.length, storageObject.getSize());
+        assertEquals(eTag(CONTENT).replace("\"", ""), storageObject.getETag());
+    }
+
+    @Test
+    void testStreamFiles_WritesOneLinePerFile() throws IOException {
+        objects.put("avatars/a.png", new byte[]{1});
+        objects.put("avatars/b.png", new byte[]{1, 2});
+        objects.put("avatars/c.png", new byte[]{1, 2, 3});
+
+        ResponseEntity<StreamingResponseBody> response = fileAWSController.streamFiles("avatars/", 2);
+        String[] lines = readBody(response).split("\n");
+
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        assertEquals(3, lines.length);
+        assertEquals("avatars/c.png", new ObjectMapper().readTree(lines[2]).get("key").asText());
+    }
+}
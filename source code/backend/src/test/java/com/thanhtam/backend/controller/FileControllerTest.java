@@ -0,0 +1,195 @@
+package com.thanhtam.backend.controller;
+
+import com.thanhtam.backend.dto.ServiceResult;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.service.AsyncStorageService;
+import com.thanhtam.backend.service.FilesStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileControllerTest {
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @Mock
+    private FilesStorageService filesStorageService;
+
+    @Mock
+    private AsyncStorageService asyncStorageService;
+
+    @TempDir
+    Path uploadDir;
+
+    private FileController fileController;
+    private MockHttpServletRequest request;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fileController = new FileController(filesStorageService, asyncStorageService);
+        request = new MockHttpServletRequest("GET", "/files/notes.txt");
+        file = Files.write(uploadDir.resolve("notes.txt"), CONTENT.getBytes(StandardCharsets.US_ASCII));
+        lenient().when(filesStorageService.loadPath("notes.txt")).thenReturn(Optional.of(file));
+    }
+
+    private String readBody(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void getFile_ShouldSendWholeFileWithValidators() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", new HttpHeaders(), request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(CONTENT, readBody(response));
+        assertEquals(CONTENT.length(), response.getHeaders().getContentLength());
+        assertNotNull(response.getHeaders().getETag());
+        assertEquals(Files.getLastModifiedTime(file).toMillis() / 1000 * 1000, response.getHeaders().getLastModified());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+    }
+
+    @Test
+    void getFile_MatchingETag_ShouldReturnNotModified() throws IOException {
+        String eTag = fileController.getFile("notes.txt", new HttpHeaders(), request).getHeaders().getETag();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch(eTag);
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void getFile_NotModifiedSince_ShouldReturnNotModified() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfModifiedSince(Files.getLastModifiedTime(file).toMillis() + 1000);
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    }
+
+    @Test
+    void getFile_SingleRange_ShouldReturnPartialContent() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=5-9");
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 5-9/20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("56789", readBody(response));
+    }
+
+    @Test
+    void getFile_MultipleRanges_ShouldReturnByteranges() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=0-1,-3");
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("multipart", response.getHeaders().getContentType().getType());
+        assertEquals("byteranges", response.getHeaders().getContentType().getSubtype());
+        String boundary = response.getHeaders().getContentType().getParameter("boundary");
+        String body = readBody(response);
+        assertEquals(response.getHeaders().getContentLength(), body.length());
+        assertTrue(body.contains("Content-Range: bytes 0-1/20\r\n\r\n01\r\n--" + boundary));
+        assertTrue(body.contains("Content-Range: bytes 17-19/20\r\n\r\nhij\r\n--" + boundary + "--"));
+    }
+
+    @Test
+    void getFile_StaleIfRange_ShouldSendWholeFile() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=5-9");
+        requestHeaders.set("If-Range", "\"stale\"");
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(CONTENT, readBody(response));
+    }
+
+    @Test
+    void getFile_UnsatisfiableRange_ShouldReturn416() throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=50-60");
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */20", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void getFile_SendfileSupported_ShouldLeaveBodyToConnector() throws IOException {
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-");
+
+        ResponseEntity<StreamingResponseBody> response = fileController.getFile("notes.txt", requestHeaders, request);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(file.toRealPath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(20L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void uploadFile_Stored_ShouldAnswerOnceTheStoreCompletes() {
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "notes.txt", "text/plain", CONTENT.getBytes(StandardCharsets.US_ASCII));
+        CompletableFuture<StorageObject> stored = new CompletableFuture<>();
+        when(asyncStorageService.put(eq("notes.txt"), any(InputStream.class), eq((long) CONTENT.length()), eq("text/plain"))).thenReturn(stored);
+
+        DeferredResult<ResponseEntity<ServiceResult>> deferredResult = fileController.uploadFile(multipartFile);
+
+        assertFalse(deferredResult.hasResult());
+        stored.complete(new StorageObject());
+        ResponseEntity<?> response = (ResponseEntity<?>) deferredResult.getResult();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+    }
+
+    @Test
+    void uploadFile_StoragePoolFull_ShouldReturn503() {
+        MockMultipartFile multipartFile = new MockMultipartFile("file", "notes.txt", "text/plain", CONTENT.getBytes(StandardCharsets.US_ASCII));
+        when(asyncStorageService.put(eq("notes.txt"), any(InputStream.class), anyLong(), anyString())).thenThrow(new RejectedExecutionException("Queue full"));
+
+        DeferredResult<ResponseEntity<ServiceResult>> deferredResult = fileController.uploadFile(multipartFile);
+
+        ResponseEntity<?> response = (ResponseEntity<?>) deferredResult.getResult();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
+}
@@ -3,7 +3,11 @@ package com.thanhtam.backend.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
+import com.thanhtam.backend.config.ReportExecutor;
 import com.thanhtam.backend.dto.*;
 import com.thanhtam.backend.entity.Profile;
 import com.thanhtam.backend.entity.Role;
@@ -11,6 +15,9 @@ import com.thanhtam.backend.entity.User;
 import com.thanhtam.backend.service.*;
 import com.thanhtam.backend.ultilities.ERole;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,9 +28,14 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 @ExtendWith(MockitoExtension.class)
 public class UserControllerTest {
@@ -43,6 +55,9 @@ public class UserControllerTest {
     @Mock
     private FilesStorageService filesStorageService;
 
+    @Mock
+    private UserSearchService userSearchService;
+
     @InjectMocks
     private UserController userController;
 
@@ -210,8 +225,10 @@ public class UserControllerTest {
     @Test
     void testGetUsersByPage() {
         // Mock service behavior
-        Page<User> userPage = new PageImpl<>(Collections.singletonList(user));
-        when(userService.findUsersByPage(any(Pageable.class))).thenReturn(
+        Page<UserSummary> userPage = new PageImpl<>(Collections.singletonList(
+            new UserSummary(1L, "johndoe", "johndoe@example.com", false, null, "John", "Doe", null)
+        ));
+        when(userService.findUserSummaries(any(Pageable.class))).thenReturn(
             userPage
         );
 
@@ -223,6 +240,37 @@ public class UserControllerTest {
         assertEquals(1, result.getData().size());
     }
 
+    // Tests for getUsersByCursor method
+    @Test
+    void testGetUsersByCursor_ShouldSeekPastLastId() {
+        when(userService.findUserSummariesAfter(0L, 3)).thenReturn(Arrays.asList(
+            new UserSummary(4L, "a", "a@example.com", false, null, null, null, null),
+            new UserSummary(7L, "b", "b@example.com", false, null, null, null, null),
+            new UserSummary(9L, "c", "c@example.com", false, null, null, null, null)
+        ));
+        when(userService.findUserSummariesAfter(7L, 3)).thenReturn(Collections.singletonList(
+            new UserSummary(9L, "c", "c@example.com", false, null, null, null, null)
+        ));
+
+        CursorPageResult firstPage = (CursorPageResult) userController.getUsersByCursor("", 2).getBody();
+        String nextCursor = firstPage.getPaginationDetails().getNextCursor();
+        CursorPageResult lastPage = (CursorPageResult) userController.getUsersByCursor(nextCursor, 2).getBody();
+
+        assertEquals(2, firstPage.getData().size());
+        assertFalse(firstPage.getPaginationDetails().getIsLastPage());
+        assertEquals(1, lastPage.getData().size());
+        assertTrue(lastPage.getPaginationDetails().getIsLastPage());
+        assertNull(lastPage.getPaginationDetails().getNextCursor());
+    }
+
+    @Test
+    void testGetUsersByCursor_InvalidCursor_ShouldReturnBadRequest() {
+        ResponseEntity<?> response = userController.getUsersByCursor("not-a-cursor", 10);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(userService, never()).findUserSummariesAfter(anyLong(), anyInt());
+    }
+
     // Test for createUser method
     @Test
     void testCreateUser_Success() {
@@ -262,4 +310,33 @@ public class UserControllerTest {
             ((ServiceResult) response.getBody()).getMessage()
         );
     }
+
+    @Test
+    void testExportUsersToCSV_StreamsRowsFromReportPool() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        ReportExecutor reportExecutor = new ReportExecutor("users", executor, 60000, null);
+        try {
+            UserController controller = new UserController(userService, roleService, passwordEncoder, excelService,
+                    filesStorageService, userSearchService, reportExecutor);
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+            when(userService.findAllByDeletedToExport(false)).thenReturn(Arrays.asList(
+                    new UserExport("johndoe", "johndoe@example.com", "John", "Doe"),
+                    new UserExport("thanhtam", "tam@example.com", "Tâm", "Nguyễn")));
+
+            MvcResult mvcResult = mockMvc.perform(get("/api/users/deleted/false/export/users.csv"))
+                    .andExpect(request().asyncStarted()).andReturn();
+
+//            The rows are written in a second async round, after the report pool answered with the body
+            MvcResult streamed = mockMvc.perform(asyncDispatch(mvcResult)).andExpect(request().asyncStarted()).andReturn();
+            streamed.getAsyncResult(5000);
+
+            MockHttpServletResponse response = streamed.getResponse();
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals("text/csv;charset=UTF-8", response.getContentType());
+            assertEquals("attachment; filename=\"users.csv\"", response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+            assertEquals("johndoe,John,Doe,johndoe@example.com\nthanhtam,Tâm,Nguyễn,tam@example.com\n", response.getContentAsString());
+        } finally {
+            reportExecutor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package com.thanhtam.backend.entity.converter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextConverterTest {
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    private String getAnswerSheetJson(int questions) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= questions; i++) {
+            json.append(i == 1 ? "" : ",").append("{\"questionId\":").append(i).append(",\"choices\":[");
+            for (int j = 1; j <= 4; j++) {
+                json.append(j == 1 ? "" : ",").append("{\"id\":").append(i * 4 + j)
+                        .append(",\"choiceText\":\"Đáp án số ").append(j).append(" của câu hỏi ").append(i)
+                        .append("\",\"isCorrected\":").append(j == 2 ? 1 : 0).append("}");
+            }
+            json.append("],\"point\":5}");
+        }
+        return json.append("]").toString();
+    }
+
+    @Test
+    @DisplayName("Long json is deflated behind its header and read back unchanged")
+    void convert_ShouldDeflateLongText() {
+        String json = getAnswerSheetJson(40);
+
+        byte[] column = converter.convertToDatabaseColumn(json);
+
+        assertEquals(CompressedTextConverter.DEFLATE_V1, column[0]);
+        assertTrue(column.length * 4 < json.getBytes(StandardCharsets.UTF_8).length, "Stored " + column.length + " bytes");
+        assertEquals(json, converter.convertToEntityAttribute(column));
+    }
+
+    @Test
+    @DisplayName("Short text is stored plain behind its header")
+    void convert_ShouldKeepShortTextPlain() {
+        String json = "[{\"questionId\":1,\"point\":5}]";
+
+        byte[] column = converter.convertToDatabaseColumn(json);
+
+        assertEquals(CompressedTextConverter.PLAIN_V1, column[0]);
+        assertEquals(json, new String(column, 1, column.length - 1, StandardCharsets.UTF_8));
+        assertEquals(json, converter.convertToEntityAttribute(column));
+    }
+
+    @Test
+    @DisplayName("Random text is read back unchanged and never stored larger than plain")
+    void convert_ShouldNotGrowRandomText() {
+        Random random = new Random(42);
+        for (int length : new int[]{127, 128, 129, 1000, 100000}) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                text.append((char) (0x20 + random.nextInt(0x2000)));
+            }
+
+            byte[] column = converter.convertToDatabaseColumn(text.toString());
+
+            assertTrue(column.length <= text.toString().getBytes(StandardCharsets.UTF_8).length + 1);
+            assertEquals(text.toString(), converter.convertToEntityAttribute(column));
+        }
+    }
+
+    @Test
+    @DisplayName("Rows written before compression are read as plain utf-8")
+    void convertToEntityAttribute_ShouldReadLegacyRows() {
+        for (String json : Arrays.asList(getAnswerSheetJson(3), "{\"a\":\"Câu hỏi\"}", "\n [1]", "null")) {
+            assertEquals(json, converter.convertToEntityAttribute(json.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    @DisplayName("Null and empty values are kept")
+    void convert_ShouldKeepNullAndEmpty() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+        assertEquals("", converter.convertToEntityAttribute(converter.convertToDatabaseColumn("")));
+        assertEquals("", converter.convertToEntityAttribute(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("A truncated compressed column is rejected")
+    void convertToEntityAttribute_ShouldRejectTruncatedColumn() {
+        byte[] column = converter.convertToDatabaseColumn(getAnswerSheetJson(40));
+
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute(Arrays.copyOf(column, column.length / 2)));
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute(Arrays.copyOf(column, 3)));
+    }
+}
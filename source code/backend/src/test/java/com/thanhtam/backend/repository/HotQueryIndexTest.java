@@ -0,0 +1,177 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.User;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the migrations on H2 in MySQL mode, then explains the SQL sent by the hot repository methods and checks which
+ * index each one reads. The second-level cache is off so every call sends its statement.
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:plans;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.max_fetch_depth=2",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.thanhtam.backend.repository.HotQueryIndexTest$SqlRecorder"
+})
+class HotQueryIndexTest {
+//    Constraint names generated by Hibernate in V1, H2 suffixes the index it creates for them
+    private static final String USERNAME_INDEX = "UK_R43AF9AP4EDM43MMTQ01ODDJ6";
+    private static final String INTAKE_FOREIGN_KEY_INDEX = "FKOYJ5IKUDSY54XBE8YL82MHQUY";
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    static class Config {
+    }
+
+    /**
+     * Keeps the SQL of every statement prepared by Hibernate
+     */
+    public static class SqlRecorder implements StatementInspector {
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExamUserRepository examUserRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class) == 0) {
+            seed();
+        }
+        SqlRecorder.STATEMENTS.clear();
+    }
+
+    /**
+     * Rows in the proportions of a running installation, the planner picks table scans on empty tables
+     */
+    private void seed() {
+        batch("INSERT INTO intake (id, intake_code, name) VALUES (?, ?, ?)", 20, i -> new Object[]{i, "K" + i, "Intake " + i});
+        batch("INSERT INTO course (id, course_code, name) VALUES (?, ?, ?)", 20, i -> new Object[]{i, "C" + i, "Course " + i});
+        batch("INSERT INTO part (id, name, course_id) VALUES (?, ?, ?)", 100, i -> new Object[]{i, "Part " + i, i % 20 + 1});
+        batch("INSERT INTO question_type (id, type_code) VALUES (?, ?)", 3, i -> new Object[]{i, "MC"});
+        batch("INSERT INTO users (id, created_date, deleted, email, username, intake_id) VALUES (?, CURRENT_TIMESTAMP, FALSE, ?, ?, ?)", 2000,
+                i -> new Object[]{i, "user" + i + "@example.com", "user" + i, i % 20 + 1});
+        batch("INSERT INTO question (id, deleted, part_id, created_by_id, question_type_id, point) VALUES (?, ?, ?, ?, ?, 1)", 5000,
+                i -> new Object[]{i, i % 10 == 0, i % 100 + 1, i % 50 + 1, i % 3 + 1});
+        batch("INSERT INTO exam (id, canceled, shuffle, duration_exam, part_id, created_by_id) VALUES (?, FALSE, 0, 60, ?, ?)", 200, i -> new Object[]{i, i % 100 + 1, i % 50 + 1});
+        batch("INSERT INTO exam_user (id, exam_id, user_id, time_finish, remaining_time, is_finished, is_started, total_point) VALUES (?, ?, ?, CURRENT_TIMESTAMP, 0, 1, 1, 0)", 20000,
+                i -> new Object[]{i, (i - 1) % 200 + 1, (i - 1) / 200 + 1});
+        batch("INSERT INTO password_reset_tokens (id, token, user_id) VALUES (?, ?, ?)", 2000, i -> new Object[]{i, "token" + i, i});
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void batch(String sql, int rows, IntFunction<Object[]> row) {
+        List<Object[]> arguments = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            arguments.add(row.apply(i));
+        }
+        jdbcTemplate.batchUpdate(sql, arguments);
+    }
+
+    /**
+     * Plan of the first statement sent by the repository method, with every parameter set to 1
+     */
+    private String plan(Runnable repositoryCall) {
+        repositoryCall.run();
+        String sql = SqlRecorder.STATEMENTS.get(0);
+        SqlRecorder.STATEMENTS.clear();
+        Object[] parameters = new Object[sql.length() - sql.replace("?", "").length()];
+        Arrays.fill(parameters, 1);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+    }
+
+    @Test
+    @DisplayName("Migrations seed the id generator rows")
+    void migrations_ShouldSeedIdGenerator() {
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM id_generator", Integer.class).intValue());
+    }
+
+    private void assertReads(String plan, String... indexes) {
+        assertFalse(plan.contains("tableScan"), plan);
+        for (String index : indexes) {
+            assertTrue(plan.contains("PUBLIC." + index), plan);
+        }
+    }
+
+    @Test
+    @DisplayName("Exam sheet of a user is read by exam and user")
+    void findByExamAndUsername_ShouldUseExamUserIndex() {
+        assertReads(plan(() -> examUserRepository.findByExam_IdAndUser_Username(1L, "user1")),
+                USERNAME_INDEX, "IDX_EXAM_USER_EXAM_USER");
+    }
+
+    @Test
+    @DisplayName("Exam results are read by exam and in finish order")
+    void examResults_ShouldUseIndexes() {
+        assertReads(plan(() -> examUserRepository.findAllByExam_IdAndIdGreaterThanOrderByIdAsc(1L, 0L, PageRequest.of(0, 10))));
+        assertReads(plan(() -> examUserRepository.findExamUsersByIsFinishedIsTrueAndExam_Id(1L)));
+        assertReads(plan(() -> examUserRepository.findExamUsersByOrderByTimeFinish()), "IDX_EXAM_USER_TIME_FINISH");
+    }
+
+    @Test
+    @DisplayName("Question bank of a lecturer is read by part, creator and deleted")
+    void questionsByPartAndCreator_ShouldUseQuestionIndex() {
+        assertReads(plan(() -> questionRepository.findQuestionsByPart_IdAndCreatedBy_UsernameAndDeletedFalse(PageRequest.of(0, 10), 1L, "user1")),
+                USERNAME_INDEX, "IDX_QUESTION_PART_CREATOR_DELETED");
+        assertReads(plan(() -> questionRepository.findQuestionSummariesByPartAndCreatedBy(PageRequest.of(0, 10), 1L, "user1")));
+    }
+
+    @Test
+    @DisplayName("Users are read by username, intake and reset token")
+    void userLookups_ShouldUseIndexes() {
+        assertReads(plan(() -> userRepository.findByUsername("user1")), USERNAME_INDEX);
+        assertReads(plan(() -> userRepository.findAllByIntakeId(1L)), INTAKE_FOREIGN_KEY_INDEX);
+        assertReads(plan(() -> passwordResetTokenRepository.findByToken("token1")), "IDX_PASSWORD_RESET_TOKENS_TOKEN");
+    }
+}
@@ -0,0 +1,144 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.config.CacheConfig;
+import com.thanhtam.backend.dto.EntityCacheStats;
+import com.thanhtam.backend.entity.Intake;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.service.StatisticsServiceImpl;
+import com.thanhtam.backend.ultilities.ERole;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the repositories against H2 with the second-level cache configured by application.properties and ehcache.xml,
+ * counting the statements Hibernate prepares for each call.
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cache;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.max_fetch_depth=2"
+})
+class ReferenceDataCacheTest {
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    @Import(CacheConfig.class)
+    static class Config {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private IntakeRepository intakeRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private PartRepository partRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM role", Integer.class) == 0) {
+            jdbcTemplate.update("INSERT INTO role (id, name) VALUES (1, 'ROLE_ADMIN'), (2, 'ROLE_LECTURER'), (3, 'ROLE_STUDENT')");
+            jdbcTemplate.update("INSERT INTO intake (id, intake_code, name) VALUES (1, 'K1', 'Intake 1'), (2, 'K2', 'Intake 2')");
+            jdbcTemplate.update("INSERT INTO course (id, course_code, name) VALUES (1, 'C1', 'Course 1'), (2, 'C2', 'Course 2')");
+            jdbcTemplate.update("INSERT INTO course_intake (course_id, intake_id) VALUES (1, 1), (2, 1), (2, 2)");
+            jdbcTemplate.update("INSERT INTO part (id, name, course_id) VALUES (1, 'Part 1', 1)");
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Statements prepared while running the lookup
+     */
+    private <T> long statements(Supplier<T> lookup) {
+        long before = statistics.getPrepareStatementCount();
+        lookup.get();
+        return statistics.getPrepareStatementCount() - before;
+    }
+
+    @Test
+    @DisplayName("Repeated reference lookups do not reach the database")
+    void referenceLookups_ShouldBeServedFromCache() {
+        roleRepository.findByName(ERole.ROLE_ADMIN);
+        courseRepository.findAllByIntakeId(1L);
+        partRepository.findById(1L);
+
+        assertEquals(0, statements(() -> roleRepository.findByName(ERole.ROLE_ADMIN)));
+        assertEquals(0, statements(() -> courseRepository.findAllByIntakeId(1L)));
+        assertEquals(0, statements(() -> partRepository.findById(1L)));
+        assertEquals("Course 1", partRepository.findById(1L).get().getCourse().getName());
+        assertEquals(2, courseRepository.findAllByIntakeId(1L).size());
+        assertEquals(2, courseRepository.findById(2L).get().getIntakes().size());
+    }
+
+    @Test
+    @DisplayName("Saving reference data refreshes the cached lookups")
+    void save_ShouldInvalidateCachedQueries() {
+        Intake intake = intakeRepository.findByIntakeCode("K2").get();
+        intake.setIntakeCode("K2-renamed");
+        intakeRepository.save(intake);
+
+        assertFalse(intakeRepository.findByIntakeCode("K2").isPresent());
+        assertEquals("Intake 2", intakeRepository.findByIntakeCode("K2-renamed").get().getName());
+        assertTrue(intakeRepository.findAll().stream().anyMatch(cached -> cached.getIntakeCode().equals("K2-renamed")));
+
+        intake.setIntakeCode("K2");
+        intakeRepository.save(intake);
+    }
+
+    @Test
+    @DisplayName("Cache statistics report every region and the query cache")
+    void getEntityCacheStats_ShouldReportHits() {
+        roleRepository.findByName(ERole.ROLE_STUDENT);
+        roleRepository.findByName(ERole.ROLE_STUDENT);
+
+        List<EntityCacheStats> stats = new StatisticsServiceImpl(null, null, null, null, entityManagerFactory, null).getEntityCacheStats();
+
+        List<String> regions = stats.stream().map(EntityCacheStats::getRegion).collect(Collectors.toList());
+        assertTrue(regions.containsAll(Arrays.asList("com.thanhtam.backend.entity.Role", "com.thanhtam.backend.entity.Course.intakes", "query")), regions.toString());
+        EntityCacheStats query = stats.stream().filter(stat -> stat.getRegion().equals("query")).findFirst().get();
+        assertTrue(query.getHits() > 0);
+        assertTrue(query.getHitRatio() > 0);
+    }
+}
@@ -0,0 +1,130 @@
+package com.thanhtam.backend.repository;
+
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.service.SchedulerLockServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two lock services stand for two nodes sharing the scheduler_lock table created by the migrations.
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:lock;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.max_fetch_depth=2"
+})
+class SchedulerLockRepositoryTest {
+    private static final String LOCK_NAME = "exam-grading";
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = User.class)
+    @EnableJpaRepositories(basePackageClasses = UserRepository.class)
+    static class Config {
+    }
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private SchedulerLockServiceImpl firstNode;
+    private SchedulerLockServiceImpl secondNode;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("update scheduler_lock set locked_until = '1970-01-01 00:00:00', locked_by = null where name = ?", LOCK_NAME);
+        firstNode = new SchedulerLockServiceImpl(schedulerLockRepository);
+        secondNode = new SchedulerLockServiceImpl(schedulerLockRepository);
+    }
+
+    @Test
+    @DisplayName("Only the node holding the lease runs until it gives the lease back")
+    void tryLock_ShouldLetOneNodeHoldTheLease() {
+        assertTrue(firstNode.tryLock(LOCK_NAME, 60000));
+        assertFalse(secondNode.tryLock(LOCK_NAME, 60000));
+        assertFalse(firstNode.tryLock(LOCK_NAME, 60000));
+
+//        Another node cannot give back a lease it does not hold
+        secondNode.unlock(LOCK_NAME);
+        assertFalse(secondNode.tryLock(LOCK_NAME, 60000));
+
+        firstNode.unlock(LOCK_NAME);
+        assertTrue(secondNode.tryLock(LOCK_NAME, 60000));
+        assertNotNull(schedulerLockRepository.findById(LOCK_NAME).get().getLockedBy());
+    }
+
+    @Test
+    @DisplayName("The lease of a node that stopped is taken over once it expires")
+    void tryLock_ShouldTakeOverExpiredLease() throws Exception {
+        assertTrue(firstNode.tryLock(LOCK_NAME, 50));
+        Thread.sleep(100);
+
+        assertTrue(secondNode.tryLock(LOCK_NAME, 60000));
+        assertFalse(firstNode.tryLock(LOCK_NAME, 60000));
+    }
+
+    @Test
+    @DisplayName("Only the node holding an unexpired lease extends it")
+    void renew_ShouldExtendOwnLeaseOnly() throws Exception {
+        assertTrue(firstNode.tryLock(LOCK_NAME, 1000));
+        assertTrue(firstNode.renew(LOCK_NAME, 60000));
+        assertFalse(secondNode.renew(LOCK_NAME, 60000));
+        Thread.sleep(1500);
+        assertFalse(secondNode.tryLock(LOCK_NAME, 60000));
+
+        firstNode.unlock(LOCK_NAME);
+//        A lease given back or taken over is not extended
+        assertFalse(firstNode.renew(LOCK_NAME, 60000));
+    }
+
+    @Test
+    @DisplayName("Nodes racing for a free lease get it once")
+    void tryLock_ShouldGrantFreeLeaseOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                SchedulerLockServiceImpl node = new SchedulerLockServiceImpl(schedulerLockRepository);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return node.tryLock(LOCK_NAME, 60000);
+                }));
+            }
+            start.countDown();
+            int acquired = 0;
+            for (Future<Boolean> result : results) {
+                acquired += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, acquired);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -173,7 +173,8 @@ class CourseServiceTest {
             "PRJ301",
             "Project Management",
             "prj.png",
-            new ArrayList<>()
+            new ArrayList<>(),
+            null
         );
         // Mock the save method to return the object itself (common practice)
         when(courseRepository.save(any(Course.class))).thenReturn(newCourse);
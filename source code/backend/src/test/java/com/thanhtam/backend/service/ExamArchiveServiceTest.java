@@ -0,0 +1,151 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.entity.ExamUserArchive;
+import com.thanhtam.backend.repository.ExamUserArchiveRepository;
+import com.thanhtam.backend.repository.ExamUserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExamArchiveServiceTest {
+    private static final String ANSWER_SHEET = "[{\"questionId\":1,\"choices\":[{\"id\":1,\"choiceText\":\"Hà Nội\",\"isCorrected\":1}],\"point\":5}]";
+
+    @Mock
+    private ExamUserRepository examUserRepository;
+
+    @Mock
+    private ExamUserArchiveRepository examUserArchiveRepository;
+
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExamArchiveServiceImpl examArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        examArchiveService = new ExamArchiveServiceImpl(examUserRepository, examUserArchiveRepository, schedulerLockService, transactionManager);
+        ReflectionTestUtils.setField(examArchiveService, "batchSize", 2);
+        ReflectionTestUtils.setField(examArchiveService, "ageDays", 180L);
+        ReflectionTestUtils.setField(examArchiveService, "leaseSeconds", 300L);
+    }
+
+    private ExamUser getExamUser(Long id, String answerSheet) {
+        ExamUser examUser = new ExamUser();
+        examUser.setId(id);
+        examUser.setIsFinished(true);
+        examUser.setAnswerSheet(answerSheet);
+        examUser.setTotalPoint(5.0);
+        return examUser;
+    }
+
+    @Test
+    @DisplayName("Archiving moves compressed sheets out of exam_user batch by batch")
+    void archiveFinishedBefore_ShouldArchiveInBatches() {
+        Date finishedBefore = new Date();
+        ExamUser first = getExamUser(1L, ANSWER_SHEET);
+        ExamUser second = getExamUser(2L, null);
+        ExamUser third = getExamUser(3L, ANSWER_SHEET);
+        when(examUserRepository.findArchivableIds(eq(finishedBefore), anyLong(), any(Pageable.class)))
+                .thenReturn(Arrays.asList(1L, 2L), Collections.singletonList(3L));
+        when(examUserRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(first, second));
+        when(examUserRepository.findAllById(Collections.singletonList(3L))).thenReturn(Collections.singletonList(third));
+        when(schedulerLockService.renew(eq(ExamArchiveServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+
+        int archived = examArchiveService.archiveFinishedBefore(finishedBefore);
+
+        assertEquals(3, archived);
+        verify(examUserRepository).findArchivableIds(eq(finishedBefore), eq(2L), any(Pageable.class));
+        verify(transactionManager, times(2)).commit(any());
+        for (ExamUser examUser : Arrays.asList(first, second, third)) {
+            assertTrue(examUser.getIsArchived());
+            assertNull(examUser.getAnswerSheet());
+            assertEquals(5.0, examUser.getTotalPoint());
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ExamUserArchive>> captor = ArgumentCaptor.forClass(List.class);
+        verify(examUserArchiveRepository, times(2)).saveAll(captor.capture());
+        List<ExamUserArchive> firstBatch = captor.getAllValues().get(0);
+        assertEquals(1, firstBatch.size());
+        assertEquals(1L, firstBatch.get(0).getExamUserId());
+        assertNotNull(firstBatch.get(0).getArchivedAt());
+
+//        The stored bytes are gzip and read back as the original json
+        byte[] compressed = firstBatch.get(0).getAnswerSheet();
+        assertEquals((byte) 0x1f, compressed[0]);
+        assertEquals((byte) 0x8b, compressed[1]);
+        when(examUserArchiveRepository.findById(1L)).thenReturn(Optional.of(firstBatch.get(0)));
+        assertEquals(ANSWER_SHEET, examArchiveService.getAnswerSheet(first));
+    }
+
+    @Test
+    @DisplayName("A node without the lease does not archive")
+    void archiveFinishedExams_ShouldSkipWithoutLease() {
+        when(schedulerLockService.tryLock(ExamArchiveServiceImpl.LOCK_NAME, 300000L)).thenReturn(false);
+
+        examArchiveService.archiveFinishedExams();
+
+        verifyNoInteractions(examUserRepository, examUserArchiveRepository, transactionManager);
+        verify(schedulerLockService, never()).unlock(any());
+    }
+
+    @Test
+    @DisplayName("The lease is given back after archiving")
+    void archiveFinishedExams_ShouldReleaseLease() {
+        when(schedulerLockService.tryLock(eq(ExamArchiveServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+        when(examUserRepository.findArchivableIds(any(Date.class), anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        examArchiveService.archiveFinishedExams();
+
+        verify(schedulerLockService).unlock(ExamArchiveServiceImpl.LOCK_NAME);
+    }
+
+    @Test
+    @DisplayName("Archiving does nothing when no sheet is old enough")
+    void archiveFinishedBefore_ShouldStopWhenNothingToArchive() {
+        when(examUserRepository.findArchivableIds(any(Date.class), anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        assertEquals(0, examArchiveService.archiveFinishedBefore(new Date()));
+        verify(examUserRepository, never()).findAllById(any());
+        verifyNoInteractions(examUserArchiveRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Sheets still in exam_user are returned without reading the archive")
+    void getAnswerSheet_ShouldReturnInlineSheet() {
+        ExamUser examUser = getExamUser(1L, ANSWER_SHEET);
+
+        assertEquals(ANSWER_SHEET, examArchiveService.getAnswerSheet(examUser));
+        verifyNoInteractions(examUserArchiveRepository);
+    }
+
+    @Test
+    @DisplayName("An archived user without an archived sheet has no answers")
+    void getAnswerSheet_ShouldReturnNullWhenArchiveMissing() {
+        ExamUser examUser = getExamUser(1L, null);
+        examUser.setIsArchived(true);
+        when(examUserArchiveRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertNull(examArchiveService.getAnswerSheet(examUser));
+    }
+}
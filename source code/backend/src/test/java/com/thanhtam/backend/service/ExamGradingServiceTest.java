@@ -0,0 +1,114 @@
+package com.thanhtam.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.entity.Question;
+import com.thanhtam.backend.entity.QuestionType;
+import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExamGradingServiceTest {
+
+    @Mock
+    private QuestionRepository questionRepository;
+
+    private ExamGradingServiceImpl examGradingService;
+
+    private Exam exam;
+
+    @BeforeEach
+    void setUp() {
+        examGradingService = new ExamGradingServiceImpl(questionRepository, new ObjectMapper());
+
+        exam = new Exam();
+        exam.setId(1L);
+        exam.setQuestionData("[{\"questionId\":1,\"point\":5},{\"questionId\":2,\"point\":10},{\"questionId\":3,\"point\":15}]");
+
+        Question tf = createQuestion(1L, EQTypeCode.TF, new Choice(11L, "True", 1));
+        Question mc = createQuestion(2L, EQTypeCode.MC, new Choice(21L, "A", 1), new Choice(22L, "B", 0));
+        Question ms = createQuestion(3L, EQTypeCode.MS, new Choice(31L, "A", 1), new Choice(32L, "B", 1), new Choice(33L, "C", 0));
+        lenient().when(questionRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(tf, mc, ms));
+    }
+
+    private Question createQuestion(Long id, EQTypeCode typeCode, Choice... choices) {
+        QuestionType questionType = new QuestionType();
+        questionType.setTypeCode(typeCode);
+        Question question = new Question();
+        question.setId(id);
+        question.setQuestionType(questionType);
+        question.setChoices(Arrays.asList(choices));
+        return question;
+    }
+
+    @Test
+    @DisplayName("Answer key keeps question order of exam and is loaded once")
+    void getAnswerKey_ShouldBeCachedPerExam() throws IOException {
+        ExamAnswerKey answerKey = examGradingService.getAnswerKey(exam);
+        ExamAnswerKey cachedAnswerKey = examGradingService.getAnswerKey(exam);
+
+        assertSame(answerKey, cachedAnswerKey);
+        assertEquals(Arrays.asList(1L, 2L, 3L), answerKey.getQuestionIds());
+        assertEquals(EQTypeCode.MS, answerKey.getQuestionTypes().get(3L));
+        verify(questionRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Evicted answer key is reloaded")
+    void evictAnswerKey_ShouldReloadAnswerKey() throws IOException {
+        examGradingService.getAnswerKey(exam);
+        examGradingService.evictAnswerKey(exam.getId());
+        examGradingService.getAnswerKey(exam);
+
+        verify(questionRepository, times(2)).findAllById(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Total point only counts correctly answered questions")
+    void getTotalPoint_ShouldSumPointsOfCorrectAnswers() throws IOException {
+        ExamAnswerKey answerKey = examGradingService.getAnswerKey(exam);
+        List<AnswerSheet> answerSheets = examGradingService.convertAnswerSheet(
+                "[{\"questionId\":1,\"point\":5,\"choices\":[{\"id\":11,\"choiceText\":\"True\",\"isCorrected\":0}]}," +
+                        "{\"questionId\":2,\"point\":10,\"choices\":[{\"id\":21,\"choiceText\":\"A\",\"isCorrected\":0},{\"id\":22,\"choiceText\":\"B\",\"isCorrected\":1}]}," +
+                        "{\"questionId\":3,\"point\":15,\"choices\":[{\"id\":31,\"choiceText\":\"A\",\"isCorrected\":1},{\"id\":32,\"choiceText\":\"B\",\"isCorrected\":1},{\"id\":33,\"choiceText\":\"C\",\"isCorrected\":0}]}]");
+
+        assertTrue(examGradingService.isSelectedCorrected(answerKey, answerSheets.get(0)));
+        assertFalse(examGradingService.isSelectedCorrected(answerKey, answerSheets.get(1)));
+        assertTrue(examGradingService.isSelectedCorrected(answerKey, answerSheets.get(2)));
+        assertEquals(20.0, examGradingService.getTotalPoint(answerKey, answerSheets));
+    }
+
+    @Test
+    @DisplayName("Multiple select is wrong when a correct choice is missed")
+    void isSelectedCorrected_MultipleSelectMissingChoice_ShouldBeFalse() throws IOException {
+        ExamAnswerKey answerKey = examGradingService.getAnswerKey(exam);
+        AnswerSheet answerSheet = new AnswerSheet(3L, Arrays.asList(new Choice(31L, "A", 1), new Choice(32L, "B", 0)), 15);
+
+        assertFalse(examGradingService.isSelectedCorrected(answerKey, answerSheet));
+    }
+
+    @Test
+    @DisplayName("Empty answer sheet is converted to an empty list")
+    void convertAnswerSheet_Empty_ShouldReturnEmptyList() throws IOException {
+        assertEquals(Collections.emptyList(), examGradingService.convertAnswerSheet(null));
+        assertEquals(Collections.emptyList(), examGradingService.convertAnswerSheet(""));
+    }
+}
@@ -0,0 +1,198 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.dto.ExamAnswerKey;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.repository.ExamUserRepository;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExamGradingSweepServiceTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Mock
+    private ExamUserRepository examUserRepository;
+
+    @Mock
+    private ExamGradingService examGradingService;
+
+    @Mock
+    private ExamArchiveService examArchiveService;
+
+    @Mock
+    private ExamProgressService examProgressService;
+
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExamGradingSweepServiceImpl examGradingSweepService;
+    private Date now;
+    private Exam exam;
+
+    @BeforeEach
+    void setUp() {
+        examGradingSweepService = new ExamGradingSweepServiceImpl(examUserRepository, examGradingService, examArchiveService,
+                examProgressService, schedulerLockService, transactionManager);
+        ReflectionTestUtils.setField(examGradingSweepService, "batchSize", 2);
+        ReflectionTestUtils.setField(examGradingSweepService, "graceSeconds", 60L);
+        ReflectionTestUtils.setField(examGradingSweepService, "leaseSeconds", 300L);
+        now = new Date();
+        exam = new Exam();
+        exam.setId(1L);
+        exam.setDurationExam(30);
+        exam.setFinishExam(new Date(now.getTime() + 60 * MINUTE));
+    }
+
+    private ExamUser getExamUser(Long id, Date timeStart) {
+        ExamUser examUser = new ExamUser();
+        examUser.setId(id);
+        examUser.setExam(exam);
+        examUser.setIsStarted(true);
+        examUser.setTimeStart(timeStart);
+        examUser.setRemainingTime(300);
+        examUser.setTotalPoint(-1.0);
+        return examUser;
+    }
+
+    @Test
+    @DisplayName("Attempts past their duration and the grace period are finished at their deadline")
+    void submitExpired_ShouldFinishAttemptsPastTheirDeadline() {
+        ExamUser expired = getExamUser(1L, new Date(now.getTime() - 40 * MINUTE));
+        ExamUser inGracePeriod = getExamUser(2L, new Date(now.getTime() - 30 * MINUTE - 30000));
+        ExamUser running = getExamUser(3L, new Date(now.getTime() - 10 * MINUTE));
+        Date deadline = new Date(expired.getTimeStart().getTime() + 30 * MINUTE);
+        when(examUserRepository.findUnfinishedAfter(anyLong(), any(Pageable.class)))
+                .thenReturn(Arrays.asList(expired, inGracePeriod), Collections.singletonList(running));
+        when(examUserRepository.finishIfUnfinished(1L, deadline)).thenReturn(1);
+        when(schedulerLockService.renew(eq(ExamGradingSweepServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+
+        assertEquals(1, examGradingSweepService.submitExpired(now));
+
+        verify(examUserRepository).findUnfinishedAfter(eq(2L), any(Pageable.class));
+        assertTrue(expired.getIsFinished());
+        assertEquals(deadline, expired.getTimeFinish());
+        assertEquals(0, expired.getRemainingTime());
+        assertFalse(inGracePeriod.getIsFinished());
+        assertFalse(running.getIsFinished());
+        verify(examUserRepository, never()).saveAll(any());
+        verify(transactionManager).commit(any());
+        verify(examProgressService).publish(EExamProgressEvent.SUBMITTED, expired, null);
+    }
+
+    @Test
+    @DisplayName("An attempt submitted by the student since it was read keeps its answers and is not submitted again")
+    void submitExpired_ShouldSkipAttemptSubmittedMeanwhile() {
+        ExamUser expired = getExamUser(1L, new Date(now.getTime() - 40 * MINUTE));
+        when(examUserRepository.findUnfinishedAfter(anyLong(), any(Pageable.class))).thenReturn(Collections.singletonList(expired));
+        when(examUserRepository.finishIfUnfinished(eq(1L), any(Date.class))).thenReturn(0);
+
+        assertEquals(0, examGradingSweepService.submitExpired(now));
+
+        assertFalse(expired.getIsFinished());
+        verifyNoInteractions(examProgressService);
+    }
+
+    @Test
+    @DisplayName("A sweep that lost its lease stops after the current batch")
+    void submitExpired_ShouldStopWhenLeaseIsLost() {
+        ExamUser running = getExamUser(1L, now);
+        ExamUser otherRunning = getExamUser(2L, now);
+        when(examUserRepository.findUnfinishedAfter(anyLong(), any(Pageable.class))).thenReturn(Arrays.asList(running, otherRunning));
+        when(schedulerLockService.renew(ExamGradingSweepServiceImpl.LOCK_NAME, TimeUnit.SECONDS.toMillis(300))).thenReturn(false);
+
+        examGradingSweepService.submitExpired(now);
+
+        verify(examUserRepository, times(1)).findUnfinishedAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Answers are accepted until the deadline and its grace period have passed")
+    void isPastDeadline_ShouldAllowTheGracePeriod() {
+        ExamUser inGracePeriod = getExamUser(1L, new Date(now.getTime() - 30 * MINUTE - 30000));
+        ExamUser expired = getExamUser(2L, new Date(now.getTime() - 31 * MINUTE - 1000));
+
+        assertFalse(examGradingSweepService.isPastDeadline(inGracePeriod, now));
+        assertTrue(examGradingSweepService.isPastDeadline(expired, now));
+    }
+
+    @Test
+    @DisplayName("The end of the exam cuts the duration of a late start")
+    void getDeadline_ShouldStopAtTheEndOfTheExam() {
+        ExamUser lateStart = getExamUser(1L, new Date(now.getTime() + 50 * MINUTE));
+
+        assertEquals(exam.getFinishExam(), ExamGradingSweepServiceImpl.getDeadline(lateStart));
+    }
+
+    @Test
+    @DisplayName("Finished attempts are graded and a row that cannot be read is left for the next sweep")
+    void gradeSubmitted_ShouldPersistTotalPoints() throws Exception {
+        ExamUser submitted = getExamUser(1L, now);
+        submitted.setIsFinished(true);
+        ExamUser broken = getExamUser(2L, now);
+        broken.setIsFinished(true);
+        ExamAnswerKey answerKey = new ExamAnswerKey();
+        List<AnswerSheet> answerSheets = Collections.singletonList(new AnswerSheet(1L, Collections.emptyList(), 5));
+        when(examUserRepository.findUngradedIds(anyLong(), any(Pageable.class))).thenReturn(Arrays.asList(1L, 2L), Collections.emptyList());
+        when(examUserRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(submitted, broken));
+        when(examGradingService.getAnswerKey(exam)).thenReturn(answerKey);
+        when(examArchiveService.getAnswerSheet(submitted)).thenReturn("[sheet]");
+        when(examArchiveService.getAnswerSheet(broken)).thenReturn("[broken");
+        when(examGradingService.convertAnswerSheet("[sheet]")).thenReturn(answerSheets);
+        when(examGradingService.convertAnswerSheet("[broken")).thenThrow(new IllegalArgumentException("Unexpected end-of-input"));
+        when(examGradingService.getTotalPoint(answerKey, answerSheets)).thenReturn(5.0);
+        when(schedulerLockService.renew(eq(ExamGradingSweepServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+
+        assertEquals(1, examGradingSweepService.gradeSubmitted());
+
+        assertEquals(5.0, submitted.getTotalPoint());
+        assertEquals(-1.0, broken.getTotalPoint());
+        verify(examUserRepository).findUngradedIds(eq(2L), any(Pageable.class));
+        verify(examUserRepository).saveAll(Collections.singletonList(submitted));
+        verify(examProgressService).publish(EExamProgressEvent.GRADED, submitted, null);
+    }
+
+    @Test
+    @DisplayName("A node without the lease does not sweep")
+    void sweepExpiredAttempts_ShouldSkipWithoutLease() {
+        when(schedulerLockService.tryLock(ExamGradingSweepServiceImpl.LOCK_NAME, TimeUnit.SECONDS.toMillis(300))).thenReturn(false);
+
+        examGradingSweepService.sweepExpiredAttempts();
+
+        verifyNoInteractions(examUserRepository, transactionManager);
+        verify(schedulerLockService, never()).unlock(any());
+    }
+
+    @Test
+    @DisplayName("The lease is given back after a sweep")
+    void sweepExpiredAttempts_ShouldReleaseLease() {
+        when(schedulerLockService.tryLock(eq(ExamGradingSweepServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+        when(examUserRepository.findUnfinishedAfter(anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+        when(examUserRepository.findUngradedIds(anyLong(), any(Pageable.class))).thenReturn(Collections.emptyList());
+
+        examGradingSweepService.sweepExpiredAttempts();
+
+        verify(schedulerLockService).unlock(ExamGradingSweepServiceImpl.LOCK_NAME);
+    }
+}
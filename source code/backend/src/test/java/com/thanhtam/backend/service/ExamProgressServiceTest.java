@@ -0,0 +1,216 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.AnswerSheet;
+import com.thanhtam.backend.entity.Choice;
+import com.thanhtam.backend.entity.Exam;
+import com.thanhtam.backend.entity.ExamUser;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.ultilities.EExamProgressEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(MockitoExtension.class)
+class ExamProgressServiceTest {
+    @Mock
+    private ExamUserService examUserService;
+
+    @Mock
+    private ExamArchiveService examArchiveService;
+
+    @Mock
+    private ExamGradingService examGradingService;
+
+    private ThreadPoolExecutor executor;
+    private ExamProgressServiceImpl examProgressService;
+    private MockMvc mockMvc;
+    private Exam exam;
+
+    @RestController
+    class ProgressController {
+        @GetMapping("/exams/{examId}/progress/stream")
+        public SseEmitter stream(@PathVariable Long examId) {
+            return examProgressService.subscribe(examId);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10));
+        examProgressService = new ExamProgressServiceImpl(examUserService, examArchiveService, examGradingService, executor);
+        ReflectionTestUtils.setField(examProgressService, "bufferSize", 10);
+        ReflectionTestUtils.setField(examProgressService, "timeoutMillis", 60000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProgressController()).build();
+
+        exam = new Exam();
+        exam.setId(1L);
+        ExamUser started = getExamUser("started");
+        started.setIsStarted(true);
+        ExamUser waiting = getExamUser("waiting");
+        when(examUserService.findAllByExam_Id(1L)).thenReturn(Arrays.asList(started, waiting));
+        when(examArchiveService.getAnswerSheet(started)).thenReturn("[]");
+        lenient().when(examGradingService.convertAnswerSheet(any())).thenReturn(getAnswerSheets(1, 3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ExamUser getExamUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        ExamUser examUser = new ExamUser();
+        examUser.setExam(exam);
+        examUser.setUser(user);
+        examUser.setTotalPoint(-1.0);
+        return examUser;
+    }
+
+    private List<AnswerSheet> getAnswerSheets(int answered, int questions) {
+        AnswerSheet[] answerSheets = new AnswerSheet[questions];
+        for (int i = 0; i < questions; i++) {
+            answerSheets[i] = new AnswerSheet((long) i, Arrays.asList(new Choice((long) i * 2, "Có", 0),
+                    new Choice((long) i * 2 + 1, "Không", i < answered ? 1 : 0)), 5);
+        }
+        return Arrays.asList(answerSheets);
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private String getContent(MvcResult mvcResult) {
+        try {
+            return mvcResult.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    @DisplayName("Every subscriber gets the snapshot then the events of its exam in order")
+    void subscribe_ShouldSendSnapshotThenEvents() throws Exception {
+        MvcResult first = mockMvc.perform(get("/exams/1/progress/stream")).andExpect(request().asyncStarted()).andReturn();
+        MvcResult second = mockMvc.perform(get("/exams/1/progress/stream")).andExpect(request().asyncStarted()).andReturn();
+        assertEquals(2, examProgressService.getSubscriberCount(1L));
+
+        ExamUser examUser = getExamUser("student");
+        examProgressService.publish(EExamProgressEvent.STARTED, examUser, getAnswerSheets(0, 3));
+        examProgressService.publish(EExamProgressEvent.PROGRESS, examUser, getAnswerSheets(2, 3));
+        examUser.setTotalPoint(10.0);
+        examProgressService.publish(EExamProgressEvent.GRADED, examUser, getAnswerSheets(2, 3));
+        Exam otherExam = new Exam();
+        otherExam.setId(2L);
+        ExamUser otherExamUser = getExamUser("other");
+        otherExamUser.setExam(otherExam);
+        examProgressService.publish(EExamProgressEvent.STARTED, otherExamUser, null);
+        examProgressService.sendHeartbeats();
+
+        for (MvcResult mvcResult : Arrays.asList(first, second)) {
+            await(() -> getContent(mvcResult).contains(":keepalive"));
+            String content = getContent(mvcResult);
+            assertTrue(content.startsWith("event:snapshot\ndata:[{\"type\":\"PROGRESS\",\"examId\":1,\"username\":\"started\",\"answeredCount\":1,\"questionCount\":3"), content);
+            assertTrue(content.contains("{\"type\":\"NOT_STARTED\",\"examId\":1,\"username\":\"waiting\",\"answeredCount\":null"), content);
+            int started = content.indexOf("event:started\ndata:{\"type\":\"STARTED\",\"examId\":1,\"username\":\"student\",\"answeredCount\":0,\"questionCount\":3");
+            int progress = content.indexOf("event:progress\ndata:{\"type\":\"PROGRESS\",\"examId\":1,\"username\":\"student\",\"answeredCount\":2");
+            int graded = content.indexOf("event:graded\ndata:{\"type\":\"GRADED\",\"examId\":1,\"username\":\"student\",\"answeredCount\":2,\"questionCount\":3,\"totalPoint\":10.0");
+            assertTrue(0 < started && started < progress && progress < graded, content);
+            assertFalse(content.contains("\"other\""), content);
+        }
+    }
+
+    @Test
+    @DisplayName("A subscriber that falls a full buffer behind is dropped and its stream completed")
+    void publish_ShouldDropSlowSubscriber() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/exams/1/progress/stream")).andExpect(request().asyncStarted()).andReturn();
+        await(() -> getContent(mvcResult).startsWith("event:snapshot"));
+//        Occupies the only sender thread, the subscriber's events pile up in its buffer
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ExamUser examUser = getExamUser("student");
+        for (int i = 0; i <= 10; i++) {
+            examProgressService.publish(EExamProgressEvent.PROGRESS, examUser, getAnswerSheets(i % 4, 3));
+        }
+
+        assertEquals(0, examProgressService.getSubscriberCount(1L));
+        release.countDown();
+//        Waits for the stream to be completed
+        mvcResult.getAsyncResult(5000);
+        assertFalse(getContent(mvcResult).contains("event:progress"));
+//        Later events no longer reach it
+        examProgressService.publish(EExamProgressEvent.SUBMITTED, examUser, Collections.emptyList());
+        assertFalse(getContent(mvcResult).contains("event:submitted"));
+    }
+
+    @Test
+    @DisplayName("Events published inside a transaction are sent after the commit and dropped on rollback")
+    void publish_InTransaction_ShouldWaitForCommit() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/exams/1/progress/stream")).andExpect(request().asyncStarted()).andReturn();
+        await(() -> getContent(mvcResult).startsWith("event:snapshot"));
+        ExamUser examUser = getExamUser("student");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            examProgressService.publish(EExamProgressEvent.PROGRESS, examUser, getAnswerSheets(1, 3));
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            examProgressService.publish(EExamProgressEvent.SUBMITTED, examUser, getAnswerSheets(2, 3));
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            Thread.sleep(100);
+            assertFalse(getContent(mvcResult).contains("event:submitted"));
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        await(() -> getContent(mvcResult).contains("event:submitted"));
+        assertFalse(getContent(mvcResult).contains("event:progress"));
+    }
+}
@@ -3,6 +3,7 @@ package com.thanhtam.backend.service;
 import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ChoiceList;
 import com.thanhtam.backend.dto.ExamQuestionPoint;
+import com.thanhtam.backend.dto.ExamSummary;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.repository.ExamRepository;
 import com.thanhtam.backend.repository.IntakeRepository;
@@ -189,6 +190,24 @@ public class ExamServiceTest {
         verify(examRepository).findAllByCreatedBy_Username(pageable, "testuser");
     }
 
+    @Test
+    @DisplayName("Test find exam summaries by created by username")
+    void testFindExamSummariesByCreatedBy() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10);
+        ExamSummary summary = new ExamSummary(1L, "Midterm", false, 60, null, null, 2L, "K20");
+        Page<ExamSummary> examPage = new PageImpl<>(Collections.singletonList(summary), pageable, 1);
+        when(examRepository.findExamSummariesByCreatedBy(pageable, "testuser")).thenReturn(examPage);
+
+        // Act
+        Page<ExamSummary> result = examService.findExamSummariesByCreatedBy(pageable, "testuser");
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals("K20", result.getContent().get(0).getIntake().getName());
+        verify(examRepository).findExamSummariesByCreatedBy(pageable, "testuser");
+    }
+
     @Test
     @DisplayName("Test getChoiceList with valid data")
     void testGetChoiceList() {
@@ -0,0 +1,235 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.FileBlob;
+import com.thanhtam.backend.entity.StoredFile;
+import com.thanhtam.backend.repository.FileBlobRepository;
+import com.thanhtam.backend.repository.StoredFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class FilesStorageServiceTest {
+    @Mock
+    private StoredFileRepository storedFileRepository;
+
+    @Mock
+    private FileBlobRepository fileBlobRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path uploadDir;
+
+    private FilesStorageServiceImpl filesStorageService;
+    private final Map<String, StoredFile> storedFiles = new TreeMap<>();
+    private final Map<String, FileBlob> blobs = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        filesStorageService = new FilesStorageServiceImpl(storedFileRepository, fileBlobRepository, transactionManager, uploadDir.toString());
+
+        when(storedFileRepository.findByName(anyString())).thenAnswer(invocation -> Optional.ofNullable(storedFiles.get(invocation.<String>getArgument(0))));
+        when(storedFileRepository.findForUpdate(anyString())).thenAnswer(invocation -> Optional.ofNullable(storedFiles.get(invocation.<String>getArgument(0))));
+        when(storedFileRepository.save(any(StoredFile.class))).thenAnswer(invocation -> {
+            StoredFile storedFile = invocation.getArgument(0);
+            storedFiles.put(storedFile.getName(), storedFile);
+            return storedFile;
+        });
+        when(storedFileRepository.findAllByOrderByNameAsc()).thenAnswer(invocation -> new ArrayList<>(storedFiles.values()));
+        when(fileBlobRepository.findForUpdate(anyString())).thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(fileBlobRepository.existsById(anyString())).thenAnswer(invocation -> blobs.containsKey(invocation.<String>getArgument(0)));
+        when(fileBlobRepository.save(any(FileBlob.class))).thenAnswer(invocation -> {
+            FileBlob blob = invocation.getArgument(0);
+            blobs.put(blob.getHash(), blob);
+            return blob;
+        });
+        doAnswer(invocation -> blobs.remove(invocation.<FileBlob>getArgument(0).getHash())).when(fileBlobRepository).delete(any(FileBlob.class));
+        doAnswer(invocation -> storedFiles.remove(invocation.<StoredFile>getArgument(0).getName())).when(storedFileRepository).delete(any(StoredFile.class));
+    }
+
+    private MockMultipartFile upload(String name, String content) {
+        return new MockMultipartFile("file", name, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Path> blobFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Same content under two names is stored once")
+    void store_DuplicateContent_ShouldShareBlob() throws IOException {
+        StoredFile first = filesStorageService.store(upload("a.txt", "same content"));
+        StoredFile second = filesStorageService.store(upload("b.txt", "same content"));
+
+        assertEquals(first.getHash(), second.getHash());
+        assertEquals(1, blobFiles().size());
+        assertEquals(2, blobs.get(first.getHash()).getRefCount());
+        assertEquals(filesStorageService.loadPath("a.txt").get(), filesStorageService.loadPath("b.txt").get());
+        assertEquals("same content", new String(Files.readAllBytes(filesStorageService.loadPath("a.txt").get()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Blobs are sharded by the first bytes of their hash")
+    void store_ShouldShardByHashPrefix() throws IOException {
+        StoredFile storedFile = filesStorageService.store(upload("a.txt", "hello"));
+
+        Path blob = filesStorageService.loadPath("a.txt").get();
+        String hash = storedFile.getHash();
+        assertEquals(64, hash.length());
+        assertEquals(uploadDir.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash), blob);
+        assertEquals(5, storedFile.getSize());
+        try (Stream<Path> tempFiles = Files.list(uploadDir.resolve("tmp"))) {
+            assertEquals(0, tempFiles.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Replacing the last name of a blob deletes its content")
+    void store_SameNameNewContent_ShouldReleaseOldBlob() throws IOException {
+        String oldHash = filesStorageService.store(upload("a.txt", "version 1")).getHash();
+        Path oldBlob = filesStorageService.loadPath("a.txt").get();
+
+        StoredFile replaced = filesStorageService.store(upload("a.txt", "version 2"));
+
+        assertNotEquals(oldHash, replaced.getHash());
+        assertFalse(Files.exists(oldBlob));
+        assertFalse(blobs.containsKey(oldHash));
+        assertEquals(1, blobFiles().size());
+        assertEquals(1, storedFiles.size());
+    }
+
+    @Test
+    @DisplayName("A failed index update rolls back and keeps the content of the replaced name")
+    void store_IndexFailure_ShouldRollBackAndKeepOldBlob() throws IOException {
+        filesStorageService.store(upload("a.txt", "version 1"));
+        Path oldBlob = filesStorageService.loadPath("a.txt").get();
+        when(storedFileRepository.save(any(StoredFile.class))).thenThrow(new IllegalStateException("Connection lost"));
+
+        assertThrows(IllegalStateException.class, () -> filesStorageService.store(upload("a.txt", "version 2")));
+
+        verify(transactionManager).rollback(any());
+        assertTrue(Files.exists(oldBlob));
+    }
+
+    @Test
+    @DisplayName("A rolled back upload deletes the content it added")
+    void store_IndexFailure_ShouldDeleteNewBlob() throws IOException {
+        filesStorageService.store(upload("a.txt", "version 1"));
+        when(fileBlobRepository.save(any(FileBlob.class))).thenThrow(new IllegalStateException("Connection lost"));
+
+        assertThrows(IllegalStateException.class, () -> filesStorageService.store(upload("b.txt", "version 2")));
+
+        assertEquals(1, blobFiles().size());
+        assertEquals(filesStorageService.loadPath("a.txt").get(), blobFiles().get(0));
+    }
+
+    @Test
+    @DisplayName("An upload losing the insert race to another upload is retried")
+    void store_InsertConflict_ShouldRetry() {
+        when(storedFileRepository.save(any(StoredFile.class)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'a.txt'"))
+                .thenAnswer(invocation -> {
+                    StoredFile storedFile = invocation.getArgument(0);
+                    storedFiles.put(storedFile.getName(), storedFile);
+                    return storedFile;
+                });
+
+        StoredFile storedFile = filesStorageService.store(upload("a.txt", "hello"));
+
+        assertEquals("a.txt", storedFile.getName());
+        assertTrue(filesStorageService.loadPath("a.txt").isPresent());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("Uploading the same file again keeps one reference")
+    void store_SameNameSameContent_ShouldNotAddReference() {
+        StoredFile first = filesStorageService.store(upload("a.txt", "hello"));
+        filesStorageService.store(upload("a.txt", "hello"));
+
+        assertEquals(1, blobs.get(first.getHash()).getRefCount());
+    }
+
+    @Test
+    @DisplayName("Files left in the upload folder are moved into the store and listed from the index")
+    void indexLegacyFiles_ShouldMoveFilesIntoStore() throws IOException {
+        Files.write(uploadDir.resolve("old.txt"), "legacy".getBytes(StandardCharsets.UTF_8));
+        filesStorageService.store(upload("new.txt", "fresh"));
+
+        filesStorageService.indexLegacyFiles();
+
+        assertFalse(Files.exists(uploadDir.resolve("old.txt")));
+        assertEquals(Arrays.asList("new.txt", "old.txt"), filesStorageService.loadAll().stream().map(StoredFile::getName).collect(Collectors.toList()));
+        assertEquals("legacy", new String(Files.readAllBytes(filesStorageService.loadPath("old.txt").get()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("A legacy file is kept when the store has different content under its name")
+    void indexLegacyFiles_DifferentContent_ShouldKeepFile() throws IOException {
+        filesStorageService.store(upload("a.txt", "indexed"));
+        Files.write(uploadDir.resolve("a.txt"), "legacy".getBytes(StandardCharsets.UTF_8));
+        Files.write(uploadDir.resolve("b.txt"), "same".getBytes(StandardCharsets.UTF_8));
+        filesStorageService.store(upload("b.txt", "same"));
+
+        filesStorageService.indexLegacyFiles();
+
+        assertTrue(Files.exists(uploadDir.resolve("a.txt")));
+        assertFalse(Files.exists(uploadDir.resolve("b.txt")));
+        assertEquals("indexed", new String(Files.readAllBytes(filesStorageService.loadPath("a.txt").get()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Path segments in the upload name are dropped")
+    void store_PathInName_ShouldKeepFileNameOnly() {
+        StoredFile storedFile = filesStorageService.store(upload("../../etc/passwd", "x"));
+
+        assertEquals("passwd", storedFile.getName());
+        assertFalse(filesStorageService.loadPath("../../etc/passwd").isPresent());
+    }
+
+    @Test
+    @DisplayName("Deleting a name keeps the content while another name references it")
+    void delete_ShouldDeleteContentWithLastName() throws IOException {
+        filesStorageService.store(upload("a.txt", "same content"));
+        filesStorageService.store(upload("b.txt", "same content"));
+        Path blob = filesStorageService.loadPath("a.txt").get();
+
+        assertTrue(filesStorageService.delete("a.txt"));
+        assertTrue(Files.exists(blob));
+        assertFalse(filesStorageService.loadPath("a.txt").isPresent());
+
+        assertTrue(filesStorageService.delete("b.txt"));
+        assertFalse(Files.exists(blob));
+        assertTrue(blobs.isEmpty());
+        assertFalse(filesStorageService.delete("b.txt"));
+    }
+}
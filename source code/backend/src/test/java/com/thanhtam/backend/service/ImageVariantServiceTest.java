@@ -0,0 +1,136 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.entity.Course;
+import com.thanhtam.backend.entity.ImageVariant;
+import com.thanhtam.backend.repository.ImageVariantRepository;
+import com.thanhtam.backend.ultilities.EImageVariant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageVariantServiceTest {
+    @Mock
+    private S3Services s3Services;
+
+    @Mock
+    private ImageVariantRepository imageVariantRepository;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private Cache cache;
+
+    private ExecutorService executor;
+
+    private ImageVariantServiceImpl imageVariantService;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        imageVariantService = new ImageVariantServiceImpl(s3Services, imageVariantRepository, entityManagerFactory, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] createPng(int width, int height) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    @DisplayName("Every variant of an uploaded image is stored next to the original")
+    void generateVariants_ShouldUploadEveryVariant() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "course.png", "image/png", createPng(800, 400));
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+
+        imageVariantService.generateVariants("images/1_course.png", "http://localhost:9000/isc/images/1_course.png", file);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+        verify(s3Services).uploadS3File(eq("images/1_course-thumb.png"), content.capture(), eq("image/png"));
+        BufferedImage thumb = ImageIO.read(new ByteArrayInputStream(content.getValue()));
+        assertEquals(64, thumb.getWidth());
+        assertEquals(32, thumb.getHeight());
+        verify(s3Services).uploadS3File(eq("images/1_course-small.png"), any(byte[].class), eq("image/png"));
+        verify(s3Services).uploadS3File(eq("images/1_course-medium.png"), any(byte[].class), eq("image/png"));
+        verify(imageVariantRepository).save(new ImageVariant("http://localhost:9000/isc/images/1_course.png", "thumb,small,medium"));
+        verify(cache).evict(Course.class);
+    }
+
+    @Test
+    @DisplayName("A variant that failed to upload is not recorded")
+    void generateVariants_UploadFailed_ShouldRecordStoredVariantsOnly() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "course.png", "image/png", createPng(800, 400));
+//        Lenient, the other variants are uploaded with other keys
+        lenient().doThrow(new IllegalStateException("S3 is down")).when(s3Services).uploadS3File(eq("images/1_course-small.png"), any(byte[].class), anyString());
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+
+        imageVariantService.generateVariants("images/1_course.png", "http://localhost:9000/isc/images/1_course.png", file);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        verify(imageVariantRepository).save(new ImageVariant("http://localhost:9000/isc/images/1_course.png", "thumb,medium"));
+    }
+
+    @Test
+    @DisplayName("Files outside the image prefix get no variants")
+    void generateVariants_NotAnImageKey_ShouldDoNothing() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "notes.pdf", "application/pdf", new byte[]{1, 2, 3});
+
+        imageVariantService.generateVariants("notes.pdf", "http://localhost:9000/isc/notes.pdf", file);
+
+        verifyNoInteractions(s3Services, imageVariantRepository);
+    }
+
+    @Test
+    @DisplayName("Small images are never enlarged")
+    void resize_SmallImage_ShouldKeepSize() {
+        BufferedImage resized = ImageVariantServiceImpl.resize(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), 160, false);
+
+        assertEquals(40, resized.getWidth());
+        assertEquals(20, resized.getHeight());
+    }
+
+    @Test
+    @DisplayName("Only stored variants get a url, images uploaded before variants existed fall back to the original")
+    void getUrls_ShouldMapVariants() {
+        Map<String, String> urls = EImageVariant.getUrls("http://localhost:9000/isc/images/1_avatar.jpg", "thumb,medium");
+        assertEquals("http://localhost:9000/isc/images/1_avatar-thumb.jpg", urls.get("thumb"));
+        assertEquals("http://localhost:9000/isc/images/1_avatar-medium.jpg", urls.get("medium"));
+        assertFalse(urls.containsKey("small"));
+        assertTrue(EImageVariant.getUrls("http://localhost:9000/isc/images/2_avatar.jpg", null).isEmpty());
+
+        Map<String, String> legacyUrls = EImageVariant.getUrls("http://localhost:9000/isc/avatar.jpg", null);
+        assertEquals("http://localhost:9000/isc/avatar.jpg", legacyUrls.get("small"));
+        assertNull(EImageVariant.getUrls(null, null));
+    }
+}
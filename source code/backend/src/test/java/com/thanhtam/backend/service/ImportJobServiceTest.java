@@ -0,0 +1,187 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.ImportJobReport;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.repository.UserRepository;
+import com.thanhtam.backend.ultilities.EImportJobStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+
+    @Mock
+    private ExcelService excelService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private ExecutorService executor;
+
+    private ImportJobServiceImpl importJobService;
+
+    private final MockMultipartFile file = new MockMultipartFile("file", "users.xlsx", null, new byte[]{1, 2, 3});
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        importJobService = new ImportJobServiceImpl(excelService, userRepository, executor);
+        ReflectionTestUtils.setField(importJobService, "retentionMinutes", 60L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@gmail.com");
+        return user;
+    }
+
+    private void awaitJobs() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Submitted job imports rows in background and reports failures")
+    @SuppressWarnings("unchecked")
+    void submitUserImport_ShouldImportRowsAndReportProgress() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(1);
+            consumer.accept(createUser("student1"));
+            consumer.accept(createUser("student2"));
+            consumer.accept(createUser("student3"));
+            return null;
+        }).when(excelService).readUserFromExcelFile(anyString(), any(Consumer.class));
+        when(userRepository.existsByEmailOrUsername(anyString(), anyString())).thenReturn(false);
+        when(userRepository.existsByEmailOrUsername("student2@gmail.com", "student2")).thenReturn(true);
+
+        ImportJobReport submitted = importJobService.submitUserImport(file);
+        awaitJobs();
+        ImportJobReport report = importJobService.getJob(submitted.getJobId()).get();
+
+        assertEquals("users.xlsx", submitted.getFileName());
+        assertEquals(EImportJobStatus.COMPLETED, report.getStatus());
+        assertEquals(3, report.getProcessedRows());
+        assertEquals(2, report.getImportedRows());
+        assertEquals(1, report.getFailedRows());
+        assertEquals(2, report.getErrors().get(0).getRowNumber());
+        assertNotNull(report.getFinishedAt());
+        verify(userRepository, times(2)).save(any(User.class));
+        assertFalse(Files.exists(Paths.get("excel-import-user", submitted.getJobId() + "-users.xlsx")));
+    }
+
+    @Test
+    @DisplayName("Unreadable file marks the job as failed")
+    @SuppressWarnings("unchecked")
+    void submitUserImport_ReadError_ShouldFailJob() throws Exception {
+        doThrow(new IOException("broken file")).when(excelService).readUserFromExcelFile(anyString(), any(Consumer.class));
+
+        ImportJobReport submitted = importJobService.submitUserImport(file);
+        awaitJobs();
+
+        ImportJobReport report = importJobService.getJob(submitted.getJobId()).get();
+        assertEquals(EImportJobStatus.FAILED, report.getStatus());
+        assertTrue(report.getMessage().contains("broken file"));
+    }
+
+    @Test
+    @DisplayName("Cancelled job stops before its next row")
+    @SuppressWarnings("unchecked")
+    void cancelJob_Running_ShouldStopImport() throws Exception {
+        CountDownLatch firstRowSaved = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(1);
+            consumer.accept(createUser("student1"));
+            firstRowSaved.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            consumer.accept(createUser("student2"));
+            return null;
+        }).when(excelService).readUserFromExcelFile(anyString(), any(Consumer.class));
+
+        ImportJobReport submitted = importJobService.submitUserImport(file);
+        assertTrue(firstRowSaved.await(5, TimeUnit.SECONDS));
+        importJobService.cancelJob(submitted.getJobId());
+        cancelled.countDown();
+        awaitJobs();
+
+        ImportJobReport report = importJobService.getJob(submitted.getJobId()).get();
+        assertEquals(EImportJobStatus.CANCELLED, report.getStatus());
+        assertEquals(1, report.getProcessedRows());
+        verify(userRepository, times(1)).save(any(User.class));
+    }
+
+    @Test
+    @DisplayName("Job cancelled while queued never runs and its staged file is deleted")
+    @SuppressWarnings("unchecked")
+    void cancelJob_Queued_ShouldDeleteStagedFile() throws Exception {
+        CountDownLatch firstJobStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstJobStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(excelService).readUserFromExcelFile(anyString(), any(Consumer.class));
+
+        ImportJobReport running = importJobService.submitUserImport(file);
+        assertTrue(firstJobStarted.await(5, TimeUnit.SECONDS));
+        ImportJobReport queued = importJobService.submitUserImport(file);
+        assertTrue(Files.exists(Paths.get("excel-import-user", queued.getJobId() + "-users.xlsx")));
+
+        ImportJobReport cancelled = importJobService.cancelJob(queued.getJobId()).get();
+        release.countDown();
+        awaitJobs();
+
+        assertEquals(EImportJobStatus.CANCELLED, cancelled.getStatus());
+        assertFalse(Files.exists(Paths.get("excel-import-user", queued.getJobId() + "-users.xlsx")));
+        assertEquals(EImportJobStatus.COMPLETED, importJobService.getJob(running.getJobId()).get().getStatus());
+        verify(excelService, times(1)).readUserFromExcelFile(anyString(), any(Consumer.class));
+    }
+
+    @Test
+    @DisplayName("Finished jobs are purged after the retention period")
+    void purgeExpiredJobs_ShouldRemoveFinishedJobs() throws Exception {
+        ImportJobReport submitted = importJobService.submitUserImport(file);
+        awaitJobs();
+
+        importJobService.purgeExpiredJobs();
+        assertTrue(importJobService.getJob(submitted.getJobId()).isPresent());
+
+        ReflectionTestUtils.setField(importJobService, "retentionMinutes", -1L);
+        importJobService.purgeExpiredJobs();
+        assertFalse(importJobService.getJob(submitted.getJobId()).isPresent());
+        assertTrue(importJobService.getJobs().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Unknown job cannot be cancelled")
+    void cancelJob_Unknown_ShouldReturnEmpty() {
+        assertFalse(importJobService.cancelJob("unknown").isPresent());
+    }
+}
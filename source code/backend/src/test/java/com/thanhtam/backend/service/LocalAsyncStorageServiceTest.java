@@ -0,0 +1,163 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.hash.Hashing;
+import com.thanhtam.backend.dto.StorageObject;
+import com.thanhtam.backend.entity.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocalAsyncStorageServiceTest {
+    @Mock
+    private FilesStorageService filesStorageService;
+
+    @TempDir
+    Path tempDir;
+
+    private ThreadPoolExecutor storageExecutor;
+    private LocalAsyncStorageServiceImpl localStorageService;
+
+    @BeforeEach
+    void setUp() {
+        storageExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10));
+        localStorageService = new LocalAsyncStorageServiceImpl(filesStorageService, storageExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageExecutor.shutdownNow();
+    }
+
+    /**
+     * Spans several chunks and ends in the middle of one
+     */
+    private static byte[] content() {
+        byte[] content = new byte[200 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    @Test
+    @DisplayName("A put writes the staging file with the asynchronous channel and hands over its hash and size")
+    void put_ShouldStageContentAndStoreIt() throws Exception {
+        byte[] content = content();
+        Path stagedFile = Files.createFile(tempDir.resolve("upload-1.part"));
+        when(filesStorageService.createStagingFile()).thenReturn(stagedFile);
+        byte[][] staged = new byte[1][];
+        when(filesStorageService.storeStaged(eq("notes.bin"), eq("application/octet-stream"), eq(stagedFile), anyString(), anyLong())).thenAnswer(invocation -> {
+            staged[0] = Files.readAllBytes(stagedFile);
+            return new StoredFile(1L, "notes.bin", invocation.getArgument(3), invocation.getArgument(4), "application/octet-stream", new Date());
+        });
+
+        StorageObject storageObject = localStorageService.put("notes.bin", new ByteArrayInputStream(content), content.length, "application/octet-stream")
+                .get(5, TimeUnit.SECONDS);
+
+        assertArrayEquals(content, staged[0]);
+        assertEquals(Hashing.sha256().hashBytes(content).toString(), storageObject.getETag());
+        assertEquals(content.length, storageObject.getSize());
+        assertFalse(Files.exists(stagedFile));
+    }
+
+    @Test
+    @DisplayName("Content shorter than announced is not stored")
+    void put_TruncatedContent_ShouldFail() throws Exception {
+        Path stagedFile = Files.createFile(tempDir.resolve("upload-1.part"));
+        when(filesStorageService.createStagingFile()).thenReturn(stagedFile);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> localStorageService
+                .put("notes.bin", new ByteArrayInputStream(new byte[10]), 20, "application/octet-stream").get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof IOException);
+        assertFalse(Files.exists(stagedFile));
+        verify(filesStorageService, never()).storeStaged(anyString(), anyString(), any(), anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("A key with a path is refused")
+    void put_PathInKey_ShouldFail() {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> localStorageService
+                .put("../notes.bin", new ByteArrayInputStream(new byte[1]), 1, "application/octet-stream").get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        verifyNoInteractions(filesStorageService);
+    }
+
+    @Test
+    @DisplayName("A get streams the whole file while the next chunk is read ahead")
+    void get_ShouldStreamContent() throws Exception {
+        byte[] content = content();
+        Path blob = Files.write(tempDir.resolve("blob"), content);
+        when(filesStorageService.findStoredFile("notes.bin")).thenReturn(Optional.of(
+                new StoredFile(1L, "notes.bin", "hash", content.length, "application/octet-stream", new Date())));
+        when(filesStorageService.loadPath("notes.bin")).thenReturn(Optional.of(blob));
+
+        StorageObject storageObject = localStorageService.get("notes.bin").get(5, TimeUnit.SECONDS);
+
+        try (InputStream inputStream = storageObject.getContent()) {
+            assertArrayEquals(content, StreamUtils.copyToByteArray(inputStream));
+            assertEquals(-1, inputStream.read());
+        }
+        assertEquals(content.length, storageObject.getSize());
+        assertEquals("hash", storageObject.getETag());
+    }
+
+    @Test
+    @DisplayName("Deleting a missing key fails with NoSuchFileException")
+    void delete_MissingKey_ShouldFail() {
+        when(filesStorageService.delete("notes.bin")).thenReturn(false);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> localStorageService.delete("notes.bin").get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof NoSuchFileException);
+    }
+
+    @Test
+    @DisplayName("A full storage pool rejects the call instead of queueing it without bound")
+    void get_ShouldRejectWhenPoolIsFull() {
+        ThreadPoolExecutor fullExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        LocalAsyncStorageServiceImpl busyStorageService = new LocalAsyncStorageServiceImpl(filesStorageService, fullExecutor);
+        CountDownLatch release = new CountDownLatch(1);
+        fullExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        fullExecutor.execute(() -> {
+        });
+
+        try {
+            assertThrows(RejectedExecutionException.class, () -> busyStorageService.get("notes.bin"));
+        } finally {
+            release.countDown();
+            fullExecutor.shutdownNow();
+        }
+        verifyNoInteractions(filesStorageService);
+    }
+}
@@ -0,0 +1,307 @@
+package com.thanhtam.backend.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.thanhtam.backend.config.S3Config;
+import com.thanhtam.backend.dto.PresignedUploadCompletion;
+import com.thanhtam.backend.dto.PresignedUploadRequest;
+import com.thanhtam.backend.dto.PresignedUrl;
+import com.thanhtam.backend.entity.Course;
+import com.thanhtam.backend.entity.Profile;
+import com.thanhtam.backend.entity.User;
+import com.thanhtam.backend.repository.CourseRepository;
+import com.thanhtam.backend.repository.ProfileRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Uploads go through real presigned urls against a local S3 stand-in that accepts signed PUT, HEAD and DELETE.
+ */
+@ExtendWith(MockitoExtension.class)
+class PresignedUploadServiceTest {
+    private static final String BUCKET = "isc-quiz";
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private CourseService courseService;
+
+    @Mock
+    private ProfileRepository profileRepository;
+
+    @Mock
+    private CourseRepository courseRepository;
+
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
+    private HttpServer s3StandIn;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    private final Map<String, String> acls = new ConcurrentHashMap<>();
+    private final Map<String, String> lastModified = new ConcurrentHashMap<>();
+    private PresignedUploadServiceImpl presignedUploadService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3StandIn = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        s3StandIn.createContext("/", this::handleS3Request);
+        s3StandIn.start();
+
+        S3Config s3Config = new S3Config();
+        ReflectionTestUtils.setField(s3Config, "awsId", "access");
+        ReflectionTestUtils.setField(s3Config, "awsKey", "secret");
+        ReflectionTestUtils.setField(s3Config, "s3Endpoint", "http://127.0.0.1:" + s3StandIn.getAddress().getPort());
+        S3ServicesImpl s3Services = new S3ServicesImpl(s3Config.s3client());
+        ReflectionTestUtils.setField(s3Services, "bucketName", BUCKET);
+
+        presignedUploadService = new PresignedUploadServiceImpl(s3Services, userService, courseService, profileRepository, courseRepository, schedulerLockService);
+        ReflectionTestUtils.setField(presignedUploadService, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(presignedUploadService, "endpointUrl", "http://localhost:9000");
+        ReflectionTestUtils.setField(presignedUploadService, "expirySeconds", 300L);
+        ReflectionTestUtils.setField(presignedUploadService, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(presignedUploadService, "contentTypes", new String[]{"image/png", "image/jpeg"});
+        ReflectionTestUtils.setField(presignedUploadService, "abandonedAfterHours", 24L);
+        ReflectionTestUtils.setField(presignedUploadService, "leaseSeconds", 300L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3StandIn.stop(0);
+    }
+
+    private void handleS3Request(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestURI().getPath().replaceAll("/$", "").equals("/" + BUCKET)) {
+            handleListRequest(exchange);
+            return;
+        }
+        String key = exchange.getRequestURI().getPath().substring(("/" + BUCKET + "/").length());
+        String query = exchange.getRequestURI().getRawQuery();
+        switch (exchange.getRequestMethod()) {
+            case "PUT": {
+//                Only presigned requests are accepted, the Content-Type, Content-Length and x-amz-acl headers must be part of the signature
+                if (query == null || !query.contains("X-Amz-Signature=") || !query.contains("content-type") || !query.contains("content-length") || !query.contains("x-amz-acl")) {
+                    exchange.sendResponseHeaders(403, -1);
+                    break;
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                try (InputStream inputStream = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[8192];
+                    int len;
+                    while ((len = inputStream.read(buffer)) != -1) {
+                        content.write(buffer, 0, len);
+                    }
+                }
+                objects.put(key, content.toByteArray());
+                contentTypes.put(key, exchange.getRequestHeaders().getFirst("Content-Type"));
+                acls.put(key, exchange.getRequestHeaders().getFirst("x-amz-acl"));
+                lastModified.put(key, "2020-06-01T00:00:00.000Z");
+                exchange.sendResponseHeaders(200, -1);
+                break;
+            }
+            case "HEAD": {
+                if (!objects.containsKey(key)) {
+                    exchange.sendResponseHeaders(404, -1);
+                    break;
+                }
+                exchange.getResponseHeaders().set("Content-Type", contentTypes.get(key));
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(objects.get(key).length));
+                exchange.sendResponseHeaders(200, -1);
+                break;
+            }
+            case "DELETE": {
+                objects.remove(key);
+                exchange.sendResponseHeaders(204, -1);
+                break;
+            }
+            default:
+                exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+
+    /**
+     * ListObjectsV2 of every object in one page
+     */
+    private void handleListRequest(HttpExchange exchange) throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(BUCKET).append("</Name>")
+                .append("<KeyCount>").append(objects.size()).append("</KeyCount>")
+                .append("<IsTruncated>false</IsTruncated>");
+        objects.forEach((key, content) -> xml.append("<Contents><Key>").append(key).append("</Key>")
+                .append("<LastModified>").append(lastModified.get(key)).append("</LastModified>")
+                .append("<Size>").append(content.length).append("</Size></Contents>"));
+        byte[] body = xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private int put(PresignedUrl presignedUrl, byte[] content) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(presignedUrl.getUrl()).openConnection();
+        connection.setRequestMethod(presignedUrl.getMethod());
+        connection.setDoOutput(true);
+        presignedUrl.getHeaders().forEach(connection::setRequestProperty);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(content);
+        }
+        return connection.getResponseCode();
+    }
+
+    private User createUser() {
+        User user = new User();
+        user.setUsername("thanhtam");
+        user.setProfile(new Profile());
+        user.setRoles(new HashSet<>());
+        return user;
+    }
+
+    @Test
+    @DisplayName("Avatar uploaded with a presigned url is recorded on the profile")
+    void completeUpload_Avatar_ShouldRecordUrlOnProfile() throws IOException {
+        User user = createUser();
+        when(userService.getUserByUsername("thanhtam")).thenReturn(Optional.of(user));
+
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 3));
+        assertEquals(200, put(uploadUrl, new byte[]{1, 2, 3}));
+        String url = presignedUploadService.completeUpload("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadCompletion(uploadUrl.getKeyName(), null));
+
+        assertTrue(uploadUrl.getKeyName().startsWith("direct/thanhtam/"));
+        assertEquals("http://localhost:9000/" + BUCKET + "/" + uploadUrl.getKeyName(), url);
+        assertEquals(url, user.getProfile().getImage());
+        assertEquals("public-read", acls.get(uploadUrl.getKeyName()));
+        verify(userService).updateUser(user);
+    }
+
+    @Test
+    @DisplayName("Download urls are only signed for the uploads of the user")
+    void createDownloadUrl_ForeignKey_ShouldBeDenied() {
+        PresignedUrl downloadUrl = presignedUploadService.createDownloadUrl("thanhtam", "direct/thanhtam/1_avatar.png");
+
+        assertEquals("GET", downloadUrl.getMethod());
+        assertTrue(downloadUrl.getUrl().contains("X-Amz-Signature="));
+        assertThrows(AccessDeniedException.class, () -> presignedUploadService.createDownloadUrl("someone", "direct/thanhtam/1_avatar.png"));
+        assertThrows(AccessDeniedException.class, () -> presignedUploadService.createDownloadUrl("thanhtam", "direct/thanhtam2/1_avatar.png"));
+        assertThrows(AccessDeniedException.class, () -> presignedUploadService.createDownloadUrl("thanhtam", "exports/results.xlsx"));
+    }
+
+    @Test
+    @DisplayName("Course image url is recorded on a course the lecturer teaches")
+    void completeUpload_Course_ShouldRecordUrlOnCourse() throws IOException {
+        Course course = new Course();
+        when(userService.getUserByUsername("lecturer")).thenReturn(Optional.of(createUser()));
+        when(courseService.isTaughtBy(7L, "lecturer")).thenReturn(true);
+        when(courseService.getCourseById(7L)).thenReturn(Optional.of(course));
+
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("lecturer", PresignedUploadService.COURSE, new PresignedUploadRequest("image/jpeg", 2));
+        put(uploadUrl, new byte[]{1, 2});
+        String url = presignedUploadService.completeUpload("lecturer", PresignedUploadService.COURSE, new PresignedUploadCompletion(uploadUrl.getKeyName(), 7L));
+
+        assertEquals(url, course.getImgUrl());
+        verify(courseService).saveCourse(course);
+    }
+
+    @Test
+    @DisplayName("Course image cannot be set on a course the lecturer does not teach")
+    void completeUpload_ForeignCourse_ShouldBeDenied() throws IOException {
+        when(userService.getUserByUsername("lecturer")).thenReturn(Optional.of(createUser()));
+        when(courseService.isTaughtBy(7L, "lecturer")).thenReturn(false);
+
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("lecturer", PresignedUploadService.COURSE, new PresignedUploadRequest("image/jpeg", 2));
+        put(uploadUrl, new byte[]{1, 2});
+
+        assertThrows(AccessDeniedException.class, () -> presignedUploadService.completeUpload("lecturer", PresignedUploadService.COURSE, new PresignedUploadCompletion(uploadUrl.getKeyName(), 7L)));
+        verify(courseService, never()).saveCourse(any(Course.class));
+    }
+
+    @Test
+    @DisplayName("Upload url signs the declared size")
+    void createUploadUrl_ShouldSignContentLength() {
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 3));
+
+        assertTrue(uploadUrl.getUrl().contains("content-length"));
+        assertEquals("3", uploadUrl.getHeaders().get("Content-Length"));
+    }
+
+    @Test
+    @DisplayName("Abandoned direct uploads are deleted unless a profile or course uses them")
+    void deleteAbandonedUploads_ShouldDeleteUnusedOldUploads() throws IOException {
+        when(schedulerLockService.tryLock(eq(PresignedUploadServiceImpl.LOCK_NAME), anyLong())).thenReturn(true);
+        PresignedUrl abandoned = presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 1));
+        put(abandoned, new byte[]{1});
+        PresignedUrl used = presignedUploadService.createUploadUrl("lecturer", PresignedUploadService.COURSE, new PresignedUploadRequest("image/png", 1));
+        put(used, new byte[]{1});
+        String usedUrl = "http://localhost:9000/" + BUCKET + "/" + used.getKeyName();
+        when(courseRepository.existsByImgUrl(anyString())).thenAnswer(invocation -> usedUrl.equals(invocation.getArgument(0)));
+        objects.put("direct/thanhtam/recent_avatar.png", new byte[]{1});
+        lastModified.put("direct/thanhtam/recent_avatar.png", DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
+
+        presignedUploadService.deleteAbandonedUploads();
+
+        assertFalse(objects.containsKey(abandoned.getKeyName()));
+        assertTrue(objects.containsKey(used.getKeyName()));
+        assertTrue(objects.containsKey("direct/thanhtam/recent_avatar.png"));
+        verify(schedulerLockService).unlock(PresignedUploadServiceImpl.LOCK_NAME);
+    }
+
+    @Test
+    @DisplayName("Upload url is refused for other content types and sizes above the limit")
+    void createUploadUrl_InvalidFile_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("text/html", 3)));
+        assertThrows(IllegalArgumentException.class, () -> presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 2 * 1024 * 1024)));
+    }
+
+    @Test
+    @DisplayName("Object larger than announced is deleted on completion")
+    void completeUpload_TooLarge_ShouldDeleteObject() throws IOException {
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 10));
+        put(uploadUrl, new byte[2 * 1024 * 1024]);
+
+        assertThrows(IllegalArgumentException.class, () -> presignedUploadService.completeUpload("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadCompletion(uploadUrl.getKeyName(), null)));
+        assertFalse(objects.containsKey(uploadUrl.getKeyName()));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    @DisplayName("Uploads of another user or not uploaded yet cannot be completed")
+    void completeUpload_ForeignOrMissingKey_ShouldThrow() {
+        PresignedUrl uploadUrl = presignedUploadService.createUploadUrl("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadRequest("image/png", 10));
+
+        assertThrows(IllegalArgumentException.class, () -> presignedUploadService.completeUpload("someone", PresignedUploadService.AVATAR, new PresignedUploadCompletion(uploadUrl.getKeyName(), null)));
+        assertThrows(IllegalArgumentException.class, () -> presignedUploadService.completeUpload("thanhtam", PresignedUploadService.AVATAR, new PresignedUploadCompletion(uploadUrl.getKeyName(), null)));
+        verifyNoInteractions(userService);
+    }
+}
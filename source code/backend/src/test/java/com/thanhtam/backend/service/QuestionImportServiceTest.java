@@ -0,0 +1,157 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.QuestionImportResult;
+import com.thanhtam.backend.entity.Part;
+import com.thanhtam.backend.entity.Question;
+import com.thanhtam.backend.entity.QuestionType;
+import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class QuestionImportServiceTest {
+
+    @Mock
+    private QuestionRepository questionRepository;
+
+    @Mock
+    private QuestionService questionService;
+
+    @Mock
+    private QuestionTypeService questionTypeService;
+
+    @Mock
+    private PartService partService;
+
+    @InjectMocks
+    private QuestionImportServiceImpl questionImportService;
+
+    @BeforeEach
+    void setUp() {
+        Part part = new Part();
+        part.setId(1L);
+        when(partService.findPartById(1L)).thenReturn(Optional.of(part));
+        when(partService.findPartById(99L)).thenReturn(Optional.empty());
+        for (EQTypeCode typeCode : EQTypeCode.values()) {
+            QuestionType questionType = new QuestionType();
+            questionType.setTypeCode(typeCode);
+            when(questionTypeService.getQuestionTypeByCode(typeCode)).thenReturn(Optional.of(questionType));
+        }
+        when(questionService.getPointByDifficultyLevel(DifficultyLevel.EASY)).thenReturn(5);
+        when(questionService.getPointByDifficultyLevel(DifficultyLevel.HARD)).thenReturn(15);
+    }
+
+    @Test
+    @DisplayName("Import CSV - valid rows are saved, invalid rows are reported")
+    void importQuestions_Csv_ShouldSaveValidRowsAndReportErrors() throws IOException {
+        List<Question> savedQuestions = new ArrayList<>();
+        when(questionRepository.saveAll(any())).thenAnswer(invocation -> {
+            savedQuestions.addAll(invocation.getArgument(0));
+            return savedQuestions;
+        });
+        String csv = "question_text,question_type,difficulty_level,part_id,choice_1,corrected_1,choice_2,corrected_2\n" +
+                "What is Java?,MC,EASY,1,A language,1,A coffee,0\n" +
+                "Pick primes,MS,HARD,1,2,1,4,0\n" +
+                "No part,MC,EASY,99,A,1,B,0\n" +
+                "Two correct,MC,EASY,1,A,1,B,1\n" +
+                ",,,,,,,\n" +
+                "Bad level,MC,IMPOSSIBLE,1,A,1,B,0\n";
+        MockMultipartFile file = new MockMultipartFile("file", "questions.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8));
+
+        QuestionImportResult result = questionImportService.importQuestions(file);
+
+        assertEquals(5, result.getTotalRows());
+        assertEquals(2, result.getImportedRows());
+        assertEquals(3, result.getFailedRows());
+        assertEquals(4, result.getErrors().get(0).getRowNumber());
+        assertEquals(5, result.getErrors().get(1).getRowNumber());
+        assertEquals(7, result.getErrors().get(2).getRowNumber());
+
+        verify(questionRepository, times(1)).saveAll(any());
+        assertEquals(2, savedQuestions.size());
+        Question question = savedQuestions.get(1);
+        assertEquals("Pick primes", question.getQuestionText());
+        assertEquals(15, question.getPoint());
+        assertEquals(2, question.getChoices().size());
+        assertEquals(1, question.getChoices().get(0).getIsCorrected());
+    }
+
+    @Test
+    @DisplayName("Import XLSX - rows are read from the first sheet")
+    void importQuestions_Xlsx_ShouldSaveRows() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Questions");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("question_text");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("Is the earth round?");
+            row.createCell(1).setCellValue("TF");
+            row.createCell(2).setCellValue("EASY");
+            row.createCell(3).setCellValue(1);
+            row.createCell(4).setCellValue("True");
+            row.createCell(5).setCellValue(1);
+            workbook.write(outputStream);
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "questions.xlsx", null, outputStream.toByteArray());
+
+        QuestionImportResult result = questionImportService.importQuestions(file);
+
+        assertEquals(1, result.getTotalRows());
+        assertEquals(1, result.getImportedRows());
+        assertEquals(0, result.getFailedRows());
+        verify(partService, times(1)).findPartById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Import - rows are saved in chunks")
+    void importQuestions_ManyRows_ShouldSaveInChunks() throws IOException {
+        StringBuilder csv = new StringBuilder("header\n");
+        for (int i = 0; i < 450; i++) {
+            csv.append("Question ").append(i).append(",MC,EASY,1,A,1,B,0\n");
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "questions.csv", "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        QuestionImportResult result = questionImportService.importQuestions(file);
+
+        assertEquals(450, result.getImportedRows());
+        verify(questionRepository, times(3)).saveAll(any());
+        verify(partService, times(1)).findPartById(1L);
+    }
+
+    @Test
+    @DisplayName("Import - unsupported file type")
+    void importQuestions_UnsupportedFile_ShouldThrow() {
+        MockMultipartFile file = new MockMultipartFile("file", "questions.txt", "text/plain", new byte[0]);
+
+        assertThrows(IllegalArgumentException.class, () -> questionImportService.importQuestions(file));
+        verify(questionRepository, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,243 @@
+package com.thanhtam.backend.service;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.thanhtam.backend.dto.*;
+import com.thanhtam.backend.repository.QuestionRepository;
+import com.thanhtam.backend.ultilities.DifficultyLevel;
+import com.thanhtam.backend.ultilities.EQTypeCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class QuestionSearchServiceTest {
+    @Mock
+    private QuestionRepository questionRepository;
+
+    @TempDir
+    Path indexDir;
+
+    private QuestionSearchServiceImpl questionSearchService;
+    private final Map<Long, QuestionSearchDocument> questions = new TreeMap<>();
+    private final Map<Long, List<String>> choices = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        addQuestion(1L, "Java là ngôn ngữ lập trình hướng đối tượng?", 10L, 100L, EQTypeCode.TF, DifficultyLevel.EASY, "lecturer1", false, "Đúng", "Sai");
+        addQuestion(2L, "Which keyword creates an object?", 10L, 100L, EQTypeCode.MC, DifficultyLevel.MEDIUM, "lecturer1", false, "new", "class", "object");
+        addQuestion(3L, "Which collection class keeps insertion order?", 20L, 100L, EQTypeCode.MS, DifficultyLevel.HARD, "lecturer2", false, "ArrayList", "LinkedHashMap", "HashSet");
+        addQuestion(4L, "What is an object in Java?", 30L, 200L, EQTypeCode.MC, DifficultyLevel.EASY, "lecturer2", true, "An instance", "A method");
+
+        when(questionRepository.findQuestionSearchDocumentsAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long lastId = invocation.getArgument(0);
+            int size = invocation.<Pageable>getArgument(1).getPageSize();
+            return questions.values().stream().filter(question -> question.getId() > lastId).limit(size).map(this::copy).collect(Collectors.toList());
+        });
+        when(questionRepository.findQuestionSearchDocumentsByIdIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().filter(questions::containsKey).map(id -> copy(questions.get(id))).collect(Collectors.toList()));
+        when(questionRepository.findChoiceTextsByQuestionIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<QuestionChoiceText> texts = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                List<String> choiceTexts = choices.getOrDefault(id, Collections.emptyList());
+                for (int i = 0; i < choiceTexts.size(); i++) {
+                    texts.add(new QuestionChoiceText(id, choiceId(id, i), choiceTexts.get(i)));
+                }
+            }
+            return texts;
+        });
+        when(questionRepository.findQuestionSummariesByIdIn(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Long>>getArgument(0).stream().map(questions::get).map(question -> new QuestionSummary(question.getId(),
+                        question.getQuestionText(), question.getDifficultyLevel(), 0, question.isDeleted(), null, question.getTypeCode(), null))
+                        .collect(Collectors.toList()));
+
+        questionSearchService = createService();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        questionSearchService.close();
+    }
+
+    private QuestionSearchServiceImpl createService() throws IOException {
+        QuestionSearchServiceImpl service = new QuestionSearchServiceImpl(questionRepository, MoreExecutors.newDirectExecutorService());
+        ReflectionTestUtils.setField(service, "indexDir", indexDir.toString());
+        service.init();
+        return service;
+    }
+
+    private void addQuestion(Long id, String text, Long partId, Long courseId, EQTypeCode typeCode, DifficultyLevel difficultyLevel,
+                             String createdBy, boolean deleted, String... choiceTexts) {
+        questions.put(id, new QuestionSearchDocument(id, text, partId, courseId, typeCode, difficultyLevel, createdBy, deleted));
+        choices.put(id, Arrays.asList(choiceTexts));
+    }
+
+    /**
+     * Choice i of question 3 has id 31 + i
+     */
+    private static Long choiceId(Long questionId, int index) {
+        return questionId * 10 + index + 1;
+    }
+
+    private QuestionSearchDocument copy(QuestionSearchDocument question) {
+        return new QuestionSearchDocument(question.getId(), question.getQuestionText(), question.getPartId(), question.getCourseId(),
+                question.getTypeCode(), question.getDifficultyLevel(), question.getCreatedBy(), question.isDeleted());
+    }
+
+    private List<Long> search(QuestionSearchRequest request) throws IOException {
+        return questionSearchService.search(request, PageRequest.of(0, 10)).getData().stream()
+                .map(QuestionSummary::getId).collect(Collectors.toList());
+    }
+
+    private static QuestionSearchRequest keyword(String keyword) {
+        QuestionSearchRequest request = new QuestionSearchRequest();
+        request.setKeyword(keyword);
+        return request;
+    }
+
+    @Test
+    @DisplayName("Keywords match question and choice texts without diacritics, question text weighs more")
+    void search_Keyword_ShouldMatchTextAndChoices() throws IOException {
+        assertEquals(Arrays.asList(3L, 2L), search(keyword("class")));
+        assertEquals(Arrays.asList(2L, 4L), search(keyword("object")));
+        assertEquals(Arrays.asList(1L), search(keyword("NGON NGU lap")));
+        assertEquals(Arrays.asList(1L), search(keyword("đúng")));
+        assertEquals(Arrays.asList(3L), search(keyword("linkedhash")));
+        assertTrue(search(keyword("python")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Filters narrow the matches and facets count them")
+    void search_Filters_ShouldNarrowAndCount() throws IOException {
+        QuestionSearchRequest request = keyword("which");
+        request.setCourseId(100L);
+        QuestionSearchResult result = questionSearchService.search(request, PageRequest.of(0, 10));
+        assertEquals(2L, result.getPaginationDetails().getTotalCount().longValue());
+        assertEquals(1, result.getFacets().get(QuestionSearchServiceImpl.QUESTION_TYPE).get("MC").intValue());
+        assertEquals(1, result.getFacets().get(QuestionSearchServiceImpl.DIFFICULTY_LEVEL).get("HARD").intValue());
+
+        request.setQuestionType(EQTypeCode.MS);
+        request.setCreatedBy("lecturer2");
+        assertEquals(Arrays.asList(3L), search(request));
+
+        QuestionSearchRequest notDeleted = new QuestionSearchRequest();
+        notDeleted.setDeleted(false);
+        notDeleted.setDifficultyLevel(DifficultyLevel.EASY);
+        assertEquals(Arrays.asList(1L), search(notDeleted));
+
+        QuestionSearchRequest part = new QuestionSearchRequest();
+        part.setPartId(10L);
+        assertEquals(Arrays.asList(1L, 2L), search(part));
+    }
+
+    @Test
+    @DisplayName("Pages are taken from the ranked ids")
+    void search_ShouldPage() throws IOException {
+        QuestionSearchResult result = questionSearchService.search(new QuestionSearchRequest(), PageRequest.of(1, 3));
+
+        assertEquals(4L, result.getPaginationDetails().getTotalCount().longValue());
+        assertEquals(Arrays.asList(4L), result.getData().stream().map(QuestionSummary::getId).collect(Collectors.toList()));
+        assertEquals(3, result.getFacets().get(QuestionSearchServiceImpl.PART).size());
+    }
+
+    @Test
+    @DisplayName("Saved, deleted and choice-only changes are written to the index")
+    void reindex_ShouldFollowChanges() throws IOException {
+        addQuestion(5L, "Which interface does HashMap implement?", 20L, 100L, EQTypeCode.MC, DifficultyLevel.MEDIUM, "lecturer1", false, "Map", "List");
+        questionSearchService.reindexQuestions(Collections.singleton(5L));
+        assertEquals(Arrays.asList(5L), search(keyword("interface")));
+
+        questions.remove(2L);
+        questionSearchService.reindexQuestions(Collections.singleton(2L));
+        assertEquals(Arrays.asList(4L), search(keyword("object")));
+
+        choices.put(3L, Arrays.asList("ArrayList", "TreeSet"));
+        when(questionRepository.findIdsByChoiceIdIn(anyCollection())).thenReturn(Collections.singletonList(3L));
+        questionSearchService.reindexChoices(Collections.singleton(33L));
+        assertEquals(Arrays.asList(3L), search(keyword("treeset")));
+        assertTrue(search(keyword("linkedhashmap")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Index is kept on disk, a restart only writes what changed in the database meanwhile")
+    void init_ExistingIndex_ShouldReconcile() throws Exception {
+        questionSearchService.close();
+        questionSearchService = createService();
+        assertEquals(Arrays.asList(3L), search(keyword("insertion")));
+        assertEquals(0, questionSearchService.reconcile().get().intValue());
+
+        questions.remove(3L);
+        assertEquals(3, questionSearchService.rebuild().get().intValue());
+        assertTrue(search(keyword("insertion")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Changes lost while the index was closed are caught up at the next start")
+    void init_MissedChanges_ShouldBeCaughtUp() throws Exception {
+        questionSearchService.close();
+        addQuestion(5L, "Which interface does HashMap implement?", 20L, 100L, EQTypeCode.MC, DifficultyLevel.MEDIUM, "lecturer1", false, "Map", "List");
+        questions.remove(2L);
+        choices.put(3L, Arrays.asList("ArrayList", "TreeSet"));
+        questions.get(1L).setDeleted(true);
+
+        questionSearchService = createService();
+
+        assertEquals(Arrays.asList(5L), search(keyword("interface")));
+        assertEquals(Arrays.asList(4L), search(keyword("object")));
+        assertEquals(Arrays.asList(3L), search(keyword("treeset")));
+        QuestionSearchRequest deleted = new QuestionSearchRequest();
+        deleted.setDeleted(true);
+        assertEquals(Arrays.asList(1L, 4L), search(deleted));
+        assertEquals(0, questionSearchService.reconcile().get().intValue());
+    }
+
+    @Test
+    @DisplayName("A deleted choice is traced to its question through the index")
+    void reindexChoices_DeletedChoice_ShouldReindexItsQuestion() throws IOException {
+        choices.put(3L, Arrays.asList("ArrayList", "LinkedHashMap"));
+        when(questionRepository.findIdsByChoiceIdIn(anyCollection())).thenReturn(Collections.emptyList());
+
+        questionSearchService.reindexChoices(Collections.singleton(choiceId(3L, 2)));
+
+        assertTrue(search(keyword("hashset")).isEmpty());
+        assertEquals(Arrays.asList(3L), search(keyword("linkedhashmap")));
+    }
+
+    @Test
+    @DisplayName("A failed update stays queued and is written by the next attempt")
+    void reindex_Failure_ShouldRetry() throws IOException {
+        addQuestion(5L, "Which interface does HashMap implement?", 20L, 100L, EQTypeCode.MC, DifficultyLevel.MEDIUM, "lecturer1", false, "Map", "List");
+        when(questionRepository.findQuestionSearchDocumentsByIdIn(anyCollection()))
+                .thenThrow(new IllegalStateException("Connection refused"))
+                .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).stream()
+                        .filter(questions::containsKey).map(id -> copy(questions.get(id))).collect(Collectors.toList()));
+
+        questionSearchService.reindexQuestions(Collections.singleton(5L));
+        assertTrue(search(keyword("interface")).isEmpty());
+
+        questionSearchService.retryPendingUpdates();
+        assertEquals(Arrays.asList(5L), search(keyword("interface")));
+    }
+}
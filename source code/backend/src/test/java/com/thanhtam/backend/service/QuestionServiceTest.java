@@ -7,12 +7,14 @@ import static org.mockito.Mockito.*;
 
 import com.thanhtam.backend.dto.AnswerSheet;
 import com.thanhtam.backend.dto.ExamQuestionPoint; // Assuming this import exists
+import com.thanhtam.backend.dto.QuestionSummary;
 import com.thanhtam.backend.entity.*;
 import com.thanhtam.backend.repository.QuestionRepository;
 import com.thanhtam.backend.ultilities.DifficultyLevel;
 import com.thanhtam.backend.ultilities.EQTypeCode; // Import the enum
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -315,6 +317,25 @@ class QuestionServiceTest {
         );
     }
 
+    @Test
+    @DisplayName("Test findQuestionSummariesByPart")
+    void findQuestionSummariesByPart_ShouldReturnPagedSummaries() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10);
+        QuestionSummary summary = new QuestionSummary(1L, "What is 1 + 1?", DifficultyLevel.EASY, 5, false,
+            1L, EQTypeCode.MC, "Multiple choice");
+        Page<QuestionSummary> expectedPage = new PageImpl<>(Collections.singletonList(summary), pageable, 1);
+        when(questionRepository.findQuestionSummariesByPart(pageable, 1L)).thenReturn(expectedPage);
+
+        // Act
+        Page<QuestionSummary> actualPage = questionService.findQuestionSummariesByPart(pageable, 1L);
+
+        // Assert
+        assertEquals(expectedPage, actualPage);
+        assertEquals("Multiple choice", actualPage.getContent().get(0).getQuestionType().getDescription());
+        verify(questionRepository, never()).findQuestionsByPart(any(), any());
+    }
+
     @Test
     @DisplayName("Test findQuestionsByPartAndDeletedFalse")
     void findQuestionsByPartAndDeletedFalse_ShouldReturnPagedQuestions() {
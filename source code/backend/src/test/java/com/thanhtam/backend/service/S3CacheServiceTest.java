@@ -0,0 +1,237 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.thanhtam.backend.dto.CachedS3Object;
+import com.thanhtam.backend.dto.S3CacheStats;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class S3CacheServiceTest {
+    private static final int MB = 1024 * 1024;
+
+    @Mock
+    private S3Services s3Services;
+
+    @TempDir
+    Path cacheDir;
+
+    private S3CacheServiceImpl s3CacheService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3CacheService = new S3CacheServiceImpl(s3Services);
+        ReflectionTestUtils.setField(s3CacheService, "enabled", true);
+        ReflectionTestUtils.setField(s3CacheService, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(s3CacheService, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(s3CacheService, "maxEntrySizeMb", 1L);
+        ReflectionTestUtils.setField(s3CacheService, "revalidateSeconds", 60L);
+        s3CacheService.init();
+    }
+
+    private S3Object createS3Object(byte[] content, String eTag) {
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), mock(HttpRequestBase.class)));
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setHeader(Headers.ETAG, eTag);
+        metadata.setContentType("image/png");
+        s3Object.setObjectMetadata(metadata);
+        return s3Object;
+    }
+
+    private byte[] content(int size, int value) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) value);
+        return content;
+    }
+
+    @Test
+    @DisplayName("Second read of an object is served from disk")
+    void getObject_Hit_ShouldNotCallS3() throws IOException {
+        when(s3Services.downloadS3Object(eq("avatar.png"), isNull())).thenReturn(createS3Object(new byte[]{1, 2, 3}, "etag1"));
+
+        CachedS3Object first = s3CacheService.getObject("avatar.png").get();
+        CachedS3Object second = s3CacheService.getObject("avatar.png").get();
+
+        assertEquals(first.getPath(), second.getPath());
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(second.getPath()));
+        assertEquals("etag1", second.getETag());
+        assertEquals("image/png", second.getContentType());
+        verify(s3Services, times(1)).downloadS3Object(anyString(), any());
+        S3CacheStats stats = s3CacheService.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRatio());
+        assertEquals(3, stats.getTotalBytes());
+    }
+
+    @Test
+    @DisplayName("Expired entry is revalidated with its ETag")
+    void getObject_Expired_ShouldRevalidateWithETag() throws IOException {
+        ReflectionTestUtils.setField(s3CacheService, "revalidateSeconds", 0L);
+        when(s3Services.downloadS3Object(eq("avatar.png"), isNull())).thenReturn(createS3Object(new byte[]{1, 2, 3}, "etag1"));
+        when(s3Services.downloadS3Object("avatar.png", "\"etag1\"")).thenReturn(null);
+
+        CachedS3Object first = s3CacheService.getObject("avatar.png").get();
+        CachedS3Object revalidated = s3CacheService.getObject("avatar.png").get();
+
+        assertEquals(first.getPath(), revalidated.getPath());
+        assertEquals(1, s3CacheService.getStats().getRevalidations());
+        assertEquals(1, s3CacheService.getStats().getHits());
+    }
+
+    @Test
+    @DisplayName("Changed object replaces the cached file")
+    void getObject_Changed_ShouldReplaceFile() throws IOException {
+        ReflectionTestUtils.setField(s3CacheService, "revalidateSeconds", 0L);
+        when(s3Services.downloadS3Object(eq("avatar.png"), isNull())).thenReturn(createS3Object(new byte[]{1, 2, 3}, "etag1"));
+        when(s3Services.downloadS3Object("avatar.png", "\"etag1\"")).thenReturn(createS3Object(new byte[]{4, 5}, "etag2"));
+
+        CachedS3Object first = s3CacheService.getObject("avatar.png").get();
+        CachedS3Object changed = s3CacheService.getObject("avatar.png").get();
+
+        assertNotEquals(first.getPath(), changed.getPath());
+        assertFalse(Files.exists(first.getPath()));
+        assertArrayEquals(new byte[]{4, 5}, Files.readAllBytes(changed.getPath()));
+        assertEquals(2, s3CacheService.getStats().getTotalBytes());
+    }
+
+    @Test
+    @DisplayName("Least recently used entries are evicted above the size limit")
+    void getObject_AboveMaxSize_ShouldEvictLeastRecentlyUsed() throws IOException {
+        when(s3Services.downloadS3Object(eq("a.png"), isNull())).thenReturn(createS3Object(content(400 * 1024, 1), "a"));
+        when(s3Services.downloadS3Object(eq("b.png"), isNull())).thenReturn(createS3Object(content(400 * 1024, 2), "b"));
+        when(s3Services.downloadS3Object(eq("c.png"), isNull())).thenReturn(createS3Object(content(400 * 1024, 3), "c"));
+
+        s3CacheService.getObject("a.png");
+        CachedS3Object b = s3CacheService.getObject("b.png").get();
+        s3CacheService.getObject("a.png");
+        s3CacheService.getObject("c.png");
+
+        S3CacheStats stats = s3CacheService.getStats();
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getEntries());
+        assertTrue(stats.getTotalBytes() <= MB);
+        assertFalse(Files.exists(b.getPath()));
+        assertEquals(0, Files.list(cacheDir).filter(path -> path.toString().endsWith(".tmp")).count());
+    }
+
+    @Test
+    @DisplayName("Object above the entry size limit is not cached")
+    void getObject_TooLarge_ShouldNotBeCached() throws IOException {
+        S3Object s3Object = createS3Object(new byte[]{1}, "big");
+        s3Object.getObjectMetadata().setContentLength(2L * MB);
+        when(s3Services.downloadS3Object(eq("video.mp4"), isNull())).thenReturn(s3Object);
+
+        Optional<CachedS3Object> cached = s3CacheService.getObject("video.mp4");
+
+        assertFalse(cached.isPresent());
+        assertEquals(0, s3CacheService.getStats().getEntries());
+        verify(s3Object.getObjectContent().getHttpRequest(), atLeastOnce()).abort();
+//        Later reads go straight to S3 without downloading it here first
+        assertFalse(s3CacheService.getObject("video.mp4").isPresent());
+        verify(s3Services, times(1)).downloadS3Object(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("A known oversized object is checked with a HEAD once the interval has passed")
+    void getObject_TooLargeExpired_ShouldCheckWithHead() throws IOException {
+        ReflectionTestUtils.setField(s3CacheService, "revalidateSeconds", 0L);
+        S3Object s3Object = createS3Object(new byte[]{1}, "big");
+        s3Object.getObjectMetadata().setContentLength(2L * MB);
+        when(s3Services.downloadS3Object(eq("video.mp4"), isNull())).thenReturn(s3Object);
+        when(s3Services.getS3ObjectMetadata("video.mp4")).thenReturn(s3Object.getObjectMetadata());
+
+        s3CacheService.getObject("video.mp4");
+        assertFalse(s3CacheService.getObject("video.mp4").isPresent());
+
+        verify(s3Services, times(1)).downloadS3Object(anyString(), any());
+        verify(s3Services, times(1)).getS3ObjectMetadata("video.mp4");
+    }
+
+    @Test
+    @DisplayName("A download running while its key is evicted is not cached")
+    void getObject_EvictedDuringDownload_ShouldNotBeCached() throws Exception {
+        CountDownLatch downloadStarted = new CountDownLatch(1);
+        CountDownLatch releaseDownload = new CountDownLatch(1);
+        when(s3Services.downloadS3Object(eq("avatar.png"), isNull())).thenAnswer(invocation -> {
+            downloadStarted.countDown();
+            releaseDownload.await(5, TimeUnit.SECONDS);
+            return createS3Object(new byte[]{1, 2, 3}, "old");
+        }).thenReturn(createS3Object(new byte[]{4, 5}, "new"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<CachedS3Object>> running = executor.submit(() -> s3CacheService.getObject("avatar.png"));
+            assertTrue(downloadStarted.await(5, TimeUnit.SECONDS));
+            s3CacheService.evict("avatar.png");
+            releaseDownload.countDown();
+
+            assertFalse(running.get(5, TimeUnit.SECONDS).isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, s3CacheService.getStats().getEntries());
+        assertEquals(0, Files.list(cacheDir).count());
+        assertEquals("new", s3CacheService.getObject("avatar.png").get().getETag());
+    }
+
+    @Test
+    @DisplayName("Concurrent misses of one key share a single download")
+    void getObject_ConcurrentMisses_ShouldCollapse() throws Exception {
+        CountDownLatch downloadStarted = new CountDownLatch(1);
+        CountDownLatch releaseDownload = new CountDownLatch(1);
+        when(s3Services.downloadS3Object(eq("course.png"), isNull())).thenAnswer(invocation -> {
+            downloadStarted.countDown();
+            releaseDownload.await(5, TimeUnit.SECONDS);
+            return createS3Object(new byte[]{7, 8, 9}, "etag");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<CachedS3Object>> first = executor.submit(() -> s3CacheService.getObject("course.png"));
+            assertTrue(downloadStarted.await(5, TimeUnit.SECONDS));
+            Future<Optional<CachedS3Object>> second = executor.submit(() -> s3CacheService.getObject("course.png"));
+            while (s3CacheService.getStats().getCollapsedFetches() == 0) {
+                Thread.sleep(5);
+            }
+            releaseDownload.countDown();
+
+            assertEquals(first.get(5, TimeUnit.SECONDS).get().getPath(), second.get(5, TimeUnit.SECONDS).get().getPath());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(s3Services, times(1)).downloadS3Object(anyString(), any());
+        assertEquals(1, s3CacheService.getStats().getMisses());
+    }
+
+    @Test
+    @DisplayName("Disabled cache never calls S3")
+    void getObject_Disabled_ShouldReturnEmpty() throws IOException {
+        ReflectionTestUtils.setField(s3CacheService, "enabled", false);
+
+        assertFalse(s3CacheService.getObject("avatar.png").isPresent());
+        verifyNoInteractions(s3Services);
+    }
+}
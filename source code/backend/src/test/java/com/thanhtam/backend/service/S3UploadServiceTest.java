@@ -0,0 +1,152 @@
+package com.thanhtam.backend.service;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.transfer.model.UploadResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class S3UploadServiceTest {
+
+    @Mock
+    private TransferManager transferManager;
+
+    @Mock
+    private Upload upload;
+
+    @TempDir
+    Path stagingDir;
+
+    private ExecutorService executor;
+
+    private S3UploadServiceImpl s3UploadService;
+
+    private final MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", new byte[]{1, 2, 3, 4});
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        s3UploadService = new S3UploadServiceImpl(transferManager, executor);
+        ReflectionTestUtils.setField(s3UploadService, "bucketName", "isc-quiz");
+        ReflectionTestUtils.setField(s3UploadService, "stagingDir", stagingDir.toString());
+        ReflectionTestUtils.setField(s3UploadService, "maxAttempts", 2);
+        ReflectionTestUtils.setField(s3UploadService, "retryDelayMs", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Upload is staged, sent from the staged file and the staged file is removed")
+    void uploadS3FileAsync_ShouldUploadStagedFile() throws Exception {
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setKey("avatar.png");
+        CountDownLatch release = new CountDownLatch(1);
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(transferManager.upload(captor.capture())).thenReturn(upload);
+        when(upload.waitForUploadResult()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return uploadResult;
+        });
+
+        CompletableFuture<UploadResult> future = s3UploadService.uploadS3FileAsync("avatar.png", file);
+
+        assertFalse(future.isDone());
+        release.countDown();
+        assertSame(uploadResult, future.get(5, TimeUnit.SECONDS));
+        PutObjectRequest request = captor.getValue();
+        File stagedFile = request.getFile();
+        assertEquals("isc-quiz", request.getBucketName());
+        assertEquals("avatar.png", request.getKey());
+        assertEquals(CannedAccessControlList.PublicRead, request.getCannedAcl());
+        assertEquals("image/png", request.getMetadata().getContentType());
+        assertEquals(stagingDir, stagedFile.toPath().getParent());
+        assertFalse(stagedFile.exists());
+    }
+
+    @Test
+    @DisplayName("Failed transfer is retried before the upload fails")
+    void uploadS3FileAsync_TransientFailure_ShouldRetry() throws Exception {
+        UploadResult uploadResult = new UploadResult();
+        when(transferManager.upload(any(PutObjectRequest.class))).thenReturn(upload);
+        when(upload.waitForUploadResult()).thenThrow(new AmazonClientException("connection reset")).thenReturn(uploadResult);
+
+        CompletableFuture<UploadResult> future = s3UploadService.uploadS3FileAsync("avatar.png", file);
+
+        assertSame(uploadResult, future.get(5, TimeUnit.SECONDS));
+        verify(transferManager, times(2)).upload(any(PutObjectRequest.class));
+        assertEquals(0, Files.list(stagingDir).count());
+    }
+
+    @Test
+    @DisplayName("Failed upload completes the handle exceptionally and stays staged")
+    void uploadS3FileAsync_Failure_ShouldCompleteExceptionally() throws Exception {
+        when(transferManager.upload(any(PutObjectRequest.class))).thenReturn(upload);
+        when(upload.waitForUploadResult()).thenThrow(new AmazonClientException("connection reset"));
+
+        CompletableFuture<UploadResult> future = s3UploadService.uploadS3FileAsync("avatar.png", file);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof AmazonClientException);
+        verify(transferManager, times(2)).upload(any(PutObjectRequest.class));
+        assertEquals(2, Files.list(stagingDir).count());
+    }
+
+    @Test
+    @DisplayName("Uploads still staged at startup are sent again with their key and content type")
+    void resumeStagedUploads_ShouldUploadLeftoverFiles() throws Exception {
+        when(transferManager.upload(any(PutObjectRequest.class))).thenReturn(upload);
+        when(upload.waitForUploadResult()).thenThrow(new AmazonClientException("connection reset"));
+        CompletableFuture<UploadResult> failed = s3UploadService.uploadS3FileAsync("images/avatar.png", file);
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        Path interrupted = Files.write(stagingDir.resolve("upload-1.part"), new byte[]{1});
+
+        reset(transferManager, upload);
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        when(transferManager.upload(captor.capture())).thenReturn(upload);
+        when(upload.waitForUploadResult()).thenReturn(new UploadResult());
+        s3UploadService.resumeStagedUploads();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals("images/avatar.png", captor.getValue().getKey());
+        assertEquals("image/png", captor.getValue().getMetadata().getContentType());
+        verify(transferManager, times(1)).upload(any(PutObjectRequest.class));
+        assertFalse(Files.exists(interrupted));
+        assertEquals(0, Files.list(stagingDir).count());
+    }
+
+    @Test
+    @DisplayName("Full upload queue rejects the upload and removes the staged file")
+    void uploadS3FileAsync_Rejected_ShouldDeleteStagedFile() throws Exception {
+        executor.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> s3UploadService.uploadS3FileAsync("avatar.png", file));
+        assertEquals(0, Files.list(stagingDir).count());
+        verify(transferManager, never()).upload(any(PutObjectRequest.class));
+    }
+}
@@ -0,0 +1,112 @@
+package com.thanhtam.backend.service;
+
+import com.thanhtam.backend.dto.UserSearchDocument;
+import com.thanhtam.backend.dto.UserSummary;
+import com.thanhtam.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserSearchServiceTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSearchServiceImpl userSearchService;
+    private final Map<Long, UserSearchDocument> users = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        addUser(1L, 11L, "thanhtam", "tam.nguyen@example.com", "Tâm", "Nguyễn Thanh");
+        addUser(2L, 12L, "tamle", "le.tam@example.com", "Tâm", "Lê");
+        addUser(3L, 13L, "admin", "admin@example.com", "Admin", "Super");
+        addUser(4L, 14L, "hoangdung", "dung@example.com", "Dũng", "Đặng Hoàng");
+        addUser(5L, 15L, "tam", "t@example.com", "Minh", "Trần");
+
+        when(userRepository.findAllSearchDocuments()).thenAnswer(invocation -> new ArrayList<>(users.values()));
+        when(userRepository.findUserSummariesByIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<UserSummary> summaries = new ArrayList<>();
+            for (Object id : invocation.<Collection<?>>getArgument(0)) {
+                UserSearchDocument user = users.get((Long) id);
+                summaries.add(new UserSummary(user.getId(), user.getUsername(), user.getEmail(), false, null,
+                        user.getFirstName(), user.getLastName(), null));
+            }
+//            The database returns rows in its own order
+            Collections.reverse(summaries);
+            return summaries;
+        });
+        userSearchService = new UserSearchServiceImpl(userRepository);
+        userSearchService.rebuild();
+    }
+
+    private void addUser(Long id, Long profileId, String username, String email, String firstName, String lastName) {
+        users.put(id, new UserSearchDocument(id, profileId, username, email, firstName, lastName));
+    }
+
+    private List<String> search(String keyword) {
+        return userSearchService.search(keyword, PageRequest.of(0, 10)).getContent().stream()
+                .map(UserSummary::getUsername).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Username matches rank before name and email matches")
+    void search_ShouldRankByMatchQuality() {
+        assertEquals(Arrays.asList("tam", "tamle", "thanhtam"), search("tam"));
+        assertEquals(Arrays.asList("tamle"), search("tam@"));
+    }
+
+    @Test
+    @DisplayName("Names match without diacritics and keywords shorter than a trigram still match")
+    void search_ShouldIgnoreDiacritics() {
+        assertEquals(Arrays.asList("hoangdung"), search("dang hoang"));
+        assertEquals(Arrays.asList("thanhtam"), search("NGUYỄN"));
+        assertEquals(Arrays.asList("thanhtam"), search("nguyen thanh tam"));
+        assertEquals("tamle", search("lê").get(0));
+        assertTrue(search("zzz").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Only the ids of the requested page are fetched, total comes from the index")
+    void search_ShouldPageRankedIds() {
+        Page<UserSummary> page = userSearchService.search("example", PageRequest.of(1, 2));
+
+        assertEquals(5, page.getTotalElements());
+        assertEquals(Arrays.asList(3L, 1L), page.getContent().stream().map(UserSummary::getId).collect(Collectors.toList()));
+        assertEquals(5, userSearchService.search("", PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    @Test
+    @DisplayName("Committed user and profile changes update the index")
+    void index_ShouldFollowChanges() {
+        addUser(6L, 16L, "newcomer", "new@example.com", "Nam", "Phạm");
+        userSearchService.index(users.get(6L));
+        assertEquals(Arrays.asList("newcomer"), search("pham"));
+
+        addUser(6L, 16L, "renamed", "new@example.com", "Nam", "Phạm");
+        userSearchService.index(users.get(6L));
+        assertTrue(search("newcomer").isEmpty());
+
+        userSearchService.indexProfile(16L, "Nam", "Võ");
+        assertTrue(search("pham").isEmpty());
+        assertEquals(Arrays.asList("renamed"), search("vo nam"));
+
+        userSearchService.remove(6L);
+        assertTrue(search("renamed").isEmpty());
+    }
+}
@@ -3,6 +3,7 @@ export class Course {
   courseCode: string;
   name: string;
   imgUrl: string;
+  imageVariants?: { [name: string]: string };
 
   constructor(courseCode: string, name: string, imgUrl: string) {
     this.courseCode = courseCode;
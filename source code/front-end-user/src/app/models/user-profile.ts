@@ -3,6 +3,7 @@ export class UserProfile {
   firstName: string;
   lastName: string;
   image?: string;
+  imageVariants?: { [name: string]: string };
 
   constructor(firstName: string, lastName: string) {
     this.firstName = firstName;